@@ -0,0 +1,103 @@
+package com.smartadserver.android.smartcmp.consentstring;
+
+import com.smartadserver.android.smartcmp.exception.UnknownVersionNumberException;
+import com.smartadserver.android.smartcmp.model.Language;
+import com.smartadserver.android.smartcmp.model.VersionConfig;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Random;
+
+/**
+ * Benchmarks of the consent string encoding & decoding paths, for realistic vendor list sizes.
+ */
+
+@State(Scope.Benchmark)
+public class ConsentStringBenchmark {
+
+    // The maximum vendor id of the vendor list.
+    @Param({"100", "600", "2000", "10000"})
+    public int maxVendorId;
+
+    // The vendors encoding: BITFIELD uses randomly allowed vendors, RANGE uses large blocks of allowed vendors.
+    @Param({"BITFIELD", "RANGE"})
+    public String encoding;
+
+    private VersionConfig versionConfig;
+    private Date date;
+    private Language language;
+    private ArrayList<Integer> allowedPurposes;
+    private ArrayList<Integer> allowedVendors;
+    private ConsentString.ConsentEncoding consentEncoding;
+
+    private ConsentString consentString;
+    private String base64ConsentString;
+    private int toggledVendorId;
+
+    @Setup
+    public void setup() throws UnknownVersionNumberException {
+        versionConfig = new VersionConfig(1);
+        date = new Date(1510081144900L);
+        language = new Language("en");
+        consentEncoding = ConsentString.ConsentEncoding.valueOf(encoding);
+
+        allowedPurposes = new ArrayList<>();
+        for (int id = 1; id <= 5; id++) {
+            allowedPurposes.add(id);
+        }
+
+        Random random = new Random(42);
+        allowedVendors = new ArrayList<>();
+        for (int id = 1; id <= maxVendorId; id++) {
+            boolean allowed = consentEncoding == ConsentString.ConsentEncoding.RANGE ? (id / 50) % 2 == 0 : random.nextBoolean();
+            if (allowed) {
+                allowedVendors.add(id);
+            }
+        }
+
+        consentString = newConsentString();
+        base64ConsentString = consentString.getConsentString();
+        toggledVendorId = maxVendorId / 2 + 1;
+    }
+
+    private ConsentString newConsentString() {
+        return new ConsentString(versionConfig, date, date, 1, 1, 1, language, 1, maxVendorId, allowedPurposes, allowedVendors, consentEncoding);
+    }
+
+    @Benchmark
+    public ConsentString fromBase64String() throws UnknownVersionNumberException {
+        return ConsentString.fromBase64String(base64ConsentString);
+    }
+
+    @Benchmark
+    public String encode() {
+        return newConsentString().getConsentString();
+    }
+
+    @Benchmark
+    public String consentStringByAddingVendorConsent() {
+        return ConsentString.consentStringByAddingVendorConsent(toggledVendorId, consentString, date).getConsentString();
+    }
+
+    @Benchmark
+    public String parsedVendorConsents() {
+        // A copy shares the allowed ids sets but not the cached strings, so the string is generated each time.
+        return new ConsentString(consentString).parsedVendorConsents();
+    }
+
+    @Benchmark
+    public String parsedPurposeConsents() {
+        return new ConsentString(consentString).parsedPurposeConsents();
+    }
+
+    @Benchmark
+    public String cachedParsedVendorConsents() {
+        return consentString.parsedVendorConsents();
+    }
+}
@@ -0,0 +1,131 @@
+package com.smartadserver.android.smartcmp.consentstring;
+
+import com.smartadserver.android.smartcmp.exception.UnknownVersionNumberException;
+import com.smartadserver.android.smartcmp.model.Language;
+import com.smartadserver.android.smartcmp.model.VersionConfig;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the consent queries made before each ad request: the consent view against the previous ways of
+ * querying a consent (consent string, allowed vendors list, parsed vendor consents string).
+ */
+
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ConsentViewBenchmark {
+
+    // The maximum vendor id of the vendor list.
+    @Param({"600", "10000"})
+    public int maxVendorId;
+
+    // The number of vendor ids queried by each invocation, so the vendor ids are not constant.
+    static private final int QUERY_COUNT = 64;
+
+    // The purposes required by an ad request.
+    static private final int[] AD_PURPOSES = new int[]{1, 3, 4};
+
+    private ConsentString consentString;
+    private ConsentView consentView;
+    private ArrayList<Integer> allowedVendors;
+    private String parsedVendorConsents;
+    private int[] vendorIds;
+
+    @Setup
+    public void setup() throws UnknownVersionNumberException {
+        ArrayList<Integer> allowedPurposes = new ArrayList<>();
+        for (int id = 1; id <= 5; id++) {
+            allowedPurposes.add(id);
+        }
+
+        Random random = new Random(42);
+        ArrayList<Integer> vendors = new ArrayList<>();
+        for (int id = 1; id <= maxVendorId; id++) {
+            if (random.nextBoolean()) {
+                vendors.add(id);
+            }
+        }
+
+        Date date = new Date(1510081144900L);
+        consentString = new ConsentString(new VersionConfig(1), date, date, 1, 1, 1, new Language("en"), 1, maxVendorId, allowedPurposes, vendors);
+        consentView = ConsentView.from(consentString);
+        allowedVendors = consentString.getAllowedVendors();
+        parsedVendorConsents = consentString.parsedVendorConsents();
+
+        vendorIds = new int[QUERY_COUNT];
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            vendorIds[i] = 1 + random.nextInt(maxVendorId);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERY_COUNT)
+    public int consentViewIsVendorAllowed() {
+        int allowed = 0;
+        for (int vendorId : vendorIds) {
+            if (consentView.isVendorAllowed(vendorId)) {
+                allowed++;
+            }
+        }
+        return allowed;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERY_COUNT)
+    public int consentViewIsVendorAllowedForPurposes() {
+        int allowed = 0;
+        for (int vendorId : vendorIds) {
+            if (consentView.isVendorAllowedForPurposes(vendorId, AD_PURPOSES)) {
+                allowed++;
+            }
+        }
+        return allowed;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERY_COUNT)
+    public int consentStringIsVendorAllowed() {
+        int allowed = 0;
+        for (int vendorId : vendorIds) {
+            if (consentString.isVendorAllowed(vendorId)) {
+                allowed++;
+            }
+        }
+        return allowed;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERY_COUNT)
+    public int allowedVendorsContains() {
+        int allowed = 0;
+        for (int vendorId : vendorIds) {
+            if (allowedVendors.contains(vendorId)) {
+                allowed++;
+            }
+        }
+        return allowed;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERY_COUNT)
+    public int parsedVendorConsentsCharAt() {
+        int allowed = 0;
+        for (int vendorId : vendorIds) {
+            if (parsedVendorConsents.charAt(vendorId - 1) == '1') {
+                allowed++;
+            }
+        }
+        return allowed;
+    }
+}
@@ -0,0 +1,120 @@
+package com.smartadserver.android.smartcmp.model;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Benchmarks of the localization merge alone (the vendor list & localized vendor list being already read), the
+ * localized items being looked up by id in an index against the previous scan of the whole localized array per item.
+ */
+
+@State(Scope.Benchmark)
+public class VendorListLocalizationBenchmark {
+
+    // The number of purposes, features & vendors in the vendor list (all of them being localized).
+    @Param({"100", "600", "2000"})
+    public int itemsCount;
+
+    private JSONObject vendorListJSON;
+    private JSONObject localizedVendorListJSON;
+
+    private VendorList vendorList;
+    private byte[] localizedVendorListBytes;
+
+    @Setup
+    public void setup() throws IOException, JSONException {
+        StringBuilder builder = new StringBuilder();
+        builder.append("{\"vendorListVersion\": 42, \"lastUpdated\": \"2018-04-23T16:03:22Z\", \"purposes\": [");
+        appendItems(builder, "Purpose", itemsCount);
+        builder.append("], \"features\": [");
+        appendItems(builder, "Feature", itemsCount);
+        builder.append("], \"vendors\": [");
+        for (int id = 1; id <= itemsCount; id++) {
+            builder.append(id > 1 ? ", " : "")
+                    .append("{\"id\": ").append(id)
+                    .append(", \"name\": \"Vendor ").append(id).append(" name\"")
+                    .append(", \"policyUrl\": \"https://www.vendor").append(id).append(".com/privacy-policy/\"")
+                    .append(", \"purposeIds\": [1, 2, 3], \"legIntPurposeIds\": [4, 5], \"featureIds\": [1]}");
+        }
+        builder.append("]}");
+        String vendorListString = builder.toString();
+
+        // The localized items are listed in reverse order, the worst case of a linear scan.
+        builder = new StringBuilder();
+        builder.append("{\"purposes\": [");
+        appendReversedItems(builder, "Localized purpose", itemsCount);
+        builder.append("], \"features\": [");
+        appendReversedItems(builder, "Localized feature", itemsCount);
+        builder.append("], \"vendors\": [");
+        appendReversedItems(builder, "Localized vendor", itemsCount);
+        builder.append("]}");
+        String localizedVendorListString = builder.toString();
+
+        vendorListJSON = new JSONObject(vendorListString);
+        localizedVendorListJSON = new JSONObject(localizedVendorListString);
+
+        vendorList = VendorListParser.parse(new ByteArrayInputStream(vendorListString.getBytes(StandardCharsets.UTF_8)));
+        localizedVendorListBytes = localizedVendorListString.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void appendReversedItems(StringBuilder builder, String prefix, int count) {
+        for (int id = count; id >= 1; id--) {
+            builder.append(id < count ? ", " : "")
+                    .append("{\"id\": ").append(id)
+                    .append(", \"name\": \"").append(prefix).append(" ").append(id).append(" name\"")
+                    .append(", \"description\": \"").append(prefix).append(" ").append(id).append(" description.\"}");
+        }
+    }
+
+    private static void appendItems(StringBuilder builder, String prefix, int count) {
+        for (int id = 1; id <= count; id++) {
+            builder.append(id > 1 ? ", " : "")
+                    .append("{\"id\": ").append(id)
+                    .append(", \"name\": \"").append(prefix).append(" ").append(id).append(" name\"")
+                    .append(", \"description\": \"").append(prefix).append(" ").append(id).append(" description.\"}");
+        }
+    }
+
+    // The previous merge: the whole localized array is scanned for each purpose.
+    private static int linearScanMerge(JSONArray rawPurposesArray, JSONArray rawLocalizedPurposesArray) throws JSONException {
+        int localizedCount = 0;
+
+        for (int i = 0; i < rawPurposesArray.length(); i++) {
+            int id = rawPurposesArray.getJSONObject(i).getInt("id");
+            for (int idx = 0; idx < rawLocalizedPurposesArray.length(); idx++) {
+                JSONObject rawLocalizedPurpose = rawLocalizedPurposesArray.getJSONObject(idx);
+                if (rawLocalizedPurpose.getInt("id") == id) {
+                    localizedCount += rawLocalizedPurpose.getString("name").length();
+                    break;
+                }
+            }
+        }
+
+        return localizedCount;
+    }
+
+    @Benchmark
+    public int purposesLinearScanMerge() throws JSONException {
+        return linearScanMerge(vendorListJSON.getJSONArray("purposes"), localizedVendorListJSON.getJSONArray("purposes"));
+    }
+
+    @Benchmark
+    public VendorList domLocalize() throws JSONException {
+        return new VendorList(vendorListJSON, localizedVendorListJSON);
+    }
+
+    @Benchmark
+    public VendorList streamingLocalize() throws IOException, JSONException {
+        return VendorListParser.localize(vendorList, new ByteArrayInputStream(localizedVendorListBytes));
+    }
+}
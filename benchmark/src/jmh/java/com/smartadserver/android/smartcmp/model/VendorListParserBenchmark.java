@@ -0,0 +1,124 @@
+package com.smartadserver.android.smartcmp.model;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Benchmarks of the vendor list parsing: the streaming parser against the previous approach (whole body read into a
+ * String, then a JSONObject DOM walked by the VendorList constructor), and the binary snapshot read used at startup.
+ * <p>
+ * The heap cost of each approach is reported by the 'gc' profiler (gc.alloc.rate.norm, in bytes per parse).
+ */
+
+@State(Scope.Benchmark)
+public class VendorListParserBenchmark {
+
+    // The number of vendors in the vendor list (the global vendor list holds several hundreds of vendors).
+    @Param({"100", "600", "2000"})
+    public int vendorsCount;
+
+    private byte[] vendorListBytes;
+    private byte[] localizedVendorListBytes;
+    private VendorList localizedVendorList;
+    private byte[] localizedSnapshotBytes;
+
+    @Setup
+    public void setup() throws IOException, JSONException {
+        StringBuilder builder = new StringBuilder();
+        builder.append("{\"vendorListVersion\": 42, \"lastUpdated\": \"2018-04-23T16:03:22Z\", \"purposes\": [");
+        appendItems(builder, "Purpose", 5);
+        builder.append("], \"features\": [");
+        appendItems(builder, "Feature", 3);
+        builder.append("], \"vendors\": [");
+        for (int id = 1; id <= vendorsCount; id++) {
+            builder.append(id > 1 ? ", " : "")
+                    .append("{\"id\": ").append(id)
+                    .append(", \"name\": \"Vendor ").append(id).append(" name\"")
+                    .append(", \"policyUrl\": \"https://www.vendor").append(id).append(".com/privacy-policy/\"")
+                    .append(", \"purposeIds\": [1, 2, 3]")
+                    .append(", \"legIntPurposeIds\": [4, 5]")
+                    .append(", \"featureIds\": [").append(id % 3 + 1).append("]")
+                    .append(id % 50 == 0 ? ", \"deletedDate\": \"2018-05-23T16:03:22Z\"" : "")
+                    .append("}");
+        }
+        builder.append("]}");
+        vendorListBytes = builder.toString().getBytes(StandardCharsets.UTF_8);
+
+        builder = new StringBuilder();
+        builder.append("{\"vendorListVersion\": 42, \"lastUpdated\": \"2018-04-23T16:03:22Z\", \"purposes\": [");
+        appendItems(builder, "Localized purpose", 5);
+        builder.append("], \"features\": [");
+        appendItems(builder, "Localized feature", 3);
+        builder.append("], \"vendors\": [");
+        appendItems(builder, "Localized vendor", vendorsCount);
+        builder.append("]}");
+        localizedVendorListBytes = builder.toString().getBytes(StandardCharsets.UTF_8);
+
+        localizedVendorList = streamingParseLocalized();
+        localizedSnapshotBytes = VendorListSnapshot.toByteArray(localizedVendorList);
+    }
+
+    private static void appendItems(StringBuilder builder, String prefix, int count) {
+        for (int id = 1; id <= count; id++) {
+            builder.append(id > 1 ? ", " : "")
+                    .append("{\"id\": ").append(id)
+                    .append(", \"name\": \"").append(prefix).append(" ").append(id).append(" name\"")
+                    .append(", \"description\": \"").append(prefix).append(" ").append(id).append(" description, long enough to be realistic.\"}");
+        }
+    }
+
+    // The previous download path: the body is read line by line into a String before being parsed as a JSONObject.
+    private static JSONObject readJSON(byte[] bytes) throws IOException, JSONException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(bytes)));
+        StringBuilder stringBuilder = new StringBuilder();
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            stringBuilder.append(line);
+        }
+
+        return new JSONObject(stringBuilder.toString());
+    }
+
+    @Benchmark
+    public VendorList domParse() throws IOException, JSONException {
+        return new VendorList(readJSON(vendorListBytes));
+    }
+
+    @Benchmark
+    public VendorList streamingParse() throws IOException, JSONException {
+        return VendorListParser.parse(new ByteArrayInputStream(vendorListBytes));
+    }
+
+    @Benchmark
+    public VendorList domParseLocalized() throws IOException, JSONException {
+        return new VendorList(readJSON(vendorListBytes), readJSON(localizedVendorListBytes));
+    }
+
+    @Benchmark
+    public VendorList streamingParseLocalized() throws IOException, JSONException {
+        VendorList vendorList = VendorListParser.parse(new ByteArrayInputStream(vendorListBytes));
+        return VendorListParser.localize(vendorList, new ByteArrayInputStream(localizedVendorListBytes));
+    }
+
+    @Benchmark
+    public VendorList snapshotReadLocalized() throws IOException {
+        return VendorListSnapshot.read(localizedSnapshotBytes);
+    }
+
+    @Benchmark
+    public byte[] snapshotWriteLocalized() {
+        return VendorListSnapshot.toByteArray(localizedVendorList);
+    }
+}
@@ -0,0 +1,41 @@
+package com.smartadserver.android.smartcmp.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * Benchmarks of the base64url codec.
+ */
+
+@State(Scope.Benchmark)
+public class Base64URLUtilsBenchmark {
+
+    // The number of bytes encoded / decoded (the size of bitfield encoded consent strings for 600, 2000 & 10000 vendors).
+    @Param({"100", "275", "1275"})
+    public int size;
+
+    private byte[] bytes;
+    private String base64URLString;
+
+    @Setup
+    public void setup() {
+        bytes = new byte[size];
+        new Random(42).nextBytes(bytes);
+        base64URLString = Base64URLUtils.getBase64URL(bytes);
+    }
+
+    @Benchmark
+    public String getBase64URL() {
+        return Base64URLUtils.getBase64URL(bytes);
+    }
+
+    @Benchmark
+    public byte[] decodeBytes() {
+        return Base64URLUtils.decodeBytes(base64URLString);
+    }
+}
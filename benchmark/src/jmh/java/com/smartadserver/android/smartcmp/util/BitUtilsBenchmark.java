@@ -0,0 +1,74 @@
+package com.smartadserver.android.smartcmp.util;
+
+import com.smartadserver.android.smartcmp.model.Language;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Date;
+import java.util.Random;
+
+/**
+ * Benchmarks of the BitUtils helpers.
+ */
+
+@State(Scope.Benchmark)
+public class BitUtilsBenchmark {
+
+    private Date date;
+    private Language language;
+    private String longBits;
+    private String dateBits;
+    private String languageBits;
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        date = new Date(1510081144900L);
+        language = new Language("en");
+        longBits = BitUtils.longToBits(4242, 16);
+        dateBits = BitUtils.dateToBits(date, 36);
+        languageBits = BitUtils.languageToBits(language, 12);
+
+        // The size of a bitfield encoded consent string for 2000 vendors.
+        bytes = new byte[275];
+        new Random(42).nextBytes(bytes);
+    }
+
+    @Benchmark
+    public String longToBits() {
+        return BitUtils.longToBits(4242, 16);
+    }
+
+    @Benchmark
+    public Long bitsToLong() {
+        return BitUtils.bitsToLong(longBits);
+    }
+
+    @Benchmark
+    public String dateToBits() {
+        return BitUtils.dateToBits(date, 36);
+    }
+
+    @Benchmark
+    public Date bitsToDate() {
+        return BitUtils.bitsToDate(dateBits);
+    }
+
+    @Benchmark
+    public String languageToBits() {
+        return BitUtils.languageToBits(language, 12);
+    }
+
+    @Benchmark
+    public Language bitsToLanguage() {
+        return BitUtils.bitsToLanguage(languageBits);
+    }
+
+    @Benchmark
+    public String bytesToBits() {
+        return BitUtils.bytesToBits(bytes);
+    }
+}
@@ -0,0 +1,22 @@
+package android.os;
+
+/**
+ * JVM shim of the Android Build class.
+ */
+
+public class Build {
+
+    public static class VERSION {
+        // Benchmarks behave as if they were running on the latest supported API level.
+        public static final int SDK_INT = VERSION_CODES.P;
+    }
+
+    public static class VERSION_CODES {
+        public static final int KITKAT = 19;
+        public static final int LOLLIPOP = 21;
+        public static final int M = 23;
+        public static final int N = 24;
+        public static final int O = 26;
+        public static final int P = 28;
+    }
+}
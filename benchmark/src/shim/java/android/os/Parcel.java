@@ -0,0 +1,119 @@
+package android.os;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JVM shim of the Android Parcel class.
+ * <p>
+ * Values are kept in memory, in writing order, instead of being marshalled into a byte buffer.
+ */
+
+@SuppressWarnings({"unchecked", "unused"})
+public final class Parcel {
+
+    // The written values.
+    private final ArrayList<Object> values = new ArrayList<>();
+
+    // The position of the next value to read.
+    private int position;
+
+    private Parcel() {
+    }
+
+    public static Parcel obtain() {
+        return new Parcel();
+    }
+
+    public void recycle() {
+        values.clear();
+        position = 0;
+    }
+
+    public int dataPosition() {
+        return position;
+    }
+
+    public void setDataPosition(int position) {
+        this.position = position;
+    }
+
+    public void writeInt(int value) {
+        values.add(value);
+    }
+
+    public int readInt() {
+        return (Integer) values.get(position++);
+    }
+
+    public void writeLong(long value) {
+        values.add(value);
+    }
+
+    public long readLong() {
+        return (Long) values.get(position++);
+    }
+
+    public void writeString(String value) {
+        values.add(value);
+    }
+
+    public String readString() {
+        return (String) values.get(position++);
+    }
+
+    public void writeLongArray(long[] value) {
+        values.add(value == null ? null : value.clone());
+    }
+
+    public long[] createLongArray() {
+        long[] value = (long[]) values.get(position++);
+        return value == null ? null : value.clone();
+    }
+
+    public void writeIntArray(int[] value) {
+        values.add(value == null ? null : value.clone());
+    }
+
+    public int[] createIntArray() {
+        int[] value = (int[]) values.get(position++);
+        return value == null ? null : value.clone();
+    }
+
+    public void writeParcelable(Parcelable value, int flags) {
+        values.add(value);
+    }
+
+    public <T extends Parcelable> T readParcelable(ClassLoader loader) {
+        return (T) values.get(position++);
+    }
+
+    public void writeSerializable(Serializable value) {
+        values.add(value);
+    }
+
+    public Serializable readSerializable() {
+        return (Serializable) values.get(position++);
+    }
+
+    public void writeList(List value) {
+        values.add(value == null ? null : new ArrayList<Object>(value));
+    }
+
+    public void readList(List outValue, ClassLoader loader) {
+        List value = (List) values.get(position++);
+        if (value != null) {
+            outValue.addAll(value);
+        }
+    }
+
+    public <T extends Parcelable> void writeTypedList(List<T> value) {
+        values.add(value == null ? null : new ArrayList<>(value));
+    }
+
+    public <T> ArrayList<T> createTypedArrayList(Parcelable.Creator<T> creator) {
+        List<T> value = (List<T>) values.get(position++);
+        return value == null ? null : new ArrayList<>(value);
+    }
+}
@@ -0,0 +1,18 @@
+package android.support.annotation;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/**
+ * JVM shim of the Android support annotation.
+ */
+
+@Retention(RetentionPolicy.CLASS)
+public @interface VisibleForTesting {
+    int PRIVATE = 2;
+    int PACKAGE_PRIVATE = 3;
+    int PROTECTED = 4;
+    int NONE = 5;
+
+    int otherwise() default PRIVATE;
+}
@@ -0,0 +1,97 @@
+package android.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * JVM shim of the Android JsonReader class, backed by the Gson streaming reader (from which the Android one is derived).
+ */
+
+@SuppressWarnings("unused")
+public final class JsonReader implements Closeable {
+
+    private final com.google.gson.stream.JsonReader reader;
+
+    public JsonReader(Reader in) {
+        reader = new com.google.gson.stream.JsonReader(in);
+    }
+
+    public void setLenient(boolean lenient) {
+        reader.setLenient(lenient);
+    }
+
+    public void beginArray() throws IOException {
+        wrap(() -> { reader.beginArray(); return null; });
+    }
+
+    public void endArray() throws IOException {
+        wrap(() -> { reader.endArray(); return null; });
+    }
+
+    public void beginObject() throws IOException {
+        wrap(() -> { reader.beginObject(); return null; });
+    }
+
+    public void endObject() throws IOException {
+        wrap(() -> { reader.endObject(); return null; });
+    }
+
+    public boolean hasNext() throws IOException {
+        return (Boolean) wrap(() -> reader.hasNext());
+    }
+
+    public JsonToken peek() throws IOException {
+        return JsonToken.valueOf(((com.google.gson.stream.JsonToken) wrap(() -> reader.peek())).name());
+    }
+
+    public String nextName() throws IOException {
+        return (String) wrap(() -> reader.nextName());
+    }
+
+    public String nextString() throws IOException {
+        return (String) wrap(() -> reader.nextString());
+    }
+
+    public boolean nextBoolean() throws IOException {
+        return (Boolean) wrap(() -> reader.nextBoolean());
+    }
+
+    public void nextNull() throws IOException {
+        wrap(() -> { reader.nextNull(); return null; });
+    }
+
+    public double nextDouble() throws IOException {
+        return (Double) wrap(() -> reader.nextDouble());
+    }
+
+    public long nextLong() throws IOException {
+        return (Long) wrap(() -> reader.nextLong());
+    }
+
+    public int nextInt() throws IOException {
+        return (Integer) wrap(() -> reader.nextInt());
+    }
+
+    public void skipValue() throws IOException {
+        wrap(() -> { reader.skipValue(); return null; });
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private interface Call {
+        Object run() throws IOException;
+    }
+
+    // Gson raises its own MalformedJsonException, translated here to the Android one.
+    private static Object wrap(Call call) throws IOException {
+        try {
+            return call.run();
+        } catch (com.google.gson.stream.MalformedJsonException e) {
+            throw new MalformedJsonException(e.getMessage());
+        }
+    }
+}
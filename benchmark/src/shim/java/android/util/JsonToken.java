@@ -0,0 +1,18 @@
+package android.util;
+
+/**
+ * JVM shim of the Android JsonToken enum.
+ */
+
+public enum JsonToken {
+    BEGIN_ARRAY,
+    END_ARRAY,
+    BEGIN_OBJECT,
+    END_OBJECT,
+    NAME,
+    STRING,
+    NUMBER,
+    BOOLEAN,
+    NULL,
+    END_DOCUMENT
+}
@@ -0,0 +1,14 @@
+package android.util;
+
+import java.io.IOException;
+
+/**
+ * JVM shim of the Android MalformedJsonException class.
+ */
+
+public final class MalformedJsonException extends IOException {
+
+    public MalformedJsonException(String message) {
+        super(message);
+    }
+}
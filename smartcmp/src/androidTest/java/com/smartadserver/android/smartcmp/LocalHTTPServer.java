@@ -0,0 +1,224 @@
+package com.smartadserver.android.smartcmp;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Minimal HTTP server listening on the loopback interface, serving canned responses.
+ * <p>
+ * The server counts the requests received for each path, answers conditional requests (If-None-Match) with a
+ * '304 Not Modified' when the ETag matches, and can hold its responses until they are released, so concurrent
+ * requests can be tested deterministically.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public class LocalHTTPServer {
+
+    /**
+     * A canned response.
+     */
+    static private class Response {
+        final int statusCode;
+        @NonNull
+        final byte[] body;
+        @Nullable
+        final String eTag;
+
+        Response(int statusCode, @NonNull byte[] body, @Nullable String eTag) {
+            this.statusCode = statusCode;
+            this.body = body;
+            this.eTag = eTag;
+        }
+    }
+
+    @NonNull
+    private final ServerSocket serverSocket;
+
+    @NonNull
+    private final HashMap<String, Response> responses = new HashMap<>();
+
+    @NonNull
+    private final HashMap<String, Integer> requestCounts = new HashMap<>();
+
+    @NonNull
+    private final HashMap<String, Integer> conditionalRequestCounts = new HashMap<>();
+
+    // The latch holding the responses (null if the responses are sent immediately).
+    @Nullable
+    private CountDownLatch responseLatch;
+
+    /**
+     * Start a server on a free port of the loopback interface.
+     *
+     * @throws IOException if the server can't be started.
+     */
+    public LocalHTTPServer() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+
+        Thread acceptThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!serverSocket.isClosed()) {
+                    try {
+                        final Socket socket = serverSocket.accept();
+                        new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                handle(socket);
+                            }
+                        }).start();
+                    } catch (IOException ignored) {
+                        // The server has been stopped.
+                    }
+                }
+            }
+        });
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    /**
+     * @return The base URL of the server (without trailing slash).
+     */
+    @NonNull
+    public String getURL() {
+        return "http://127.0.0.1:" + serverSocket.getLocalPort();
+    }
+
+    /**
+     * Serve a response for a given path.
+     *
+     * @param path       The path of the request (starting with '/').
+     * @param statusCode The status code of the response.
+     * @param body       The body of the response.
+     * @param eTag       The ETag of the response, or null if there is none.
+     */
+    public synchronized void setResponse(@NonNull String path, int statusCode, @NonNull byte[] body, @Nullable String eTag) {
+        responses.put(path, new Response(statusCode, body, eTag));
+    }
+
+    /**
+     * Hold all the responses until {@link #releaseResponses()} is called.
+     */
+    public synchronized void holdResponses() {
+        responseLatch = new CountDownLatch(1);
+    }
+
+    /**
+     * Send all the held responses, and stop holding the next ones.
+     */
+    public synchronized void releaseResponses() {
+        if (responseLatch != null) {
+            responseLatch.countDown();
+            responseLatch = null;
+        }
+    }
+
+    /**
+     * @param path The path of the request.
+     * @return The number of requests received for this path.
+     */
+    public synchronized int getRequestCount(@NonNull String path) {
+        Integer count = requestCounts.get(path);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * @param path The path of the request.
+     * @return The number of conditional requests (If-None-Match) received for this path.
+     */
+    public synchronized int getConditionalRequestCount(@NonNull String path) {
+        Integer count = conditionalRequestCounts.get(path);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Stop the server.
+     */
+    public void stop() {
+        releaseResponses();
+        try {
+            serverSocket.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void handle(@NonNull Socket socket) {
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+            String requestLine = reader.readLine();
+            if (requestLine == null) {
+                return;
+            }
+            String path = requestLine.split(" ")[1];
+
+            String ifNoneMatch = null;
+            String header;
+            while ((header = reader.readLine()) != null && !header.isEmpty()) {
+                int separatorIndex = header.indexOf(':');
+                if (separatorIndex > 0 && header.substring(0, separatorIndex).trim().equalsIgnoreCase("If-None-Match")) {
+                    ifNoneMatch = header.substring(separatorIndex + 1).trim();
+                }
+            }
+
+            Response response;
+            CountDownLatch latch;
+            synchronized (this) {
+                requestCounts.put(path, getRequestCount(path) + 1);
+                if (ifNoneMatch != null) {
+                    conditionalRequestCounts.put(path, getConditionalRequestCount(path) + 1);
+                }
+                response = responses.get(path);
+                latch = responseLatch;
+            }
+
+            if (latch != null) {
+                latch.await(10, TimeUnit.SECONDS);
+            }
+
+            int statusCode = 404;
+            byte[] body = new byte[0];
+            String eTag = null;
+            if (response != null) {
+                eTag = response.eTag;
+                if (eTag != null && eTag.equals(ifNoneMatch)) {
+                    statusCode = 304;
+                } else {
+                    statusCode = response.statusCode;
+                    body = response.body;
+                }
+            }
+
+            StringBuilder headers = new StringBuilder();
+            headers.append("HTTP/1.1 ").append(statusCode).append(" Status\r\n");
+            headers.append("Content-Length: ").append(body.length).append("\r\n");
+            headers.append("Connection: close\r\n");
+            if (eTag != null) {
+                headers.append("ETag: ").append(eTag).append("\r\n");
+            }
+            headers.append("\r\n");
+
+            OutputStream outputStream = socket.getOutputStream();
+            outputStream.write(headers.toString().getBytes("UTF-8"));
+            outputStream.write(body);
+            outputStream.flush();
+        } catch (IOException | InterruptedException | ArrayIndexOutOfBoundsException ignored) {
+            // The request is dropped.
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
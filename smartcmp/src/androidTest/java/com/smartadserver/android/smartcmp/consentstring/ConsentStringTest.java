@@ -8,6 +8,8 @@ import com.smartadserver.android.smartcmp.exception.UnknownVersionNumberExceptio
 import com.smartadserver.android.smartcmp.model.Language;
 import com.smartadserver.android.smartcmp.model.VendorList;
 import com.smartadserver.android.smartcmp.model.VersionConfig;
+import com.smartadserver.android.smartcmp.util.Base64URLUtils;
+import com.smartadserver.android.smartcmp.util.BitWriter;
 import com.smartadserver.android.smartcmp.util.DateUtils;
 
 import junit.framework.Assert;
@@ -180,6 +182,31 @@ public class ConsentStringTest {
         Assert.assertEquals("BOEFBi5OEFBi5ABACDENAGwAAAACdoAAAAAA", consentString.getConsentString());
     }
 
+    @Test
+    public void testConsentStringIsEncodedOnlyOnce() throws UnknownVersionNumberException {
+        Date date = DateUtils.dateFromString("2017-11-07T18:59:04.9Z");
+
+        if (date == null) {
+            Assert.fail("Date is null");
+        }
+
+        ConsentString consentString = new ConsentString(1,
+                date,
+                date,
+                1,
+                2,
+                3,
+                new Language("en"),
+                1,
+                6,
+                new ArrayList<>(Arrays.asList(1, 2)),
+                new ArrayList<>(Arrays.asList(1, 2, 4)));
+
+        String encoded = consentString.getConsentString();
+        Assert.assertEquals("BOEFBi5OEFBi5ABACDENABwAAAAAZoA", encoded);
+        Assert.assertSame(encoded, consentString.getConsentString());
+    }
+
     @Test
     public void testConsentStringCreationFailsForInvalidVersions() throws IllegalArgumentException {
         Date date = DateUtils.dateFromString("2017-11-07T18:59:04.9Z");
@@ -207,6 +234,36 @@ public class ConsentStringTest {
         }
     }
 
+    @Test
+    public void testConsentStringCreationFailsForInvalidCmpId() throws UnknownVersionNumberException {
+        Date date = DateUtils.dateFromString("2017-11-07T18:59:04.9Z");
+
+        if (date == null) {
+            Assert.fail("Date is null");
+        }
+
+        // The values are checked by the constructor, even if the consent string is only encoded on first access.
+        for (int cmpId : new int[]{-1, 4096}) {
+            try {
+                new ConsentString(1,
+                        date,
+                        date,
+                        cmpId,
+                        2,
+                        3,
+                        new Language("en"),
+                        1,
+                        6,
+                        new ArrayList<>(Arrays.asList(1, 2)),
+                        new ArrayList<>(Arrays.asList(1, 2, 4)));
+
+                Assert.fail("ConsentString was created.");
+            } catch (IllegalArgumentException e) {
+                // ok
+            }
+        }
+    }
+
     @Test
     public void testConsentStringEncodingWithRange() throws IllegalArgumentException, UnknownVersionNumberException {
         Date date = DateUtils.dateFromString("2017-11-07T18:59:04.9Z");
@@ -358,6 +415,43 @@ public class ConsentStringTest {
         Assert.assertEquals("BOEFBi5OEFBi5ABACDENABwAAAAAZoA", consentString.getConsentString());
     }
 
+    @Test
+    public void testConsentStringEncodingAutomaticWithLargeVendorList() throws IllegalArgumentException, UnknownVersionNumberException {
+        Date date = DateUtils.dateFromString("2017-11-07T18:59:04.9Z");
+
+        if (date == null) {
+            Assert.fail("Date is null");
+        }
+
+        int maxVendorId = 10000;
+        ArrayList<Integer> allVendors = new ArrayList<>();
+        ArrayList<Integer> everyOtherVendor = new ArrayList<>();
+        for (int id = 1; id <= maxVendorId; id++) {
+            allVendors.add(id);
+            if (id % 2 == 0) {
+                everyOtherVendor.add(id);
+            }
+        }
+
+        String automatic = new ConsentString(new VersionConfig(1), date, date, 1, 2, 3, new Language("en"), 1, maxVendorId,
+                new ArrayList<>(Arrays.asList(1, 2)), allVendors, ConsentString.ConsentEncoding.AUTOMATIC).getConsentString();
+        String range = new ConsentString(new VersionConfig(1), date, date, 1, 2, 3, new Language("en"), 1, maxVendorId,
+                new ArrayList<>(Arrays.asList(1, 2)), allVendors, ConsentString.ConsentEncoding.RANGE).getConsentString();
+
+        // A single range is shorter than a 10000 bits bitfield.
+        Assert.assertEquals(range, automatic);
+        Assert.assertEquals(allVendors, ConsentString.fromBase64String(automatic).getAllowedVendors());
+
+        automatic = new ConsentString(new VersionConfig(1), date, date, 1, 2, 3, new Language("en"), 1, maxVendorId,
+                new ArrayList<>(Arrays.asList(1, 2)), everyOtherVendor, ConsentString.ConsentEncoding.AUTOMATIC).getConsentString();
+        String bitfield = new ConsentString(new VersionConfig(1), date, date, 1, 2, 3, new Language("en"), 1, maxVendorId,
+                new ArrayList<>(Arrays.asList(1, 2)), everyOtherVendor, ConsentString.ConsentEncoding.BITFIELD).getConsentString();
+
+        // 5000 single ids are longer than a 10000 bits bitfield (and could not even be counted using 12 bits).
+        Assert.assertEquals(bitfield, automatic);
+        Assert.assertEquals(everyOtherVendor, ConsentString.fromBase64String(automatic).getAllowedVendors());
+    }
+
     @Test
     public void testConsentStringDecodingFromBitfield() throws IllegalArgumentException, UnknownVersionNumberException {
         Date date = DateUtils.dateFromString("2017-11-07T18:59:04.9Z");
@@ -410,6 +504,93 @@ public class ConsentStringTest {
         Assert.assertEquals(expected, consentString);
     }
 
+    /**
+     * Build a range encoded consent string (version 1, purposes 1 & 2 allowed).
+     *
+     * @param maxVendorId  The maximum vendor id.
+     * @param defaultValue The default consent value.
+     * @param entries      The range entries: {id} for a single id, {startId, endId} for a range.
+     * @return The base64 consent string.
+     */
+    private String rangeEncodedConsentString(int maxVendorId, boolean defaultValue, int[][] entries) {
+        Date date = DateUtils.dateFromString("2017-11-07T18:59:04.9Z");
+
+        if (date == null) {
+            Assert.fail("Date is null");
+        }
+
+        BitWriter writer = new BitWriter();
+        writer.writeLong(1, 6);
+        writer.writeDate(date, 36);
+        writer.writeDate(date, 36);
+        writer.writeLong(1, 12);
+        writer.writeLong(2, 12);
+        writer.writeLong(3, 6);
+        writer.writeLanguage(new Language("en"), 12);
+        writer.writeLong(1, 12);
+        writer.writeBits("110000000000000000000000");
+        writer.writeLong(maxVendorId, 16);
+        writer.writeBit(true);
+        writer.writeBoolean(defaultValue, 1);
+        writer.writeLong(entries.length, 12);
+        for (int[] entry : entries) {
+            writer.writeBoolean(entry.length > 1, 1);
+            for (int id : entry) {
+                writer.writeLong(id, 16);
+            }
+        }
+
+        return Base64URLUtils.getBase64URL(writer.toByteArray());
+    }
+
+    @Test
+    public void testConsentStringDecodingFromRangeWithDefaultConsent() throws IllegalArgumentException, UnknownVersionNumberException {
+        ConsentString consentString = ConsentString.fromBase64String(rangeEncodedConsentString(10, true, new int[][]{{3}, {5, 6}, {9}}));
+
+        Assert.assertNotNull(consentString);
+        Assert.assertEquals(new ArrayList<>(Arrays.asList(1, 2, 4, 7, 8, 10)), consentString.getAllowedVendors());
+        Assert.assertFalse(consentString.isVendorAllowed(0));
+        Assert.assertFalse(consentString.isVendorAllowed(11));
+
+        consentString = ConsentString.fromBase64String(rangeEncodedConsentString(10, false, new int[][]{{3}, {5, 6}, {9}}));
+
+        Assert.assertNotNull(consentString);
+        Assert.assertEquals(new ArrayList<>(Arrays.asList(3, 5, 6, 9)), consentString.getAllowedVendors());
+    }
+
+    @Test
+    public void testConsentStringDecodingFromRangeWithManyEntries() throws IllegalArgumentException, UnknownVersionNumberException {
+        // 4000 entries alternating single ids and ranges of 2 ids, each one followed by an id not in the ranges.
+        int maxVendorId = 10000;
+        int[][] entries = new int[4000][];
+        int id = 1;
+        for (int idx = 0; idx < entries.length; idx++) {
+            if (idx % 2 == 0) {
+                entries[idx] = new int[]{id};
+                id += 2;
+            } else {
+                entries[idx] = new int[]{id, id + 1};
+                id += 3;
+            }
+        }
+
+        long start = System.currentTimeMillis();
+        ConsentString consentString = ConsentString.fromBase64String(rangeEncodedConsentString(maxVendorId, true, entries));
+        long duration = System.currentTimeMillis() - start;
+
+        Assert.assertNotNull(consentString);
+        for (int[] entry : entries) {
+            for (int vendorId = entry[0]; vendorId <= entry[entry.length - 1]; vendorId++) {
+                Assert.assertFalse(consentString.isVendorAllowed(vendorId));
+            }
+        }
+        Assert.assertEquals(maxVendorId - 6000, consentString.getAllowedVendors().size());
+        Assert.assertTrue(consentString.isVendorAllowed(maxVendorId));
+
+        // The decoding cost must be linear: inverting the vendor list for every entry would take minutes.
+        Assert.assertTrue("Decoding took " + duration + "ms", duration < 1000);
+    }
+
     @Test
     public void testInvalidConsentStringCantBeDecoded() {
         try {
@@ -483,6 +664,47 @@ public class ConsentStringTest {
             Assert.assertFalse(consentString.isVendorAllowed(6));
     }
 
+    @Test
+    public void testAllowedArraysAreSortedAndWithoutDuplicates() throws IllegalArgumentException, UnknownVersionNumberException {
+        Date date = DateUtils.dateFromString("2017-11-07T18:59:04.9Z");
+
+        if (date == null) {
+            Assert.fail("Date is null");
+        }
+
+        ConsentString consentString = new ConsentString(new VersionConfig(1),
+                date,
+                date,
+                1,
+                2,
+                3,
+                new Language("en"),
+                1,
+                6,
+                new ArrayList<>(Arrays.asList(2, 1, 2)),
+                new ArrayList<>(Arrays.asList(4, 1, 2, 4)));
+
+        Assert.assertEquals(new ArrayList<>(Arrays.asList(1, 2)), consentString.getAllowedPurposes());
+        Assert.assertEquals(new ArrayList<>(Arrays.asList(1, 2, 4)), consentString.getAllowedVendors());
+
+        Assert.assertFalse(consentString.isVendorAllowed(-1));
+        Assert.assertFalse(consentString.isPurposeAllowed(-1));
+    }
+
+    @Test
+    public void testAllowedIdsListsCannotModifyTheConsentString() throws UnknownVersionNumberException {
+        Date date = new Date();
+        ConsentString consentString = new ConsentString(new VersionConfig(1), date, date, 1, 2, 3, new Language("en"), 1, 6,
+                new ArrayList<>(Arrays.asList(1, 2)),
+                new ArrayList<>(Arrays.asList(1, 2, 4)));
+
+        consentString.getAllowedPurposes().add(3);
+        consentString.getAllowedVendors().clear();
+
+        Assert.assertEquals(new ArrayList<>(Arrays.asList(1, 2)), consentString.getAllowedPurposes());
+        Assert.assertEquals(new ArrayList<>(Arrays.asList(1, 2, 4)), consentString.getAllowedVendors());
+    }
+
     @Test
     public void testParsedPurposeConsents() throws IllegalArgumentException, UnknownVersionNumberException {
         Date date = DateUtils.dateFromString("2017-11-07T18:59:04.9Z");
@@ -529,6 +751,38 @@ public class ConsentStringTest {
         Assert.assertEquals("110100", consentString.parsedVendorConsents());
     }
 
+    @Test
+    public void testParsedConsentsWithLargeVendorList() throws IllegalArgumentException, UnknownVersionNumberException {
+        ArrayList<Integer> allowedVendors = new ArrayList<>();
+        for (int id = 3; id <= 10000; id += 3) {
+            allowedVendors.add(id);
+        }
+
+        ConsentString consentString = new ConsentString(new VersionConfig(1),
+                new Date(),
+                new Date(),
+                1,
+                1,
+                1,
+                new Language("en"),
+                1,
+                10000,
+                new ArrayList<>(Arrays.asList(1, 24)),
+                allowedVendors,
+                ConsentString.ConsentEncoding.AUTOMATIC);
+
+        String parsedVendorConsents = consentString.parsedVendorConsents();
+        Assert.assertEquals(10000, parsedVendorConsents.length());
+        for (int id = 1; id <= 10000; id++) {
+            Assert.assertEquals(id % 3 == 0 ? '1' : '0', parsedVendorConsents.charAt(id - 1));
+        }
+        Assert.assertEquals("100000000000000000000001", consentString.parsedPurposeConsents());
+
+        // The strings are only generated once.
+        Assert.assertSame(parsedVendorConsents, consentString.parsedVendorConsents());
+        Assert.assertSame(consentString.parsedPurposeConsents(), consentString.parsedPurposeConsents());
+    }
+
     @Test
     public void testConsentStringCanBeCopied() throws IllegalArgumentException, UnknownVersionNumberException {
         Date date = DateUtils.dateFromString("2017-11-07T18:59:04.9Z");
@@ -951,4 +1205,80 @@ public class ConsentStringTest {
         Assert.assertEquals(expectedConsentString1, idExistsConsentString);
         Assert.assertEquals(expectedConsentString2, idDoesNotExistsConsentString);
     }
+
+    @Test
+    public void testConsentStringBuilder() throws UnknownVersionNumberException {
+        Date date = new Date();
+        Date updatedDate = new Date(date.getTime() + 100000);
+
+        ConsentString consentString = new ConsentString(new VersionConfig(1),
+                date,
+                date,
+                1,
+                2,
+                3,
+                new Language("en"),
+                getVendorList(),
+                new ArrayList<>(Arrays.asList(1, 2)),
+                new ArrayList<>(Arrays.asList(1, 2, 4)));
+
+        ConsentString.Builder builder = new ConsentString.Builder(consentString)
+                .setLastUpdated(updatedDate)
+                .addPurposes(Arrays.asList(3, 4, 5))
+                .removePurpose(1)
+                .addVendors(Arrays.asList(5, 6, 7))
+                .removeVendors(Arrays.asList(1, 4, 8));
+
+        Assert.assertTrue(builder.isPurposeAllowed(3));
+        Assert.assertFalse(builder.isPurposeAllowed(1));
+        Assert.assertTrue(builder.isVendorAllowed(7));
+        Assert.assertFalse(builder.isVendorAllowed(4));
+
+        ConsentString expectedConsentString = new ConsentString(new VersionConfig(1),
+                date,
+                updatedDate,
+                1,
+                2,
+                3,
+                new Language("en"),
+                getVendorList(),
+                new ArrayList<>(Arrays.asList(2, 3, 4, 5)),
+                new ArrayList<>(Arrays.asList(2, 5, 6, 7)));
+
+        ConsentString builtConsentString = builder.build();
+        Assert.assertEquals(expectedConsentString, builtConsentString);
+
+        // The source consent string is left untouched.
+        Assert.assertEquals(new ArrayList<>(Arrays.asList(1, 2)), consentString.getAllowedPurposes());
+        Assert.assertEquals(new ArrayList<>(Arrays.asList(1, 2, 4)), consentString.getAllowedVendors());
+
+        // Editing the builder after a build does not alter the built consent string.
+        builder.clearPurposes().clearVendors();
+        Assert.assertEquals(expectedConsentString, builtConsentString);
+        Assert.assertEquals(new ArrayList<Integer>(), builder.build().getAllowedPurposes());
+        Assert.assertEquals(new ArrayList<Integer>(), builder.build().getAllowedVendors());
+    }
+
+    @Test
+    public void testConsentStringBuilderWithAllPurposesAndVendors() throws UnknownVersionNumberException {
+        Date date = new Date();
+
+        ConsentString consentString = new ConsentString.Builder(new VersionConfig(1),
+                date,
+                1,
+                2,
+                3,
+                new Language("en"),
+                getVendorList().getVersion(),
+                getVendorList().getMaxVendorId())
+                .addAllPurposes(getVendorList())
+                .addAllVendors(getVendorList())
+                .removeAllPurposes(getVendorList())
+                .build();
+
+        Assert.assertEquals(date, consentString.getLastUpdated());
+        Assert.assertEquals(new ArrayList<Integer>(), consentString.getAllowedPurposes());
+        Assert.assertEquals(getVendorList().getVendors().size(), consentString.getAllowedVendors().size());
+        Assert.assertEquals(getVendorList().getMaxVendorId(), consentString.getMaxVendorId());
+    }
 }
@@ -0,0 +1,79 @@
+package com.smartadserver.android.smartcmp.consentstring;
+
+import com.smartadserver.android.smartcmp.exception.UnknownVersionNumberException;
+import com.smartadserver.android.smartcmp.model.Language;
+import com.smartadserver.android.smartcmp.model.VersionConfig;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+
+public class ConsentViewTest {
+
+    private ConsentString getConsentString(int maxVendorId, ArrayList<Integer> allowedPurposes, ArrayList<Integer> allowedVendors, ConsentString.ConsentEncoding encoding) throws UnknownVersionNumberException {
+        Date date = new Date(1510082155400L);
+        return new ConsentString(new VersionConfig(1), date, date, 1, 2, 3, new Language("en"), 4, maxVendorId, allowedPurposes, allowedVendors, encoding);
+    }
+
+    @Test
+    public void testEmptyView() {
+        Assert.assertSame(ConsentView.EMPTY, ConsentView.from(null));
+        Assert.assertNull(ConsentView.EMPTY.getConsentString());
+
+        Assert.assertFalse(ConsentView.EMPTY.isPurposeAllowed(1));
+        Assert.assertFalse(ConsentView.EMPTY.isVendorAllowed(1));
+        Assert.assertFalse(ConsentView.EMPTY.isVendorAllowedForPurposes(1, new int[0]));
+    }
+
+    @Test
+    public void testViewMatchesConsentString() throws Exception {
+        ArrayList<Integer> allowedPurposes = new ArrayList<>(Arrays.asList(1, 3, 24));
+        ArrayList<Integer> allowedVendors = new ArrayList<>(Arrays.asList(1, 63, 64, 65, 127, 128, 700, 2000));
+
+        for (ConsentString.ConsentEncoding encoding : ConsentString.ConsentEncoding.values()) {
+            ConsentString consentString = getConsentString(2000, allowedPurposes, allowedVendors, encoding);
+            ConsentView consentView = ConsentView.from(consentString);
+
+            Assert.assertSame(consentString, consentView.getConsentString());
+            for (int purposeId = -1; purposeId <= 70; purposeId++) {
+                Assert.assertEquals(consentString.isPurposeAllowed(purposeId), consentView.isPurposeAllowed(purposeId));
+            }
+            for (int vendorId = -1; vendorId <= 2100; vendorId++) {
+                Assert.assertEquals(consentString.isVendorAllowed(vendorId), consentView.isVendorAllowed(vendorId));
+            }
+
+            Assert.assertFalse(consentView.isVendorAllowed(Integer.MIN_VALUE));
+            Assert.assertFalse(consentView.isVendorAllowed(Integer.MAX_VALUE));
+        }
+    }
+
+    @Test
+    public void testIsVendorAllowedForPurposes() throws Exception {
+        ConsentString consentString = getConsentString(10, new ArrayList<>(Arrays.asList(1, 2, 5)), new ArrayList<>(Arrays.asList(3, 10)), ConsentString.ConsentEncoding.BITFIELD);
+        ConsentView consentView = ConsentView.from(consentString);
+
+        Assert.assertTrue(consentView.isVendorAllowedForPurposes(3, new int[0]));
+        Assert.assertTrue(consentView.isVendorAllowedForPurposes(3, new int[]{1}));
+        Assert.assertTrue(consentView.isVendorAllowedForPurposes(10, new int[]{1, 2, 5}));
+        Assert.assertFalse(consentView.isVendorAllowedForPurposes(10, new int[]{1, 2, 3}));
+        Assert.assertFalse(consentView.isVendorAllowedForPurposes(4, new int[]{1}));
+        Assert.assertFalse(consentView.isVendorAllowedForPurposes(11, new int[0]));
+        Assert.assertFalse(consentView.isVendorAllowedForPurposes(3, new int[]{-1}));
+    }
+
+    @Test
+    public void testViewIsNotAffectedByLaterConsentStrings() throws Exception {
+        ConsentString consentString = getConsentString(10, new ArrayList<>(Arrays.asList(1, 2)), new ArrayList<>(Arrays.asList(3, 10)), ConsentString.ConsentEncoding.BITFIELD);
+        ConsentView consentView = ConsentView.from(consentString);
+
+        ConsentString.consentStringByAddingVendorConsent(4, consentString, new Date());
+        ConsentString.consentStringByRemovingVendorConsent(3, consentString, new Date());
+
+        Assert.assertTrue(consentView.isVendorAllowed(3));
+        Assert.assertFalse(consentView.isVendorAllowed(4));
+    }
+}
@@ -0,0 +1,198 @@
+package com.smartadserver.android.smartcmp.manager;
+
+import com.smartadserver.android.smartcmp.consentstring.ConsentString;
+import com.smartadserver.android.smartcmp.consentstring.ConsentView;
+import com.smartadserver.android.smartcmp.model.Feature;
+import com.smartadserver.android.smartcmp.model.Language;
+import com.smartadserver.android.smartcmp.model.Purpose;
+import com.smartadserver.android.smartcmp.model.Vendor;
+import com.smartadserver.android.smartcmp.model.VendorList;
+import com.smartadserver.android.smartcmp.model.VersionConfig;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ConsentManagerStateTest {
+
+    private static final int WRITER_COUNT = 4;
+    private static final int READER_COUNT = 8;
+    private static final int UPDATES_PER_WRITER = 500;
+
+    @After
+    public void cleanUp() {
+        resetState();
+    }
+
+    private void resetState() {
+        ConsentManager consentManager = ConsentManager.getSharedInstance();
+        ConsentManagerState currentState;
+        do {
+            currentState = consentManager.getState();
+        } while (!consentManager.compareAndSetState(currentState, ConsentManagerState.EMPTY));
+    }
+
+    private ConsentString getConsentString(int vendorListVersion) throws Exception {
+        Date date = new Date();
+        return new ConsentString(new VersionConfig(1), date, date, 1, 2, 3, new Language("en"), vendorListVersion, 6,
+                new ArrayList<>(Arrays.asList(1, 2)), new ArrayList<>(Arrays.asList(1, 2, 4)));
+    }
+
+    private VendorList getVendorList(int version) {
+        return new VendorList(version, new Date(), new ArrayList<Purpose>(), new ArrayList<Feature>(), new ArrayList<Vendor>());
+    }
+
+    @Test
+    public void testStateUpdatesAreCopies() throws Exception {
+        ConsentManagerState state = ConsentManagerState.EMPTY;
+        ConsentString consentString = getConsentString(1);
+        VendorList vendorList = getVendorList(1);
+
+        ConsentManagerState newState = state.withConsentString(consentString).withLastVendorList(vendorList).withConsentToolShown(true);
+
+        Assert.assertNull(state.getConsentString());
+        Assert.assertNull(state.getLastVendorList());
+        Assert.assertFalse(state.isConsentToolShown());
+        Assert.assertSame(consentString, newState.getConsentString());
+        Assert.assertSame(vendorList, newState.getLastVendorList());
+        Assert.assertNull(newState.getUsedVendorList());
+        Assert.assertTrue(newState.isConsentToolShown());
+    }
+
+    @Test
+    public void testConsentViewIsBuiltOncePerConsentString() throws Exception {
+        ConsentString consentString = getConsentString(1);
+
+        Assert.assertSame(ConsentView.EMPTY, ConsentManagerState.EMPTY.getConsentView());
+
+        ConsentManagerState state = ConsentManagerState.EMPTY.withConsentString(consentString);
+        ConsentView consentView = state.getConsentView();
+        Assert.assertSame(consentString, consentView.getConsentString());
+        Assert.assertTrue(consentView.isVendorAllowed(4));
+
+        // The view is kept while the consent string doesn't change.
+        ConsentManagerState newState = state.withLastVendorList(getVendorList(1)).withUsedVendorList(getVendorList(1)).withConsentToolShown(true).withConsentString(consentString);
+        Assert.assertSame(consentView, newState.getConsentView());
+
+        ConsentString otherConsentString = getConsentString(2);
+        Assert.assertSame(otherConsentString, newState.withConsentString(otherConsentString).getConsentView().getConsentString());
+        Assert.assertSame(ConsentView.EMPTY, newState.withConsentString(null).getConsentView());
+    }
+
+    @Test
+    public void testConcurrentReadersNeverSeeTornState() throws Exception {
+        final ConsentManager consentManager = ConsentManager.getSharedInstance();
+        resetState();
+
+        // Every state written contains a consent string and a vendor list of the same version.
+        final int totalUpdates = WRITER_COUNT * UPDATES_PER_WRITER;
+        final ConsentString[] consentStrings = new ConsentString[totalUpdates + 1];
+        final VendorList[] vendorLists = new VendorList[totalUpdates + 1];
+        for (int version = 1; version <= totalUpdates; version++) {
+            consentStrings[version] = getConsentString(version);
+            vendorLists[version] = getVendorList(version);
+        }
+
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final CountDownLatch writersDone = new CountDownLatch(WRITER_COUNT);
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicReference<String> error = new AtomicReference<>();
+        final AtomicInteger readCount = new AtomicInteger(0);
+
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < WRITER_COUNT; i++) {
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        startLatch.await();
+                        for (int j = 0; j < UPDATES_PER_WRITER; j++) {
+                            ConsentManagerState currentState;
+                            ConsentManagerState newState;
+                            do {
+                                currentState = consentManager.getState();
+                                VendorList lastVendorList = currentState.getLastVendorList();
+                                int nextVersion = lastVendorList != null ? lastVendorList.getVersion() + 1 : 1;
+                                newState = currentState.withConsentString(consentStrings[nextVersion]).withLastVendorList(vendorLists[nextVersion]);
+                            } while (!consentManager.compareAndSetState(currentState, newState));
+                        }
+                    } catch (InterruptedException ignored) {
+                    } finally {
+                        writersDone.countDown();
+                    }
+                }
+            }));
+        }
+
+        for (int i = 0; i < READER_COUNT; i++) {
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        startLatch.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+
+                    int lastSeenVersion = 0;
+                    while (running.get()) {
+                        ConsentManagerState state = consentManager.getState();
+                        ConsentString consentString = state.getConsentString();
+                        VendorList lastVendorList = state.getLastVendorList();
+                        ConsentView consentView = state.getConsentView();
+                        readCount.incrementAndGet();
+
+                        if (consentString == null && lastVendorList == null) {
+                            continue;
+                        }
+                        if (consentString == null || lastVendorList == null || consentString.getVendorListVersion() != lastVendorList.getVersion()) {
+                            error.compareAndSet(null, "Torn state: " + consentString + " / " + lastVendorList);
+                            return;
+                        }
+                        if (consentView.getConsentString() != consentString) {
+                            error.compareAndSet(null, "Consent view not matching the consent string " + consentString);
+                            return;
+                        }
+                        if (lastVendorList.getVersion() < lastSeenVersion) {
+                            error.compareAndSet(null, "State went back from version " + lastSeenVersion + " to " + lastVendorList.getVersion());
+                            return;
+                        }
+                        lastSeenVersion = lastVendorList.getVersion();
+                    }
+                }
+            }));
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        startLatch.countDown();
+
+        Assert.assertTrue(writersDone.await(30, TimeUnit.SECONDS));
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join(5000);
+        }
+
+        Assert.assertNull(error.get(), error.get());
+        Assert.assertTrue(readCount.get() > 0);
+
+        // No update has been lost.
+        ConsentManagerState finalState = consentManager.getState();
+        Assert.assertEquals(totalUpdates, finalState.getLastVendorList().getVersion());
+        Assert.assertEquals(totalUpdates, finalState.getConsentString().getVendorListVersion());
+        Assert.assertSame(finalState.getConsentString(), consentManager.getConsentString());
+        Assert.assertSame(finalState.getLastVendorList(), consentManager.getVendorList());
+        Assert.assertSame(finalState.getConsentView(), consentManager.getConsentView());
+    }
+}
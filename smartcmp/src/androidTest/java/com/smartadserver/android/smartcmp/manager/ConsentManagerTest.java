@@ -6,11 +6,18 @@ import android.preference.PreferenceManager;
 import android.support.test.InstrumentationRegistry;
 
 import com.smartadserver.android.smartcmp.Constants;
+import com.smartadserver.android.smartcmp.Expectation;
 import com.smartadserver.android.smartcmp.consentstring.ConsentString;
 import com.smartadserver.android.smartcmp.exception.UnknownVersionNumberException;
+import com.smartadserver.android.smartcmp.model.Feature;
 import com.smartadserver.android.smartcmp.model.Language;
+import com.smartadserver.android.smartcmp.model.Purpose;
+import com.smartadserver.android.smartcmp.model.Vendor;
+import com.smartadserver.android.smartcmp.model.VendorList;
 import com.smartadserver.android.smartcmp.model.VersionConfig;
+import com.smartadserver.android.smartcmp.storage.FileConsentStorage;
 import com.smartadserver.android.smartcmp.util.DateUtils;
+import com.smartadserver.android.smartcmp.vendorlist.VendorListManager;
 
 import junit.framework.Assert;
 
@@ -18,9 +25,11 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class ConsentManagerTest {
 
@@ -197,4 +206,102 @@ public class ConsentManagerTest {
         Assert.assertEquals("1", readValue2);
     }
 
+    @Test
+    public void testConsentStringIsSavedInASingleWrite() {
+        ConsentManager consentManager = ConsentManager.getSharedInstance();
+        Assert.assertEquals(0, consentManager.getPreferencesWriteCount());
+
+        String newValue = "BOEFBi5OEFBi5ABACDENABwAAAAAZoA";
+        consentManager.setConsentString(newValue);
+
+        // All the consent keys are written at once.
+        Assert.assertEquals(1, consentManager.getPreferencesWriteCount());
+        Assert.assertEquals(newValue, getStringForSharedPreferences(Constants.IABConsentKeys.ConsentString));
+        Assert.assertNotNull(getStringForSharedPreferences(Constants.IABConsentKeys.ParsedPurposeConsent));
+        Assert.assertNotNull(getStringForSharedPreferences(Constants.IABConsentKeys.ParsedVendorConsent));
+        Assert.assertNotNull(getStringForSharedPreferences(Constants.AdvertisingConsentStatus.Key));
+
+        // Saving the same consent string again doesn't write anything.
+        consentManager.setConsentString(newValue);
+        Assert.assertEquals(1, consentManager.getPreferencesWriteCount());
+    }
+
+    @Test
+    public void testStoredConsentStringIsLoadedWithStartupTimings() {
+        ConsentManager consentManager = ConsentManager.getSharedInstance();
+        String storedValue = "BOEFBi5OEFBi5ABACDENABwAAAAAZoA";
+        consentManager.setConsentString(storedValue);
+
+        File storageFile = new File(InstrumentationRegistry.getContext().getFilesDir(), ConsentManager.CONSENT_STORAGE_FILE_NAME);
+        ConsentPreferences preferences = new ConsentPreferences(new FileConsentStorage(storageFile));
+        ConsentString storedConsentString = consentManager.loadStoredConsentString(preferences);
+
+        Assert.assertNotNull(storedConsentString);
+        Assert.assertEquals(storedValue, storedConsentString.getConsentString());
+        Assert.assertTrue(consentManager.getStartupTimings().getStorageReadDuration() >= 0);
+        Assert.assertTrue(consentManager.getStartupTimings().getConsentDecodingDuration() >= 0);
+    }
+
+    @Test
+    public void testMissingStoredConsentStringIsLoadedAsNull() {
+        ConsentPreferences preferences = new ConsentPreferences(ConsentManager.createConsentStorage(InstrumentationRegistry.getContext(), null));
+
+        Assert.assertNull(ConsentManager.getSharedInstance().loadStoredConsentString(preferences));
+    }
+
+    @Test
+    public void testConsentStringClearedFromSharedPreferencesIsNotLoaded() {
+        ConsentManager consentManager = ConsentManager.getSharedInstance();
+        consentManager.setConsentString("BOEFBi5OEFBi5ABACDENABwAAAAAZoA");
+
+        // The app (or another SDK) clears the IAB keys: the consent string stored in the dedicated file is ignored.
+        cleanSharedPreferences();
+
+        ConsentPreferences preferences = new ConsentPreferences(ConsentManager.createConsentStorage(InstrumentationRegistry.getContext(), null));
+        Assert.assertNull(consentManager.loadStoredConsentString(preferences));
+    }
+
+    @Test
+    public void testConsentToolIsRequestedOnceWhenTheSameVendorListIsReceivedTwice() throws InterruptedException {
+        final ConsentManager consentManager = ConsentManager.getSharedInstance();
+        final Expectation expectationConsentToolRequested = new Expectation("Consent tool requested");
+        final AtomicInteger requestCount = new AtomicInteger(0);
+
+        // No consent string is stored.
+        ConsentManagerState currentState;
+        do {
+            currentState = consentManager.getState();
+        } while (!consentManager.compareAndSetState(currentState, ConsentManagerState.EMPTY));
+
+        consentManager.setVendorListManager(new VendorListManager(consentManager, 100000, 100000, null, null));
+        consentManager.setConsentManagerListener(new ConsentManagerListener() {
+            @Override
+            public void onShowConsentToolRequest(ConsentString consentString, VendorList vendorList) {
+                requestCount.incrementAndGet();
+                expectationConsentToolRequested.fulfill();
+            }
+        });
+
+        try {
+            // A stale cached vendor list is served at startup, then revalidated by the refresh (HTTP 304 Not Modified):
+            // the same vendor list is received twice.
+            final VendorList vendorList = new VendorList(1, new Date(), new ArrayList<Purpose>(), new ArrayList<Feature>(), new ArrayList<Vendor>());
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    consentManager.onVendorListUpdateSuccess(vendorList);
+                    consentManager.onVendorListUpdateSuccess(vendorList);
+                }
+            });
+
+            expectationConsentToolRequested.assertFulfilled(10000);
+
+            // Let a second request (if any) be made.
+            Thread.sleep(1000);
+            Assert.assertEquals(1, requestCount.get());
+        } finally {
+            consentManager.setConsentManagerListener(null);
+        }
+    }
+
 }
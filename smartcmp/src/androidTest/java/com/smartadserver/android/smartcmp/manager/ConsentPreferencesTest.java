@@ -0,0 +1,64 @@
+package com.smartadserver.android.smartcmp.manager;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.support.test.InstrumentationRegistry;
+
+import com.smartadserver.android.smartcmp.storage.SharedPreferencesConsentStorage;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConsentPreferencesTest {
+
+    private SharedPreferences sharedPreferences;
+
+    @Before
+    public void setUp() {
+        sharedPreferences = InstrumentationRegistry.getContext().getSharedPreferences("ConsentPreferencesTest", Context.MODE_PRIVATE);
+        sharedPreferences.edit().clear().commit();
+    }
+
+    @Test
+    public void testTransactionIsWrittenOnce() {
+        ConsentPreferences preferences = new ConsentPreferences(new SharedPreferencesConsentStorage(sharedPreferences));
+
+        Assert.assertTrue(preferences.edit()
+                .putString("key1", "value1")
+                .putString("key2", "value2")
+                .putLong("key3", 42)
+                .commit());
+
+        Assert.assertEquals(1, preferences.getWriteCount());
+        Assert.assertEquals("value1", preferences.getString("key1", null));
+        Assert.assertEquals("value2", preferences.getString("key2", null));
+        Assert.assertEquals(42, preferences.getLong("key3", 0));
+    }
+
+    @Test
+    public void testUnchangedValuesAreSkipped() {
+        ConsentPreferences preferences = new ConsentPreferences(new SharedPreferencesConsentStorage(sharedPreferences));
+        preferences.edit().putString("key1", "value1").putLong("key2", 42).commit();
+
+        // Nothing changed: nothing is written.
+        Assert.assertFalse(preferences.edit().putString("key1", "value1").putLong("key2", 42).commit());
+        Assert.assertFalse(preferences.edit().commit());
+        Assert.assertEquals(1, preferences.getWriteCount());
+
+        // One value changed: the transaction is written.
+        Assert.assertTrue(preferences.edit().putString("key1", "value1").putLong("key2", 43).commit());
+        Assert.assertEquals(2, preferences.getWriteCount());
+        Assert.assertEquals(43, preferences.getLong("key2", 0));
+    }
+
+    @Test
+    public void testValueOfAnotherTypeIsReplaced() {
+        sharedPreferences.edit().putLong("key1", 42).commit();
+        ConsentPreferences preferences = new ConsentPreferences(new SharedPreferencesConsentStorage(sharedPreferences));
+
+        Assert.assertTrue(preferences.edit().putString("key1", "42").commit());
+        Assert.assertEquals("42", preferences.getString("key1", null));
+    }
+}
@@ -0,0 +1,131 @@
+package com.smartadserver.android.smartcmp.model;
+
+import android.support.test.InstrumentationRegistry;
+
+import junit.framework.Assert;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+public class VendorListParserTest {
+
+    private InputStream getStream(String fileName) throws IOException {
+        return InstrumentationRegistry.getContext().getAssets().open(fileName);
+    }
+
+    private InputStream getStreamFromString(String string) {
+        return new ByteArrayInputStream(string.getBytes());
+    }
+
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    private JSONObject getJSON(String fileName) throws IOException, JSONException {
+        InputStream is = getStream(fileName);
+        byte[] buffer = new byte[is.available()];
+        is.read(buffer);
+        is.close();
+
+        return new JSONObject(new String(buffer, "UTF-8"));
+    }
+
+    @Test
+    public void testVendorListCanBeParsedFromStream() throws IOException, JSONException {
+        VendorList vendorList = VendorListParser.parse(getStream("vendors.json"));
+
+        Assert.assertEquals(new VendorList(getJSON("vendors.json")), vendorList);
+        Assert.assertEquals(17, vendorList.getVendors().size());
+        Assert.assertNull(vendorList.getVendors().get(4).getDeletedDate());
+
+        VendorList updatedVendorList = VendorListParser.parse(getStream("vendors_updated.json"));
+        Assert.assertEquals(new VendorList(getJSON("vendors_updated.json")), updatedVendorList);
+        Assert.assertEquals(42, updatedVendorList.getVendors().get(19).getId());
+        Assert.assertNotNull(updatedVendorList.getVendors().get(19).getDeletedDate());
+    }
+
+    @Test
+    public void testVendorListCanBeLocalizedFromStream() throws IOException, JSONException {
+        VendorList vendorList = VendorListParser.localize(VendorListParser.parse(getStream("vendors.json")), getStream("vendors_localized.json"));
+
+        Assert.assertEquals(new VendorList(getJSON("vendors.json"), getJSON("vendors_localized.json")), vendorList);
+        Assert.assertEquals("Purpose 3 name translated", vendorList.getPurposes().get(2).getName());
+        Assert.assertEquals("Content selection, delivery, reporting", vendorList.getPurposes().get(3).getName());
+        Assert.assertEquals("Feature 2 name translated", vendorList.getFeatures().get(1).getName());
+    }
+
+    @Test
+    public void testVendorsCanBeLocalizedFromStream() throws IOException, JSONException {
+        String localizedJSON = "{\"vendors\": [{\"name\": \"Vendor without id\"}, " +
+                "{\"id\": 8, \"name\": \"Vendor 8 name translated\", \"policyUrl\": \"https://www.emerse.com/fr/privacy-policy/\"}, " +
+                "{\"id\": 12, \"name\": \"Vendor 12 name translated\"}, " +
+                "{\"id\": 8, \"name\": \"Duplicated vendor 8 name\"}], " +
+                "\"purposes\": [{\"id\": 1, \"name\": \"Purpose 1 name translated\"}]}";
+        VendorList vendorList = VendorListParser.localize(VendorListParser.parse(getStream("vendors.json")), getStreamFromString(localizedJSON));
+
+        Assert.assertEquals(new VendorList(getJSON("vendors.json"), new JSONObject(localizedJSON)), vendorList);
+        Assert.assertEquals("Vendor 8 name translated", vendorList.getVendors().get(0).getName());
+        Assert.assertEquals("https://www.emerse.com/fr/privacy-policy/", vendorList.getVendors().get(0).getPolicyURL().toString());
+        Assert.assertEquals("Vendor 12 name translated", vendorList.getVendors().get(1).getName());
+        Assert.assertEquals("Purpose 1 name translated", vendorList.getPurposes().get(0).getName());
+    }
+
+    @Test
+    public void testUnknownKeysAreIgnored() throws IOException, JSONException {
+        VendorList vendorList = VendorListParser.parse(getStreamFromString("{\"unknown\": {\"a\": [1, 2]}, \"vendorListVersion\": 3, \"lastUpdated\": \"2018-04-23T16:03:22Z\", " +
+                "\"purposes\": [{\"id\": 1, \"name\": \"name\", \"description\": \"description\", \"unknown\": null}], \"features\": [], " +
+                "\"vendors\": [{\"id\": 8, \"name\": \"vendor\", \"policyUrl\": \"\", \"purposeIds\": [1], \"legIntPurposeIds\": [], \"featureIds\": [], \"deletedDate\": null}]}"));
+
+        Assert.assertEquals(3, vendorList.getVersion());
+        Assert.assertEquals(1, vendorList.getPurposes().size());
+        Assert.assertEquals(0, vendorList.getFeatures().size());
+        Assert.assertEquals(8, vendorList.getVendors().get(0).getId());
+        Assert.assertNull(vendorList.getVendors().get(0).getPolicyURL());
+        Assert.assertNull(vendorList.getVendors().get(0).getDeletedDate());
+    }
+
+    @Test
+    public void testInvalidVendorListCantBeParsed() throws IOException {
+        String[] invalidJSONs = new String[]{
+                "{}",
+                "{\"vendorListVersion\": \"abc\"}",
+                "{\"vendorListVersion\": 3, \"lastUpdated\": \"yesterday\", \"purposes\": [], \"features\": [], \"vendors\": []}",
+                "{\"vendorListVersion\": 3, \"lastUpdated\": \"2018-04-23T16:03:22Z\", \"purposes\": [{\"id\": 1}], \"features\": [], \"vendors\": []}",
+                "{\"vendorListVersion\": 3, \"lastUpdated\": \"2018-04-23T16:03:22Z\", \"purposes\": 42, \"features\": [], \"vendors\": []}",
+                "{\"vendorListVersion\": 3,, }",
+        };
+
+        for (String invalidJSON : invalidJSONs) {
+            try {
+                VendorListParser.parse(getStreamFromString(invalidJSON));
+                Assert.fail("Should have raised an exception for " + invalidJSON);
+            } catch (JSONException e) {
+                // it's ok
+            }
+        }
+
+        try {
+            VendorListParser.parse(getStream("vendors_localized.json"));
+            Assert.fail("Should have raised an exception.");
+        } catch (JSONException e) {
+            // it's ok
+        }
+    }
+
+    @Test
+    public void testInvalidLocalizedVendorListCantBeParsed() throws IOException, JSONException {
+        VendorList vendorList = VendorListParser.parse(getStream("vendors.json"));
+
+        try {
+            VendorListParser.localize(vendorList, getStreamFromString("{\"purposes\": 42}"));
+            Assert.fail("Should have raised an exception.");
+        } catch (JSONException e) {
+            // it's ok
+        }
+
+        // An empty localized vendor list does not modify the vendor list.
+        Assert.assertEquals(vendorList, VendorListParser.localize(vendorList, getStreamFromString("{}")));
+    }
+}
@@ -0,0 +1,111 @@
+package com.smartadserver.android.smartcmp.model;
+
+import android.support.test.InstrumentationRegistry;
+
+import junit.framework.Assert;
+
+import org.json.JSONException;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+
+public class VendorListSnapshotTest {
+
+    private InputStream getStream(String fileName) throws IOException {
+        return InstrumentationRegistry.getContext().getAssets().open(fileName);
+    }
+
+    @Test
+    public void testVendorListCanBeSerializedAndRead() throws IOException, JSONException {
+        VendorList vendorList = VendorListParser.localize(VendorListParser.parse(getStream("vendors_updated.json")), getStream("vendors_localized.json"));
+
+        byte[] snapshot = VendorListSnapshot.toByteArray(vendorList);
+        VendorList readVendorList = VendorListSnapshot.read(snapshot);
+
+        Assert.assertEquals(vendorList, readVendorList);
+        Assert.assertEquals(vendorList.getMaxVendorId(), readVendorList.getMaxVendorId());
+        Assert.assertEquals("Purpose 3 name translated", readVendorList.getPurposes().get(2).getName());
+        Assert.assertNotNull(readVendorList.getVendors().get(19).getDeletedDate());
+
+        // The same snapshot is written to a stream.
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        VendorListSnapshot.write(vendorList, outputStream);
+        Assert.assertTrue(Arrays.equals(snapshot, outputStream.toByteArray()));
+    }
+
+    @Test
+    public void testSnapshotCanBeReadFromFile() throws IOException, JSONException {
+        VendorList vendorList = VendorListParser.parse(getStream("vendors.json"));
+
+        File file = new File(InstrumentationRegistry.getContext().getCacheDir(), "VendorListSnapshotTest.snapshot");
+        FileOutputStream outputStream = new FileOutputStream(file);
+        VendorListSnapshot.write(vendorList, outputStream);
+        outputStream.close();
+
+        Assert.assertEquals(vendorList, VendorListSnapshot.read(file));
+        Assert.assertTrue(file.delete());
+    }
+
+    @Test
+    public void testSnapshotIsReadFromBufferPosition() throws IOException {
+        ArrayList<Vendor> vendors = new ArrayList<>();
+        vendors.add(new Vendor(1, "Vendor 1", new ArrayList<>(Arrays.asList(1, 2)), new ArrayList<Integer>(), new ArrayList<>(Arrays.asList(3)), new URL("https://www.vendor1.com/privacy"), null));
+        vendors.add(new Vendor(300, "Vendor 300", new ArrayList<Integer>(), new ArrayList<>(Arrays.asList(200)), new ArrayList<Integer>(), null, new Date(1524499402000L)));
+        vendors.add(new Vendor(301, "Vendor 1", new ArrayList<Integer>(), new ArrayList<Integer>(), new ArrayList<Integer>(), new URL("https://www.vendor1.com/privacy"), null));
+        ArrayList<Purpose> purposes = new ArrayList<>(Arrays.asList(new Purpose(1, "Purpose", "Description"), new Purpose(2, "Purpose", "Description")));
+        ArrayList<Feature> features = new ArrayList<>(Arrays.asList(new Feature(3, "Feature", "Description")));
+        VendorList vendorList = new VendorList(42, new Date(1524499402000L), purposes, features, vendors);
+
+        byte[] snapshot = VendorListSnapshot.toByteArray(vendorList);
+        ByteBuffer buffer = ByteBuffer.allocate(snapshot.length + 8);
+        buffer.putInt(12);
+        buffer.put(snapshot);
+        buffer.putInt(34);
+        buffer.flip();
+
+        Assert.assertEquals(12, buffer.getInt());
+        Assert.assertEquals(vendorList, VendorListSnapshot.read(buffer));
+        Assert.assertEquals(34, buffer.getInt());
+    }
+
+    @Test
+    public void testInvalidSnapshotIsRejected() throws IOException, JSONException {
+        byte[] snapshot = VendorListSnapshot.toByteArray(VendorListParser.parse(getStream("vendors.json")));
+
+        // Truncated snapshots.
+        for (int length = 0; length < snapshot.length; length++) {
+            try {
+                VendorListSnapshot.read(Arrays.copyOf(snapshot, length));
+                Assert.fail("Truncated snapshot of length " + length + " must be rejected");
+            } catch (IOException ignored) {
+            }
+        }
+
+        // Wrong magic number.
+        byte[] invalidSnapshot = snapshot.clone();
+        invalidSnapshot[0] = 0;
+        try {
+            VendorListSnapshot.read(invalidSnapshot);
+            Assert.fail("Snapshot with an invalid magic number must be rejected");
+        } catch (IOException ignored) {
+        }
+
+        // Unknown format version.
+        invalidSnapshot = snapshot.clone();
+        invalidSnapshot[4] = 42;
+        try {
+            VendorListSnapshot.read(invalidSnapshot);
+            Assert.fail("Snapshot with an unknown format version must be rejected");
+        } catch (IOException ignored) {
+        }
+    }
+}
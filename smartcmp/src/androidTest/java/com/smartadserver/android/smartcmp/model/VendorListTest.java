@@ -115,6 +115,25 @@ public class VendorListTest {
         Assert.assertEquals(39, vendorList.getMaxVendorId());
     }
 
+    @Test
+    public void testFindingItemsById() throws JSONException, MalformedURLException {
+        VendorList vendorList = new VendorList(getVendorsJSON());
+
+        Assert.assertSame(vendorList.getPurposes().get(2), vendorList.getPurposeWithId(3));
+        Assert.assertNull(vendorList.getPurposeWithId(6));
+        Assert.assertNull(vendorList.getPurposeWithId(-1));
+
+        Assert.assertSame(vendorList.getFeatures().get(1), vendorList.getFeatureWithId(2));
+        Assert.assertNull(vendorList.getFeatureWithId(0));
+
+        for (Vendor vendor : vendorList.getVendors()) {
+            Assert.assertTrue(vendorList.containsVendorWithId(vendor.getId()));
+        }
+        Assert.assertFalse(vendorList.containsVendorWithId(2));
+        Assert.assertFalse(vendorList.containsVendorWithId(-1));
+        Assert.assertFalse(vendorList.containsVendorWithId(vendorList.getMaxVendorId() + 1));
+    }
+
     @Test
     public void testFindingVendorCount() throws JSONException, MalformedURLException {
         VendorList vendorList = new VendorList(getUpdatedVendorsJSON());
@@ -182,4 +201,25 @@ public class VendorListTest {
         Assert.assertEquals(new ArrayList<Integer>() {{ add(1); add(3); add(4); add(5); }}, vendorList.getVendors().get(4).getLegitimatePurposes());
         Assert.assertEquals(new ArrayList<Integer>(), vendorList.getVendors().get(4).getFeatures());
     }
+
+    @Test
+    public void testVendorsCanBeLocalized() throws JSONException, MalformedURLException {
+        JSONObject localizedJSON = new JSONObject("{\"vendors\": [{\"name\": \"Vendor without id\"}, " +
+                "{\"id\": 8, \"name\": \"Vendor 8 name translated\", \"policyUrl\": \"https://www.emerse.com/fr/privacy-policy/\"}, " +
+                "{\"id\": 12, \"name\": \"Vendor 12 name translated\"}, " +
+                "{\"id\": 8, \"name\": \"Duplicated vendor 8 name\"}]}");
+        VendorList vendorList = new VendorList(getVendorsJSON(), localizedJSON);
+
+        Assert.assertEquals(8, vendorList.getVendors().get(0).getId());
+        Assert.assertEquals("Vendor 8 name translated", vendorList.getVendors().get(0).getName());
+        Assert.assertEquals(new URL("https://www.emerse.com/fr/privacy-policy/"), vendorList.getVendors().get(0).getPolicyURL());
+        Assert.assertEquals(12, vendorList.getVendors().get(1).getId());
+        Assert.assertEquals("Vendor 12 name translated", vendorList.getVendors().get(1).getName());
+        Assert.assertEquals(new VendorList(getVendorsJSON()).getVendors().get(1).getPolicyURL(), vendorList.getVendors().get(1).getPolicyURL());
+        Assert.assertEquals(new VendorList(getVendorsJSON()).getVendors().get(2), vendorList.getVendors().get(2));
+
+        // Purposes & features are untouched if the localized vendor list does not contain them.
+        Assert.assertEquals(new VendorList(getVendorsJSON()).getPurposes(), vendorList.getPurposes());
+        Assert.assertEquals(new VendorList(getVendorsJSON()).getFeatures(), vendorList.getFeatures());
+    }
 }
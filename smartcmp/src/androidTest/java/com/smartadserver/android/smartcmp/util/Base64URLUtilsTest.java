@@ -4,6 +4,8 @@ import junit.framework.Assert;
 
 import org.junit.Test;
 
+import java.util.Arrays;
+
 
 public class Base64URLUtilsTest {
 
@@ -22,4 +24,44 @@ public class Base64URLUtilsTest {
     public void testEncodeData() {
         Assert.assertEquals("dGVzdCBzdHJpbmc", Base64URLUtils.getBase64URL("test string".getBytes()));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testEncodeDataWithUrlSafeCharacters() {
+        Assert.assertEquals("-_8", Base64URLUtils.getBase64URL(new byte[]{(byte) 0xFB, (byte) 0xFF}));
+        Assert.assertEquals("", Base64URLUtils.getBase64URL(new byte[0]));
+    }
+
+    @Test
+    public void testDecodeDataWithUrlSafeCharacters() {
+        byte[] expected = new byte[]{(byte) 0xFB, (byte) 0xFF};
+        Assert.assertTrue(Arrays.equals(expected, Base64URLUtils.decodeBytes("-_8")));
+        Assert.assertTrue(Arrays.equals(expected, Base64URLUtils.decodeBytes("+/8=")));
+        Assert.assertEquals(0, Base64URLUtils.decodeBytes("").length);
+    }
+
+    @Test
+    public void testEncodedDataCanBeDecoded() {
+        for (int length = 0; length < 32; length++) {
+            byte[] data = new byte[length];
+            for (int idx = 0; idx < length; idx++) {
+                data[idx] = (byte) (idx * 37 + length);
+            }
+
+            Assert.assertTrue(Arrays.equals(data, Base64URLUtils.decodeBytes(Base64URLUtils.getBase64URL(data))));
+        }
+    }
+
+    @Test
+    public void testInvalidStringCantBeDecoded() {
+        String[] invalidStrings = new String[]{"dGVzd", "dGVz!", "dG Vz", "dGVzdA===", "dGVzd\u00e9"};
+
+        for (String invalidString : invalidStrings) {
+            try {
+                Base64URLUtils.decodeBytes(invalidString);
+                Assert.fail("Should have raised an exception for '" + invalidString + "'.");
+            } catch (IllegalArgumentException e) {
+                // ok
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.smartadserver.android.smartcmp.util;
+
+import com.smartadserver.android.smartcmp.model.Language;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class BitReaderTest {
+
+    @Test
+    public void testReadLong() {
+        BitReader reader = new BitReader(new byte[]{(byte) 0x48, (byte) 0xA8});
+
+        Assert.assertEquals(0, reader.readLong(1));
+        Assert.assertEquals(1, reader.readLong(1));
+        Assert.assertEquals(2, reader.readInt(4));
+        Assert.assertEquals(42, reader.readLong(8));
+        Assert.assertEquals(14, reader.getPosition());
+        Assert.assertEquals(2, reader.remaining());
+    }
+
+    @SuppressWarnings("ConstantConditions")
+    @Test
+    public void testReadWrittenValues() {
+        BitWriter writer = new BitWriter();
+        writer.writeDate(DateUtils.dateFromString("2017-11-07T18:59:04.900Z"), 36);
+        writer.writeLanguage(new Language("en"), 12);
+        writer.writeBoolean(true, 1);
+        writer.writeLong(4095, 12);
+
+        BitReader reader = new BitReader(writer.toByteArray());
+        Assert.assertEquals(DateUtils.dateFromString("2017-11-07T18:59:04.900Z"), reader.readDate(36));
+        Assert.assertEquals(new Language("en"), reader.readLanguage(12));
+        Assert.assertTrue(reader.readBoolean(1));
+        Assert.assertEquals(4095, reader.readInt(12));
+    }
+
+    @Test
+    public void testReadingTooManyBitsFails() {
+        BitReader reader = new BitReader(new byte[]{(byte) 0xFF});
+        reader.readLong(6);
+
+        try {
+            reader.readLong(3);
+            Assert.fail("Should have raised an exception.");
+        } catch (IllegalArgumentException e) {
+            // ok
+        }
+
+        Assert.assertTrue(reader.readBit());
+    }
+
+    @Test
+    public void testInvalidLanguageIsRejected() {
+        // 0b111111 is not a valid letter index.
+        BitReader reader = new BitReader(new byte[]{(byte) 0xFF, (byte) 0xF0});
+
+        Assert.assertNull(reader.readLanguage(12));
+        Assert.assertEquals(12, reader.getPosition());
+    }
+}
@@ -96,6 +96,13 @@ public class BitUtilsTest {
         Assert.assertNull(BitUtils.bitsToLetter("111111"));
     }
 
+    @Test
+    public void testBytesToBits() {
+        Assert.assertEquals("", BitUtils.bytesToBits(new byte[0]));
+        Assert.assertEquals("00000001", BitUtils.bytesToBits(new byte[]{1}));
+        Assert.assertEquals("1111111100101010", BitUtils.bytesToBits(new byte[]{(byte) 0xFF, 42}));
+    }
+
     @Test
     public void testBitsToLanguage() throws IllegalArgumentException {
         Assert.assertEquals(BitUtils.bitsToLanguage("000100001101"), new Language("en"));
@@ -0,0 +1,85 @@
+package com.smartadserver.android.smartcmp.util;
+
+import com.smartadserver.android.smartcmp.model.Language;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class BitWriterTest {
+
+    @Test
+    public void testWriteLong() {
+        BitWriter writer = new BitWriter();
+        writer.writeLong(0, 1);
+        writer.writeLong(1, 1);
+        writer.writeLong(2, 4);
+        writer.writeLong(42, 8);
+
+        Assert.assertEquals(14, writer.length());
+        Assert.assertEquals("01001000101010" + "00", BitUtils.bytesToBits(writer.toByteArray()));
+    }
+
+    @Test
+    public void testWriteBitsAndBoolean() {
+        BitWriter writer = new BitWriter(1);
+        writer.writeBits("101");
+        writer.writeBoolean(true, 3);
+        writer.writeBit(false);
+        writer.writeBit(true);
+
+        Assert.assertEquals(8, writer.length());
+        Assert.assertEquals("10100101", BitUtils.bytesToBits(writer.toByteArray()));
+    }
+
+    @SuppressWarnings("ConstantConditions")
+    @Test
+    public void testWriteDateAndLanguage() {
+        BitWriter writer = new BitWriter();
+        writer.writeDate(DateUtils.dateFromString("2017-11-07T18:59:04.900Z"), 40);
+        writer.writeLanguage(new Language("fr"), 12);
+
+        Assert.assertEquals("0000001110000100000101000001100010111001" + "000101010001" + "0000", BitUtils.bytesToBits(writer.toByteArray()));
+    }
+
+    @Test
+    public void testBufferGrowsAutomatically() {
+        BitWriter writer = new BitWriter(8);
+        for (int i = 0; i < 1000; i++) {
+            writer.writeBit(i % 2 == 0);
+        }
+
+        byte[] bytes = writer.toByteArray();
+        Assert.assertEquals(1000, writer.length());
+        Assert.assertEquals(125, bytes.length);
+        Assert.assertEquals((byte) 0xAA, bytes[124]);
+    }
+
+    @Test
+    public void testInvalidValuesAreRejected() {
+        BitWriter writer = new BitWriter();
+
+        try {
+            writer.writeLong(-1, 8);
+            Assert.fail("Should have raised an exception.");
+        } catch (IllegalArgumentException e) {
+            // ok
+        }
+
+        try {
+            writer.writeLong(2, 1);
+            Assert.fail("Should have raised an exception.");
+        } catch (IllegalArgumentException e) {
+            // ok
+        }
+
+        try {
+            writer.writeBits("01a");
+            Assert.fail("Should have raised an exception.");
+        } catch (IllegalArgumentException e) {
+            // ok
+        }
+
+        Assert.assertEquals(0, writer.length());
+    }
+}
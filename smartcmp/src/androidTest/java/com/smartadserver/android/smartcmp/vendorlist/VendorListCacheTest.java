@@ -0,0 +1,181 @@
+package com.smartadserver.android.smartcmp.vendorlist;
+
+import android.support.test.InstrumentationRegistry;
+
+import com.smartadserver.android.smartcmp.model.VendorList;
+import com.smartadserver.android.smartcmp.model.VendorListParser;
+
+import junit.framework.Assert;
+
+import org.json.JSONException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+
+public class VendorListCacheTest {
+
+    private static final String URL = "https://vendorlist.consensu.org/vendorlist.json";
+
+    private File directory;
+
+    @Before
+    public void setUp() {
+        directory = new File(InstrumentationRegistry.getContext().getCacheDir(), "VendorListCacheTest");
+        deleteDirectory();
+    }
+
+    @After
+    public void tearDown() {
+        deleteDirectory();
+    }
+
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    private void deleteDirectory() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    private String readString(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int count;
+        while ((count = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, count);
+        }
+        inputStream.close();
+
+        return new String(outputStream.toByteArray(), "UTF-8");
+    }
+
+    @Test
+    public void testEntryCanBeStoredAndRead() throws IOException {
+        VendorListCache cache = new VendorListCache(directory);
+        Assert.assertNull(cache.getEntry(URL));
+
+        cache.store(URL, "\"etag\"", "Mon, 23 Apr 2018 16:03:22 GMT", new ByteArrayInputStream("{\"vendorListVersion\": 6}".getBytes()));
+
+        // A new cache instance reads the entries stored by the previous one.
+        VendorListCache.Entry entry = new VendorListCache(directory).getEntry(URL);
+        Assert.assertNotNull(entry);
+        Assert.assertEquals(URL, entry.getURL());
+        Assert.assertEquals("\"etag\"", entry.getETag());
+        Assert.assertEquals("Mon, 23 Apr 2018 16:03:22 GMT", entry.getLastModified());
+        Assert.assertTrue(System.currentTimeMillis() - entry.getDate().getTime() < 5000);
+        Assert.assertEquals("{\"vendorListVersion\": 6}", readString(cache.openEntry(entry)));
+
+        Assert.assertNull(cache.getEntry("https://vendorlist.consensu.org/v-6/vendorlist.json"));
+    }
+
+    @Test
+    public void testEntryCanBeReplacedTouchedAndRemoved() throws IOException, InterruptedException {
+        VendorListCache cache = new VendorListCache(directory);
+
+        cache.store(URL, "\"etag\"", null, new ByteArrayInputStream("first".getBytes()));
+        VendorListCache.Entry entry = cache.store(URL, null, null, new ByteArrayInputStream("second".getBytes()));
+        Assert.assertNull(cache.getEntry(URL).getETag());
+        Assert.assertNull(cache.getEntry(URL).getLastModified());
+        Assert.assertEquals("second", readString(cache.openEntry(cache.getEntry(URL))));
+
+        Thread.sleep(10);
+        VendorListCache.Entry touchedEntry = cache.touch(entry);
+        Assert.assertTrue(touchedEntry.getDate().after(entry.getDate()));
+        Assert.assertEquals(touchedEntry.getDate(), cache.getEntry(URL).getDate());
+        Assert.assertEquals("second", readString(cache.openEntry(cache.getEntry(URL))));
+
+        cache.remove(URL);
+        Assert.assertNull(cache.getEntry(URL));
+    }
+
+    @Test
+    public void testCorruptedEntryIsIgnored() throws IOException {
+        VendorListCache cache = new VendorListCache(directory);
+        cache.store(URL, "\"etag\"", null, new ByteArrayInputStream("{}".getBytes()));
+
+        File[] metadataFiles = directory.listFiles();
+        Assert.assertNotNull(metadataFiles);
+        for (File file : metadataFiles) {
+            if (file.getName().endsWith(".meta")) {
+                FileOutputStream outputStream = new FileOutputStream(file);
+                outputStream.write(new byte[]{0, 0, 0, 42});
+                outputStream.close();
+            }
+        }
+
+        Assert.assertNull(cache.getEntry(URL));
+    }
+
+    @Test
+    public void testVendorListSnapshotCanBeStoredAndRead() throws IOException, JSONException {
+        VendorListCache cache = new VendorListCache(directory);
+        Assert.assertNull(cache.getVendorList(URL));
+
+        VendorList vendorList = VendorListParser.parse(InstrumentationRegistry.getContext().getAssets().open("vendors.json"));
+        cache.storeVendorList(URL, vendorList);
+
+        // A new cache instance reads the snapshots stored by the previous one.
+        Assert.assertEquals(vendorList, new VendorListCache(directory).getVendorList(URL));
+        Assert.assertNull(cache.getVendorList("https://vendorlist.consensu.org/v-6/vendorlist.json"));
+
+        cache.removeVendorList(URL);
+        Assert.assertNull(cache.getVendorList(URL));
+    }
+
+    @Test
+    public void testCorruptedVendorListSnapshotIsIgnored() throws IOException, JSONException {
+        VendorListCache cache = new VendorListCache(directory);
+        cache.storeVendorList(URL, VendorListParser.parse(InstrumentationRegistry.getContext().getAssets().open("vendors.json")));
+
+        File[] snapshotFiles = directory.listFiles();
+        Assert.assertNotNull(snapshotFiles);
+        for (File file : snapshotFiles) {
+            if (file.getName().endsWith(".snapshot")) {
+                RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+                randomAccessFile.setLength(randomAccessFile.length() / 2);
+                randomAccessFile.close();
+            }
+        }
+
+        Assert.assertNull(cache.getVendorList(URL));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedFilesAreEvicted() throws IOException {
+        VendorListCache cache = new VendorListCache(directory);
+        String otherURL = "https://vendorlist.consensu.org/v-6/vendorlist.json";
+
+        VendorListCache.Entry entry = cache.store(URL, null, null, new ByteArrayInputStream(new byte[1000]));
+        cache.store(otherURL, null, null, new ByteArrayInputStream(new byte[1000]));
+        long size = cache.getSize();
+
+        // The first entry is used again, so it is the most recently used one.
+        Assert.assertTrue(new File(directory, Integer.toHexString(URL.hashCode()) + ".json").setLastModified(System.currentTimeMillis() + 10000));
+        Assert.assertTrue(new File(directory, Integer.toHexString(URL.hashCode()) + ".meta").setLastModified(System.currentTimeMillis() + 10000));
+
+        cache.trim(size);
+        Assert.assertEquals(size, cache.getSize());
+
+        cache.trim(size - 1);
+        Assert.assertTrue(cache.getSize() <= size - 1);
+        Assert.assertNotNull(cache.getEntry(URL));
+        Assert.assertNull(cache.getEntry(otherURL));
+        Assert.assertEquals(1000, readString(cache.openEntry(entry)).length());
+
+        cache.trim(0);
+        Assert.assertEquals(0, cache.getSize());
+        Assert.assertNull(cache.getEntry(URL));
+    }
+}
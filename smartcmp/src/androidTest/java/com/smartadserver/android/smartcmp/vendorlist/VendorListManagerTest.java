@@ -1,82 +1,63 @@
 package com.smartadserver.android.smartcmp.vendorlist;
 
 
+import android.os.Looper;
 import android.support.annotation.NonNull;
 import android.support.test.InstrumentationRegistry;
 
 import com.smartadserver.android.smartcmp.Expectation;
 import com.smartadserver.android.smartcmp.model.Language;
 import com.smartadserver.android.smartcmp.model.VendorList;
-import com.smartadserver.android.smartcmp.util.JSONAsyncTask;
-import com.smartadserver.android.smartcmp.util.JSONAsyncTaskListener;
 
 import junit.framework.Assert;
 
 import org.json.JSONException;
-import org.json.JSONObject;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.MalformedURLException;
-import java.net.URL;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class VendorListManagerTest {
 
-    private JSONObject vendorsJSON;
-    private JSONObject localizedVendorsJSON;
-
-    private JSONObject getVendorsJSON() {
-        if (vendorsJSON == null) {
-            vendorsJSON = getJSON("vendors.json");
-        }
-
-        return vendorsJSON;
+    private InputStream getVendorsStream() throws IOException {
+        return InstrumentationRegistry.getContext().getAssets().open("vendors.json");
     }
 
-    private JSONObject getLocalizedVendorsJSON() {
-        if (localizedVendorsJSON == null) {
-            localizedVendorsJSON = getJSON("vendors_localized.json");
-        }
-
-        return localizedVendorsJSON;
+    private InputStream getLocalizedVendorsStream() throws IOException {
+        return InstrumentationRegistry.getContext().getAssets().open("vendors_localized.json");
     }
 
-    @SuppressWarnings("ResultOfMethodCallIgnored")
-    private JSONObject getJSON(String fileName) {
-        try {
-            InputStream is = InstrumentationRegistry.getContext().getAssets().open(fileName);
-            byte[] buffer = new byte[is.available()];
-            is.read(buffer);
-            is.close();
-
-            return new JSONObject(new String(buffer, "UTF-8"));
-
-        } catch (IOException e) {
-            e.printStackTrace();
-        } catch (JSONException e) {
-            e.printStackTrace();
-        }
-
-        return null;
+    private InputStream getInvalidVendorsStream() {
+        return new ByteArrayInputStream("{}".getBytes());
     }
 
-    private class MockJSONAsyncTask extends JSONAsyncTask {
-
-        MockJSONAsyncTask(@NonNull JSONAsyncTaskListener listener) {
-            super(listener);
-        }
-
-        @Override
-        protected void onPostExecute(Object o) {
+    private boolean isLocalizedURL(@NonNull String url) {
+        return url.contains("purposes-");
+    }
 
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    private VendorListCache getCacheWithVendorList(String directoryName) throws IOException {
+        File directory = new File(InstrumentationRegistry.getContext().getCacheDir(), directoryName);
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
         }
 
-        @Override
-        protected Object doInBackground(Object[] objects) {
-            getVendorsJSON();
-            return null;
-        }
+        VendorListCache cache = new VendorListCache(directory);
+        cache.store("https://vendorlist.consensu.org/vendorlist.json", "\"etag\"", null, getVendorsStream());
+        return cache;
     }
 
     @Test
@@ -101,18 +82,13 @@ public class VendorListManagerTest {
 
 
         VendorListManager vlManager = new VendorListManager(mockListener, 100, 10, new Language("en")) {
+            @NonNull
             @Override
-            protected JSONAsyncTask getNewJSONAsyncTaskForVendorList(@NonNull JSONAsyncTaskListener listener) {
-                return new MockJSONAsyncTask(listener) {
-                    @Override
-                    protected void onPostExecute(Object o) {
-                        if (getVendorsJSON() == null) {
-                            listener.JSONAsyncTaskDidFailDownloadingJSONObject();
-                        } else {
-                            listener.JSONAsyncTaskDidSucceedDownloadingJSONObject(getVendorsJSON());
-                        }
-                    }
-                };
+            protected InputStream openInputStream(@NonNull String url) throws IOException {
+                if (isLocalizedURL(url)) {
+                    throw new IOException("No localized vendor list.");
+                }
+                return getVendorsStream();
             }
         };
 
@@ -135,27 +111,12 @@ public class VendorListManagerTest {
         };
 
         VendorListManager vlManager = new VendorListManager(mockListener, 1000, 500, null) {
+            @NonNull
             @Override
-            protected JSONAsyncTask getNewJSONAsyncTaskForVendorList(@NonNull JSONAsyncTaskListener listener) {
-                return new MockJSONAsyncTask(listener) {
-                    @Override
-                    protected void onPostExecute(Object o) {
-                        listener.JSONAsyncTaskDidSucceedDownloadingJSONObject(getVendorsJSON());
-                    }
-
-                    @Override
-                    protected Object doInBackground(Object[] objects) {
-                        if (objects.length > 0) {
-                            // Retrieve the URL given in parameters and check its the right value
-                            String rawJSONURL = (String) objects[0];
-                            Assert.assertEquals("https://vendorlist.consensu.org/v-42/vendorlist.json", rawJSONURL);
-                        } else {
-                            Assert.fail("There is no URL given to the JSONAsyncTask");
-                        }
-
-                        return super.doInBackground(objects);
-                    }
-                };
+            protected InputStream openInputStream(@NonNull String url) throws IOException {
+                // Check that the right URL is downloaded.
+                Assert.assertEquals("https://vendorlist.consensu.org/v-42/vendorlist.json", url);
+                return getVendorsStream();
             }
         };
 
@@ -198,14 +159,10 @@ public class VendorListManagerTest {
         };
 
         VendorListManager vlManager = new VendorListManager(mockListener, 1000, 200, new Language("en")) {
+            @NonNull
             @Override
-            protected JSONAsyncTask getNewJSONAsyncTaskForVendorList(@NonNull JSONAsyncTaskListener listener) {
-                return new MockJSONAsyncTask(listener) {
-                    @Override
-                    protected void onPostExecute(Object o) {
-                        listener.JSONAsyncTaskDidSucceedDownloadingJSONObject(new JSONObject());
-                    }
-                };
+            protected InputStream openInputStream(@NonNull String url) {
+                return getInvalidVendorsStream();
             }
         };
 
@@ -239,14 +196,10 @@ public class VendorListManagerTest {
         };
 
         VendorListManager vlManager = new VendorListManager(mockListener, 1000, 500, null) {
+            @NonNull
             @Override
-            protected JSONAsyncTask getNewJSONAsyncTaskForVendorList(@NonNull JSONAsyncTaskListener listener) {
-                return new MockJSONAsyncTask(listener) {
-                    @Override
-                    protected void onPostExecute(Object o) {
-                        listener.JSONAsyncTaskDidSucceedDownloadingJSONObject(getVendorsJSON());
-                    }
-                };
+            protected InputStream openInputStream(@NonNull String url) throws IOException {
+                return getVendorsStream();
             }
         };
 
@@ -281,32 +234,17 @@ public class VendorListManagerTest {
         };
 
         VendorListManager vlManager = new VendorListManager(mockListener, 1000, 500, new Language("fr")) {
+            @NonNull
             @Override
-            protected JSONAsyncTask getNewJSONAsyncTaskForVendorList(@NonNull JSONAsyncTaskListener listener) {
-                return new MockJSONAsyncTask(listener) {
-                    @Override
-                    protected void onPostExecute(Object o) {
-                        listener.JSONAsyncTaskDidSucceedDownloadingJSONObject(getVendorsJSON());
-                        vendorListURLCalledExpectation.fulfill();
-                    }
-                };
-            }
-
-            @Override
-            protected JSONAsyncTask getNewJSONAsyncTaskForLocalizedVendorList(@NonNull JSONAsyncTaskListener listener) {
-                return new MockJSONAsyncTask(listener) {
-                    @Override
-                    protected void onPostExecute(Object o) {
-                        listener.JSONAsyncTaskDidSucceedDownloadingJSONObject(getLocalizedVendorsJSON());
-                        vendorListFRURLCalledExpectation.fulfill();
-                    }
+            protected InputStream openInputStream(@NonNull String url) throws IOException {
+                if (isLocalizedURL(url)) {
+                    Assert.assertEquals("https://vendorlist.consensu.org/purposes-fr.json", url);
+                    vendorListFRURLCalledExpectation.fulfill();
+                    return getLocalizedVendorsStream();
+                }
 
-                    @Override
-                    protected Object doInBackground(Object[] objects) {
-                        getLocalizedVendorsJSON();
-                        return null;
-                    }
-                };
+                vendorListURLCalledExpectation.fulfill();
+                return getVendorsStream();
             }
         };
 
@@ -341,33 +279,501 @@ public class VendorListManagerTest {
         };
 
         VendorListManager vlManager = new VendorListManager(mockListener, 1000, 500, new Language("fr")) {
+            @NonNull
             @Override
-            protected JSONAsyncTask getNewJSONAsyncTaskForVendorList(@NonNull JSONAsyncTaskListener listener) {
-                return new MockJSONAsyncTask(listener) {
-                    @Override
-                    protected void onPostExecute(Object o) {
-                        listener.JSONAsyncTaskDidSucceedDownloadingJSONObject(getVendorsJSON());
-                        vendorListURLCalledExpectation.fulfill();
-                    }
-                };
+            protected InputStream openInputStream(@NonNull String url) throws IOException {
+                if (isLocalizedURL(url)) {
+                    // return a invalid JSON
+                    vendorListFRURLCalledExpectation.fulfill();
+                    return new ByteArrayInputStream("{\"purposes\": 42".getBytes());
+                }
+
+                vendorListURLCalledExpectation.fulfill();
+                return getVendorsStream();
             }
+        };
+
+        vlManager.refreshVendorList();
 
+        vendorListURLCalledExpectation.assertFulfilled(2000);
+        vendorListFRURLCalledExpectation.assertFulfilled(2500);
+    }
+
+    @Test
+    public void testVendorListIsParsedOffTheMainThread() {
+        final Expectation expectationVendorListRetrieved = new Expectation("VendorList retrieved");
+        final AtomicBoolean streamReadOnMainThread = new AtomicBoolean(false);
+        final AtomicBoolean listenerCalledOnMainThread = new AtomicBoolean(false);
+
+        VendorListManagerListener mockListener = new VendorListManagerListener() {
             @Override
-            protected JSONAsyncTask getNewJSONAsyncTaskForLocalizedVendorList(@NonNull JSONAsyncTaskListener listener) {
-                return new MockJSONAsyncTask(listener) {
+            public void onVendorListUpdateSuccess(@NonNull VendorList vendorList) {
+                listenerCalledOnMainThread.set(Looper.myLooper() == Looper.getMainLooper());
+                expectationVendorListRetrieved.fulfill();
+            }
+
+            @Override
+            public void onVendorListUpdateFail(@NonNull Exception e) {
+            }
+        };
+
+        VendorListManager vlManager = new VendorListManager(mockListener, 100, 10, new Language("fr")) {
+            @NonNull
+            @Override
+            protected InputStream openInputStream(@NonNull String url) throws IOException {
+                InputStream inputStream = isLocalizedURL(url) ? getLocalizedVendorsStream() : getVendorsStream();
+
+                // The parser pulls its data from the stream: any read from the main thread means it is parsing there.
+                return new FilterInputStream(inputStream) {
+                    @Override
+                    public int read() throws IOException {
+                        checkThread();
+                        return super.read();
+                    }
+
                     @Override
-                    protected void onPostExecute(Object o) {
-                        // return a invalid JSONObject
-                        listener.JSONAsyncTaskDidSucceedDownloadingJSONObject(new JSONObject());
-                        vendorListFRURLCalledExpectation.fulfill();
+                    public int read(@NonNull byte[] b, int off, int len) throws IOException {
+                        checkThread();
+                        return super.read(b, off, len);
+                    }
+
+                    private void checkThread() {
+                        if (Looper.myLooper() == Looper.getMainLooper()) {
+                            streamReadOnMainThread.set(true);
+                        }
                     }
                 };
             }
         };
 
         vlManager.refreshVendorList();
+        expectationVendorListRetrieved.assertFulfilled(2000);
 
-        vendorListURLCalledExpectation.assertFulfilled(2000);
-        vendorListFRURLCalledExpectation.assertFulfilled(2500);
+        Assert.assertFalse(streamReadOnMainThread.get());
+        Assert.assertTrue(listenerCalledOnMainThread.get());
+    }
+
+    @Test
+    public void testCachedVendorListIsServedAtStartupWithoutDownload() throws IOException, InterruptedException {
+        final Expectation expectationVendorListRetrieved = new Expectation("VendorList retrieved from cache");
+        final AtomicInteger downloadCount = new AtomicInteger(0);
+
+        VendorListManagerListener mockListener = new VendorListManagerListener() {
+            @Override
+            public void onVendorListUpdateSuccess(@NonNull VendorList vendorList) {
+                Assert.assertEquals(6, vendorList.getVersion());
+                Assert.assertEquals(17, vendorList.getVendors().size());
+                expectationVendorListRetrieved.fulfill();
+            }
+
+            @Override
+            public void onVendorListUpdateFail(@NonNull Exception e) {
+            }
+        };
+
+        VendorListManager vlManager = new VendorListManager(mockListener, 100000, 10, new Language("en"), getCacheWithVendorList("testCachedVendorListIsServedAtStartupWithoutDownload")) {
+            @NonNull
+            @Override
+            protected InputStream openInputStream(@NonNull String url) throws IOException {
+                downloadCount.incrementAndGet();
+                throw new IOException("No network.");
+            }
+        };
+
+        // The cached vendor list is recent: it is used without being refreshed.
+        vlManager.startAutomaticRefresh(false);
+        expectationVendorListRetrieved.assertFulfilled(2000);
+
+        Thread.sleep(500);
+        vlManager.stopAutomaticRefresh();
+        Assert.assertEquals(0, downloadCount.get());
+    }
+
+    @Test
+    public void testCachedVendorListIsRefreshedAtStartupIfForced() throws IOException {
+        final Expectation expectationVendorListRetrieved = new Expectation("VendorList retrieved from cache");
+        final Expectation expectationVendorListDownloaded = new Expectation("VendorList downloaded");
+
+        VendorListManagerListener mockListener = new VendorListManagerListener() {
+            @Override
+            public void onVendorListUpdateSuccess(@NonNull VendorList vendorList) {
+                expectationVendorListRetrieved.fulfill();
+            }
+
+            @Override
+            public void onVendorListUpdateFail(@NonNull Exception e) {
+            }
+        };
+
+        VendorListManager vlManager = new VendorListManager(mockListener, 100000, 100000, new Language("en"), getCacheWithVendorList("testCachedVendorListIsRefreshedAtStartupIfForced")) {
+            @NonNull
+            @Override
+            protected InputStream openInputStream(@NonNull String url) throws IOException {
+                expectationVendorListDownloaded.fulfill();
+                return getVendorsStream();
+            }
+        };
+
+        vlManager.startAutomaticRefresh(true);
+        expectationVendorListRetrieved.assertFulfilled(2000);
+        expectationVendorListDownloaded.assertFulfilled(2000);
+        vlManager.stopAutomaticRefresh();
+    }
+
+    @Test
+    public void testVersionedVendorListIsLocalizedAndDownloadedOnce() {
+        final Expectation expectationFirstVendorListRetrieved = new Expectation("First VendorList retrieved", true);
+        final Expectation expectationSecondVendorListRetrieved = new Expectation("Second VendorList retrieved", true);
+        final Expectation expectationCachedVendorListRetrieved = new Expectation("Cached VendorList retrieved", true);
+        final AtomicInteger downloadCount = new AtomicInteger(0);
+        final AtomicInteger localizedDownloadCount = new AtomicInteger(0);
+
+        VendorListManagerListener mockListener = new VendorListManagerListener() {
+            @Override
+            public void onVendorListUpdateSuccess(@NonNull VendorList vendorList) {
+            }
+
+            @Override
+            public void onVendorListUpdateFail(@NonNull Exception e) {
+            }
+        };
+
+        VendorListManager vlManager = new VendorListManager(mockListener, 100000, 100000, new Language("fr")) {
+            @NonNull
+            @Override
+            protected InputStream openInputStream(@NonNull String url) throws IOException {
+                if (isLocalizedURL(url)) {
+                    Assert.assertEquals("https://vendorlist.consensu.org/purposes-fr-42.json", url);
+                    localizedDownloadCount.incrementAndGet();
+                    return getLocalizedVendorsStream();
+                } else {
+                    Assert.assertEquals("https://vendorlist.consensu.org/v-42/vendorlist.json", url);
+                    downloadCount.incrementAndGet();
+                    return getVendorsStream();
+                }
+            }
+        };
+
+        // Both requests are made before the first one is completed: they share the same download.
+        vlManager.getVendorList(42, new VendorListManagerListener() {
+            @Override
+            public void onVendorListUpdateSuccess(@NonNull VendorList vendorList) {
+                Assert.assertEquals("Purpose 3 name translated", vendorList.getPurposes().get(2).getName());
+                expectationFirstVendorListRetrieved.fulfill();
+            }
+
+            @Override
+            public void onVendorListUpdateFail(@NonNull Exception e) {
+                Assert.fail("Should not fail");
+            }
+        });
+        vlManager.getVendorList(42, new VendorListManagerListener() {
+            @Override
+            public void onVendorListUpdateSuccess(@NonNull VendorList vendorList) {
+                expectationSecondVendorListRetrieved.fulfill();
+            }
+
+            @Override
+            public void onVendorListUpdateFail(@NonNull Exception e) {
+                Assert.fail("Should not fail");
+            }
+        });
+
+        expectationFirstVendorListRetrieved.assertFulfilled(2000);
+        expectationSecondVendorListRetrieved.assertFulfilled(2000);
+
+        // The vendor list is now retrieved from memory.
+        vlManager.getVendorList(42, new VendorListManagerListener() {
+            @Override
+            public void onVendorListUpdateSuccess(@NonNull VendorList vendorList) {
+                Assert.assertEquals("Purpose 3 name translated", vendorList.getPurposes().get(2).getName());
+                expectationCachedVendorListRetrieved.fulfill();
+            }
+
+            @Override
+            public void onVendorListUpdateFail(@NonNull Exception e) {
+                Assert.fail("Should not fail");
+            }
+        });
+
+        expectationCachedVendorListRetrieved.assertFulfilled(2000);
+        Assert.assertEquals(1, downloadCount.get());
+        Assert.assertEquals(1, localizedDownloadCount.get());
+        Assert.assertEquals(1, vlManager.getVersionedVendorListCache().getHitCount());
+        Assert.assertEquals(0, vlManager.getVersionedVendorListCache().getDiskHitCount());
+        Assert.assertEquals(1, vlManager.getVersionedVendorListCache().getMissCount());
+    }
+
+    @Test
+    public void testVersionedVendorListIsNotKeptInMemoryIfTheLocalizationFails() {
+        final Expectation expectationFirstVendorListRetrieved = new Expectation("First VendorList retrieved", true);
+        final Expectation expectationSecondVendorListRetrieved = new Expectation("Second VendorList retrieved", true);
+        final AtomicInteger downloadCount = new AtomicInteger(0);
+        final AtomicBoolean localizationFailing = new AtomicBoolean(true);
+
+        VendorListManagerListener mockListener = new VendorListManagerListener() {
+            @Override
+            public void onVendorListUpdateSuccess(@NonNull VendorList vendorList) {
+            }
+
+            @Override
+            public void onVendorListUpdateFail(@NonNull Exception e) {
+            }
+        };
+
+        VendorListManager vlManager = new VendorListManager(mockListener, 100000, 100000, new Language("fr")) {
+            @NonNull
+            @Override
+            protected InputStream openInputStream(@NonNull String url) throws IOException {
+                if (isLocalizedURL(url)) {
+                    if (localizationFailing.get()) {
+                        throw new IOException("Localized vendor list unavailable");
+                    }
+                    return getLocalizedVendorsStream();
+                } else {
+                    downloadCount.incrementAndGet();
+                    return getVendorsStream();
+                }
+            }
+        };
+
+        // The localization fails: the non localized vendor list is returned, but not kept in memory.
+        vlManager.getVendorList(42, new VendorListManagerListener() {
+            @Override
+            public void onVendorListUpdateSuccess(@NonNull VendorList vendorList) {
+                expectationFirstVendorListRetrieved.fulfill();
+            }
+
+            @Override
+            public void onVendorListUpdateFail(@NonNull Exception e) {
+                Assert.fail("Should not fail");
+            }
+        });
+        expectationFirstVendorListRetrieved.assertFulfilled(2000);
+
+        // The next request downloads the vendor list again, and gets the localized one.
+        localizationFailing.set(false);
+        vlManager.getVendorList(42, new VendorListManagerListener() {
+            @Override
+            public void onVendorListUpdateSuccess(@NonNull VendorList vendorList) {
+                Assert.assertEquals("Purpose 3 name translated", vendorList.getPurposes().get(2).getName());
+                expectationSecondVendorListRetrieved.fulfill();
+            }
+
+            @Override
+            public void onVendorListUpdateFail(@NonNull Exception e) {
+                Assert.fail("Should not fail");
+            }
+        });
+        expectationSecondVendorListRetrieved.assertFulfilled(2000);
+
+        Assert.assertEquals(2, downloadCount.get());
+        Assert.assertEquals(0, vlManager.getVersionedVendorListCache().getHitCount());
+        Assert.assertEquals(2, vlManager.getVersionedVendorListCache().getMissCount());
+    }
+
+    @Test
+    public void testVersionedVendorListIsRetrievedFromDiskCache() throws IOException {
+        final Expectation expectationVendorListDownloaded = new Expectation("VendorList downloaded", true);
+        final Expectation expectationVendorListRetrievedFromDisk = new Expectation("VendorList retrieved from disk", true);
+
+        VendorListManagerListener mockListener = new VendorListManagerListener() {
+            @Override
+            public void onVendorListUpdateSuccess(@NonNull VendorList vendorList) {
+            }
+
+            @Override
+            public void onVendorListUpdateFail(@NonNull Exception e) {
+            }
+        };
+
+        VendorListCache cache = getCacheWithVendorList("testVersionedVendorListIsRetrievedFromDiskCache");
+        VendorListManager vlManager = new VendorListManager(mockListener, 100000, 100000, null, cache) {
+            @NonNull
+            @Override
+            protected InputStream openInputStream(@NonNull String url) throws IOException {
+                return getVendorsStream();
+            }
+        };
+
+        vlManager.getVendorList(42, new VendorListManagerListener() {
+            @Override
+            public void onVendorListUpdateSuccess(@NonNull VendorList vendorList) {
+                expectationVendorListDownloaded.fulfill();
+            }
+
+            @Override
+            public void onVendorListUpdateFail(@NonNull Exception e) {
+                Assert.fail("Should not fail");
+            }
+        });
+        expectationVendorListDownloaded.assertFulfilled(2000);
+
+        // A new manager (with an empty memory cache) retrieves the vendor list snapshot from the disk cache.
+        VendorListManager newVLManager = new VendorListManager(mockListener, 100000, 100000, null, cache) {
+            @NonNull
+            @Override
+            protected InputStream openInputStream(@NonNull String url) throws IOException {
+                throw new IOException("No network.");
+            }
+        };
+
+        newVLManager.getVendorList(42, new VendorListManagerListener() {
+            @Override
+            public void onVendorListUpdateSuccess(@NonNull VendorList vendorList) {
+                Assert.assertEquals(17, vendorList.getVendors().size());
+                expectationVendorListRetrievedFromDisk.fulfill();
+            }
+
+            @Override
+            public void onVendorListUpdateFail(@NonNull Exception e) {
+                Assert.fail("Should not fail");
+            }
+        });
+        expectationVendorListRetrievedFromDisk.assertFulfilled(2000);
+
+        Assert.assertEquals(1, vlManager.getVersionedVendorListCache().getMissCount());
+        Assert.assertEquals(1, newVLManager.getVersionedVendorListCache().getDiskHitCount());
+        Assert.assertEquals(0, newVLManager.getVersionedVendorListCache().getMissCount());
+    }
+
+    @Test
+    public void testInjectedExecutorsAreUsedAndRefreshIsCancelledOnStop() throws InterruptedException {
+        final Expectation expectationVendorListRefreshedTwice = new Expectation("VendorList refreshed twice", true);
+        final AtomicInteger refreshCount = new AtomicInteger(0);
+        final AtomicInteger executedCount = new AtomicInteger(0);
+
+        ExecutorService executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>()) {
+            @Override
+            public void execute(@NonNull Runnable command) {
+                executedCount.incrementAndGet();
+                super.execute(command);
+            }
+        };
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1);
+        scheduler.setRemoveOnCancelPolicy(true);
+
+        VendorListManagerListener mockListener = new VendorListManagerListener() {
+            @Override
+            public void onVendorListUpdateSuccess(@NonNull VendorList vendorList) {
+                if (refreshCount.incrementAndGet() == 2) {
+                    expectationVendorListRefreshedTwice.fulfill();
+                }
+            }
+
+            @Override
+            public void onVendorListUpdateFail(@NonNull Exception e) {
+                Assert.fail("Should not fail");
+            }
+        };
+
+        VendorListManager vlManager = new VendorListManager(mockListener, 200, 200, null, -1, null, executor, scheduler) {
+            @NonNull
+            @Override
+            protected InputStream openInputStream(@NonNull String url) throws IOException {
+                return getVendorsStream();
+            }
+        };
+
+        vlManager.startAutomaticRefresh(true);
+        expectationVendorListRefreshedTwice.assertFulfilled(5000);
+        Assert.assertTrue(executedCount.get() >= 2);
+
+        // The scheduled refresh is removed from the scheduler, and no other refresh happens.
+        vlManager.stopAutomaticRefresh();
+        Assert.assertEquals(0, scheduler.getQueue().size());
+        int stoppedRefreshCount = refreshCount.get();
+        Thread.sleep(600);
+        Assert.assertTrue(refreshCount.get() <= stoppedRefreshCount + 1);
+
+        // The executors are owned by the caller: they are still usable.
+        Assert.assertFalse(executor.isShutdown());
+        Assert.assertFalse(scheduler.isShutdown());
+        executor.shutdown();
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testRefreshIsSkippedWhileOfflineAndRetriedWithBackoff() throws InterruptedException {
+        final Expectation expectationVendorListRetrieved = new Expectation("VendorList retrieved once the network is back");
+        final AtomicBoolean networkAvailable = new AtomicBoolean(false);
+        final AtomicInteger downloadCount = new AtomicInteger(0);
+
+        VendorListManagerListener mockListener = new VendorListManagerListener() {
+            @Override
+            public void onVendorListUpdateSuccess(@NonNull VendorList vendorList) {
+                expectationVendorListRetrieved.fulfill();
+            }
+
+            @Override
+            public void onVendorListUpdateFail(@NonNull Exception e) {
+            }
+        };
+
+        VendorListManager vlManager = new VendorListManager(mockListener, 100000, 50, null) {
+            @NonNull
+            @Override
+            protected InputStream openInputStream(@NonNull String url) throws IOException {
+                downloadCount.incrementAndGet();
+                return getVendorsStream();
+            }
+        };
+        vlManager.setNetworkStatusProvider(new NetworkStatusProvider() {
+            @Override
+            public boolean isNetworkAvailable() {
+                return networkAvailable.get();
+            }
+        });
+
+        // Without network, the scheduled refreshes are skipped without downloading anything.
+        vlManager.startAutomaticRefresh(true);
+        Thread.sleep(300);
+        Assert.assertEquals(0, downloadCount.get());
+        Assert.assertTrue(vlManager.getRefreshBackoff().getSkippedCount() >= 1);
+        Assert.assertEquals(0, vlManager.getRefreshBackoff().getFailureCount());
+
+        networkAvailable.set(true);
+        expectationVendorListRetrieved.assertFulfilled(2000);
+        vlManager.stopAutomaticRefresh();
+
+        Assert.assertEquals(1, vlManager.getRefreshBackoff().getAttemptCount());
+        Assert.assertEquals(1, vlManager.getRefreshBackoff().getSuccessCount());
+    }
+
+    @Test
+    public void testFailedRefreshesAreRetriedWithBackoff() {
+        final Expectation expectationThreeFailures = new Expectation("Refresh failed three times");
+        final AtomicInteger failureCount = new AtomicInteger(0);
+
+        VendorListManagerListener mockListener = new VendorListManagerListener() {
+            @Override
+            public void onVendorListUpdateSuccess(@NonNull VendorList vendorList) {
+                Assert.fail("Should not succeed");
+            }
+
+            @Override
+            public void onVendorListUpdateFail(@NonNull Exception e) {
+                if (failureCount.incrementAndGet() == 3) {
+                    expectationThreeFailures.fulfill();
+                }
+            }
+        };
+
+        VendorListManager vlManager = new VendorListManager(mockListener, 100000, 50, null) {
+            @NonNull
+            @Override
+            protected InputStream openInputStream(@NonNull String url) {
+                return getInvalidVendorsStream();
+            }
+        };
+
+        vlManager.startAutomaticRefresh(true);
+        expectationThreeFailures.assertFulfilled(3000);
+        vlManager.stopAutomaticRefresh();
+
+        VendorListRefreshBackoff backoff = vlManager.getRefreshBackoff();
+        Assert.assertTrue(backoff.getFailureCount() >= 3);
+        Assert.assertTrue(backoff.getConsecutiveFailures() >= 3);
+        Assert.assertEquals(0, backoff.getSuccessCount());
     }
 }
@@ -0,0 +1,112 @@
+package com.smartadserver.android.smartcmp.vendorlist;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class VendorListRefreshBackoffTest {
+
+    @Test
+    public void testDelayGrowsExponentiallyUpToTheMaximumDelay() {
+        VendorListRefreshBackoff backoff = new VendorListRefreshBackoff(100, 1000, 2, 0, 10, new Random(42));
+
+        Assert.assertEquals(100, backoff.onFailure(60000));
+        Assert.assertEquals(200, backoff.onFailure(60000));
+        Assert.assertEquals(400, backoff.onFailure(60000));
+        Assert.assertEquals(800, backoff.onFailure(60000));
+        Assert.assertEquals(1000, backoff.onFailure(60000));
+        Assert.assertEquals(1000, backoff.onFailure(60000));
+        Assert.assertEquals(6, backoff.getConsecutiveFailures());
+    }
+
+    @Test
+    public void testJitterOnlyReducesTheDelay() {
+        VendorListRefreshBackoff backoff = new VendorListRefreshBackoff(1000, 1000, 2, 0.5, 100, new Random(42));
+
+        boolean jittered = false;
+        for (int i = 0; i < 50; i++) {
+            long delay = backoff.onFailure(60000);
+            Assert.assertTrue(delay >= 500);
+            Assert.assertTrue(delay <= 1000);
+            jittered |= delay < 1000;
+        }
+        Assert.assertTrue(jittered);
+    }
+
+    @Test
+    public void testSuccessResetsTheBackoff() {
+        VendorListRefreshBackoff backoff = new VendorListRefreshBackoff(100, 1000, 2, 0, 10, new Random(42));
+
+        backoff.onFailure(60000);
+        backoff.onFailure(60000);
+        backoff.onSuccess();
+
+        Assert.assertEquals(0, backoff.getConsecutiveFailures());
+        Assert.assertEquals(100, backoff.onFailure(60000));
+    }
+
+    @Test
+    public void testCircuitIsOpenAfterMaxAttempts() {
+        VendorListRefreshBackoff backoff = new VendorListRefreshBackoff(100, 1000, 2, 0, 3, new Random(42));
+
+        backoff.onFailure(60000);
+        backoff.onFailure(60000);
+        Assert.assertFalse(backoff.isCircuitOpen());
+
+        // Once the circuit is open, the next attempts only happen at the refresh interval.
+        Assert.assertEquals(60000, backoff.onFailure(60000));
+        Assert.assertTrue(backoff.isCircuitOpen());
+        Assert.assertEquals(60000, backoff.onFailure(60000));
+        Assert.assertEquals(1, backoff.getCircuitOpenCount());
+
+        // A successful attempt closes the circuit.
+        backoff.onSuccess();
+        Assert.assertFalse(backoff.isCircuitOpen());
+        Assert.assertEquals(100, backoff.onFailure(60000));
+    }
+
+    @Test
+    public void testMetricsAreCounted() {
+        VendorListRefreshBackoff backoff = new VendorListRefreshBackoff(100, 1000);
+
+        backoff.onAttempt();
+        backoff.onFailure(60000);
+        backoff.onAttempt();
+        backoff.onSuccess();
+        backoff.onSkipped();
+
+        Assert.assertEquals(2, backoff.getAttemptCount());
+        Assert.assertEquals(1, backoff.getFailureCount());
+        Assert.assertEquals(1, backoff.getSuccessCount());
+        Assert.assertEquals(1, backoff.getSkippedCount());
+    }
+
+    @Test
+    public void testInvalidParametersAreRejected() {
+        try {
+            new VendorListRefreshBackoff(1000, 100);
+            Assert.fail("The maximum delay can't be lower than the initial delay");
+        } catch (IllegalArgumentException ignored) {
+        }
+
+        try {
+            new VendorListRefreshBackoff(100, 1000, 0.5, 0, 3);
+            Assert.fail("The multiplier can't be lower than 1");
+        } catch (IllegalArgumentException ignored) {
+        }
+
+        try {
+            new VendorListRefreshBackoff(100, 1000, 2, 2, 3);
+            Assert.fail("The jitter can't be greater than 1");
+        } catch (IllegalArgumentException ignored) {
+        }
+
+        try {
+            new VendorListRefreshBackoff(100, 1000, 2, 0.5, 0);
+            Assert.fail("The maximum number of attempts can't be lower than 1");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package com.smartadserver.android.smartcmp.vendorlist;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.test.InstrumentationRegistry;
+
+import com.smartadserver.android.smartcmp.Expectation;
+import com.smartadserver.android.smartcmp.LocalHTTPServer;
+import com.smartadserver.android.smartcmp.model.Language;
+import com.smartadserver.android.smartcmp.model.VendorList;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class VendorListSingleFlightTest {
+
+    private static final String HOST = "https://vendorlist.consensu.org";
+
+    private LocalHTTPServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new LocalHTTPServer();
+        server.setResponse("/vendorlist.json", 200, readAsset("vendors.json"), "\"v6\"");
+        server.setResponse("/purposes-fr.json", 200, readAsset("vendors_localized.json"), "\"fr6\"");
+        server.setResponse("/v-42/vendorlist.json", 200, readAsset("vendors.json"), null);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    private byte[] readAsset(String fileName) throws IOException {
+        InputStream inputStream = InstrumentationRegistry.getContext().getAssets().open(fileName);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int count;
+        while ((count = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, count);
+        }
+        inputStream.close();
+
+        return outputStream.toByteArray();
+    }
+
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    private VendorListCache getEmptyCache(String directoryName) {
+        File directory = new File(InstrumentationRegistry.getContext().getCacheDir(), directoryName);
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+
+        return new VendorListCache(directory);
+    }
+
+    private VendorListManager getManager(VendorListManagerListener listener, Language language, VendorListCache cache) {
+        return new VendorListManager(listener, 100000, 100000, language, cache) {
+            @NonNull
+            @Override
+            protected InputStream openInputStream(@NonNull String url) throws IOException {
+                // The vendor lists are downloaded from the local server.
+                return super.openInputStream(url.replace(HOST, server.getURL()));
+            }
+        };
+    }
+
+    private VendorListManagerListener getEmptyListener() {
+        return new VendorListManagerListener() {
+            @Override
+            public void onVendorListUpdateSuccess(@NonNull VendorList vendorList) {
+            }
+
+            @Override
+            public void onVendorListUpdateFail(@NonNull Exception e) {
+            }
+        };
+    }
+
+    @Test
+    public void testConcurrentRequestsForTheSameVersionShareOneDownload() {
+        final int requestsCount = 5;
+        final Expectation expectationAllVendorListsRetrieved = new Expectation("All VendorLists retrieved", true);
+        final AtomicInteger retrievedCount = new AtomicInteger(0);
+
+        VendorListManager vlManager = getManager(getEmptyListener(), null, null);
+
+        // The responses are held until all the requests are made.
+        server.holdResponses();
+        for (int i = 0; i < requestsCount; i++) {
+            vlManager.getVendorList(42, new VendorListManagerListener() {
+                @Override
+                public void onVendorListUpdateSuccess(@NonNull VendorList vendorList) {
+                    Assert.assertEquals(17, vendorList.getVendors().size());
+                    if (retrievedCount.incrementAndGet() == requestsCount) {
+                        expectationAllVendorListsRetrieved.fulfill();
+                    }
+                }
+
+                @Override
+                public void onVendorListUpdateFail(@NonNull Exception e) {
+                    Assert.fail("Should not fail");
+                }
+            });
+        }
+        server.releaseResponses();
+
+        expectationAllVendorListsRetrieved.assertFulfilled(5000);
+        Assert.assertEquals(1, server.getRequestCount("/v-42/vendorlist.json"));
+        Assert.assertEquals(1, vlManager.getDownloadCount());
+    }
+
+    @Test
+    public void testConcurrentRefreshesShareOneDownload() throws InterruptedException {
+        final Expectation expectationVendorListRetrieved = new Expectation("VendorList retrieved", true);
+
+        VendorListManager vlManager = getManager(new VendorListManagerListener() {
+            @Override
+            public void onVendorListUpdateSuccess(@NonNull VendorList vendorList) {
+                Assert.assertEquals("Purpose 3 name translated", vendorList.getPurposes().get(2).getName());
+                expectationVendorListRetrieved.fulfill();
+            }
+
+            @Override
+            public void onVendorListUpdateFail(@NonNull Exception e) {
+                Assert.fail("Should not fail");
+            }
+        }, new Language("fr"), null);
+
+        server.holdResponses();
+        vlManager.refreshVendorList();
+        vlManager.refreshVendorList();
+        vlManager.resetTimer();
+        vlManager.refreshVendorList();
+        server.releaseResponses();
+
+        expectationVendorListRetrieved.assertFulfilled(5000);
+        vlManager.stopAutomaticRefresh();
+
+        // Let a second listener call (if any) fail the expectation.
+        Thread.sleep(500);
+        Assert.assertEquals(1, server.getRequestCount("/vendorlist.json"));
+        Assert.assertEquals(1, server.getRequestCount("/purposes-fr.json"));
+        Assert.assertEquals(1, vlManager.getDownloadCount());
+    }
+
+    @Test
+    public void testCachedVendorListIsRevalidated() {
+        final Expectation expectationFirstRefresh = new Expectation("First refresh", true);
+        final Expectation expectationSecondRefresh = new Expectation("Second refresh", true);
+        final AtomicInteger refreshCount = new AtomicInteger(0);
+
+        VendorListManager vlManager = getManager(new VendorListManagerListener() {
+            @Override
+            public void onVendorListUpdateSuccess(@NonNull VendorList vendorList) {
+                Assert.assertEquals(17, vendorList.getVendors().size());
+                if (refreshCount.incrementAndGet() == 1) {
+                    expectationFirstRefresh.fulfill();
+                } else {
+                    expectationSecondRefresh.fulfill();
+                }
+            }
+
+            @Override
+            public void onVendorListUpdateFail(@NonNull Exception e) {
+                Assert.fail("Should not fail");
+            }
+        }, null, getEmptyCache("testCachedVendorListIsRevalidated"));
+
+        vlManager.refreshVendorList();
+        expectationFirstRefresh.assertFulfilled(5000);
+
+        // The second download is a conditional request, answered with a '304 Not Modified'.
+        vlManager.refreshVendorList();
+        expectationSecondRefresh.assertFulfilled(5000);
+
+        Assert.assertEquals(2, server.getRequestCount("/vendorlist.json"));
+        Assert.assertEquals(1, server.getConditionalRequestCount("/vendorlist.json"));
+    }
+
+    private ExecutorService getRejectingExecutor() {
+        return new AbstractExecutorService() {
+            @Override
+            public void execute(@NonNull Runnable command) {
+                throw new RejectedExecutionException("Executor shut down");
+            }
+
+            @Override
+            public void shutdown() {
+            }
+
+            @NonNull
+            @Override
+            public List<Runnable> shutdownNow() {
+                return new ArrayList<>();
+            }
+
+            @Override
+            public boolean isShutdown() {
+                return true;
+            }
+
+            @Override
+            public boolean isTerminated() {
+                return true;
+            }
+
+            @Override
+            public boolean awaitTermination(long timeout, @NonNull TimeUnit unit) {
+                return true;
+            }
+        };
+    }
+
+    @Test
+    public void testRejectedLoadFailsAndReleasesTheKey() {
+        final Expectation expectationFirstFail = new Expectation("First load failed", true);
+        final Expectation expectationSecondFail = new Expectation("Second load failed", true);
+
+        VendorListSingleFlight singleFlight = new VendorListSingleFlight(getRejectingExecutor(), new Handler(Looper.getMainLooper()));
+        VendorListSingleFlight.Loader loader = new VendorListSingleFlight.Loader() {
+            @NonNull
+            @Override
+            public VendorList load() throws Exception {
+                throw new IllegalStateException("Should not be called");
+            }
+        };
+
+        singleFlight.load("key", loader, new VendorListManagerListener() {
+            @Override
+            public void onVendorListUpdateSuccess(@NonNull VendorList vendorList) {
+                Assert.fail("Should not succeed");
+            }
+
+            @Override
+            public void onVendorListUpdateFail(@NonNull Exception e) {
+                Assert.assertTrue(e instanceof RejectedExecutionException);
+                expectationFirstFail.fulfill();
+            }
+        });
+        expectationFirstFail.assertFulfilled(5000);
+        Assert.assertFalse(singleFlight.isLoading("key"));
+        Assert.assertEquals(0, singleFlight.getLoadCount());
+
+        // The next load of the same key is not stuck on the rejected one.
+        singleFlight.load("key", loader, new VendorListManagerListener() {
+            @Override
+            public void onVendorListUpdateSuccess(@NonNull VendorList vendorList) {
+                Assert.fail("Should not succeed");
+            }
+
+            @Override
+            public void onVendorListUpdateFail(@NonNull Exception e) {
+                expectationSecondFail.fulfill();
+            }
+        });
+        expectationSecondFail.assertFulfilled(5000);
+        Assert.assertFalse(singleFlight.isLoading("key"));
+    }
+
+    @Test
+    public void testCrashedLoadFailsAndReleasesTheKey() {
+        final Expectation expectationFail = new Expectation("Load failed", true);
+
+        // The error rethrown by the load is swallowed by the test thread.
+        Executor executor = new Executor() {
+            @Override
+            public void execute(@NonNull Runnable command) {
+                Thread thread = new Thread(command);
+                thread.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+                    @Override
+                    public void uncaughtException(Thread t, Throwable e) {
+                    }
+                });
+                thread.start();
+            }
+        };
+
+        VendorListSingleFlight singleFlight = new VendorListSingleFlight(executor, new Handler(Looper.getMainLooper()));
+        singleFlight.load("key", new VendorListSingleFlight.Loader() {
+            @NonNull
+            @Override
+            public VendorList load() {
+                throw new StackOverflowError();
+            }
+        }, new VendorListManagerListener() {
+            @Override
+            public void onVendorListUpdateSuccess(@NonNull VendorList vendorList) {
+                Assert.fail("Should not succeed");
+            }
+
+            @Override
+            public void onVendorListUpdateFail(@NonNull Exception e) {
+                Assert.assertTrue(e.getCause() instanceof StackOverflowError);
+                expectationFail.fulfill();
+            }
+        });
+
+        expectationFail.assertFulfilled(5000);
+        Assert.assertFalse(singleFlight.isLoading("key"));
+    }
+
+    @Test
+    public void testRefreshIsNotDroppedAfterARejectedLoad() {
+        final Expectation expectationFirstFail = new Expectation("First refresh failed", true);
+        final Expectation expectationSecondFail = new Expectation("Second refresh failed", true);
+        final AtomicInteger failCount = new AtomicInteger(0);
+
+        VendorListManager vlManager = new VendorListManager(new VendorListManagerListener() {
+            @Override
+            public void onVendorListUpdateSuccess(@NonNull VendorList vendorList) {
+                Assert.fail("Should not succeed");
+            }
+
+            @Override
+            public void onVendorListUpdateFail(@NonNull Exception e) {
+                if (failCount.incrementAndGet() == 1) {
+                    expectationFirstFail.fulfill();
+                } else {
+                    expectationSecondFail.fulfill();
+                }
+            }
+        }, 100000, 100000, null, -1, null, getRejectingExecutor(), null);
+
+        vlManager.refreshVendorList();
+        expectationFirstFail.assertFulfilled(5000);
+
+        // The failed refresh doesn't leave a refresh in progress.
+        vlManager.refreshVendorList();
+        expectationSecondFail.assertFulfilled(5000);
+    }
+}
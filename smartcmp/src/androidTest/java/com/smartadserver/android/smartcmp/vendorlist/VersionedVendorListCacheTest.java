@@ -0,0 +1,61 @@
+package com.smartadserver.android.smartcmp.vendorlist;
+
+import com.smartadserver.android.smartcmp.model.Feature;
+import com.smartadserver.android.smartcmp.model.Language;
+import com.smartadserver.android.smartcmp.model.Purpose;
+import com.smartadserver.android.smartcmp.model.Vendor;
+import com.smartadserver.android.smartcmp.model.VendorList;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+
+public class VersionedVendorListCacheTest {
+
+    private VendorList getVendorList(int version) {
+        return new VendorList(version, new Date(), new ArrayList<Purpose>(), new ArrayList<Feature>(), new ArrayList<Vendor>());
+    }
+
+    @Test
+    public void testVendorListsAreKeyedByVersionAndLanguage() {
+        VersionedVendorListCache cache = new VersionedVendorListCache(4);
+        VendorList vendorList = getVendorList(42);
+        VendorList localizedVendorList = getVendorList(42);
+
+        cache.put(42, null, vendorList);
+        cache.put(42, new Language("fr"), localizedVendorList);
+
+        Assert.assertSame(vendorList, cache.get(42, null));
+        Assert.assertSame(localizedVendorList, cache.get(42, new Language("fr")));
+        Assert.assertNull(cache.get(42, new Language("en")));
+        Assert.assertNull(cache.get(43, null));
+        Assert.assertEquals(2, cache.getHitCount());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedVendorListIsEvicted() {
+        VersionedVendorListCache cache = new VersionedVendorListCache(2);
+
+        cache.put(1, null, getVendorList(1));
+        cache.put(2, null, getVendorList(2));
+        Assert.assertNotNull(cache.get(1, null));
+
+        // The version 2 is the least recently used one.
+        cache.put(3, null, getVendorList(3));
+        Assert.assertEquals(2, cache.size());
+        Assert.assertNotNull(cache.get(1, null));
+        Assert.assertNull(cache.get(2, null));
+        Assert.assertNotNull(cache.get(3, null));
+
+        cache.clear();
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMaxEntriesMustBePositive() {
+        new VersionedVendorListCache(0);
+    }
+}
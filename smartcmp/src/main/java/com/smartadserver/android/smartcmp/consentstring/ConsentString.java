@@ -12,11 +12,15 @@ import com.smartadserver.android.smartcmp.model.Purpose;
 import com.smartadserver.android.smartcmp.model.Vendor;
 import com.smartadserver.android.smartcmp.model.VendorList;
 import com.smartadserver.android.smartcmp.model.VersionConfig;
+import com.smartadserver.android.smartcmp.util.Base64URLUtils;
+import com.smartadserver.android.smartcmp.util.BitReader;
 import com.smartadserver.android.smartcmp.util.BitUtils;
-import com.smartadserver.android.smartcmp.util.BitsString;
+import com.smartadserver.android.smartcmp.util.BitWriter;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Date;
 
 /**
@@ -121,18 +125,40 @@ public class ConsentString implements Parcelable {
     // The maximum vendor id id that can be found in the current vendor list.
     private int maxVendorId;
 
-    // An array of allowed purposes id.
+    // The set of allowed purposes id.
     @SuppressWarnings("NullableProblems")
     @NonNull
-    private ArrayList<Integer> allowedPurposes;
+    private BitSet allowedPurposes;
 
-    // An array of allowed vendors id.
+    // The set of allowed vendors id.
     @SuppressWarnings("NullableProblems")
     @NonNull
-    private ArrayList<Integer> allowedVendors;
+    private BitSet allowedVendors;
 
-    // The Base64 representation of the consent string.
-    private String consentString;
+    // An array of allowed purposes id, materialized lazily from the allowed purposes set (never modified once published).
+    @Nullable
+    private volatile ArrayList<Integer> allowedPurposesArray;
+
+    // An array of allowed vendors id, materialized lazily from the allowed vendors set (never modified once published).
+    @Nullable
+    private volatile ArrayList<Integer> allowedVendorsArray;
+
+    // The type of vendors encoding that should be used to generate the base64 consent string.
+    @SuppressWarnings("NullableProblems")
+    @NonNull
+    private ConsentEncoding vendorListEncoding;
+
+    // The Base64 representation of the consent string, generated on first access.
+    @Nullable
+    private volatile String consentString;
+
+    // The 'parsed purpose consents' string, generated on first access.
+    @Nullable
+    private volatile String parsedPurposeConsents;
+
+    // The 'parsed vendor consents' string, generated on first access.
+    @Nullable
+    private volatile String parsedVendorConsents;
 
     /**
      * Initialize a new instance of ConsentString using a vendor list version and a max vendor id.
@@ -171,8 +197,8 @@ public class ConsentString implements Parcelable {
                 consentLanguage,
                 vendorListVersion,
                 maxVendorId,
-                allowedPurposes,
-                allowedVendors,
+                toBitSet(allowedPurposes),
+                toBitSet(allowedVendors),
                 ConsentEncoding.AUTOMATIC);
     }
 
@@ -213,8 +239,8 @@ public class ConsentString implements Parcelable {
                 consentLanguage,
                 vendorListVersion,
                 maxVendorId,
-                allowedPurposes,
-                allowedVendors,
+                toBitSet(allowedPurposes),
+                toBitSet(allowedVendors),
                 ConsentEncoding.AUTOMATIC);
     }
 
@@ -252,8 +278,8 @@ public class ConsentString implements Parcelable {
                 consentLanguage,
                 vendorList.getVersion(),
                 vendorList.getMaxVendorId(),
-                allowedPurposes,
-                allowedVendors,
+                toBitSet(allowedPurposes),
+                toBitSet(allowedVendors),
                 ConsentEncoding.AUTOMATIC);
     }
 
@@ -273,7 +299,8 @@ public class ConsentString implements Parcelable {
                 consentString.vendorListVersion,
                 consentString.maxVendorId,
                 consentString.allowedPurposes,
-                consentString.allowedVendors);
+                consentString.allowedVendors,
+                ConsentEncoding.AUTOMATIC);
     }
 
     /**
@@ -305,6 +332,52 @@ public class ConsentString implements Parcelable {
                   @NonNull ArrayList<Integer> allowedVendors,
                   @NonNull ConsentEncoding vendorListEncoding) {
 
+        init(versionConfig,
+                created,
+                lastUpdated,
+                cmpId,
+                cmpVersion,
+                consentScreen,
+                consentLanguage,
+                vendorListVersion,
+                maxVendorId,
+                toBitSet(allowedPurposes),
+                toBitSet(allowedVendors),
+                vendorListEncoding);
+
+    }
+
+    /**
+     * Initialize a new instance of ConsentString using sets of allowed ids.
+     * <p>
+     * Note: the sets are not copied and must not be modified afterwards.
+     *
+     * @param versionConfig      The consent string version configuration.
+     * @param created            The date of the first consent string creation.
+     * @param lastUpdated        The date of the last consent string update.
+     * @param cmpId              The id of the last Consent Manager Provider that updated the consent string.
+     * @param cmpVersion         The version of the Consent Manager Provider.
+     * @param consentScreen      The screen number in the CMP where the consent was given.
+     * @param consentLanguage    The language that the CMP asked for consent in (in two-letters ISO 639-1 format).
+     * @param vendorListVersion  The version of the vendor list used in the most recent consent string update.
+     * @param maxVendorId        The maximum vendor id id that can be found in the current vendor list.
+     * @param allowedPurposes    The set of allowed purposes id.
+     * @param allowedVendors     The set of allowed vendors id.
+     * @param vendorListEncoding The type of vendors encoding that should be used to generate the base64 consent string.
+     */
+    ConsentString(@NonNull VersionConfig versionConfig,
+                  @NonNull Date created,
+                  @NonNull Date lastUpdated,
+                  int cmpId,
+                  int cmpVersion,
+                  int consentScreen,
+                  @NonNull Language consentLanguage,
+                  int vendorListVersion,
+                  int maxVendorId,
+                  @NonNull BitSet allowedPurposes,
+                  @NonNull BitSet allowedVendors,
+                  @NonNull ConsentEncoding vendorListEncoding) {
+
         init(versionConfig,
                 created,
                 lastUpdated,
@@ -317,7 +390,6 @@ public class ConsentString implements Parcelable {
                 allowedPurposes,
                 allowedVendors,
                 vendorListEncoding);
-
     }
 
     /**
@@ -332,9 +404,10 @@ public class ConsentString implements Parcelable {
      * @param consentLanguage    The language that the CMP asked for consent in (in two-letters ISO 639-1 format).
      * @param vendorListVersion  The version of the vendor list used in the most recent consent string update.
      * @param maxVendorId        The maximum vendor id id that can be found in the current vendor list.
-     * @param allowedPurposes    An array of allowed purposes id.
-     * @param allowedVendors     An array of allowed vendors id.
+     * @param allowedPurposes    The set of allowed purposes id.
+     * @param allowedVendors     The set of allowed vendors id.
      * @param vendorListEncoding The type of vendors encoding that should be used to generate the base64 consent string.
+     * @throws IllegalArgumentException When one of the values can't be encoded to bits.
      */
     private void init(@NonNull VersionConfig versionConfig,
                       @NonNull Date created,
@@ -345,9 +418,18 @@ public class ConsentString implements Parcelable {
                       @NonNull Language consentLanguage,
                       int vendorListVersion,
                       int maxVendorId,
-                      @NonNull ArrayList<Integer> allowedPurposes,
-                      @NonNull ArrayList<Integer> allowedVendors,
-                      @NonNull ConsentEncoding vendorListEncoding) {
+                      @NonNull BitSet allowedPurposes,
+                      @NonNull BitSet allowedVendors,
+                      @NonNull ConsentEncoding vendorListEncoding) throws IllegalArgumentException {
+
+        // Only the encoding is deferred: the values are checked right away, so an invalid consent string is never created.
+        checkEncodable(created.getTime() / 100, versionConfig.getCreatedBitSize(), "created date");
+        checkEncodable(lastUpdated.getTime() / 100, versionConfig.getLastUpdatedBitSize(), "last updated date");
+        checkEncodable(cmpId, versionConfig.getCmpIdBitSize(), "cmpId");
+        checkEncodable(cmpVersion, versionConfig.getCmpVersionBitSize(), "cmpVersion");
+        checkEncodable(consentScreen, versionConfig.getConsentScreenBitSize(), "consentScreen");
+        checkEncodable(vendorListVersion, versionConfig.getVendorListVersionBitSize(), "vendorListVersion");
+        checkEncodable(maxVendorId, versionConfig.getMaxVendorIdBitSize(), "maxVendorId");
 
         this.version = versionConfig.getVersion();
         this.versionConfig = versionConfig;
@@ -361,20 +443,21 @@ public class ConsentString implements Parcelable {
         this.maxVendorId = maxVendorId;
         this.allowedPurposes = allowedPurposes;
         this.allowedVendors = allowedVendors;
+        this.vendorListEncoding = vendorListEncoding;
+    }
 
-        BitsString tmp = new BitsString(true, encodeToBits(versionConfig,
-                created,
-                lastUpdated,
-                cmpId,
-                cmpVersion,
-                consentScreen,
-                consentLanguage,
-                vendorListVersion,
-                maxVendorId,
-                allowedPurposes,
-                allowedVendors,
-                vendorListEncoding));
-        this.consentString = tmp.stringValue;
+    /**
+     * Check that a value can be encoded in a consent string.
+     *
+     * @param value        The value.
+     * @param numberOfBits The number of bits used to encode the value.
+     * @param name         The name of the value, used in the exception message.
+     * @throws IllegalArgumentException If the value is negative or can't be written using the given number of bits.
+     */
+    static private void checkEncodable(long value, int numberOfBits, @NonNull String name) throws IllegalArgumentException {
+        if (value < 0 || (value >>> numberOfBits) != 0) {
+            throw new IllegalArgumentException("Illegal " + name + " " + value + ". Not possible to convert it to bits.");
+        }
     }
 
     /**
@@ -384,7 +467,7 @@ public class ConsentString implements Parcelable {
      * @return true if the purpose is allowed, false otherwise.
      */
     public boolean isPurposeAllowed(int purposeId) {
-        return allowedPurposes.contains(purposeId);
+        return purposeId >= 0 && allowedPurposes.get(purposeId);
     }
 
     /**
@@ -394,36 +477,54 @@ public class ConsentString implements Parcelable {
      * @return true if the vendor is allowed, false otherwise.
      */
     public boolean isVendorAllowed(int vendorId) {
-        return allowedVendors.contains(vendorId);
+        return vendorId >= 0 && allowedVendors.get(vendorId);
+    }
+
+    /**
+     * @return A copy of the allowed purposes set, as words of 64 bits (bit n is purpose id n).
+     */
+    @NonNull
+    long[] allowedPurposesWords() {
+        return allowedPurposes.toLongArray();
+    }
+
+    /**
+     * @return A copy of the allowed vendors set, as words of 64 bits (bit n is vendor id n).
+     */
+    @NonNull
+    long[] allowedVendorsWords() {
+        return allowedVendors.toLongArray();
     }
 
     /**
      * Returns 'parsed purpose consents' string that can be stored in the IABConsent_ParsedPurposeConsents key.
+     * <p>
+     * Note: the string is only generated on the first call, then reused.
      *
      * @return The 'parsed purpose consents' string that can be stored in the IABConsent_ParsedPurposeConsents key.
      */
     public String parsedPurposeConsents() {
-        String consents = "";
-
-        for (int i = 1; i <= versionConfig.getAllowedPurposesBitSize(); i++) {
-            consents = consents.concat(allowedPurposes.contains(i) ? "1" : "0");
+        String consents = parsedPurposeConsents;
+        if (consents == null) {
+            consents = parsedConsents(allowedPurposes, versionConfig.getAllowedPurposesBitSize());
+            parsedPurposeConsents = consents;
         }
-
         return consents;
     }
 
     /**
      * Returns The 'parsed vendor consents' string that can be stored in the IABConsent_ParsedVendorConsents key.
+     * <p>
+     * Note: the string is only generated on the first call, then reused.
      *
      * @return The 'parsed vendor consents' string that can be stored in the IABConsent_ParsedVendorConsents key.
      */
     public String parsedVendorConsents() {
-        String consents = "";
-
-        for (int i = 1; i <= maxVendorId; i++) {
-            consents = consents.concat(allowedVendors.contains(i) ? "1" : "0");
+        String consents = parsedVendorConsents;
+        if (consents == null) {
+            consents = parsedConsents(allowedVendors, maxVendorId);
+            parsedVendorConsents = consents;
         }
-
         return consents;
     }
 
@@ -436,8 +537,7 @@ public class ConsentString implements Parcelable {
      * @throws UnknownVersionNumberException if the ConsentString version number is not valid.
      */
     static public ConsentString fromBase64String(@NonNull String base64String) throws UnknownVersionNumberException, IllegalArgumentException {
-        String bits = new BitsString(false, base64String).bitsValue;
-        return ConsentString.decodeFromBits(bits);
+        return ConsentString.decodeFromBytes(Base64URLUtils.decodeBytes(base64String));
     }
 
     @SuppressWarnings("SimplifiableIfStatement")
@@ -473,8 +573,9 @@ public class ConsentString implements Parcelable {
     //////////////////
 
     /**
-     * Return a base64 consent string corresponding to the ConsentString instance.
+     * Write the bits of the consent string corresponding to the ConsentString instance.
      *
+     * @param writer             The BitWriter where the consent string will be written.
      * @param versionConfig      The consent string version configuration.
      * @param created            The date of the first consent string creation.
      * @param lastUpdated        The date of the last consent string update.
@@ -484,62 +585,56 @@ public class ConsentString implements Parcelable {
      * @param consentLanguage    The language that the CMP asked for consent in (in two-letters ISO 639-1 format).
      * @param vendorListVersion  The version of the vendor list used in the most recent consent string update.
      * @param maxVendorId        The maximum vendor id id that can be found in the current vendor list.
-     * @param allowedPurposes    An array of allowed purposes id.
-     * @param allowedVendors     An array of allowed vendors id.
+     * @param allowedPurposes    The set of allowed purposes id.
+     * @param allowedVendors     The set of allowed vendors id.
      * @param vendorListEncoding The type of vendors encoding that should be used to generate the base64 consent string.
-     * @return A base64 consent string corresponding to the ConsentString instance.
-     * @throws IllegalArgumentException When one of the arguments can't be encoded to bits string.
+     * @throws IllegalArgumentException When one of the arguments can't be encoded to bits.
      */
-    static private String encodeToBits(@NonNull VersionConfig versionConfig,
-                                       @NonNull Date created,
-                                       @NonNull Date lastUpdated,
-                                       int cmpId,
-                                       int cmpVersion,
-                                       int consentScreen,
-                                       @NonNull Language consentLanguage,
-                                       int vendorListVersion,
-                                       int maxVendorId,
-                                       @NonNull ArrayList<Integer> allowedPurposes,
-                                       @NonNull ArrayList<Integer> allowedVendors,
-                                       ConsentEncoding vendorListEncoding) throws IllegalArgumentException {
-
-        ArrayList<String> bitsArray = new ArrayList<>();
-        bitsArray.add(BitUtils.longToBits(versionConfig.getVersion(), VersionConfig.getVersionBitSize()));
-        bitsArray.add(BitUtils.dateToBits(created, versionConfig.getCreatedBitSize()));
-        bitsArray.add(BitUtils.dateToBits(lastUpdated, versionConfig.getLastUpdatedBitSize()));
-        bitsArray.add(BitUtils.longToBits(cmpId, versionConfig.getCmpIdBitSize()));
-        bitsArray.add(BitUtils.longToBits(cmpVersion, versionConfig.getCmpVersionBitSize()));
-        bitsArray.add(BitUtils.longToBits(consentScreen, versionConfig.getConsentScreenBitSize()));
-        bitsArray.add(BitUtils.languageToBits(consentLanguage, versionConfig.getConsentLanguageBitSize()));
-        bitsArray.add(BitUtils.longToBits(vendorListVersion, versionConfig.getVendorListVersionBitSize()));
-        bitsArray.add(purposesBitField(versionConfig, allowedPurposes));
-
-        String bits = "";
-        for (String str : bitsArray) {
-            if (str == null) {
-                throw new IllegalArgumentException("One of the arguments is illegal. Not possible to convert it to bits string.");
-            }
-
-            bits = bits.concat(str);
-        }
+    static private void encodeToBits(@NonNull BitWriter writer,
+                                     @NonNull VersionConfig versionConfig,
+                                     @NonNull Date created,
+                                     @NonNull Date lastUpdated,
+                                     int cmpId,
+                                     int cmpVersion,
+                                     int consentScreen,
+                                     @NonNull Language consentLanguage,
+                                     int vendorListVersion,
+                                     int maxVendorId,
+                                     @NonNull BitSet allowedPurposes,
+                                     @NonNull BitSet allowedVendors,
+                                     ConsentEncoding vendorListEncoding) throws IllegalArgumentException {
+
+        writer.writeLong(versionConfig.getVersion(), VersionConfig.getVersionBitSize());
+        writer.writeDate(created, versionConfig.getCreatedBitSize());
+        writer.writeDate(lastUpdated, versionConfig.getLastUpdatedBitSize());
+        writer.writeLong(cmpId, versionConfig.getCmpIdBitSize());
+        writer.writeLong(cmpVersion, versionConfig.getCmpVersionBitSize());
+        writer.writeLong(consentScreen, versionConfig.getConsentScreenBitSize());
+        writer.writeLanguage(consentLanguage, versionConfig.getConsentLanguageBitSize());
+        writer.writeLong(vendorListVersion, versionConfig.getVendorListVersionBitSize());
+        purposesBitField(writer, versionConfig, allowedPurposes);
 
         switch (vendorListEncoding) {
             case BITFIELD:
-                bits = bits.concat(vendorListBitfield(versionConfig, maxVendorId, allowedVendors));
+                vendorListBitfield(writer, versionConfig, maxVendorId, allowedVendors);
                 break;
 
             case RANGE:
-                bits = bits.concat(vendorListRange(versionConfig, maxVendorId, allowedVendors, false));
+                vendorListRange(writer, versionConfig, maxVendorId, ranges(maxVendorId, allowedVendors, false), false);
                 break;
 
             case AUTOMATIC:
-                String bitfield = vendorListBitfield(versionConfig, maxVendorId, allowedVendors);
-                String range = vendorListRange(versionConfig, maxVendorId, allowedVendors, false);
-                bits = bits.concat(bitfield.length() < range.length() ? bitfield : range); // automatic select the most efficient encoding.
+                // The ranges are computed once and both encoding sizes are deduced from them, without writing anything.
+                ArrayList<Range> ranges = ranges(maxVendorId, allowedVendors, false);
+
+                // automatic select the most efficient encoding.
+                if (vendorListBitfieldSize(versionConfig, maxVendorId) < vendorListRangeSize(versionConfig, ranges)) {
+                    vendorListBitfield(writer, versionConfig, maxVendorId, allowedVendors);
+                } else {
+                    vendorListRange(writer, versionConfig, maxVendorId, ranges, false);
+                }
                 break;
         }
-
-        return bits;
     }
 
     /**
@@ -621,156 +716,189 @@ public class ConsentString implements Parcelable {
     }
 
     /**
-     * @return ConsentString's allowed purposes.
+     * Note: the ids are listed on the first call only. Each caller gets its own copy of the list, so the list shared
+     * between threads is never modified.
+     *
+     * @return ConsentString's allowed purposes, sorted by id.
      */
     @NonNull
     public ArrayList<Integer> getAllowedPurposes() {
-        return allowedPurposes;
+        // The list is built in a local variable and published once complete, so other threads never see it partially built.
+        ArrayList<Integer> allowedPurposesArray = this.allowedPurposesArray;
+        if (allowedPurposesArray == null) {
+            allowedPurposesArray = toArrayList(allowedPurposes);
+            this.allowedPurposesArray = allowedPurposesArray;
+        }
+        return new ArrayList<>(allowedPurposesArray);
     }
 
     /**
-     * @return ConsentString's allowed vendors.
+     * Note: the ids are listed on the first call only. Each caller gets its own copy of the list, so the list shared
+     * between threads is never modified.
+     *
+     * @return ConsentString's allowed vendors, sorted by id.
      */
     @NonNull
     public ArrayList<Integer> getAllowedVendors() {
-        return allowedVendors;
+        ArrayList<Integer> allowedVendorsArray = this.allowedVendorsArray;
+        if (allowedVendorsArray == null) {
+            allowedVendorsArray = toArrayList(allowedVendors);
+            this.allowedVendorsArray = allowedVendorsArray;
+        }
+        return new ArrayList<>(allowedVendorsArray);
     }
 
     /**
+     * Return the base64URL encoded consent string.
+     * <p>
+     * Note: the string is only encoded on the first call, then reused.
+     *
      * @return The base64URL encoded consent string.
+     * @throws IllegalArgumentException When one of the consent string values can't be encoded to bits.
      */
-    public String getConsentString() {
+    public String getConsentString() throws IllegalArgumentException {
+        // The encoding is deterministic: if two threads race here, they will both compute the same string.
+        String consentString = this.consentString;
+        if (consentString == null) {
+            BitWriter writer = new BitWriter();
+            encodeToBits(writer,
+                    versionConfig,
+                    created,
+                    lastUpdated,
+                    cmpId,
+                    cmpVersion,
+                    consentScreen,
+                    consentLanguage,
+                    vendorListVersion,
+                    maxVendorId,
+                    allowedPurposes,
+                    allowedVendors,
+                    vendorListEncoding);
+            consentString = Base64URLUtils.getBase64URL(writer.toByteArray());
+            this.consentString = consentString;
+        }
         return consentString;
     }
 
     /**
-     * Return a bitfield string that encodes an 'allowed purposes' array.
+     * Write a bitfield that encodes an 'allowed purposes' array.
      *
+     * @param writer          The BitWriter where the bitfield will be written.
      * @param versionConfig   The consent string version configuration.
-     * @param allowedPurposes An array of allowed purposes id.
-     * @return A bitfield string that encodes an 'allowed purposes' array.
+     * @param allowedPurposes The set of allowed purposes id.
      */
-    static private String purposesBitField(@NonNull VersionConfig versionConfig, @NonNull ArrayList<Integer> allowedPurposes) {
-        String bits = "";
-
-        for (Integer idx = 1; idx <= versionConfig.getAllowedPurposesBitSize(); idx++) {
-            bits = bits.concat(allowedPurposes.contains(idx) ? "1" : "0");
+    static private void purposesBitField(@NonNull BitWriter writer, @NonNull VersionConfig versionConfig, @NonNull BitSet allowedPurposes) {
+        for (int idx = 1; idx <= versionConfig.getAllowedPurposesBitSize(); idx++) {
+            writer.writeBit(allowedPurposes.get(idx));
         }
-
-        return bits;
     }
 
     /**
-     * Return a bitfield string that encodes an 'allowed vendors' array.
+     * Write a bitfield that encodes an 'allowed vendors' array.
      *
+     * @param writer         The BitWriter where the bitfield will be written.
      * @param versionConfig  The consent string version configuration.
      * @param maxVendorId    The maximum vendor id that can be found in the current vendor list.
-     * @param allowedVendors An array of allowed vendors id.
-     * @return A bitfield string that encodes an 'allowed vendors' array.
+     * @param allowedVendors The set of allowed vendors id.
+     * @throws IllegalArgumentException When the maxVendorId can't be encoded to bits.
      */
-    static private String vendorListBitfield(@NonNull VersionConfig versionConfig, int maxVendorId, @NonNull ArrayList<Integer> allowedVendors) throws IllegalArgumentException {
-        String maxVendorIdBits = BitUtils.longToBits(maxVendorId, versionConfig.getMaxVendorIdBitSize());
-
-        if (maxVendorIdBits == null) {
-            throw new IllegalArgumentException("Illegal maxVendorId. Not possible to convert it to bits string.");
-        }
+    static private void vendorListBitfield(@NonNull BitWriter writer, @NonNull VersionConfig versionConfig, int maxVendorId, @NonNull BitSet allowedVendors) throws IllegalArgumentException {
+        writer.writeLong(maxVendorId, versionConfig.getMaxVendorIdBitSize());
+        writer.writeBits(versionConfig.getEncodingTypeBitfield());
 
-        String bits = "".concat(maxVendorIdBits)
-                .concat(versionConfig.getEncodingTypeBitfield());
-
-        for (Integer idx = 1; idx <= maxVendorId; idx++) {
-            bits = bits.concat(allowedVendors.contains(idx) ? "1" : "0");
+        for (int idx = 1; idx <= maxVendorId; idx++) {
+            writer.writeBit(allowedVendors.get(idx));
         }
-
-        return bits;
     }
 
     /**
-     * Return a complete range string that encodes an 'allowed vendors' array.
+     * Return the number of bits needed to encode an 'allowed vendors' bitfield.
      *
-     * @param versionConfig  The consent string version configuration.
-     * @param maxVendorId    The maximum vendor id that can be found in the current vendor list.
-     * @param allowedVendors An array of allowed vendors id.
-     * @param defaultValue   the default consent value.
-     * @return A range string that encodes an 'allowed vendors' array.
+     * @param versionConfig The consent string version configuration.
+     * @param maxVendorId   The maximum vendor id that can be found in the current vendor list.
+     * @return The number of bits needed to encode the bitfield.
      */
-    static private String vendorListRange(@NonNull VersionConfig versionConfig, int maxVendorId, @NonNull ArrayList<Integer> allowedVendors, boolean defaultValue) throws IllegalArgumentException {
-        String maxVendorIdBits = BitUtils.longToBits(maxVendorId, versionConfig.getMaxVendorIdBitSize());
-        String defaultConsentBits = BitUtils.boolToBits(defaultValue, versionConfig.getDefaultConsentBitSize());
+    static private int vendorListBitfieldSize(@NonNull VersionConfig versionConfig, int maxVendorId) {
+        return versionConfig.getMaxVendorIdBitSize()
+                + versionConfig.getEncodingTypeBitSize()
+                + maxVendorId;
+    }
 
-        ArrayList<Range> ranges = ranges(maxVendorId, allowedVendors, defaultValue);
-        String numEntriesBits = BitUtils.longToBits(ranges.size(), versionConfig.getNumEntriesBitSize());
+    /**
+     * Write a complete range that encodes an 'allowed vendors' array.
+     *
+     * @param writer        The BitWriter where the range will be written.
+     * @param versionConfig The consent string version configuration.
+     * @param maxVendorId   The maximum vendor id that can be found in the current vendor list.
+     * @param ranges        The ranges of vendors id that are not set to the default value.
+     * @param defaultValue  the default consent value.
+     * @throws IllegalArgumentException When one of the arguments can't be encoded to bits.
+     */
+    static private void vendorListRange(@NonNull BitWriter writer, @NonNull VersionConfig versionConfig, int maxVendorId, @NonNull ArrayList<Range> ranges, boolean defaultValue) throws IllegalArgumentException {
+        writer.writeLong(maxVendorId, versionConfig.getMaxVendorIdBitSize());
+        writer.writeBits(versionConfig.getEncodingTypeRange());
+        writer.writeBoolean(defaultValue, versionConfig.getDefaultConsentBitSize());
+        writer.writeLong(ranges.size(), versionConfig.getNumEntriesBitSize());
 
-        if (maxVendorIdBits == null || defaultConsentBits == null || numEntriesBits == null) {
-            throw new IllegalArgumentException("One of the arguments is illegal. Not possible to convert it to bits string.");
+        for (Range range : ranges) {
+            if (range.length() > 1) {
+                writer.writeBits(versionConfig.getRangeStartEndId());
+                writer.writeLong(range.lowerBound, versionConfig.getStartVendorIdBitSize());
+                writer.writeLong(range.higherBound, versionConfig.getEndVendorIdBitSize());
+            } else {
+                writer.writeBits(versionConfig.getRangeSingleId());
+                writer.writeLong(range.lowerBound, versionConfig.getSingleVendorIdBitSize());
+            }
         }
+    }
 
-        String bits = "".concat(maxVendorIdBits)
-                .concat(versionConfig.getEncodingTypeRange())
-                .concat(defaultConsentBits)
-                .concat(numEntriesBits);
+    /**
+     * Return the number of bits needed to encode an 'allowed vendors' range.
+     *
+     * @param versionConfig The consent string version configuration.
+     * @param ranges        The ranges of vendors id that are not set to the default value.
+     * @return The number of bits needed to encode the range.
+     */
+    static private int vendorListRangeSize(@NonNull VersionConfig versionConfig, @NonNull ArrayList<Range> ranges) {
+        int size = versionConfig.getMaxVendorIdBitSize()
+                + versionConfig.getEncodingTypeBitSize()
+                + versionConfig.getDefaultConsentBitSize()
+                + versionConfig.getNumEntriesBitSize();
 
         for (Range range : ranges) {
+            size += versionConfig.getSingleOrRangeBitSize();
             if (range.length() > 1) {
-                String startVendorBits = BitUtils.longToBits(range.lowerBound, versionConfig.getStartVendorIdBitSize());
-                String endVendorBits = BitUtils.longToBits(range.higherBound, versionConfig.getEndVendorIdBitSize());
-
-                if (startVendorBits == null || endVendorBits == null) {
-                    throw new IllegalArgumentException("One of the arguments is illegal. Not possible to convert it to bits string.");
-                }
-
-                bits = bits.concat(versionConfig.getRangeStartEndId())
-                        .concat(startVendorBits)
-                        .concat(endVendorBits);
+                size += versionConfig.getStartVendorIdBitSize() + versionConfig.getEndVendorIdBitSize();
             } else {
-                String singleVendorBits = BitUtils.longToBits(range.lowerBound, versionConfig.getSingleVendorIdBitSize());
-
-                if (singleVendorBits == null) {
-                    throw new IllegalArgumentException("One of the arguments is illegal. Not possible to convert it to bits string.");
-                }
-
-                bits = bits.concat(versionConfig.getRangeSingleId())
-                        .concat(singleVendorBits);
+                size += versionConfig.getSingleVendorIdBitSize();
             }
         }
 
-        return bits;
+        return size;
     }
 
     /**
      * Return an ArrayList of Ranges corresponding to an allowed vendors array, for a given default value.
      *
      * @param maxVendorId    The maximum vendor id that can be found in the current vendor list.
-     * @param allowedVendors An array of allowed vendors id.
+     * @param allowedVendors The set of allowed vendors id.
      * @param defaultValue   The default consent value.
-     * @return An ArrayList of Ranges corresponding to an allowed vendors array, for a given default value.
+     * @return An ArrayList of Ranges corresponding to an allowed vendors set, for a given default value.
      */
-    static private ArrayList<Range> ranges(int maxVendorId, @NonNull ArrayList<Integer> allowedVendors, boolean defaultValue) {
-
-        boolean[] vendorsArray = new boolean[maxVendorId];
-        for (int i = 0; i < maxVendorId; i++) {
-            vendorsArray[i] = allowedVendors.contains(i + 1);
-        }
-
-        int currentId = 1;
-        Integer startId = null;
+    static private ArrayList<Range> ranges(int maxVendorId, @NonNull BitSet allowedVendors, boolean defaultValue) {
         ArrayList<Range> ranges = new ArrayList<>();
 
-        for (boolean allowed : vendorsArray) {
-            // Finding start and end bounds of each range.
-            if (startId == null && allowed != defaultValue) {
-                startId = currentId;
-            } else if (startId != null && allowed == defaultValue) {
-                ranges.add(new Range(startId, currentId - 1));
-                startId = null;
+        // Jumping from one range bound to the next, so the cost only depends on the number of ranges.
+        int startId = defaultValue ? allowedVendors.nextClearBit(1) : allowedVendors.nextSetBit(1);
+        while (startId >= 1 && startId <= maxVendorId) {
+            int endId = (defaultValue ? allowedVendors.nextSetBit(startId) : allowedVendors.nextClearBit(startId)) - 1;
+            if (endId < startId || endId > maxVendorId) {
+                // Closing the last range if needed.
+                endId = maxVendorId;
             }
+            ranges.add(new Range(startId, endId));
 
-            currentId++;
-        }
-
-        if (startId != null) {
-            // Closing the last range if needed.
-            ranges.add(new Range(startId, currentId - 1));
+            startId = defaultValue ? allowedVendors.nextClearBit(endId + 1) : allowedVendors.nextSetBit(endId + 1);
         }
 
         return ranges;
@@ -781,212 +909,181 @@ public class ConsentString implements Parcelable {
     //////////////////
 
     /**
-     * Representation of a bits buffer.
-     */
-    static private class BitsBuffer {
-
-        // The bits buffer.
-        @NonNull
-        private String buffer;
-
-        /**
-         * Initialize a BitsBuffer using a string of bits.
-         *
-         * @param bits A string of bits.
-         */
-        public BitsBuffer(@NonNull String bits) {
-            buffer = bits;
-        }
-
-        /**
-         * Return a chunk of bits from a given size and remove them from the buffer.
-         *
-         * @param numberOfBits the number of bits to pop.
-         * @return The chunk of bits removed from the buffer.
-         */
-        public String pop(int numberOfBits) {
-            String result = buffer.substring(0, numberOfBits);
-            buffer = buffer.substring(numberOfBits);
-            return result;
-        }
-    }
-
-    /**
-     * Decode a ConsentString from a string of bits.
+     * Decode a ConsentString from a byte array.
      *
-     * @param bits A valid string of bits.
-     * @return A ConsentString instance if the string of bits can be decoded, nil otherwise.
+     * @param bytes A valid byte array.
+     * @return A ConsentString instance if the byte array can be decoded, null otherwise.
+     * @throws UnknownVersionNumberException If the ConsentString version number is not valid.
+     * @throws IllegalArgumentException      If the byte array does not contain enough bits.
      */
-    static private ConsentString decodeFromBits(@NonNull String bits) throws UnknownVersionNumberException, IllegalArgumentException {
-        if (!BitsString.isValidBitsString(bits)) {
-            return null;
-        }
-
-        BitsBuffer buffer = new BitsBuffer(bits);
+    static private ConsentString decodeFromBytes(@NonNull byte[] bytes) throws UnknownVersionNumberException, IllegalArgumentException {
+        BitReader reader = new BitReader(bytes);
 
-        Long version = BitUtils.bitsToLong(buffer.pop(VersionConfig.getVersionBitSize()));
-        if (version == null) {
-            return null;
-        }
+        int version = reader.readInt(VersionConfig.getVersionBitSize());
+        VersionConfig versionConfig = new VersionConfig(version);
 
-        VersionConfig versionConfig = new VersionConfig(version.intValue());
-
-        Date created = BitUtils.bitsToDate(buffer.pop(versionConfig.getCreatedBitSize()));
-        Date lastUpdated = BitUtils.bitsToDate(buffer.pop(versionConfig.getLastUpdatedBitSize()));
-        Long cmpId = BitUtils.bitsToLong(buffer.pop(versionConfig.getCmpIdBitSize()));
-        Long cmpVersion = BitUtils.bitsToLong(buffer.pop(versionConfig.getCmpVersionBitSize()));
-        Long consentScreen = BitUtils.bitsToLong(buffer.pop(versionConfig.getConsentScreenBitSize()));
-        Language consentLanguage = BitUtils.bitsToLanguage(buffer.pop(versionConfig.getConsentLanguageBitSize()));
-        Long vendorListVersion = BitUtils.bitsToLong(buffer.pop(versionConfig.getVendorListVersionBitSize()));
-        ArrayList<Integer> allowedPurposes = consentArray(buffer.pop(versionConfig.getAllowedPurposesBitSize()));
-        Long maxVendorId = BitUtils.bitsToLong(buffer.pop(versionConfig.getMaxVendorIdBitSize()));
-        String encodingType = buffer.pop(versionConfig.getEncodingTypeBitSize());
-
-        if (created == null
-                || lastUpdated == null
-                || cmpId == null
-                || cmpVersion == null
-                || consentScreen == null
-                || consentLanguage == null
-                || vendorListVersion == null
-                || allowedPurposes == null
-                || maxVendorId == null
-                || !(encodingType != null && encodingType.length() == versionConfig.getEncodingTypeBitSize())) {
+        Date created = reader.readDate(versionConfig.getCreatedBitSize());
+        Date lastUpdated = reader.readDate(versionConfig.getLastUpdatedBitSize());
+        int cmpId = reader.readInt(versionConfig.getCmpIdBitSize());
+        int cmpVersion = reader.readInt(versionConfig.getCmpVersionBitSize());
+        int consentScreen = reader.readInt(versionConfig.getConsentScreenBitSize());
+        Language consentLanguage = reader.readLanguage(versionConfig.getConsentLanguageBitSize());
+        int vendorListVersion = reader.readInt(versionConfig.getVendorListVersionBitSize());
+        BitSet allowedPurposes = consentSet(reader, versionConfig.getAllowedPurposesBitSize());
+        int maxVendorId = reader.readInt(versionConfig.getMaxVendorIdBitSize());
+        int encodingType = reader.readInt(versionConfig.getEncodingTypeBitSize());
+
+        if (consentLanguage == null) {
             return null;
         }
 
-        ArrayList<Integer> allowedVendors;
+        BitSet allowedVendors;
 
-        if (encodingType.equals(versionConfig.getEncodingTypeBitfield())) {
-            allowedVendors = allowedVendorsFromBitfield(buffer, maxVendorId.intValue());
-        } else if (encodingType.equals(versionConfig.getEncodingTypeRange())) {
-            allowedVendors = allowedVendorsFromRange(versionConfig, buffer, maxVendorId.intValue());
+        if (encodingType == BitUtils.bitsToLong(versionConfig.getEncodingTypeBitfield())) {
+            allowedVendors = consentSet(reader, maxVendorId);
+        } else if (encodingType == BitUtils.bitsToLong(versionConfig.getEncodingTypeRange())) {
+            allowedVendors = allowedVendorsFromRange(versionConfig, reader, maxVendorId);
         } else {
             return null; // invalid encoding.
         }
 
-        if (allowedVendors != null) {
-            return new ConsentString(versionConfig,
-                    created,
-                    lastUpdated,
-                    cmpId.intValue(),
-                    cmpVersion.intValue(),
-                    consentScreen.intValue(),
-                    consentLanguage,
-                    vendorListVersion.intValue(),
-                    maxVendorId.intValue(),
-                    allowedPurposes,
-                    allowedVendors);
-        }
-
-        return null;
+        return new ConsentString(versionConfig,
+                created,
+                lastUpdated,
+                cmpId,
+                cmpVersion,
+                consentScreen,
+                consentLanguage,
+                vendorListVersion,
+                maxVendorId,
+                allowedPurposes,
+                allowedVendors,
+                ConsentEncoding.AUTOMATIC);
     }
 
     /**
-     * Convert a valid bitfield into a consent array.
+     * Read a bitfield into a consent set.
      *
-     * @param bitfield A valid bitfield.
-     * @return A consent array.
+     * @param reader       The BitReader from where the bitfield will be read.
+     * @param numberOfBits The size of the bitfield.
+     * @return A consent set.
+     * @throws IllegalArgumentException If the reader does not contain enough bits.
      */
-    static private ArrayList<Integer> consentArray(@NonNull String bitfield) {
-        ArrayList<Integer> consentArray = new ArrayList<>();
-
-        int idx = 1;
-        for (char c : bitfield.toCharArray()) {
-            if (c == '1') {
-                consentArray.add(idx);
-            }
-            idx++;
+    static private BitSet consentSet(@NonNull BitReader reader, int numberOfBits) throws IllegalArgumentException {
+        if (numberOfBits > reader.remaining()) {
+            throw new IllegalArgumentException("Not enough bits to read a bitfield of " + numberOfBits + " bits.");
         }
 
-        return consentArray;
-    }
+        BitSet consentSet = new BitSet(numberOfBits + 1);
 
-    /**
-     * Decode an allowed vendors arrays from a bitfield encoded buffer.
-     *
-     * @param buffer      The BitsBuffer from where the bitfield will be retrieved.
-     * @param maxVendorId The maximum vendor id that can be found in the current vendor list.
-     * @return An allowed vendors array if the buffer can be decoded, null otherwise.
-     */
-    static private ArrayList<Integer> allowedVendorsFromBitfield(@NonNull BitsBuffer buffer, int maxVendorId) {
-        String vendorConsentBits = buffer.pop(maxVendorId);
-        if (vendorConsentBits.length() != maxVendorId) {
-            return null;
+        for (int idx = 1; idx <= numberOfBits; idx++) {
+            if (reader.readBit()) {
+                consentSet.set(idx);
+            }
         }
 
-        return consentArray(vendorConsentBits);
+        return consentSet;
     }
 
     /**
-     * Decode an allowed vendors arrays from a range encoded buffer.
+     * Decode an allowed vendors set from a range encoded reader.
      *
      * @param versionConfig The consent string version configuration.
-     * @param buffer        The BitsBuffer from where the range will be retrieved.
+     * @param reader        The BitReader from where the range will be retrieved.
      * @param maxVendorId   The maximum vendor id that can be found in the current vendor list.
-     * @return An allowed vendors array if the buffer can be decoded, null otherwise.
+     * @return An allowed vendors set.
+     * @throws IllegalArgumentException If the reader does not contain enough bits.
      */
-    static private ArrayList<Integer> allowedVendorsFromRange(@NonNull VersionConfig versionConfig, @NonNull BitsBuffer buffer, int maxVendorId) {
-        Boolean defaultValue = BitUtils.bitsToBool(buffer.pop(versionConfig.getDefaultConsentBitSize()));
-        Long numEntries = BitUtils.bitsToLong(buffer.pop(versionConfig.getNumEntriesBitSize()));
-
-        if (defaultValue != null && numEntries != null) {
-            ArrayList<Integer> vendors = new ArrayList<>();
+    static private BitSet allowedVendorsFromRange(@NonNull VersionConfig versionConfig, @NonNull BitReader reader, int maxVendorId) throws IllegalArgumentException {
+        boolean defaultValue = reader.readBoolean(versionConfig.getDefaultConsentBitSize());
+        int numEntries = reader.readInt(versionConfig.getNumEntriesBitSize());
 
-            // Converting every range into an array of vendor id
-            for (int i = 0; i < numEntries; i++) {
+        long rangeSingleId = BitUtils.bitsToLong(versionConfig.getRangeSingleId());
+        BitSet vendors = new BitSet(maxVendorId + 1);
 
-                String singleOrRange = buffer.pop(versionConfig.getSingleOrRangeBitSize());
-                if (singleOrRange.length() != versionConfig.getSingleOrRangeBitSize()) {
-                    return null;
-                }
-
-                if (singleOrRange.equals(versionConfig.getRangeSingleId())) {
-                    Long singleId = BitUtils.bitsToLong(buffer.pop(versionConfig.getSingleVendorIdBitSize()));
-                    if (singleId != null) {
-                        vendors.add(singleId.intValue());
-                    } else {
-                        return null;
-                    }
-
-                } else if (singleOrRange.equals(versionConfig.getRangeStartEndId())) {
-                    Long startId = BitUtils.bitsToLong(buffer.pop(versionConfig.getStartVendorIdBitSize()));
-                    Long endId = BitUtils.bitsToLong(buffer.pop(versionConfig.getEndVendorIdBitSize()));
-
-                    if (startId != null && endId != null) {
-                        for (int idx = startId.intValue(); idx <= endId.intValue(); idx++) {
-                            vendors.add(idx);
-                        }
-                    } else {
-                        return null;
-                    }
+        // Accumulating every range into the vendor id set.
+        for (int i = 0; i < numEntries; i++) {
 
-                } else {
-                    return null;
-                }
+            if (reader.readLong(versionConfig.getSingleOrRangeBitSize()) == rangeSingleId) {
+                vendors.set(reader.readInt(versionConfig.getSingleVendorIdBitSize()));
+            } else {
+                int startId = reader.readInt(versionConfig.getStartVendorIdBitSize());
+                int endId = reader.readInt(versionConfig.getEndVendorIdBitSize());
 
-                // Inverting the vendor id array if the consent is true by default.
-                if (defaultValue) {
-                    ArrayList<Integer> oldArray = vendors;
-                    vendors = new ArrayList<>();
-                    for (int idx = 0; idx < maxVendorId; idx++) {
-                        if (!oldArray.contains(idx)) {
-                            vendors.add(idx);
-                        }
-                    }
+                if (startId <= endId) {
+                    vendors.set(startId, endId + 1);
                 }
             }
+        }
 
-            return vendors;
+        // Inverting the vendor id set once if the consent is true by default: every vendor between 1 and maxVendorId
+        // is allowed, except the ones found in the ranges.
+        if (defaultValue) {
+            vendors.clear(0);
+            vendors.clear(maxVendorId + 1, Math.max(maxVendorId + 1, vendors.length()));
+            vendors.flip(1, maxVendorId + 1);
         }
 
-        return null;
+        return vendors;
     }
 
     ///////////////
     //// Utils ////
     ///////////////
 
+    /**
+     * Convert an array of ids into a set of ids.
+     *
+     * @param ids An array of ids (negative ids are ignored).
+     * @return A set containing every id of the array.
+     */
+    @NonNull
+    static private BitSet toBitSet(@NonNull ArrayList<Integer> ids) {
+        BitSet set = new BitSet();
+        for (Integer id : ids) {
+            if (id != null && id >= 0) {
+                set.set(id);
+            }
+        }
+        return set;
+    }
+
+    /**
+     * Convert a set of ids into an array of ids sorted in ascending order.
+     *
+     * @param set A set of ids.
+     * @return An array containing every id of the set.
+     */
+    @NonNull
+    static private ArrayList<Integer> toArrayList(@NonNull BitSet set) {
+        ArrayList<Integer> ids = new ArrayList<>(set.cardinality());
+        for (int id = set.nextSetBit(0); id >= 0; id = set.nextSetBit(id + 1)) {
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    /**
+     * Convert a set of allowed ids into a 'parsed consents' string, in a single pass over the set bits.
+     *
+     * @param set   The set of allowed ids.
+     * @param count The number of ids represented by the string (ids 1 to count).
+     * @return A string of count characters, the character at index i being '1' if the id i + 1 is allowed, '0' otherwise.
+     */
+    @NonNull
+    static private String parsedConsents(@NonNull BitSet set, int count) {
+        if (count <= 0) {
+            return "";
+        }
+
+        char[] consents = new char[count];
+        Arrays.fill(consents, '0');
+        for (int id = set.nextSetBit(1); id >= 0 && id <= count; id = set.nextSetBit(id + 1)) {
+            consents[id - 1] = '1';
+        }
+        return new String(consents);
+    }
+
     /**
      * Return the number of activated vendors allowed from the given vendor list.
      *
@@ -1028,17 +1125,15 @@ public class ConsentString implements Parcelable {
      */
     static public ConsentString consentStringWithNoConsent(int consentScreen, @NonNull Language consentLanguage, @NonNull VendorList vendorList, @NonNull Date date) {
         //noinspection ConstantConditions
-        return new ConsentString(VersionConfig.getLatest(),
-                date,
+        return new Builder(VersionConfig.getLatest(),
                 date,
                 Constants.CMPInfos.ID,
                 Constants.CMPInfos.VERSION,
                 consentScreen,
                 consentLanguage,
                 vendorList.getVersion(),
-                vendorList.getMaxVendorId(),
-                new ArrayList<Integer>(),
-                new ArrayList<Integer>());
+                vendorList.getMaxVendorId())
+                .build();
     }
 
     /**
@@ -1063,28 +1158,18 @@ public class ConsentString implements Parcelable {
      * @return A new consent string with every consent given for any purposes & vendors.
      */
     static public ConsentString consentStringWithFullConsent(int consentScreen, @NonNull Language consentLanguage, @NonNull VendorList vendorList, @NonNull Date date) {
-        ArrayList<Integer> allowedPurposes = new ArrayList<>();
-        for (Purpose purpose : vendorList.getPurposes()) {
-            allowedPurposes.add(purpose.getId());
-        }
-
-        ArrayList<Integer> allowedVendors = new ArrayList<>();
-        for (Vendor vendor : vendorList.getVendors()) {
-            allowedVendors.add(vendor.getId());
-        }
-
         //noinspection ConstantConditions
-        return new ConsentString(VersionConfig.getLatest(),
-                date,
+        return new Builder(VersionConfig.getLatest(),
                 date,
                 Constants.CMPInfos.ID,
                 Constants.CMPInfos.VERSION,
                 consentScreen,
                 consentLanguage,
                 vendorList.getVersion(),
-                vendorList.getMaxVendorId(),
-                allowedPurposes,
-                allowedVendors);
+                vendorList.getMaxVendorId())
+                .addAllPurposes(vendorList)
+                .addAllVendors(vendorList)
+                .build();
     }
 
 
@@ -1110,39 +1195,27 @@ public class ConsentString implements Parcelable {
      * @return The new consent string.
      */
     static public ConsentString consentStringFromUpdatedVendorList(@NonNull VendorList updatedVendorList, @NonNull VendorList previousVendorList, @NonNull ConsentString previousConsentString, @NonNull Date lastUpdated) {
-        // Retrieve all already allowed purposes.
-        ArrayList<Integer> allowedPurposes = new ArrayList<>(previousConsentString.getAllowedPurposes());
-        for (int idx = 0; idx < updatedVendorList.getPurposes().size(); idx++) {
-            Purpose purpose = updatedVendorList.getPurposes().get(idx);
+        //noinspection ConstantConditions
+        Builder builder = new Builder(previousConsentString)
+                .setVersionConfig(VersionConfig.getLatest())
+                .setLastUpdated(lastUpdated)
+                .setVendorList(updatedVendorList);
 
-            // Allow purpose only if it was not in the previous vendor list.
+        // Allow purposes only if they were not in the previous vendor list.
+        for (Purpose purpose : updatedVendorList.getPurposes()) {
             if (purpose.getId() > previousVendorList.getPurposes().size()) {
-                allowedPurposes.add(purpose.getId());
+                builder.addPurpose(purpose.getId());
             }
         }
 
-        // Retrieve all already allowed vendors.
-        ArrayList<Integer> allowedVendors = new ArrayList<>(previousConsentString.getAllowedVendors());
-        for (int idx = 0; idx < updatedVendorList.getVendors().size(); idx++) {
-            Vendor vendor = updatedVendorList.getVendors().get(idx);
-
-            // Allow vendor only if it was not in the previous vendor list.
+        // Allow vendors only if they were not in the previous vendor list.
+        for (Vendor vendor : updatedVendorList.getVendors()) {
             if (!previousVendorList.containsVendorWithId(vendor.getId())) {
-                allowedVendors.add(vendor.getId());
+                builder.addVendor(vendor.getId());
             }
         }
 
-        //noinspection ConstantConditions
-        return new ConsentString(VersionConfig.getLatest(),
-                previousConsentString.getCreated(),
-                lastUpdated,
-                previousConsentString.getCmpId(),
-                previousConsentString.getCmpVersion(),
-                previousConsentString.getConsentScreen(),
-                previousConsentString.getConsentLanguage(),
-                updatedVendorList,
-                allowedPurposes,
-                allowedVendors);
+        return builder.build();
     }
 
     /**
@@ -1169,23 +1242,9 @@ public class ConsentString implements Parcelable {
      * @return A new consent string with a consent given for a particular purpose.
      */
     static public ConsentString consentStringByAddingPurposeConsent(@NonNull Integer purposeId, @NonNull ConsentString consentString, @NonNull Date lastUpdated) {
-        ArrayList<Integer> allowedPurpose = new ArrayList<>(consentString.getAllowedPurposes());
-        if (!allowedPurpose.contains(purposeId)) {
-            allowedPurpose.add(purposeId);
-        }
-
-        //noinspection ConstantConditions
-        return new ConsentString(VersionConfig.getLatest(),
-                consentString.getCreated(),
-                lastUpdated,
-                consentString.getCmpId(),
-                consentString.getCmpVersion(),
-                consentString.getConsentScreen(),
-                consentString.getConsentLanguage(),
-                consentString.getVendorListVersion(),
-                consentString.getMaxVendorId(),
-                allowedPurpose,
-                consentString.getAllowedVendors());
+        return updatedBuilder(consentString, lastUpdated)
+                .addPurpose(purposeId)
+                .build();
     }
 
     /**
@@ -1216,13 +1275,9 @@ public class ConsentString implements Parcelable {
             return null;
         }
 
-        ConsentString consentString = new ConsentString(previousConsentString);
-
-        for (Purpose purpose : vendorList.getPurposes()) {
-            consentString = ConsentString.consentStringByAddingPurposeConsent(purpose.getId(), consentString, lastUpdated);
-        }
-
-        return consentString;
+        return updatedBuilder(previousConsentString, lastUpdated)
+                .addAllPurposes(vendorList)
+                .build();
     }
 
     /**
@@ -1249,23 +1304,9 @@ public class ConsentString implements Parcelable {
      * @return A new consent string with a consent removed for a particular purpose.
      */
     static public ConsentString consentStringByRemovingPurposeConsent(@NonNull Integer purposeId, @NonNull ConsentString consentString, @NonNull Date lastUpdated) {
-        ArrayList<Integer> allowedPurpose = new ArrayList<>(consentString.getAllowedPurposes());
-        if (allowedPurpose.contains(purposeId)) {
-            allowedPurpose.remove(purposeId);
-        }
-
-        //noinspection ConstantConditions
-        return new ConsentString(VersionConfig.getLatest(),
-                consentString.getCreated(),
-                lastUpdated,
-                consentString.getCmpId(),
-                consentString.getCmpVersion(),
-                consentString.getConsentScreen(),
-                consentString.getConsentLanguage(),
-                consentString.getVendorListVersion(),
-                consentString.getMaxVendorId(),
-                allowedPurpose,
-                consentString.getAllowedVendors());
+        return updatedBuilder(consentString, lastUpdated)
+                .removePurpose(purposeId)
+                .build();
     }
 
     /**
@@ -1296,13 +1337,9 @@ public class ConsentString implements Parcelable {
             return null;
         }
 
-        ConsentString consentString = new ConsentString(previousConsentString);
-
-        for (Purpose purpose : vendorList.getPurposes()) {
-            consentString = consentStringByRemovingPurposeConsent(purpose.getId(), consentString, lastUpdated);
-        }
-
-        return consentString;
+        return updatedBuilder(previousConsentString, lastUpdated)
+                .removeAllPurposes(vendorList)
+                .build();
     }
 
     /**
@@ -1329,23 +1366,9 @@ public class ConsentString implements Parcelable {
      * @return A new consent string with a consent given for a particular vendor.
      */
     static public ConsentString consentStringByAddingVendorConsent(@NonNull Integer vendorId, @NonNull ConsentString consentString, @NonNull Date lastUpdated) {
-        ArrayList<Integer> allowedVendors = new ArrayList<>(consentString.getAllowedVendors());
-        if (!allowedVendors.contains(vendorId)) {
-            allowedVendors.add(vendorId);
-        }
-
-        //noinspection ConstantConditions
-        return new ConsentString(VersionConfig.getLatest(),
-                consentString.getCreated(),
-                lastUpdated,
-                consentString.getCmpId(),
-                consentString.getCmpVersion(),
-                consentString.getConsentScreen(),
-                consentString.getConsentLanguage(),
-                consentString.getVendorListVersion(),
-                consentString.getMaxVendorId(),
-                consentString.getAllowedPurposes(),
-                allowedVendors);
+        return updatedBuilder(consentString, lastUpdated)
+                .addVendor(vendorId)
+                .build();
     }
 
     /**
@@ -1372,23 +1395,492 @@ public class ConsentString implements Parcelable {
      * @return A new consent string with a consent removed for a particular vendor.
      */
     static public ConsentString consentStringByRemovingVendorConsent(@NonNull Integer vendorId, @NonNull ConsentString consentString, @NonNull Date lastUpdated) {
-        ArrayList<Integer> allowedVendors = new ArrayList<>(consentString.getAllowedVendors());
-        if (allowedVendors.contains(vendorId)) {
-            allowedVendors.remove(vendorId);
-        }
+        return updatedBuilder(consentString, lastUpdated)
+                .removeVendor(vendorId)
+                .build();
+    }
 
+    /**
+     * Return a builder initialized from a consent string, with an updated version config and last updated date.
+     *
+     * @param consentString The consent string which should be copied.
+     * @param lastUpdated   The date that will be used as last updated date.
+     * @return A new builder.
+     */
+    @NonNull
+    static private Builder updatedBuilder(@NonNull ConsentString consentString, @NonNull Date lastUpdated) {
         //noinspection ConstantConditions
-        return new ConsentString(VersionConfig.getLatest(),
-                consentString.getCreated(),
-                lastUpdated,
-                consentString.getCmpId(),
-                consentString.getCmpVersion(),
-                consentString.getConsentScreen(),
-                consentString.getConsentLanguage(),
-                consentString.getVendorListVersion(),
-                consentString.getMaxVendorId(),
-                consentString.getAllowedPurposes(),
-                allowedVendors);
+        return new Builder(consentString)
+                .setVersionConfig(VersionConfig.getLatest())
+                .setLastUpdated(lastUpdated);
+    }
+
+    /////////////////
+    //// Builder ////
+    /////////////////
+
+    /**
+     * Mutable builder used to apply several consent edits before generating a single new ConsentString.
+     * <p>
+     * Note: a builder is not thread safe. Allowed ids sets are copied lazily, only when they are modified.
+     */
+    @SuppressWarnings({"WeakerAccess", "UnusedReturnValue"})
+    static public class Builder {
+
+        // The consent string version configuration.
+        @NonNull
+        private VersionConfig versionConfig;
+
+        // The date of the first consent string creation.
+        @NonNull
+        private Date created;
+
+        // The date of the last consent string update.
+        @NonNull
+        private Date lastUpdated;
+
+        // The id of the last Consent Manager Provider that updated the consent string.
+        private int cmpId;
+
+        // The version of the Consent Manager Provider.
+        private int cmpVersion;
+
+        // The screen number in the CMP where the consent was given.
+        private int consentScreen;
+
+        // The language that the CMP asked for consent in (in two-letters ISO 639-1 format).
+        @NonNull
+        private Language consentLanguage;
+
+        // The version of the vendor list used in the most recent consent string update.
+        private int vendorListVersion;
+
+        // The maximum vendor id id that can be found in the current vendor list.
+        private int maxVendorId;
+
+        // The set of allowed purposes id.
+        @NonNull
+        private BitSet allowedPurposes;
+
+        // The set of allowed vendors id.
+        @NonNull
+        private BitSet allowedVendors;
+
+        // Whether the allowed purposes set is shared with a ConsentString and must be copied before any modification.
+        private boolean allowedPurposesShared;
+
+        // Whether the allowed vendors set is shared with a ConsentString and must be copied before any modification.
+        private boolean allowedVendorsShared;
+
+        // The type of vendors encoding that should be used to generate the base64 consent string.
+        @NonNull
+        private ConsentEncoding vendorListEncoding = ConsentEncoding.AUTOMATIC;
+
+        /**
+         * Initialize a new Builder with no consent given for any purposes & vendors.
+         *
+         * @param versionConfig     The consent string version configuration.
+         * @param created           The date of the first consent string creation (also used as last updated date).
+         * @param cmpId             The id of the last Consent Manager Provider that updated the consent string.
+         * @param cmpVersion        The version of the Consent Manager Provider.
+         * @param consentScreen     The screen number in the CMP where the consent was given.
+         * @param consentLanguage   The language that the CMP asked for consent in (in two-letters ISO 639-1 format).
+         * @param vendorListVersion The version of the vendor list used in the most recent consent string update.
+         * @param maxVendorId       The maximum vendor id id that can be found in the current vendor list.
+         */
+        public Builder(@NonNull VersionConfig versionConfig,
+                       @NonNull Date created,
+                       int cmpId,
+                       int cmpVersion,
+                       int consentScreen,
+                       @NonNull Language consentLanguage,
+                       int vendorListVersion,
+                       int maxVendorId) {
+
+            this.versionConfig = versionConfig;
+            this.created = created;
+            this.lastUpdated = created;
+            this.cmpId = cmpId;
+            this.cmpVersion = cmpVersion;
+            this.consentScreen = consentScreen;
+            this.consentLanguage = consentLanguage;
+            this.vendorListVersion = vendorListVersion;
+            this.maxVendorId = maxVendorId;
+            this.allowedPurposes = new BitSet();
+            this.allowedVendors = new BitSet();
+        }
+
+        /**
+         * Initialize a new Builder from an existing ConsentString.
+         *
+         * @param consentString The ConsentString used as starting point.
+         */
+        public Builder(@NonNull ConsentString consentString) {
+            this.versionConfig = consentString.versionConfig;
+            this.created = consentString.created;
+            this.lastUpdated = consentString.lastUpdated;
+            this.cmpId = consentString.cmpId;
+            this.cmpVersion = consentString.cmpVersion;
+            this.consentScreen = consentString.consentScreen;
+            this.consentLanguage = consentString.consentLanguage;
+            this.vendorListVersion = consentString.vendorListVersion;
+            this.maxVendorId = consentString.maxVendorId;
+            this.allowedPurposes = consentString.allowedPurposes;
+            this.allowedVendors = consentString.allowedVendors;
+            this.allowedPurposesShared = true;
+            this.allowedVendorsShared = true;
+        }
+
+        /**
+         * Set the consent string version configuration.
+         *
+         * @param versionConfig The consent string version configuration.
+         * @return This builder.
+         */
+        @NonNull
+        public Builder setVersionConfig(@NonNull VersionConfig versionConfig) {
+            this.versionConfig = versionConfig;
+            return this;
+        }
+
+        /**
+         * Set the date of the last consent string update.
+         *
+         * @param lastUpdated The date of the last consent string update.
+         * @return This builder.
+         */
+        @NonNull
+        public Builder setLastUpdated(@NonNull Date lastUpdated) {
+            this.lastUpdated = lastUpdated;
+            return this;
+        }
+
+        /**
+         * Set the screen number in the CMP where the consent was given.
+         *
+         * @param consentScreen The screen number in the CMP where the consent was given.
+         * @return This builder.
+         */
+        @NonNull
+        public Builder setConsentScreen(int consentScreen) {
+            this.consentScreen = consentScreen;
+            return this;
+        }
+
+        /**
+         * Set the language that the CMP asked for consent in.
+         *
+         * @param consentLanguage The language that the CMP asked for consent in (in two-letters ISO 639-1 format).
+         * @return This builder.
+         */
+        @NonNull
+        public Builder setConsentLanguage(@NonNull Language consentLanguage) {
+            this.consentLanguage = consentLanguage;
+            return this;
+        }
+
+        /**
+         * Set the vendor list version and the max vendor id from a vendor list.
+         *
+         * @param vendorList The vendor list used in the most recent consent string update.
+         * @return This builder.
+         */
+        @NonNull
+        public Builder setVendorList(@NonNull VendorList vendorList) {
+            this.vendorListVersion = vendorList.getVersion();
+            this.maxVendorId = vendorList.getMaxVendorId();
+            return this;
+        }
+
+        /**
+         * Set the type of vendors encoding that should be used to generate the base64 consent string.
+         *
+         * @param vendorListEncoding The type of vendors encoding.
+         * @return This builder.
+         */
+        @NonNull
+        public Builder setVendorListEncoding(@NonNull ConsentEncoding vendorListEncoding) {
+            this.vendorListEncoding = vendorListEncoding;
+            return this;
+        }
+
+        /**
+         * Give consent for a purpose.
+         *
+         * @param purposeId The purpose id which should be added to the consent list (ignored if negative).
+         * @return This builder.
+         */
+        @NonNull
+        public Builder addPurpose(int purposeId) {
+            if (purposeId >= 0) {
+                mutableAllowedPurposes().set(purposeId);
+            }
+            return this;
+        }
+
+        /**
+         * Give consent for several purposes.
+         *
+         * @param purposeIds The purposes id which should be added to the consent list (null or negative ids are ignored).
+         * @return This builder.
+         */
+        @NonNull
+        public Builder addPurposes(@NonNull Collection<Integer> purposeIds) {
+            BitSet purposes = mutableAllowedPurposes();
+            for (Integer purposeId : purposeIds) {
+                if (purposeId != null && purposeId >= 0) {
+                    purposes.set(purposeId);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Give consent for every purpose of a vendor list.
+         *
+         * @param vendorList The vendor list used to retrieve all purposes to consent to.
+         * @return This builder.
+         */
+        @NonNull
+        public Builder addAllPurposes(@NonNull VendorList vendorList) {
+            BitSet purposes = mutableAllowedPurposes();
+            for (Purpose purpose : vendorList.getPurposes()) {
+                purposes.set(purpose.getId());
+            }
+            return this;
+        }
+
+        /**
+         * Remove consent for a purpose.
+         *
+         * @param purposeId The purpose id which should be removed from the consent list.
+         * @return This builder.
+         */
+        @NonNull
+        public Builder removePurpose(int purposeId) {
+            if (purposeId >= 0 && allowedPurposes.get(purposeId)) {
+                mutableAllowedPurposes().clear(purposeId);
+            }
+            return this;
+        }
+
+        /**
+         * Remove consent for several purposes.
+         *
+         * @param purposeIds The purposes id which should be removed from the consent list.
+         * @return This builder.
+         */
+        @NonNull
+        public Builder removePurposes(@NonNull Collection<Integer> purposeIds) {
+            BitSet purposes = mutableAllowedPurposes();
+            for (Integer purposeId : purposeIds) {
+                if (purposeId != null && purposeId >= 0) {
+                    purposes.clear(purposeId);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Remove consent for every purpose of a vendor list.
+         *
+         * @param vendorList The vendor list used to retrieve all purposes to remove consent from.
+         * @return This builder.
+         */
+        @NonNull
+        public Builder removeAllPurposes(@NonNull VendorList vendorList) {
+            BitSet purposes = mutableAllowedPurposes();
+            for (Purpose purpose : vendorList.getPurposes()) {
+                purposes.clear(purpose.getId());
+            }
+            return this;
+        }
+
+        /**
+         * Remove consent for every purpose.
+         *
+         * @return This builder.
+         */
+        @NonNull
+        public Builder clearPurposes() {
+            allowedPurposes = new BitSet();
+            allowedPurposesShared = false;
+            return this;
+        }
+
+        /**
+         * Give consent for a vendor.
+         *
+         * @param vendorId The vendor id which should be added to the consent list (ignored if negative).
+         * @return This builder.
+         */
+        @NonNull
+        public Builder addVendor(int vendorId) {
+            if (vendorId >= 0) {
+                mutableAllowedVendors().set(vendorId);
+            }
+            return this;
+        }
+
+        /**
+         * Give consent for several vendors.
+         *
+         * @param vendorIds The vendors id which should be added to the consent list (null or negative ids are ignored).
+         * @return This builder.
+         */
+        @NonNull
+        public Builder addVendors(@NonNull Collection<Integer> vendorIds) {
+            BitSet vendors = mutableAllowedVendors();
+            for (Integer vendorId : vendorIds) {
+                if (vendorId != null && vendorId >= 0) {
+                    vendors.set(vendorId);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Give consent for every vendor of a vendor list.
+         *
+         * @param vendorList The vendor list used to retrieve all vendors to consent to.
+         * @return This builder.
+         */
+        @NonNull
+        public Builder addAllVendors(@NonNull VendorList vendorList) {
+            BitSet vendors = mutableAllowedVendors();
+            for (Vendor vendor : vendorList.getVendors()) {
+                vendors.set(vendor.getId());
+            }
+            return this;
+        }
+
+        /**
+         * Remove consent for a vendor.
+         *
+         * @param vendorId The vendor id which should be removed from the consent list.
+         * @return This builder.
+         */
+        @NonNull
+        public Builder removeVendor(int vendorId) {
+            if (vendorId >= 0 && allowedVendors.get(vendorId)) {
+                mutableAllowedVendors().clear(vendorId);
+            }
+            return this;
+        }
+
+        /**
+         * Remove consent for several vendors.
+         *
+         * @param vendorIds The vendors id which should be removed from the consent list.
+         * @return This builder.
+         */
+        @NonNull
+        public Builder removeVendors(@NonNull Collection<Integer> vendorIds) {
+            BitSet vendors = mutableAllowedVendors();
+            for (Integer vendorId : vendorIds) {
+                if (vendorId != null && vendorId >= 0) {
+                    vendors.clear(vendorId);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Remove consent for every vendor of a vendor list.
+         *
+         * @param vendorList The vendor list used to retrieve all vendors to remove consent from.
+         * @return This builder.
+         */
+        @NonNull
+        public Builder removeAllVendors(@NonNull VendorList vendorList) {
+            BitSet vendors = mutableAllowedVendors();
+            for (Vendor vendor : vendorList.getVendors()) {
+                vendors.clear(vendor.getId());
+            }
+            return this;
+        }
+
+        /**
+         * Remove consent for every vendor.
+         *
+         * @return This builder.
+         */
+        @NonNull
+        public Builder clearVendors() {
+            allowedVendors = new BitSet();
+            allowedVendorsShared = false;
+            return this;
+        }
+
+        /**
+         * Check if a purpose is currently allowed in this builder.
+         *
+         * @param purposeId The purpose id which should be checked.
+         * @return true if the purpose is allowed, false otherwise.
+         */
+        public boolean isPurposeAllowed(int purposeId) {
+            return purposeId >= 0 && allowedPurposes.get(purposeId);
+        }
+
+        /**
+         * Check if a vendor is currently allowed in this builder.
+         *
+         * @param vendorId The vendor id which should be checked.
+         * @return true if the vendor is allowed, false otherwise.
+         */
+        public boolean isVendorAllowed(int vendorId) {
+            return vendorId >= 0 && allowedVendors.get(vendorId);
+        }
+
+        /**
+         * Generate a new ConsentString from the current state of the builder.
+         * <p>
+         * Note: the builder can still be used afterwards, it will not alter the returned ConsentString.
+         *
+         * @return A new ConsentString.
+         */
+        @NonNull
+        public ConsentString build() {
+            allowedPurposesShared = true;
+            allowedVendorsShared = true;
+
+            return new ConsentString(versionConfig,
+                    created,
+                    lastUpdated,
+                    cmpId,
+                    cmpVersion,
+                    consentScreen,
+                    consentLanguage,
+                    vendorListVersion,
+                    maxVendorId,
+                    allowedPurposes,
+                    allowedVendors,
+                    vendorListEncoding);
+        }
+
+        /**
+         * @return The allowed purposes set, copied first if it is shared with a ConsentString.
+         */
+        @NonNull
+        private BitSet mutableAllowedPurposes() {
+            if (allowedPurposesShared) {
+                allowedPurposes = (BitSet) allowedPurposes.clone();
+                allowedPurposesShared = false;
+            }
+            return allowedPurposes;
+        }
+
+        /**
+         * @return The allowed vendors set, copied first if it is shared with a ConsentString.
+         */
+        @NonNull
+        private BitSet mutableAllowedVendors() {
+            if (allowedVendorsShared) {
+                allowedVendors = (BitSet) allowedVendors.clone();
+                allowedVendorsShared = false;
+            }
+            return allowedVendors;
+        }
     }
 
     /**************************
@@ -1412,8 +1904,9 @@ public class ConsentString implements Parcelable {
         dest.writeParcelable(this.consentLanguage, flags);
         dest.writeInt(this.vendorListVersion);
         dest.writeInt(this.maxVendorId);
-        dest.writeList(this.allowedPurposes);
-        dest.writeList(this.allowedVendors);
+        dest.writeLongArray(this.allowedPurposes.toLongArray());
+        dest.writeLongArray(this.allowedVendors.toLongArray());
+        dest.writeInt(this.vendorListEncoding.ordinal());
         dest.writeString(this.consentString);
     }
 
@@ -1430,10 +1923,9 @@ public class ConsentString implements Parcelable {
         this.consentLanguage = in.readParcelable(Language.class.getClassLoader());
         this.vendorListVersion = in.readInt();
         this.maxVendorId = in.readInt();
-        this.allowedPurposes = new ArrayList<>();
-        in.readList(this.allowedPurposes, Integer.class.getClassLoader());
-        this.allowedVendors = new ArrayList<>();
-        in.readList(this.allowedVendors, Integer.class.getClassLoader());
+        this.allowedPurposes = BitSet.valueOf(in.createLongArray());
+        this.allowedVendors = BitSet.valueOf(in.createLongArray());
+        this.vendorListEncoding = ConsentEncoding.values()[in.readInt()];
         this.consentString = in.readString();
     }
 
@@ -0,0 +1,122 @@
+package com.smartadserver.android.smartcmp.consentstring;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Read-only view of the consents given by a consent string, optimized for frequent queries.
+ * <p>
+ * The allowed purposes and vendors are copied once, when the view is created, in primitive bit arrays: every query
+ * is a bounds check and a bit test, without any allocation or lock. A view is immutable and can be shared between
+ * threads freely.
+ */
+
+@SuppressWarnings("WeakerAccess")
+public final class ConsentView {
+
+    // The view of an absent consent string: nothing is allowed.
+    @NonNull
+    static public final ConsentView EMPTY = new ConsentView(null, new long[0], new long[0]);
+
+    // The number of bits of a word, and the shift giving the index of the word containing a bit.
+    static private final int BITS_PER_WORD = 64;
+    static private final int ADDRESS_BITS_PER_WORD = 6;
+
+    // The consent string of this view.
+    @Nullable
+    private final ConsentString consentString;
+
+    // The allowed purposes: bit n is purpose id n.
+    @NonNull
+    private final long[] purposeWords;
+
+    // The allowed vendors: bit n is vendor id n.
+    @NonNull
+    private final long[] vendorWords;
+
+    /**
+     * Create the view of a consent string.
+     *
+     * @param consentString The consent string, or null if there is no consent string.
+     * @return The view of the consent string, or EMPTY if there is no consent string.
+     */
+    @NonNull
+    static public ConsentView from(@Nullable ConsentString consentString) {
+        if (consentString == null) {
+            return EMPTY;
+        }
+
+        return new ConsentView(consentString, consentString.allowedPurposesWords(), consentString.allowedVendorsWords());
+    }
+
+    private ConsentView(@Nullable ConsentString consentString, @NonNull long[] purposeWords, @NonNull long[] vendorWords) {
+        this.consentString = consentString;
+        this.purposeWords = purposeWords;
+        this.vendorWords = vendorWords;
+    }
+
+    /**
+     * @return The consent string of this view, or null if there is no consent string.
+     */
+    @Nullable
+    public ConsentString getConsentString() {
+        return consentString;
+    }
+
+    /**
+     * Check if a purpose is allowed.
+     *
+     * @param purposeId The purpose id which should be checked.
+     * @return true if the purpose is allowed, false otherwise.
+     */
+    public boolean isPurposeAllowed(int purposeId) {
+        return isSet(purposeWords, purposeId);
+    }
+
+    /**
+     * Check if a vendor is allowed.
+     *
+     * @param vendorId The vendor id which should be checked.
+     * @return true if the vendor is allowed, false otherwise.
+     */
+    public boolean isVendorAllowed(int vendorId) {
+        return isSet(vendorWords, vendorId);
+    }
+
+    /**
+     * Check if a vendor is allowed along with all the given purposes.
+     *
+     * @param vendorId   The vendor id which should be checked.
+     * @param purposeIds The purpose ids which should be checked.
+     * @return true if the vendor and all the purposes are allowed, false otherwise.
+     */
+    public boolean isVendorAllowedForPurposes(int vendorId, @NonNull int[] purposeIds) {
+        if (!isSet(vendorWords, vendorId)) {
+            return false;
+        }
+
+        for (int purposeId : purposeIds) {
+            if (!isSet(purposeWords, purposeId)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Test a bit of a bit array.
+     *
+     * @param words The bit array.
+     * @param index The index of the bit.
+     * @return true if the bit is set, false if it is not set or out of the array.
+     */
+    static private boolean isSet(@NonNull long[] words, int index) {
+        if (index < 0) {
+            return false;
+        }
+
+        int wordIndex = index >>> ADDRESS_BITS_PER_WORD;
+        return wordIndex < words.length && (words[wordIndex] & (1L << (index & (BITS_PER_WORD - 1)))) != 0;
+    }
+}
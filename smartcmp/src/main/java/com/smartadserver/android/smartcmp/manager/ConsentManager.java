@@ -5,9 +5,9 @@ import android.app.Activity;
 import android.app.Application;
 import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.Looper;
 import android.preference.PreferenceManager;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
@@ -19,14 +19,29 @@ import com.google.android.gms.common.GooglePlayServicesRepairableException;
 import com.smartadserver.android.smartcmp.Constants;
 import com.smartadserver.android.smartcmp.activity.ConsentToolActivity;
 import com.smartadserver.android.smartcmp.consentstring.ConsentString;
+import com.smartadserver.android.smartcmp.consentstring.ConsentView;
 import com.smartadserver.android.smartcmp.model.ConsentToolConfiguration;
 import com.smartadserver.android.smartcmp.model.Language;
 import com.smartadserver.android.smartcmp.model.VendorList;
+import com.smartadserver.android.smartcmp.storage.ConsentStorage;
+import com.smartadserver.android.smartcmp.storage.FileConsentStorage;
+import com.smartadserver.android.smartcmp.storage.MirroredConsentStorage;
+import com.smartadserver.android.smartcmp.storage.SharedPreferencesConsentStorage;
+import com.smartadserver.android.smartcmp.vendorlist.ConnectivityNetworkStatusProvider;
+import com.smartadserver.android.smartcmp.vendorlist.VendorListCache;
 import com.smartadserver.android.smartcmp.vendorlist.VendorListManager;
 import com.smartadserver.android.smartcmp.vendorlist.VendorListManagerListener;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Singleton class that manages the GDPR user consent for the current device
@@ -38,6 +53,9 @@ public class ConsentManager implements VendorListManagerListener {
     // The key used to store the next ui display date in the Shared Preferences.
     static private final String LAST_UI_DISPLAY_DATE_KEY = "SmartCMP_LastUiDisplayDate";
 
+    // The name of the file in which the consent is stored, in the app storage.
+    static final String CONSENT_STORAGE_FILE_NAME = "smartcmp_consent";
+
     // Default interval between each consent tool UI automatic display in milliseconds (7 days).
     static private final long DEFAULT_UI_DISPLAY_INTERVAL = 604800000;
 
@@ -60,6 +78,9 @@ public class ConsentManager implements VendorListManagerListener {
     // The application context.
     private Context context;
 
+    // The storage in which the consent is stored.
+    private ConsentPreferences preferences;
+
     // The consent tool configuration needed for all strings used in the UI.
     private ConsentToolConfiguration consentToolConfiguration;
 
@@ -72,17 +93,21 @@ public class ConsentManager implements VendorListManagerListener {
     // False by default.
     private boolean subjectToGDPR = false;
 
-    // The consent string.
-    private ConsentString consentString;
+    // The state of the ConsentManager (consent string, vendor lists, consent tool visibility). The snapshot is immutable
+    // and is swapped atomically, so it can be read from any thread without locking.
+    @NonNull
+    private final AtomicReference<ConsentManagerState> state = new AtomicReference<>(ConsentManagerState.EMPTY);
+
+    // The lock ensuring the consent strings are stored in the same order as they are set.
+    @NonNull
+    private final Object consentStringLock = new Object();
 
     // The vendor list manager.
     private VendorListManager vendorListManager;
 
-    // The vendor list used by the current consent string.
-    private VendorList usedVendorList;
-
-    // The last parsed vendor list.
-    private VendorList lastVendorList;
+    // The version of the vendor list for which the consent tool display has been handled, or -1 if none. The same
+    // vendor list can be received several times (cached, then revalidated): the display is only handled once per version.
+    private volatile int handledVendorListVersion = -1;
 
     // The Language representation of the current device's language.
     private Language language;
@@ -94,8 +119,39 @@ public class ConsentManager implements VendorListManagerListener {
     // Interval (in milliseconds) between each consent tool UI display.
     private long uiDisplayInterval;
 
-    // Whether or not the consent tool is shown.
-    private boolean consentToolIsShown = false;
+    // The executor used for the background work of the CMP, or null to use the default one.
+    @Nullable
+    private ExecutorService executor;
+
+    // The scheduler used for the vendor list automatic refresh, or null to use the default one.
+    @Nullable
+    private ScheduledExecutorService scheduler;
+
+    // The handler used to complete the startup on the main thread.
+    @NonNull
+    private final Handler mainThreadHandler = new Handler(Looper.getMainLooper());
+
+    // Whether or not the stored consent has been loaded after the configuration.
+    private volatile boolean isReady = false;
+
+    // The future completed when the ConsentManager is ready.
+    @NonNull
+    private final FutureTask<Void> readyFuture = new FutureTask<>(new Runnable() {
+        @Override
+        public void run() {
+        }
+    }, null);
+
+    // The listeners waiting for the ConsentManager to be ready (only used on the main thread).
+    @NonNull
+    private final ArrayList<ConsentManagerReadyListener> readyListeners = new ArrayList<>();
+
+    // The durations of the startup phases.
+    @NonNull
+    private final ConsentManagerStartupTimings startupTimings = new ConsentManagerStartupTimings();
+
+    // The time at which configure() has been called (in nanoseconds).
+    private long configureStartTime;
 
     /**
      * Internal class to detect the Application state in order to stop watching/downloading task
@@ -133,7 +189,7 @@ public class ConsentManager implements VendorListManagerListener {
 
             // if coming from a background state, we need to enable vendors list periodical refreshes
             if (wasBackground) {
-                if (vendorListManager != null) {
+                if (vendorListManager != null && isReady) {
                     vendorListManager.startAutomaticRefresh(false);
                 }
             }
@@ -235,6 +291,10 @@ public class ConsentManager implements VendorListManagerListener {
     /**
      * Configure the ConsentManager. This method should be called only once per session.
      * <p>
+     * This method returns immediately: the consent stored during the previous sessions is loaded in the background, then
+     * the vendor list automatic refresh is started. Use {@link #addReadyListener(ConsentManagerReadyListener)} or
+     * {@link #getReadyFuture()} to know when the stored consent is available.
+     * <p>
      * Note: if you set 'showConsentToolWhenLimitedAdTracking' to true, you will be able to ask for user consent even if
      * 'Limited Ad Tracking' has been enabled on the device. In this case, remember that you still have to comply to Google's Play store
      * Terms and Conditions regarding 'Limited Ad Tracking'.
@@ -252,6 +312,7 @@ public class ConsentManager implements VendorListManagerListener {
         }
 
         isConfigured = true;
+        configureStartTime = System.nanoTime();
 
         this.context = application.getApplicationContext();
 
@@ -264,18 +325,155 @@ public class ConsentManager implements VendorListManagerListener {
         this.showConsentToolIfLAT = showConsentToolWhenLimitedAdTracking;
         this.uiDisplayInterval = uiDisplayInterval;
 
-        // Check in preferences for already existing consent string.
-        String rawConsentString = readStringFromSharedPreferences(Constants.IABConsentKeys.ConsentString, null);
+        // Instantiate the VendorListManager. The automatic refresh is only started once the stored consent is loaded, since
+        // the received vendor lists are compared to it.
+        vendorListManager = new VendorListManager(this, DEFAULT_REFRESH_INTERVAL, DEFAULT_RETRY_INTERVAL, language, -1, new VendorListCache(context), executor, scheduler);
+        vendorListManager.setNetworkStatusProvider(new ConnectivityNetworkStatusProvider(context));
+
+        // The consent storage file is written on the CMP executor, so the callers (often the main thread) never wait for the disk.
+        this.preferences = new ConsentPreferences(createConsentStorage(context, vendorListManager.getExecutor()));
+
+        // Check in the storage for already existing consent string, in the background.
+        final ConsentPreferences preferences = this.preferences;
+        vendorListManager.getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                final ConsentString storedConsentString = loadStoredConsentString(preferences);
+                mainThreadHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onStoredConsentStringLoaded(storedConsentString);
+                    }
+                });
+            }
+        });
+
+        startupTimings.setConfigureDuration(System.nanoTime() - configureStartTime);
+    }
+
+    /**
+     * Read and decode the consent string stored during a previous session. This method is blocking.
+     * Note: package private for test purpose.
+     *
+     * @param preferences The storage in which the consent is stored.
+     * @return The stored consent string, or null if there is none or if it is invalid.
+     */
+    @Nullable
+    ConsentString loadStoredConsentString(@NonNull ConsentPreferences preferences) {
+        long readStartTime = System.nanoTime();
+        String rawConsentString = preferences.getString(Constants.IABConsentKeys.ConsentString, null);
+        long decodingStartTime = System.nanoTime();
+        startupTimings.setStorageReadDuration(decodingStartTime - readStartTime);
+
+        ConsentString storedConsentString = null;
         if (rawConsentString != null) {
             try {
-                consentString = ConsentString.fromBase64String(rawConsentString);
+                storedConsentString = ConsentString.fromBase64String(rawConsentString);
             } catch (Exception ignored) {
             }
         }
+        startupTimings.setConsentDecodingDuration(System.nanoTime() - decodingStartTime);
+
+        return storedConsentString;
+    }
+
+    /**
+     * Complete the startup once the stored consent string is loaded: the ConsentManager is ready and the vendor list
+     * automatic refresh is started. Must be called on the main thread.
+     *
+     * @param storedConsentString The consent string stored during a previous session, if any.
+     */
+    private void onStoredConsentStringLoaded(@Nullable ConsentString storedConsentString) {
+        // A consent string set in the meantime is more recent than the stored one.
+        ConsentManagerState currentState;
+        do {
+            currentState = state.get();
+            if (currentState.getConsentString() != null) {
+                break;
+            }
+        } while (!state.compareAndSet(currentState, currentState.withConsentString(storedConsentString)));
+
+        startupTimings.setTimeToReady(System.nanoTime() - configureStartTime);
+        isReady = true;
+        readyFuture.run();
+
+        for (ConsentManagerReadyListener listener : readyListeners) {
+            listener.onConsentManagerReady(startupTimings);
+        }
+        readyListeners.clear();
 
-        // Instantiate the VendorListManager and immediately trigger the automatic refresh.
-        vendorListManager = new VendorListManager(this, DEFAULT_REFRESH_INTERVAL, DEFAULT_RETRY_INTERVAL, language);
-        vendorListManager.startAutomaticRefresh(true);
+        // Trigger the automatic refresh. The cached vendor list is served first and is only downloaded again if it is
+        // older than the refresh interval.
+        vendorListManager.startAutomaticRefresh(false);
+    }
+
+    /**
+     * @return Whether or not the ConsentManager is ready, i.e. whether the stored consent has been loaded after the configuration.
+     */
+    @SuppressWarnings("unused")
+    public boolean isReady() {
+        return isReady;
+    }
+
+    /**
+     * Add a listener called on the main thread when the ConsentManager is ready. If it is already ready, the listener is
+     * called right away (asynchronously).
+     *
+     * @param listener The listener to call when the ConsentManager is ready.
+     */
+    @SuppressWarnings("unused")
+    public void addReadyListener(@NonNull final ConsentManagerReadyListener listener) {
+        mainThreadHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (isReady) {
+                    listener.onConsentManagerReady(startupTimings);
+                } else {
+                    readyListeners.add(listener);
+                }
+            }
+        });
+    }
+
+    /**
+     * Get a future completed when the ConsentManager is ready.
+     * <p>
+     * Note: waiting for this future on the main thread would block forever, since the startup is completed on the main thread.
+     *
+     * @return The future completed when the ConsentManager is ready.
+     */
+    @SuppressWarnings("unused")
+    @NonNull
+    public Future<Void> getReadyFuture() {
+        return readyFuture;
+    }
+
+    /**
+     * @return The durations of the startup phases of the ConsentManager.
+     */
+    @SuppressWarnings("unused")
+    @NonNull
+    public ConsentManagerStartupTimings getStartupTimings() {
+        return startupTimings;
+    }
+
+    /**
+     * Set the executors used by the ConsentManager, so the CMP can share the thread pools of the app. This method must
+     * be called before configure() to be taken into account.
+     * <p>
+     * The executors are never shut down by the CMP.
+     *
+     * @param executor  The executor used for the background work of the CMP (vendor list downloads, Limited Ad Tracking status retrieval).
+     * @param scheduler The scheduler used for the vendor list automatic refresh.
+     */
+    public void setExecutors(@NonNull ExecutorService executor, @NonNull ScheduledExecutorService scheduler) {
+        if (isConfigured) {
+            logErrorMessage("ConsentManager is already configured for this session. The executors must be set before calling configure().");
+            return;
+        }
+
+        this.executor = executor;
+        this.scheduler = scheduler;
     }
 
     /**
@@ -293,12 +491,14 @@ public class ConsentManager implements VendorListManagerListener {
     }
 
     /**
-     * Set a new Context. This method is package private for test purpose.
+     * Set a new Context. This method is package private for test purpose: the consent storage file is written
+     * synchronously, so the tests can read it right away.
      *
      * @param context the new context to set.
      */
     void setContext(Context context) {
         this.context = context;
+        this.preferences = new ConsentPreferences(createConsentStorage(context, null));
     }
 
     /**
@@ -319,7 +519,9 @@ public class ConsentManager implements VendorListManagerListener {
         this.subjectToGDPR = subjectToGDPR;
 
         // Save subjectToGDPR status to SharedPreferences
-        saveStringInSharedPreferences(Constants.IABConsentKeys.SubjectToGDPR, subjectToGDPR ? "1" : "0");
+        preferences.edit()
+                .putString(Constants.IABConsentKeys.SubjectToGDPR, subjectToGDPR ? "1" : "0")
+                .commit();
     }
 
     /**
@@ -328,14 +530,59 @@ public class ConsentManager implements VendorListManagerListener {
      */
     @SuppressWarnings("unused")
     ConsentString getConsentString() {
-        return consentString;
+        return state.get().getConsentString();
+    }
+
+    /**
+     * Get a view of the current consents, for frequent queries (for instance before each ad request).
+     * <p>
+     * The view is built once per consent string change and never modified afterwards: its queries don't allocate nor
+     * lock, and it can be used from any thread. Call this method again to get the view of a newer consent string.
+     *
+     * @return the view of the current consent string (nothing is allowed if there is no consent string).
+     */
+    @SuppressWarnings("unused")
+    public @NonNull ConsentView getConsentView() {
+        return state.get().getConsentView();
     }
 
     /**
      * @return the last vendor list fetched.
      */
     public @Nullable VendorList getVendorList() {
-        return lastVendorList;
+        return state.get().getLastVendorList();
+    }
+
+    /**
+     * Set the vendor list manager.
+     * Note: Package private for test purpose.
+     *
+     * @param vendorListManager The vendor list manager.
+     */
+    void setVendorListManager(@NonNull VendorListManager vendorListManager) {
+        this.vendorListManager = vendorListManager;
+        this.handledVendorListVersion = -1;
+    }
+
+    /**
+     * Note: Package private for test purpose.
+     * @return The current state snapshot of the ConsentManager.
+     */
+    @NonNull
+    ConsentManagerState getState() {
+        return state.get();
+    }
+
+    /**
+     * Replace the state snapshot if it has not been replaced in the meantime.
+     * Note: Package private for test purpose.
+     *
+     * @param expectedState The state snapshot that must be replaced.
+     * @param newState      The new state snapshot.
+     * @return true if the state snapshot has been replaced.
+     */
+    boolean compareAndSetState(@NonNull ConsentManagerState expectedState, @NonNull ConsentManagerState newState) {
+        return state.compareAndSet(expectedState, newState);
     }
 
     /**
@@ -350,7 +597,8 @@ public class ConsentManager implements VendorListManagerListener {
      */
     @SuppressWarnings("unused")
     public boolean canShowConsentTool() {
-        return isConfigured && !consentToolIsShown && lastVendorList != null;
+        ConsentManagerState currentState = state.get();
+        return isConfigured && !currentState.isConsentToolShown() && currentState.getLastVendorList() != null;
     }
 
     /**
@@ -372,19 +620,43 @@ public class ConsentManager implements VendorListManagerListener {
      * @param consentString The new consent string.
      */
     void setConsentString(ConsentString consentString) {
-        this.consentString = consentString;
+        setConsentString(consentString, false);
+    }
 
-        if (consentString == null) {
-            return;
-        }
+    /**
+     * Update the consent string, and optionally mark the consent tool as closed in the same state swap. Will automatically
+     * store the consent string in the SharedPreferences.
+     *
+     * @param consentString     The new consent string.
+     * @param consentToolClosed Whether or not the consent tool must be marked as closed.
+     */
+    private void setConsentString(@Nullable ConsentString consentString, boolean consentToolClosed) {
+        synchronized (consentStringLock) {
+            // Encoded before the state swap, so a consent string that can't be encoded is neither used nor stored.
+            String encodedConsentString = consentString != null ? consentString.getConsentString() : null;
+
+            ConsentManagerState currentState;
+            ConsentManagerState newState;
+            do {
+                currentState = state.get();
+                newState = currentState.withConsentString(consentString);
+                if (consentToolClosed) {
+                    newState = newState.withConsentToolShown(false);
+                }
+            } while (!state.compareAndSet(currentState, newState));
 
-        // Store the consent string in the SharedPreferences.
-        saveStringInSharedPreferences(Constants.IABConsentKeys.ConsentString, consentString.getConsentString());
-        saveStringInSharedPreferences(Constants.IABConsentKeys.ParsedPurposeConsent, consentString.parsedPurposeConsents());
-        saveStringInSharedPreferences(Constants.IABConsentKeys.ParsedVendorConsent, consentString.parsedVendorConsents());
+            if (consentString == null) {
+                return;
+            }
 
-        // Save the advertising consent status in the SharedPreferences.
-        saveStringInSharedPreferences(Constants.AdvertisingConsentStatus.Key, consentString.isPurposeAllowed(Constants.AdvertisingConsentStatus.PurposeId) ? "1" : "0");
+            // Store the consent string and the advertising consent status in the SharedPreferences, in a single write.
+            preferences.edit()
+                    .putString(Constants.IABConsentKeys.ConsentString, encodedConsentString)
+                    .putString(Constants.IABConsentKeys.ParsedPurposeConsent, consentString.parsedPurposeConsents())
+                    .putString(Constants.IABConsentKeys.ParsedVendorConsent, consentString.parsedVendorConsents())
+                    .putString(Constants.AdvertisingConsentStatus.Key, consentString.isPurposeAllowed(Constants.AdvertisingConsentStatus.PurposeId) ? "1" : "0")
+                    .commit();
+        }
     }
 
     /**
@@ -394,6 +666,8 @@ public class ConsentManager implements VendorListManagerListener {
      */
     @SuppressWarnings("unused")
     public boolean allowAllPurposes() {
+        ConsentManagerState currentState = state.get();
+        VendorList lastVendorList = currentState.getLastVendorList();
         if (lastVendorList == null || !isConfigured) {
             logErrorMessage("The ConsentManager must be configured and the vendor list downloaded before adding all purposes. Please try again later.");
             return false;
@@ -401,9 +675,9 @@ public class ConsentManager implements VendorListManagerListener {
 
         ConsentString consentString;
 
-        if (this.consentString != null) {
+        if (currentState.getConsentString() != null) {
             // The consent string is already set.
-            consentString = ConsentString.consentStringByAddingAllPurposeConsents(lastVendorList, this.consentString);
+            consentString = ConsentString.consentStringByAddingAllPurposeConsents(lastVendorList, currentState.getConsentString());
         } else {
             // The consent string is not set yet, so we create a consent string with full consent.
             consentString = ConsentString.consentStringWithFullConsent(0, language, lastVendorList);
@@ -427,6 +701,8 @@ public class ConsentManager implements VendorListManagerListener {
      */
     @SuppressWarnings("unused")
     public boolean revokeAllPurposes() {
+        ConsentManagerState currentState = state.get();
+        VendorList lastVendorList = currentState.getLastVendorList();
         if (lastVendorList == null || !isConfigured) {
             logErrorMessage("The ConsentManager must be configured and the vendor list downloaded before revoking all purposes. Please try again later.");
             return false;
@@ -434,17 +710,14 @@ public class ConsentManager implements VendorListManagerListener {
 
         ConsentString consentString;
 
-        if (this.consentString != null) {
+        if (currentState.getConsentString() != null) {
             // The consent string is already set.
-            consentString = ConsentString.consentStringByRemovingAllPurposeConsents(lastVendorList, this.consentString);
+            consentString = ConsentString.consentStringByRemovingAllPurposeConsents(lastVendorList, currentState.getConsentString());
         } else {
-            // The consent string is not set yet.
-
-            // First, create a consent string with full consent.
-            consentString = ConsentString.consentStringWithFullConsent(0, language, lastVendorList);
-
-            // Then remove all purpose consents.
-            consentString = ConsentString.consentStringByRemovingAllPurposeConsents(lastVendorList, consentString);
+            // The consent string is not set yet, so we create a consent string with full vendors consent only.
+            consentString = new ConsentString.Builder(ConsentString.consentStringWithNoConsent(0, language, lastVendorList))
+                    .addAllVendors(lastVendorList)
+                    .build();
         }
 
         if (consentString == null) {
@@ -482,24 +755,29 @@ public class ConsentManager implements VendorListManagerListener {
             return false;
         }
 
-        if (consentToolIsShown) {
-            logErrorMessage("ConsentManager is already showing the consent tool UI.");
-            return false;
-        }
+        // The consent tool is marked as shown atomically, so it can't be shown twice.
+        ConsentManagerState currentState;
+        do {
+            currentState = state.get();
 
-        if (lastVendorList == null) {
-            logErrorMessage("ConsentManager cannot show consent tool as no vendor list is available. Please wait.");
-            return false;
-        }
+            if (currentState.isConsentToolShown()) {
+                logErrorMessage("ConsentManager is already showing the consent tool UI.");
+                return false;
+            }
 
-        consentToolIsShown = true;
+            if (currentState.getLastVendorList() == null) {
+                logErrorMessage("ConsentManager cannot show consent tool as no vendor list is available. Please wait.");
+                return false;
+            }
+        } while (!state.compareAndSet(currentState, currentState.withConsentToolShown(true)));
 
         // Start ConsentToolActivity
         Intent intent = new Intent(context, ConsentToolActivity.class);
 
-        migrateConsentStringIfNeeded();
+        currentState = migrateConsentStringIfNeeded();
+        VendorList lastVendorList = currentState.getLastVendorList();
 
-        ConsentString consentString = this.consentString == null ? ConsentString.consentStringWithFullConsent(0, language, lastVendorList) : this.consentString;
+        ConsentString consentString = currentState.getConsentString() == null ? ConsentString.consentStringWithFullConsent(0, language, lastVendorList) : currentState.getConsentString();
 
         intent.putExtra("consent_string", consentString);
         intent.putExtra("vendor_list", lastVendorList);
@@ -515,20 +793,64 @@ public class ConsentManager implements VendorListManagerListener {
      * @param consentString The Base64URL encoded consent string to store.
      */
     public void consentToolClosedWithConsentString(@NonNull String consentString) {
-        consentToolIsShown = false;
-        setConsentString(consentString);
+        ConsentString newConsentString = null;
+        try {
+            newConsentString = ConsentString.fromBase64String(consentString);
+        } catch (Exception ignored) {
+        }
+
+        if (newConsentString != null) {
+            // The consent tool is closed and the new consent string is set in a single state swap.
+            setConsentString(newConsentString, true);
+        } else {
+            ConsentManagerState currentState;
+            do {
+                currentState = state.get();
+            } while (!state.compareAndSet(currentState, currentState.withConsentToolShown(false)));
+        }
     }
 
     /**
      * Migrate the consent string from the used vendor list to the last vendor list.
+     *
+     * @return The state snapshot after the migration.
      */
-    private void migrateConsentStringIfNeeded() {
-        if (consentString != null && usedVendorList != null && lastVendorList != null
-                && consentString.getVendorListVersion() != lastVendorList.getVersion()
-                && usedVendorList.getVersion() == consentString.getVendorListVersion()) {
+    @NonNull
+    private ConsentManagerState migrateConsentStringIfNeeded() {
+        while (true) {
+            ConsentManagerState currentState = state.get();
+            ConsentString consentString = currentState.getConsentString();
+            VendorList usedVendorList = currentState.getUsedVendorList();
+            VendorList lastVendorList = currentState.getLastVendorList();
+
+            if (consentString == null || usedVendorList == null || lastVendorList == null
+                    || consentString.getVendorListVersion() == lastVendorList.getVersion()
+                    || usedVendorList.getVersion() != consentString.getVendorListVersion()) {
+                return currentState;
+            }
+
             // Update the consent string with the last vendor list.
-            consentString = ConsentString.consentStringFromUpdatedVendorList(lastVendorList, usedVendorList, consentString);
+            ConsentManagerState newState = currentState.withConsentString(ConsentString.consentStringFromUpdatedVendorList(lastVendorList, usedVendorList, consentString));
+            if (state.compareAndSet(currentState, newState)) {
+                return newState;
+            }
+        }
+    }
+
+    /**
+     * Handle the vendor list change, unless it has already been handled for this vendor list version.
+     * <p>
+     * Must be called on the main thread.
+     *
+     * @param vendorList The new vendor list.
+     */
+    private void handleVendorListChangedOnce(@NonNull VendorList vendorList) {
+        if (vendorList.getVersion() == handledVendorListVersion) {
+            return;
         }
+
+        handledVendorListVersion = vendorList.getVersion();
+        handleVendorListChanged();
     }
 
     /**
@@ -541,7 +863,7 @@ public class ConsentManager implements VendorListManagerListener {
 
         // Fetching the 'Limited Ad Tracking' status must be done in a background thread. Making it in the main
         // thread will lead to an IllegalStateException.
-        new Thread(new Runnable() {
+        vendorListManager.getExecutor().execute(new Runnable() {
             @Override
             public void run() {
 
@@ -562,6 +884,7 @@ public class ConsentManager implements VendorListManagerListener {
 
                 } catch (IOException e) {
                     // Unable to retrieve the Google Play Service. Cancel the refresh timer to retry as soon as possible.
+                    handledVendorListVersion = -1;
                     vendorListManager.resetTimer();
                     return;
                 }
@@ -571,28 +894,27 @@ public class ConsentManager implements VendorListManagerListener {
                 // wants to handle the display himself...
                 if (!isLATEnable || showConsentToolIfLAT) {
 
-                    migrateConsentStringIfNeeded();
+                    ConsentManagerState currentState = migrateConsentStringIfNeeded();
 
                     if (listener != null) {
                         // The listener is called so the publisher can ask for user's consent.
-                        listener.onShowConsentToolRequest(consentString, lastVendorList);
+                        listener.onShowConsentToolRequest(currentState.getConsentString(), currentState.getLastVendorList());
                     } else {
                         // There is no listener so the CMP asked for user's consent automatically.
                         showConsentTool();
                     }
 
-                    SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
-                    SharedPreferences.Editor editor = prefs.edit();
-                    editor.putLong(LAST_UI_DISPLAY_DATE_KEY, new Date().getTime());
-                    editor.apply();
+                    preferences.edit()
+                            .putLong(LAST_UI_DISPLAY_DATE_KEY, new Date().getTime())
+                            .commit();
 
                 } else {
                     // If 'Limited Ad Tracking' is enabled and the publisher doesn't want to handle it itself, a consent string with no
                     // consent (for all vendors / purposes) is generated and stored.
-                    setConsentString(ConsentString.consentStringWithNoConsent(0, language, lastVendorList));
+                    setConsentString(ConsentString.consentStringWithNoConsent(0, language, state.get().getLastVendorList()));
                 }
             }
-        }).start();
+        });
     }
 
     /**
@@ -605,29 +927,27 @@ public class ConsentManager implements VendorListManagerListener {
     }
 
     /**
-     * Read a string from the SharedPreferences.
+     * Create the storage of the consent: the values are written in a dedicated file and mirrored in the default
+     * SharedPreferences, where the IAB keys are expected by the other SDKs (and can be changed by them).
+     * Note: Package private for test purpose.
      *
-     * @param key          The key in SharedPreferences where the string is possibly saved.
-     * @param defaultValue The default value if the string is not retrieved.
-     * @return the key stored with the given key, or the default value if no string has been found.
+     * @param context       The application context.
+     * @param writeExecutor The executor on which the file is written, or null to write it on the caller thread.
+     * @return The storage of the consent.
      */
-    @SuppressWarnings("SameParameterValue")
-    private String readStringFromSharedPreferences(@NonNull String key, String defaultValue) {
-        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
-        return prefs.getString(key, defaultValue);
+    @NonNull
+    static ConsentStorage createConsentStorage(@NonNull Context context, @Nullable Executor writeExecutor) {
+        return new MirroredConsentStorage(
+                new FileConsentStorage(new File(context.getFilesDir(), CONSENT_STORAGE_FILE_NAME), writeExecutor),
+                new SharedPreferencesConsentStorage(PreferenceManager.getDefaultSharedPreferences(context)));
     }
 
     /**
-     * Save a string in the ShredPreferences.
-     *
-     * @param key    The key in SharedPreferences where the string will be saved.
-     * @param string The string that needs to be saved.
+     * Note: Package private for test purpose.
+     * @return The number of writes of the consent storage made by the ConsentManager.
      */
-    private void saveStringInSharedPreferences(@NonNull String key, @NonNull String string) {
-        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
-        SharedPreferences.Editor editor = prefs.edit();
-        editor.putString(key, string);
-        editor.apply();
+    int getPreferencesWriteCount() {
+        return preferences.getWriteCount();
     }
 
     ///////////////////////////////////////////
@@ -636,17 +956,26 @@ public class ConsentManager implements VendorListManagerListener {
 
     @Override
     public void onVendorListUpdateSuccess(@NonNull final VendorList vendorList) {
-        lastVendorList = vendorList;
+        ConsentManagerState currentState;
+        do {
+            currentState = state.get();
+        } while (!state.compareAndSet(currentState, currentState.withLastVendorList(vendorList)));
+
+        if (currentState.getLastVendorList() == null) {
+            startupTimings.setTimeToFirstVendorList(System.nanoTime() - configureStartTime);
+        }
+
+        ConsentString consentString = currentState.getConsentString();
+        VendorList usedVendorList = currentState.getUsedVendorList();
 
         // If consent string exist
         if (consentString != null) {
 
             // If consent string has a different version than vendor list, ask for consent tool display
-            if (consentString.getVendorListVersion() != lastVendorList.getVersion()) {
+            if (consentString.getVendorListVersion() != vendorList.getVersion()) {
 
                 // Retrieve the lastDisplayUIDate from the shared preferences.
-                SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
-                long nextUIDisplayDate = prefs.getLong(LAST_UI_DISPLAY_DATE_KEY, 0) + uiDisplayInterval;
+                long nextUIDisplayDate = preferences.getLong(LAST_UI_DISPLAY_DATE_KEY, 0) + uiDisplayInterval;
                 Date currentDate = new Date();
 
                 // If the nextUIDisplayDate is reached, then we show to consent tool or call the listener.
@@ -660,10 +989,13 @@ public class ConsentManager implements VendorListManagerListener {
                     vendorListManager.getVendorList(consentString.getVendorListVersion(), new VendorListManagerListener() {
                         @Override
                         public void onVendorListUpdateSuccess(@NonNull VendorList previousVendorList) {
-                            usedVendorList = previousVendorList;
+                            ConsentManagerState currentState;
+                            do {
+                                currentState = state.get();
+                            } while (!state.compareAndSet(currentState, currentState.withUsedVendorList(previousVendorList)));
 
                             if (shouldShowConsentTool) {
-                                handleVendorListChanged();
+                                handleVendorListChangedOnce(vendorList);
                             }
                         }
 
@@ -678,12 +1010,12 @@ public class ConsentManager implements VendorListManagerListener {
 
                     // We already have the vendor list used by the consent string, so we show the consent tool if needed.
                     if (shouldShowConsentTool) {
-                        handleVendorListChanged();
+                        handleVendorListChangedOnce(vendorList);
                     }
                 }
             }
         } else { // Consent string does not exist, ask for consent tool display.
-            handleVendorListChanged();
+            handleVendorListChangedOnce(vendorList);
         }
     }
 
@@ -0,0 +1,17 @@
+package com.smartadserver.android.smartcmp.manager;
+
+/**
+ * Listener called when the ConsentManager is ready, i.e. when the consent stored during a previous session has been
+ * loaded in the background after the configuration.
+ */
+
+public interface ConsentManagerReadyListener {
+
+    /**
+     * Called on the main thread when the ConsentManager is ready.
+     *
+     * @param startupTimings The durations of the startup phases of the ConsentManager.
+     */
+    void onConsentManagerReady(ConsentManagerStartupTimings startupTimings);
+
+}
@@ -0,0 +1,93 @@
+package com.smartadserver.android.smartcmp.manager;
+
+/**
+ * Durations of the startup phases of the ConsentManager, so its contribution to the app cold start can be measured.
+ * <p>
+ * All durations are in nanoseconds, and are -1 as long as the corresponding phase is not completed. All methods are
+ * thread safe.
+ */
+
+@SuppressWarnings("WeakerAccess")
+public class ConsentManagerStartupTimings {
+
+    // The time spent in configure(), on the caller thread.
+    private volatile long configureDuration = -1;
+
+    // The time spent reading the stored consent string, in the background.
+    private volatile long storageReadDuration = -1;
+
+    // The time spent decoding the stored consent string, in the background.
+    private volatile long consentDecodingDuration = -1;
+
+    // The time between the call to configure() and the ConsentManager being ready.
+    private volatile long timeToReady = -1;
+
+    // The time between the call to configure() and the first vendor list being available.
+    private volatile long timeToFirstVendorList = -1;
+
+    /**
+     * @return The time spent in configure(), on the caller thread (in nanoseconds).
+     */
+    public long getConfigureDuration() {
+        return configureDuration;
+    }
+
+    /**
+     * @return The time spent reading the stored consent string, in the background (in nanoseconds).
+     */
+    public long getStorageReadDuration() {
+        return storageReadDuration;
+    }
+
+    /**
+     * @return The time spent decoding the stored consent string, in the background (in nanoseconds).
+     */
+    public long getConsentDecodingDuration() {
+        return consentDecodingDuration;
+    }
+
+    /**
+     * @return The time between the call to configure() and the ConsentManager being ready (in nanoseconds).
+     */
+    public long getTimeToReady() {
+        return timeToReady;
+    }
+
+    /**
+     * @return The time between the call to configure() and the first vendor list being available (in nanoseconds).
+     */
+    public long getTimeToFirstVendorList() {
+        return timeToFirstVendorList;
+    }
+
+    void setConfigureDuration(long configureDuration) {
+        this.configureDuration = configureDuration;
+    }
+
+    void setStorageReadDuration(long storageReadDuration) {
+        this.storageReadDuration = storageReadDuration;
+    }
+
+    void setConsentDecodingDuration(long consentDecodingDuration) {
+        this.consentDecodingDuration = consentDecodingDuration;
+    }
+
+    void setTimeToReady(long timeToReady) {
+        this.timeToReady = timeToReady;
+    }
+
+    void setTimeToFirstVendorList(long timeToFirstVendorList) {
+        this.timeToFirstVendorList = timeToFirstVendorList;
+    }
+
+    @Override
+    public String toString() {
+        return "ConsentManagerStartupTimings{" +
+                "configureDuration=" + configureDuration +
+                ", storageReadDuration=" + storageReadDuration +
+                ", consentDecodingDuration=" + consentDecodingDuration +
+                ", timeToReady=" + timeToReady +
+                ", timeToFirstVendorList=" + timeToFirstVendorList +
+                '}';
+    }
+}
@@ -0,0 +1,139 @@
+package com.smartadserver.android.smartcmp.manager;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.smartadserver.android.smartcmp.consentstring.ConsentString;
+import com.smartadserver.android.smartcmp.consentstring.ConsentView;
+import com.smartadserver.android.smartcmp.model.VendorList;
+
+/**
+ * Immutable snapshot of the state of the ConsentManager.
+ * <p>
+ * The ConsentManager never modifies its state: it swaps the whole snapshot atomically, so any thread reading it gets a
+ * consistent state without locking.
+ */
+
+final class ConsentManagerState {
+
+    // The state of a ConsentManager that has not received anything yet.
+    static final ConsentManagerState EMPTY = new ConsentManagerState(null, null, null, false);
+
+    // The consent string.
+    @Nullable
+    private final ConsentString consentString;
+
+    // The view of the consent string, built once per consent string.
+    @NonNull
+    private final ConsentView consentView;
+
+    // The last parsed vendor list.
+    @Nullable
+    private final VendorList lastVendorList;
+
+    // The vendor list used by the current consent string.
+    @Nullable
+    private final VendorList usedVendorList;
+
+    // Whether or not the consent tool is shown.
+    private final boolean consentToolShown;
+
+    /**
+     * Initialize a state snapshot.
+     *
+     * @param consentString    The consent string.
+     * @param lastVendorList   The last parsed vendor list.
+     * @param usedVendorList   The vendor list used by the current consent string.
+     * @param consentToolShown Whether or not the consent tool is shown.
+     */
+    ConsentManagerState(@Nullable ConsentString consentString, @Nullable VendorList lastVendorList, @Nullable VendorList usedVendorList, boolean consentToolShown) {
+        this(consentString, ConsentView.from(consentString), lastVendorList, usedVendorList, consentToolShown);
+    }
+
+    private ConsentManagerState(@Nullable ConsentString consentString, @NonNull ConsentView consentView, @Nullable VendorList lastVendorList, @Nullable VendorList usedVendorList, boolean consentToolShown) {
+        this.consentString = consentString;
+        this.consentView = consentView;
+        this.lastVendorList = lastVendorList;
+        this.usedVendorList = usedVendorList;
+        this.consentToolShown = consentToolShown;
+    }
+
+    /**
+     * @return The consent string.
+     */
+    @Nullable
+    ConsentString getConsentString() {
+        return consentString;
+    }
+
+    /**
+     * @return The view of the consent string.
+     */
+    @NonNull
+    ConsentView getConsentView() {
+        return consentView;
+    }
+
+    /**
+     * @return The last parsed vendor list.
+     */
+    @Nullable
+    VendorList getLastVendorList() {
+        return lastVendorList;
+    }
+
+    /**
+     * @return The vendor list used by the current consent string.
+     */
+    @Nullable
+    VendorList getUsedVendorList() {
+        return usedVendorList;
+    }
+
+    /**
+     * @return Whether or not the consent tool is shown.
+     */
+    boolean isConsentToolShown() {
+        return consentToolShown;
+    }
+
+    /**
+     * @param consentString The new consent string.
+     * @return A copy of this state with the given consent string.
+     */
+    @NonNull
+    ConsentManagerState withConsentString(@Nullable ConsentString consentString) {
+        if (consentString == this.consentString) {
+            return new ConsentManagerState(consentString, consentView, lastVendorList, usedVendorList, consentToolShown);
+        }
+
+        return new ConsentManagerState(consentString, lastVendorList, usedVendorList, consentToolShown);
+    }
+
+    /**
+     * @param lastVendorList The new last parsed vendor list.
+     * @return A copy of this state with the given last vendor list.
+     */
+    @NonNull
+    ConsentManagerState withLastVendorList(@Nullable VendorList lastVendorList) {
+        return new ConsentManagerState(consentString, consentView, lastVendorList, usedVendorList, consentToolShown);
+    }
+
+    /**
+     * @param usedVendorList The new vendor list used by the consent string.
+     * @return A copy of this state with the given used vendor list.
+     */
+    @NonNull
+    ConsentManagerState withUsedVendorList(@Nullable VendorList usedVendorList) {
+        return new ConsentManagerState(consentString, consentView, lastVendorList, usedVendorList, consentToolShown);
+    }
+
+    /**
+     * @param consentToolShown Whether or not the consent tool is shown.
+     * @return A copy of this state with the given consent tool visibility.
+     */
+    @NonNull
+    ConsentManagerState withConsentToolShown(boolean consentToolShown) {
+        return new ConsentManagerState(consentString, consentView, lastVendorList, usedVendorList, consentToolShown);
+    }
+}
@@ -0,0 +1,129 @@
+package com.smartadserver.android.smartcmp.manager;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+
+import com.smartadserver.android.smartcmp.storage.ConsentStorage;
+
+import java.util.LinkedHashMap;
+
+/**
+ * Transactional access to the storage in which the consent is stored.
+ * <p>
+ * The values of a transaction are written together, in a single write of the storage. The values that are unchanged
+ * are skipped, and a transaction that doesn't change anything doesn't write anything. All methods are thread safe.
+ */
+
+class ConsentPreferences {
+
+    /**
+     * A set of values to write together.
+     */
+    class Transaction {
+
+        // The values to write, by key (String or Long).
+        @NonNull
+        private final LinkedHashMap<String, Object> values = new LinkedHashMap<>();
+
+        private Transaction() {
+        }
+
+        /**
+         * Add a string to the transaction.
+         *
+         * @param key   The key where the string will be saved.
+         * @param value The string that needs to be saved.
+         * @return The transaction.
+         */
+        @NonNull
+        Transaction putString(@NonNull String key, @NonNull String value) {
+            values.put(key, value);
+            return this;
+        }
+
+        /**
+         * Add a long to the transaction.
+         *
+         * @param key   The key where the long will be saved.
+         * @param value The long that needs to be saved.
+         * @return The transaction.
+         */
+        @NonNull
+        Transaction putLong(@NonNull String key, long value) {
+            values.put(key, value);
+            return this;
+        }
+
+        /**
+         * Write the changed values of the transaction in the storage, in a single write.
+         *
+         * @return true if at least one value has been written, false if all the values were unchanged.
+         */
+        boolean commit() {
+            synchronized (ConsentPreferences.this) {
+                if (!storage.write(values)) {
+                    return false;
+                }
+
+                writeCount++;
+                return true;
+            }
+        }
+    }
+
+    // The storage in which the consent is stored.
+    @NonNull
+    private final ConsentStorage storage;
+
+    // The number of transactions actually written.
+    private int writeCount = 0;
+
+    /**
+     * Initialize the consent preferences.
+     *
+     * @param storage The storage in which the consent is stored.
+     */
+    ConsentPreferences(@NonNull ConsentStorage storage) {
+        this.storage = storage;
+    }
+
+    /**
+     * Read a string from the storage.
+     *
+     * @param key          The key where the string is possibly saved.
+     * @param defaultValue The default value if the string is not retrieved.
+     * @return the string stored with the given key, or the default value if no string has been found.
+     */
+    @Nullable
+    String getString(@NonNull String key, @Nullable String defaultValue) {
+        return storage.getString(key, defaultValue);
+    }
+
+    /**
+     * Read a long from the storage.
+     *
+     * @param key          The key where the long is possibly saved.
+     * @param defaultValue The default value if the long is not retrieved.
+     * @return the long stored with the given key, or the default value if no long has been found.
+     */
+    long getLong(@NonNull String key, long defaultValue) {
+        return storage.getLong(key, defaultValue);
+    }
+
+    /**
+     * @return A new transaction, that must be committed to write its values.
+     */
+    @NonNull
+    Transaction edit() {
+        return new Transaction();
+    }
+
+    /**
+     * @return The number of transactions actually written (the transactions without any change are not counted).
+     */
+    @VisibleForTesting
+    synchronized int getWriteCount() {
+        return writeCount;
+    }
+}
@@ -4,6 +4,7 @@ import android.os.Parcel;
 import android.os.Parcelable;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.util.SparseArray;
 
 import com.smartadserver.android.smartcmp.util.DateUtils;
 
@@ -14,6 +15,7 @@ import org.json.JSONObject;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Date;
 
 /**
@@ -26,7 +28,7 @@ public class VendorList implements Parcelable {
     /**
      * class storing all JSON keys used to parse the vendors list.
      */
-    private static class JSONKey {
+    static class JSONKey {
         static public final String VENDOR_LIST_VERSION              = "vendorListVersion";
         static public final String LAST_UPDATED                     = "lastUpdated";
 
@@ -57,26 +59,41 @@ public class VendorList implements Parcelable {
     }
 
     // The vendor list version.
-    private int version;
+    private final int version;
 
     // The date of the last vendor list update.
     @NonNull
-    private Date lastUpdated;
+    private final Date lastUpdated;
 
     // A list of purposes.
     @NonNull
-    private ArrayList<Purpose> purposes;
+    private final ArrayList<Purpose> purposes;
 
     // A list of features.
     @NonNull
-    private ArrayList<Feature> features;
+    private final ArrayList<Feature> features;
 
     // A list of vendors.
     @NonNull
-    private ArrayList<Vendor> vendors;
+    private final ArrayList<Vendor> vendors;
 
-    // A list of activated vendors.
-    private ArrayList<Vendor> activatedVendors;
+    // The maximum vendor id used in the vendor list (computed once, the vendor list being immutable).
+    private final int maxVendorId;
+
+    // The purposes indexed by id.
+    @NonNull
+    private final SparseArray<Purpose> purposesById;
+
+    // The features indexed by id.
+    @NonNull
+    private final SparseArray<Feature> featuresById;
+
+    // The ids of the vendors of the list.
+    @NonNull
+    private final BitSet vendorIds;
+
+    // A list of activated vendors (lazily computed, the vendor list can be shared between threads).
+    private volatile ArrayList<Vendor> activatedVendors;
 
 
     /**
@@ -94,6 +111,11 @@ public class VendorList implements Parcelable {
         this.purposes = purposes;
         this.features = features;
         this.vendors = vendors;
+
+        this.maxVendorId = maxVendorId(vendors);
+        this.purposesById = indexPurposes(purposes);
+        this.featuresById = indexFeatures(features);
+        this.vendorIds = vendorIds(vendors, maxVendorId);
     }
 
     /**
@@ -121,38 +143,32 @@ public class VendorList implements Parcelable {
         }
         this.lastUpdated = lastUpdated;
 
-        JSONArray rawLocalizedPurposesArray = null;
-        JSONArray rawLocalizedFeaturesArray = null;
+        SparseArray<JSONObject> localizedPurposes = null;
+        SparseArray<JSONObject> localizedFeatures = null;
+        SparseArray<JSONObject> localizedVendors = null;
 
         if (localizedJSON != null) {
-            try {
-                rawLocalizedPurposesArray = localizedJSON.getJSONArray(JSONKey.Purposes.PURPOSES);
-            } catch (JSONException e) {
-                // do nothing
-            }
-
-            try {
-                rawLocalizedFeaturesArray = localizedJSON.getJSONArray(JSONKey.Features.FEATURES);
-            } catch (JSONException e) {
-                // do nothing
-            }
+            // The localized items are indexed by id once, so each item can be merged with a single lookup.
+            localizedPurposes = indexLocalizedItems(localizedJSON.optJSONArray(JSONKey.Purposes.PURPOSES));
+            localizedFeatures = indexLocalizedItems(localizedJSON.optJSONArray(JSONKey.Features.FEATURES));
+            localizedVendors = indexLocalizedItems(localizedJSON.optJSONArray(JSONKey.Vendors.VENDORS));
         }
 
-        purposes = parsePurposes(JSON.getJSONArray(JSONKey.Purposes.PURPOSES), rawLocalizedPurposesArray);
-        features = parseFeatures(JSON.getJSONArray(JSONKey.Features.FEATURES), rawLocalizedFeaturesArray);
-        vendors = parseVendors(JSON.getJSONArray(JSONKey.Vendors.VENDORS));
+        purposes = parsePurposes(JSON.getJSONArray(JSONKey.Purposes.PURPOSES), localizedPurposes);
+        features = parseFeatures(JSON.getJSONArray(JSONKey.Features.FEATURES), localizedFeatures);
+        vendors = parseVendors(JSON.getJSONArray(JSONKey.Vendors.VENDORS), localizedVendors);
+
+        maxVendorId = maxVendorId(vendors);
+        purposesById = indexPurposes(purposes);
+        featuresById = indexFeatures(features);
+        vendorIds = vendorIds(vendors, maxVendorId);
     }
 
     /**
      * @return The maximum vendor id used in the vendor list.
      */
     public int getMaxVendorId() {
-        int maxId = 0;
-        for (Vendor vendor : vendors) {
-            maxId = maxId < vendor.getId() ? vendor.getId() : maxId;
-        }
-
-        return maxId;
+        return maxVendorId;
     }
 
     /**
@@ -201,12 +217,7 @@ public class VendorList implements Parcelable {
      * @return The wanted purpose if it exists, null otherwise.
      */
     public Purpose getPurposeWithId(int id) {
-        for (Purpose purpose : purposes) {
-            if (purpose.getId() == id) {
-                return purpose;
-            }
-        }
-        return null;
+        return purposesById.get(id);
     }
 
     /**
@@ -216,12 +227,7 @@ public class VendorList implements Parcelable {
      * @return The wanted feature if it exists, null otherwise.
      */
     public Feature getFeatureWithId(int id) {
-        for (Feature feature : features) {
-            if (feature.getId() == id) {
-                return feature;
-            }
-        }
-        return null;
+        return featuresById.get(id);
     }
 
     /**
@@ -231,19 +237,14 @@ public class VendorList implements Parcelable {
      * @return whether or not the vendor list contains a specific vendor.
      */
     public boolean containsVendorWithId(int id) {
-        for (Vendor vendor : vendors) {
-            if (vendor.getId() == id) {
-                return true;
-            }
-        }
-
-        return false;
+        return id >= 0 && vendorIds.get(id);
     }
 
     /**
      * @return An ArrayList of activated vendors.
      */
     public ArrayList<Vendor> getActivatedVendor() {
+        ArrayList<Vendor> activatedVendors = this.activatedVendors;
         if (activatedVendors == null) {
             activatedVendors = new ArrayList<>();
             for (Vendor vendor : vendors) {
@@ -251,20 +252,126 @@ public class VendorList implements Parcelable {
                     activatedVendors.add(vendor);
                 }
             }
+            this.activatedVendors = activatedVendors;
         }
 
         return activatedVendors;
     }
 
+    /**
+     * Compute the maximum vendor id of a collection of vendors.
+     *
+     * @param vendors A collection of vendors.
+     * @return The maximum vendor id, or 0 if there is no vendor.
+     */
+    static private int maxVendorId(@NonNull ArrayList<Vendor> vendors) {
+        int maxId = 0;
+        for (Vendor vendor : vendors) {
+            maxId = maxId < vendor.getId() ? vendor.getId() : maxId;
+        }
+
+        return maxId;
+    }
+
+    /**
+     * Index a collection of purposes by id (the first purpose is kept if several purposes have the same id).
+     *
+     * @param purposes A collection of purposes.
+     * @return The purposes indexed by id.
+     */
+    @NonNull
+    static private SparseArray<Purpose> indexPurposes(@NonNull ArrayList<Purpose> purposes) {
+        SparseArray<Purpose> purposesById = new SparseArray<>(purposes.size());
+        for (Purpose purpose : purposes) {
+            if (purposesById.indexOfKey(purpose.getId()) < 0) {
+                purposesById.put(purpose.getId(), purpose);
+            }
+        }
+
+        return purposesById;
+    }
+
+    /**
+     * Index a collection of features by id (the first feature is kept if several features have the same id).
+     *
+     * @param features A collection of features.
+     * @return The features indexed by id.
+     */
+    @NonNull
+    static private SparseArray<Feature> indexFeatures(@NonNull ArrayList<Feature> features) {
+        SparseArray<Feature> featuresById = new SparseArray<>(features.size());
+        for (Feature feature : features) {
+            if (featuresById.indexOfKey(feature.getId()) < 0) {
+                featuresById.put(feature.getId(), feature);
+            }
+        }
+
+        return featuresById;
+    }
+
+    /**
+     * Compute the set of the ids of a collection of vendors.
+     *
+     * @param vendors     A collection of vendors.
+     * @param maxVendorId The maximum vendor id of the collection.
+     * @return A bit set in which the bit of each vendor id is set.
+     */
+    @NonNull
+    static private BitSet vendorIds(@NonNull ArrayList<Vendor> vendors, int maxVendorId) {
+        BitSet vendorIds = new BitSet(maxVendorId + 1);
+        for (Vendor vendor : vendors) {
+            if (vendor.getId() >= 0) {
+                vendorIds.set(vendor.getId());
+            }
+        }
+
+        return vendorIds;
+    }
+
+    /**
+     * Index the items of a localized JSON array by id.
+     * <p>
+     * Items without a valid id are ignored. If several items have the same id, the first one is kept.
+     *
+     * @param rawLocalizedArray A collection of localized items in JSON format.
+     * @return The localized items by id, or null if there is no localized array.
+     */
+    @Nullable
+    static private SparseArray<JSONObject> indexLocalizedItems(@Nullable JSONArray rawLocalizedArray) {
+        if (rawLocalizedArray == null) {
+            return null;
+        }
+
+        SparseArray<JSONObject> localizedItems = new SparseArray<>(rawLocalizedArray.length());
+        for (int i = 0; i < rawLocalizedArray.length(); i++) {
+            JSONObject rawLocalizedItem = rawLocalizedArray.optJSONObject(i);
+            if (rawLocalizedItem == null || !rawLocalizedItem.has(JSONKey.Purposes.ID)) {
+                continue;
+            }
+
+            try {
+                int id = rawLocalizedItem.getInt(JSONKey.Purposes.ID);
+                if (localizedItems.indexOfKey(id) < 0) {
+                    localizedItems.put(id, rawLocalizedItem);
+                }
+            } catch (JSONException e) {
+                // Do not throw exception if a localized item is invalid, it will just not be used.
+            }
+        }
+
+        return localizedItems;
+    }
+
     /**
      * Parse a collection of purposes.
      *
-     * @param rawPurposesArray A collection of purposes in JSON format.
+     * @param rawPurposesArray  A collection of purposes in JSON format.
+     * @param localizedPurposes The localized purposes indexed by id, if any.
      * @return An ArrayList of purposes, or throw an exception if the JSON is invalid.
      * @throws JSONException if JSON is invalid.
      */
-    static private ArrayList<Purpose> parsePurposes(@NonNull JSONArray rawPurposesArray, @Nullable JSONArray rawLocalizedPurposesArray) throws JSONException {
-        ArrayList<Purpose> purposes = new ArrayList<>();
+    static private ArrayList<Purpose> parsePurposes(@NonNull JSONArray rawPurposesArray, @Nullable SparseArray<JSONObject> localizedPurposes) throws JSONException {
+        ArrayList<Purpose> purposes = new ArrayList<>(rawPurposesArray.length());
 
         for (int i = 0; i < rawPurposesArray.length(); i++) {
             JSONObject rawPurpose = (JSONObject) rawPurposesArray.get(i);
@@ -273,30 +380,11 @@ public class VendorList implements Parcelable {
             String name = rawPurpose.getString(JSONKey.Purposes.NAME);
             String description = rawPurpose.getString(JSONKey.Purposes.DESCRIPTION);
 
-            if (rawLocalizedPurposesArray != null) {
-                try {
-                    // try to get the localization. Do not throw exception if something is missing.
-                    for (int idx = 0; idx < rawLocalizedPurposesArray.length(); idx++) {
-                        JSONObject rawLocalizedPurpose = (JSONObject) rawLocalizedPurposesArray.get(idx);
-
-                        if (rawLocalizedPurpose.getInt(JSONKey.Purposes.ID) == id) {
-                            try {
-                                name = rawLocalizedPurpose.getString(JSONKey.Purposes.NAME);
-                            } catch (Exception e) {
-                                // do nothing
-                            }
-
-                            try {
-                                description = rawLocalizedPurpose.getString(JSONKey.Purposes.DESCRIPTION);
-                            } catch (Exception e) {
-                                // do nothing
-                            }
-                            break;
-                        }
-                    }
-                } catch (Exception e) {
-                    // do nothing
-                }
+            // Use the localization if any. Missing localized fields are not an error.
+            JSONObject rawLocalizedPurpose = localizedPurposes != null ? localizedPurposes.get(id) : null;
+            if (rawLocalizedPurpose != null) {
+                name = rawLocalizedPurpose.optString(JSONKey.Purposes.NAME, name);
+                description = rawLocalizedPurpose.optString(JSONKey.Purposes.DESCRIPTION, description);
             }
 
             purposes.add(new Purpose(id, name, description));
@@ -308,12 +396,13 @@ public class VendorList implements Parcelable {
     /**
      * Parse a collection of features.
      *
-     * @param rawFeaturesArray A collection of purposes in JSON format.
+     * @param rawFeaturesArray  A collection of features in JSON format.
+     * @param localizedFeatures The localized features indexed by id, if any.
      * @return An ArrayList of features, or throw an exception if the JSON is invalid.
      * @throws JSONException if JSON is invalid.
      */
-    static private ArrayList<Feature> parseFeatures(@NonNull JSONArray rawFeaturesArray, @Nullable JSONArray rawLocalizedFeaturesArray) throws JSONException {
-        ArrayList<Feature> features = new ArrayList<>();
+    static private ArrayList<Feature> parseFeatures(@NonNull JSONArray rawFeaturesArray, @Nullable SparseArray<JSONObject> localizedFeatures) throws JSONException {
+        ArrayList<Feature> features = new ArrayList<>(rawFeaturesArray.length());
 
         for (int i = 0; i < rawFeaturesArray.length(); i++) {
             JSONObject rawFeature = (JSONObject) rawFeaturesArray.get(i);
@@ -322,30 +411,11 @@ public class VendorList implements Parcelable {
             String name = rawFeature.getString(JSONKey.Features.NAME);
             String description = rawFeature.getString(JSONKey.Features.DESCRIPTION);
 
-            if (rawLocalizedFeaturesArray != null) {
-                try {
-                    // try to get the localization. Do not throw exception if something is missing.
-                    for (int idx = 0; idx < rawLocalizedFeaturesArray.length(); idx++) {
-                        JSONObject rawLocalizedFeature = (JSONObject) rawLocalizedFeaturesArray.get(idx);
-
-                        if (rawLocalizedFeature.getInt(JSONKey.Features.ID) == id) {
-                            try {
-                                name = rawLocalizedFeature.getString(JSONKey.Features.NAME);
-                            } catch (Exception e) {
-                                // do nothing
-                            }
-
-                            try {
-                                description = rawLocalizedFeature.getString(JSONKey.Features.DESCRIPTION);
-                            } catch (Exception e) {
-                                // do nothing
-                            }
-                            break;
-                        }
-                    }
-                } catch (Exception e) {
-                    // do nothing
-                }
+            // Use the localization if any. Missing localized fields are not an error.
+            JSONObject rawLocalizedFeature = localizedFeatures != null ? localizedFeatures.get(id) : null;
+            if (rawLocalizedFeature != null) {
+                name = rawLocalizedFeature.optString(JSONKey.Features.NAME, name);
+                description = rawLocalizedFeature.optString(JSONKey.Features.DESCRIPTION, description);
             }
 
             features.add(new Feature(id, name, description));
@@ -357,20 +427,28 @@ public class VendorList implements Parcelable {
     /**
      * Parse a collection of vendors.
      *
-     * @param rawVendorsArray A collection of features in JSON format.
+     * @param rawVendorsArray  A collection of vendors in JSON format.
+     * @param localizedVendors The localized vendors indexed by id, if any.
      * @return An ArrayList of vendors, or throw an exception if the JSON is invalid.
      * @throws JSONException if JSON is invalid.
      */
-    static private ArrayList<Vendor> parseVendors(@NonNull JSONArray rawVendorsArray) throws JSONException {
-        ArrayList<Vendor> vendors = new ArrayList<>();
+    static private ArrayList<Vendor> parseVendors(@NonNull JSONArray rawVendorsArray, @Nullable SparseArray<JSONObject> localizedVendors) throws JSONException {
+        ArrayList<Vendor> vendors = new ArrayList<>(rawVendorsArray.length());
 
         for (int i = 0; i < rawVendorsArray.length(); i++) {
             JSONObject rawVendor = (JSONObject) rawVendorsArray.get(i);
 
             int id = rawVendor.getInt(JSONKey.Vendors.ID);
             String name = rawVendor.getString(JSONKey.Vendors.NAME);
-
             String policyURLString = rawVendor.getString(JSONKey.Vendors.POLICY_URL);
+
+            // Use the localization if any (vendor name & privacy policy URL). Missing localized fields are not an error.
+            JSONObject rawLocalizedVendor = localizedVendors != null ? localizedVendors.get(id) : null;
+            if (rawLocalizedVendor != null) {
+                name = rawLocalizedVendor.optString(JSONKey.Vendors.NAME, name);
+                policyURLString = rawLocalizedVendor.optString(JSONKey.Vendors.POLICY_URL, policyURLString);
+            }
+
             URL policyURL = null;
             try {
                 policyURL = new URL(policyURLString);
@@ -456,6 +534,11 @@ public class VendorList implements Parcelable {
         this.purposes = in.createTypedArrayList(Purpose.CREATOR);
         this.features = in.createTypedArrayList(Feature.CREATOR);
         this.vendors = in.createTypedArrayList(Vendor.CREATOR);
+
+        this.maxVendorId = maxVendorId(vendors);
+        this.purposesById = indexPurposes(purposes);
+        this.featuresById = indexFeatures(features);
+        this.vendorIds = vendorIds(vendors, maxVendorId);
     }
 
     public static final Creator<VendorList> CREATOR = new Creator<VendorList>() {
@@ -0,0 +1,463 @@
+package com.smartadserver.android.smartcmp.model;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.MalformedJsonException;
+import android.util.SparseArray;
+
+import com.smartadserver.android.smartcmp.util.DateUtils;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Date;
+
+/**
+ * Streaming parser building a VendorList directly from a vendor list JSON stream, without building an intermediate JSONObject.
+ * <p>
+ * Note: the parser never closes the streams it reads from.
+ */
+
+@SuppressWarnings("WeakerAccess")
+public class VendorListParser {
+
+    /**
+     * Parse a vendor list JSON stream.
+     *
+     * @param vendorListStream The stream of the vendor list JSON (UTF-8 encoded).
+     * @return The parsed vendor list.
+     * @throws IOException   if the stream can't be read.
+     * @throws JSONException if the JSON is invalid.
+     */
+    @NonNull
+    static public VendorList parse(@NonNull InputStream vendorListStream) throws IOException, JSONException {
+        JsonReader reader = new JsonReader(new InputStreamReader(vendorListStream, "UTF-8"));
+
+        try {
+            return readVendorList(reader);
+        } catch (IllegalStateException | NumberFormatException | MalformedJsonException e) {
+            throw new JSONException("Invalid vendor list JSON: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Return a localized copy of a vendor list, using a localized vendor list JSON stream.
+     * <p>
+     * Purposes, features and vendors missing from the localized vendor list are kept untouched. The localized items are
+     * indexed by id while being read, so each item of the vendor list is merged with a single lookup.
+     *
+     * @param vendorList                The vendor list that needs to be localized.
+     * @param localizedVendorListStream The stream of the localized vendor list JSON (UTF-8 encoded).
+     * @return A new localized vendor list.
+     * @throws IOException   if the stream can't be read.
+     * @throws JSONException if the JSON is invalid.
+     */
+    @NonNull
+    static public VendorList localize(@NonNull VendorList vendorList, @NonNull InputStream localizedVendorListStream) throws IOException, JSONException {
+        JsonReader reader = new JsonReader(new InputStreamReader(localizedVendorListStream, "UTF-8"));
+
+        SparseArray<String[]> localizedPurposes = new SparseArray<>();
+        SparseArray<String[]> localizedFeatures = new SparseArray<>();
+        SparseArray<String[]> localizedVendors = new SparseArray<>();
+
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case VendorList.JSONKey.Purposes.PURPOSES:
+                        readLocalizedItems(reader, localizedPurposes, VendorList.JSONKey.Purposes.NAME, VendorList.JSONKey.Purposes.DESCRIPTION);
+                        break;
+                    case VendorList.JSONKey.Features.FEATURES:
+                        readLocalizedItems(reader, localizedFeatures, VendorList.JSONKey.Features.NAME, VendorList.JSONKey.Features.DESCRIPTION);
+                        break;
+                    case VendorList.JSONKey.Vendors.VENDORS:
+                        readLocalizedItems(reader, localizedVendors, VendorList.JSONKey.Vendors.NAME, VendorList.JSONKey.Vendors.POLICY_URL);
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+        } catch (IllegalStateException | NumberFormatException | MalformedJsonException e) {
+            throw new JSONException("Invalid localized vendor list JSON: " + e.getMessage());
+        }
+
+        ArrayList<Purpose> purposes = new ArrayList<>(vendorList.getPurposes().size());
+        for (Purpose purpose : vendorList.getPurposes()) {
+            String[] localization = localizedPurposes.get(purpose.getId());
+            purposes.add(localization == null ? purpose : new Purpose(purpose.getId(),
+                    localization[0] != null ? localization[0] : purpose.getName(),
+                    localization[1] != null ? localization[1] : purpose.getDescription()));
+        }
+
+        ArrayList<Feature> features = new ArrayList<>(vendorList.getFeatures().size());
+        for (Feature feature : vendorList.getFeatures()) {
+            String[] localization = localizedFeatures.get(feature.getId());
+            features.add(localization == null ? feature : new Feature(feature.getId(),
+                    localization[0] != null ? localization[0] : feature.getName(),
+                    localization[1] != null ? localization[1] : feature.getDescription()));
+        }
+
+        ArrayList<Vendor> vendors = vendorList.getVendors();
+        if (localizedVendors.size() > 0) {
+            vendors = new ArrayList<>(vendorList.getVendors().size());
+            for (Vendor vendor : vendorList.getVendors()) {
+                String[] localization = localizedVendors.get(vendor.getId());
+                vendors.add(localization == null ? vendor : new Vendor(vendor.getId(),
+                        localization[0] != null ? localization[0] : vendor.getName(),
+                        vendor.getPurposes(),
+                        vendor.getLegitimatePurposes(),
+                        vendor.getFeatures(),
+                        localization[1] != null ? policyURLOrNull(localization[1]) : vendor.getPolicyURL(),
+                        vendor.getDeletedDate()));
+            }
+        }
+
+        return new VendorList(vendorList.getVersion(), vendorList.getLastUpdated(), purposes, features, vendors);
+    }
+
+    /**
+     * Read the root object of a vendor list JSON.
+     *
+     * @param reader The JSON reader.
+     * @return The parsed vendor list.
+     * @throws IOException   if the stream can't be read.
+     * @throws JSONException if a mandatory field is missing or invalid.
+     */
+    @NonNull
+    static private VendorList readVendorList(@NonNull JsonReader reader) throws IOException, JSONException {
+        Integer version = null;
+        Date lastUpdated = null;
+        ArrayList<Purpose> purposes = null;
+        ArrayList<Feature> features = null;
+        ArrayList<Vendor> vendors = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case VendorList.JSONKey.VENDOR_LIST_VERSION:
+                    version = reader.nextInt();
+                    break;
+                case VendorList.JSONKey.LAST_UPDATED:
+                    lastUpdated = DateUtils.dateFromString(reader.nextString());
+                    if (lastUpdated == null) {
+                        throw new JSONException("lastUpdated date format invalid.");
+                    }
+                    break;
+                case VendorList.JSONKey.Purposes.PURPOSES:
+                    purposes = readPurposes(reader);
+                    break;
+                case VendorList.JSONKey.Features.FEATURES:
+                    features = readFeatures(reader);
+                    break;
+                case VendorList.JSONKey.Vendors.VENDORS:
+                    vendors = readVendors(reader);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        return new VendorList(required(version, VendorList.JSONKey.VENDOR_LIST_VERSION),
+                required(lastUpdated, VendorList.JSONKey.LAST_UPDATED),
+                required(purposes, VendorList.JSONKey.Purposes.PURPOSES),
+                required(features, VendorList.JSONKey.Features.FEATURES),
+                required(vendors, VendorList.JSONKey.Vendors.VENDORS));
+    }
+
+    /**
+     * Read an array of purposes.
+     *
+     * @param reader The JSON reader.
+     * @return An ArrayList of purposes.
+     * @throws IOException   if the stream can't be read.
+     * @throws JSONException if a mandatory field is missing.
+     */
+    @NonNull
+    static private ArrayList<Purpose> readPurposes(@NonNull JsonReader reader) throws IOException, JSONException {
+        ArrayList<Purpose> purposes = new ArrayList<>();
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            Integer id = null;
+            String name = null;
+            String description = null;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case VendorList.JSONKey.Purposes.ID:
+                        id = reader.nextInt();
+                        break;
+                    case VendorList.JSONKey.Purposes.NAME:
+                        name = nextStringOrNull(reader);
+                        break;
+                    case VendorList.JSONKey.Purposes.DESCRIPTION:
+                        description = nextStringOrNull(reader);
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+
+            purposes.add(new Purpose(required(id, VendorList.JSONKey.Purposes.ID),
+                    required(name, VendorList.JSONKey.Purposes.NAME),
+                    required(description, VendorList.JSONKey.Purposes.DESCRIPTION)));
+        }
+        reader.endArray();
+
+        return purposes;
+    }
+
+    /**
+     * Read an array of features.
+     *
+     * @param reader The JSON reader.
+     * @return An ArrayList of features.
+     * @throws IOException   if the stream can't be read.
+     * @throws JSONException if a mandatory field is missing.
+     */
+    @NonNull
+    static private ArrayList<Feature> readFeatures(@NonNull JsonReader reader) throws IOException, JSONException {
+        ArrayList<Feature> features = new ArrayList<>();
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            Integer id = null;
+            String name = null;
+            String description = null;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case VendorList.JSONKey.Features.ID:
+                        id = reader.nextInt();
+                        break;
+                    case VendorList.JSONKey.Features.NAME:
+                        name = nextStringOrNull(reader);
+                        break;
+                    case VendorList.JSONKey.Features.DESCRIPTION:
+                        description = nextStringOrNull(reader);
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+
+            features.add(new Feature(required(id, VendorList.JSONKey.Features.ID),
+                    required(name, VendorList.JSONKey.Features.NAME),
+                    required(description, VendorList.JSONKey.Features.DESCRIPTION)));
+        }
+        reader.endArray();
+
+        return features;
+    }
+
+    /**
+     * Read an array of vendors.
+     *
+     * @param reader The JSON reader.
+     * @return An ArrayList of vendors.
+     * @throws IOException   if the stream can't be read.
+     * @throws JSONException if a mandatory field is missing.
+     */
+    @NonNull
+    static private ArrayList<Vendor> readVendors(@NonNull JsonReader reader) throws IOException, JSONException {
+        ArrayList<Vendor> vendors = new ArrayList<>();
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            Integer id = null;
+            String name = null;
+            String policyURLString = null;
+            ArrayList<Integer> purposes = null;
+            ArrayList<Integer> legPurposes = null;
+            ArrayList<Integer> features = null;
+            Date deletedDate = null;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case VendorList.JSONKey.Vendors.ID:
+                        id = reader.nextInt();
+                        break;
+                    case VendorList.JSONKey.Vendors.NAME:
+                        name = nextStringOrNull(reader);
+                        break;
+                    case VendorList.JSONKey.Vendors.POLICY_URL:
+                        policyURLString = nextStringOrNull(reader);
+                        break;
+                    case VendorList.JSONKey.Vendors.PURPOSE_IDS:
+                        purposes = readIds(reader);
+                        break;
+                    case VendorList.JSONKey.Vendors.LEGITIMATE_PURPOSE_IDS:
+                        legPurposes = readIds(reader);
+                        break;
+                    case VendorList.JSONKey.Vendors.FEATURE_IDS:
+                        features = readIds(reader);
+                        break;
+                    case VendorList.JSONKey.Vendors.DELETED_DATE:
+                        // deletedDate can be undefined.
+                        String deletedDateString = nextStringOrNull(reader);
+                        deletedDate = deletedDateString != null ? DateUtils.dateFromString(deletedDateString) : null;
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+
+            URL policyURL = policyURLOrNull(required(policyURLString, VendorList.JSONKey.Vendors.POLICY_URL));
+
+            vendors.add(new Vendor(required(id, VendorList.JSONKey.Vendors.ID),
+                    required(name, VendorList.JSONKey.Vendors.NAME),
+                    required(purposes, VendorList.JSONKey.Vendors.PURPOSE_IDS),
+                    required(legPurposes, VendorList.JSONKey.Vendors.LEGITIMATE_PURPOSE_IDS),
+                    required(features, VendorList.JSONKey.Vendors.FEATURE_IDS),
+                    policyURL,
+                    deletedDate));
+        }
+        reader.endArray();
+
+        return vendors;
+    }
+
+    /**
+     * Read an array of ids.
+     *
+     * @param reader The JSON reader.
+     * @return An ArrayList of ids.
+     * @throws IOException if the stream can't be read.
+     */
+    @NonNull
+    static private ArrayList<Integer> readIds(@NonNull JsonReader reader) throws IOException {
+        ArrayList<Integer> ids = new ArrayList<>();
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            ids.add(reader.nextInt());
+        }
+        reader.endArray();
+
+        return ids;
+    }
+
+    /**
+     * Read an array of localized items into a sparse array of localized values by id.
+     * <p>
+     * Items without id are ignored, missing values are stored as null.
+     *
+     * @param reader         The JSON reader.
+     * @param localizedItems The sparse array in which the localized values are stored.
+     * @param keys           The JSON keys of the localized values, in the order they are stored.
+     * @throws IOException if the stream can't be read.
+     */
+    static private void readLocalizedItems(@NonNull JsonReader reader, @NonNull SparseArray<String[]> localizedItems, @NonNull String... keys) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            Integer id = null;
+            String[] localization = new String[keys.length];
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (VendorList.JSONKey.Purposes.ID.equals(name)) {
+                    id = reader.nextInt();
+                    continue;
+                }
+
+                int keyIndex = indexOf(keys, name);
+                if (keyIndex >= 0) {
+                    localization[keyIndex] = nextStringOrNull(reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            if (id != null && localizedItems.indexOfKey(id) < 0) {
+                localizedItems.put(id, localization);
+            }
+        }
+        reader.endArray();
+    }
+
+    /**
+     * Find a key in an array of keys.
+     *
+     * @param keys The array of keys.
+     * @param key  The key to find.
+     * @return The index of the key, or -1 if it is not found.
+     */
+    static private int indexOf(@NonNull String[] keys, @NonNull String key) {
+        for (int idx = 0; idx < keys.length; idx++) {
+            if (keys[idx].equals(key)) {
+                return idx;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Create a privacy policy URL.
+     *
+     * @param policyURLString The privacy policy URL string.
+     * @return The privacy policy URL, or null if the string is not a valid URL.
+     */
+    @Nullable
+    static private URL policyURLOrNull(@NonNull String policyURLString) {
+        try {
+            return new URL(policyURLString);
+        } catch (MalformedURLException e) {
+            // The privacy policy URL is optional, no need to throw exception if the URL is malformed.
+            return null;
+        }
+    }
+
+    /**
+     * Read the next string value, or consume the next null value.
+     *
+     * @param reader The JSON reader.
+     * @return The next string value, or null if the next value is null.
+     * @throws IOException if the stream can't be read.
+     */
+    @Nullable
+    static private String nextStringOrNull(@NonNull JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+
+    /**
+     * Check that a mandatory field has been found.
+     *
+     * @param value The value of the field.
+     * @param key   The JSON key of the field.
+     * @return The value of the field.
+     * @throws JSONException if the value is null.
+     */
+    @NonNull
+    static private <T> T required(@Nullable T value, @NonNull String key) throws JSONException {
+        if (value == null) {
+            throw new JSONException("Missing or null value for key '" + key + "'.");
+        }
+        return value;
+    }
+}
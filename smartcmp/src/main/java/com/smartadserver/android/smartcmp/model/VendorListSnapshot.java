@@ -0,0 +1,418 @@
+package com.smartadserver.android.smartcmp.model;
+
+import android.support.annotation.NonNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Compact binary serialization of a VendorList, that can be read back without any JSON parsing.
+ * <p>
+ * A snapshot is made of a header (magic number & format version), the vendor list version and last update date, a
+ * table of all the distinct strings of the vendor list (names, descriptions & privacy policy URLs), then the purposes,
+ * features and vendors. Strings are referenced by their index in the table, and every integer except the dates is
+ * stored as an unsigned varint (7 bits per byte, least significant group first).
+ * <p>
+ * Note: the writer never closes the streams it writes to.
+ */
+
+@SuppressWarnings("WeakerAccess")
+public class VendorListSnapshot {
+
+    // The magic number identifying a vendor list snapshot ('SVLS').
+    static private final int MAGIC = 0x53564C53;
+
+    // The version of the snapshot format. Snapshots written with another format version are rejected.
+    static private final int FORMAT_VERSION = 1;
+
+    // The charset used to encode the strings of the string table.
+    static private final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // The string index used when a vendor has no privacy policy URL.
+    static private final int NO_STRING = 0;
+
+    // The flag set on a vendor having a deleted date.
+    static private final int VENDOR_FLAG_DELETED = 1;
+
+    /**
+     * Serialize a vendor list into a new byte array.
+     *
+     * @param vendorList The vendor list that needs to be serialized.
+     * @return The vendor list snapshot.
+     */
+    @NonNull
+    static public byte[] toByteArray(@NonNull VendorList vendorList) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try {
+            write(vendorList, outputStream);
+        } catch (IOException e) {
+            // Can't happen with a ByteArrayOutputStream.
+            throw new IllegalStateException(e);
+        }
+
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Serialize a vendor list into a stream.
+     *
+     * @param vendorList   The vendor list that needs to be serialized.
+     * @param outputStream The stream in which the snapshot is written.
+     * @throws IOException if the stream can't be written.
+     */
+    static public void write(@NonNull VendorList vendorList, @NonNull OutputStream outputStream) throws IOException {
+        // The string table is built first (index 0 is reserved for the missing strings).
+        HashMap<String, Integer> stringIndexes = new HashMap<>();
+        ArrayList<String> strings = new ArrayList<>();
+        for (Purpose purpose : vendorList.getPurposes()) {
+            addString(purpose.getName(), stringIndexes, strings);
+            addString(purpose.getDescription(), stringIndexes, strings);
+        }
+        for (Feature feature : vendorList.getFeatures()) {
+            addString(feature.getName(), stringIndexes, strings);
+            addString(feature.getDescription(), stringIndexes, strings);
+        }
+        for (Vendor vendor : vendorList.getVendors()) {
+            addString(vendor.getName(), stringIndexes, strings);
+            if (vendor.getPolicyURL() != null) {
+                addString(vendor.getPolicyURL().toString(), stringIndexes, strings);
+            }
+        }
+
+        Writer writer = new Writer();
+        writer.writeInt(MAGIC);
+        writer.writeVarint(FORMAT_VERSION);
+        writer.writeVarint(vendorList.getVersion());
+        writer.writeLong(vendorList.getLastUpdated().getTime());
+
+        writer.writeVarint(strings.size());
+        for (String string : strings) {
+            byte[] bytes = string.getBytes(UTF_8);
+            writer.writeVarint(bytes.length);
+            writer.write(bytes, 0, bytes.length);
+        }
+
+        writer.writeVarint(vendorList.getPurposes().size());
+        for (Purpose purpose : vendorList.getPurposes()) {
+            writer.writeVarint(purpose.getId());
+            writer.writeVarint(stringIndexes.get(purpose.getName()));
+            writer.writeVarint(stringIndexes.get(purpose.getDescription()));
+        }
+
+        writer.writeVarint(vendorList.getFeatures().size());
+        for (Feature feature : vendorList.getFeatures()) {
+            writer.writeVarint(feature.getId());
+            writer.writeVarint(stringIndexes.get(feature.getName()));
+            writer.writeVarint(stringIndexes.get(feature.getDescription()));
+        }
+
+        writer.writeVarint(vendorList.getVendors().size());
+        for (Vendor vendor : vendorList.getVendors()) {
+            writer.writeVarint(vendor.getId());
+            writer.writeVarint(stringIndexes.get(vendor.getName()));
+            writer.writeVarint(vendor.getPolicyURL() != null ? stringIndexes.get(vendor.getPolicyURL().toString()) : NO_STRING);
+            writer.writeIds(vendor.getPurposes());
+            writer.writeIds(vendor.getLegitimatePurposes());
+            writer.writeIds(vendor.getFeatures());
+
+            Date deletedDate = vendor.getDeletedDate();
+            writer.writeVarint(deletedDate != null ? VENDOR_FLAG_DELETED : 0);
+            if (deletedDate != null) {
+                writer.writeLong(deletedDate.getTime());
+            }
+        }
+
+        writer.writeTo(outputStream);
+    }
+
+    /**
+     * Deserialize a vendor list snapshot stored in a byte array.
+     *
+     * @param snapshot The vendor list snapshot.
+     * @return The deserialized vendor list.
+     * @throws IOException if the snapshot is invalid.
+     */
+    @NonNull
+    static public VendorList read(@NonNull byte[] snapshot) throws IOException {
+        return read(ByteBuffer.wrap(snapshot));
+    }
+
+    /**
+     * Deserialize a vendor list snapshot stored in a file, by memory-mapping it.
+     *
+     * @param snapshotFile The file storing the vendor list snapshot.
+     * @return The deserialized vendor list.
+     * @throws IOException if the file can't be read or if the snapshot is invalid.
+     */
+    @NonNull
+    static public VendorList read(@NonNull File snapshotFile) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(snapshotFile, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Deserialize a vendor list snapshot stored in a buffer, starting at its current position.
+     * <p>
+     * The position of the buffer is moved to the end of the snapshot.
+     *
+     * @param buffer The buffer storing the vendor list snapshot.
+     * @return The deserialized vendor list.
+     * @throws IOException if the snapshot is invalid.
+     */
+    @NonNull
+    static public VendorList read(@NonNull ByteBuffer buffer) throws IOException {
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Invalid vendor list snapshot: wrong magic number.");
+            }
+
+            int formatVersion = readVarint(buffer);
+            if (formatVersion != FORMAT_VERSION) {
+                throw new IOException("Unsupported vendor list snapshot format version " + formatVersion + ".");
+            }
+
+            int version = readVarint(buffer);
+            Date lastUpdated = new Date(buffer.getLong());
+
+            String[] strings = new String[readCount(buffer) + 1];
+            for (int i = 1; i < strings.length; i++) {
+                strings[i] = readString(buffer);
+            }
+
+            int purposesCount = readCount(buffer);
+            ArrayList<Purpose> purposes = new ArrayList<>(purposesCount);
+            for (int i = 0; i < purposesCount; i++) {
+                purposes.add(new Purpose(readVarint(buffer), readIndexedString(buffer, strings), readIndexedString(buffer, strings)));
+            }
+
+            int featuresCount = readCount(buffer);
+            ArrayList<Feature> features = new ArrayList<>(featuresCount);
+            for (int i = 0; i < featuresCount; i++) {
+                features.add(new Feature(readVarint(buffer), readIndexedString(buffer, strings), readIndexedString(buffer, strings)));
+            }
+
+            int vendorsCount = readCount(buffer);
+            ArrayList<Vendor> vendors = new ArrayList<>(vendorsCount);
+            for (int i = 0; i < vendorsCount; i++) {
+                int id = readVarint(buffer);
+                String name = readIndexedString(buffer, strings);
+
+                URL policyURL = null;
+                int policyURLIndex = readVarint(buffer);
+                if (policyURLIndex != NO_STRING) {
+                    try {
+                        policyURL = new URL(indexedString(policyURLIndex, strings));
+                    } catch (MalformedURLException e) {
+                        // The privacy policy URL is optional, no need to throw exception if the URL is malformed.
+                    }
+                }
+
+                ArrayList<Integer> purposeIds = readIds(buffer);
+                ArrayList<Integer> legitimatePurposeIds = readIds(buffer);
+                ArrayList<Integer> featureIds = readIds(buffer);
+
+                Date deletedDate = null;
+                if ((readVarint(buffer) & VENDOR_FLAG_DELETED) != 0) {
+                    deletedDate = new Date(buffer.getLong());
+                }
+
+                vendors.add(new Vendor(id, name, purposeIds, legitimatePurposeIds, featureIds, policyURL, deletedDate));
+            }
+
+            return new VendorList(version, lastUpdated, purposes, features, vendors);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Invalid vendor list snapshot: unexpected end of data.");
+        }
+    }
+
+    /**
+     * Add a string to the string table if it is not already there.
+     *
+     * @param string        The string.
+     * @param stringIndexes The index of each string of the table.
+     * @param strings       The strings of the table.
+     */
+    static private void addString(@NonNull String string, @NonNull HashMap<String, Integer> stringIndexes, @NonNull ArrayList<String> strings) {
+        if (!stringIndexes.containsKey(string)) {
+            strings.add(string);
+            stringIndexes.put(string, strings.size());
+        }
+    }
+
+    /**
+     * Read an unsigned varint.
+     *
+     * @param buffer The buffer to read from.
+     * @return The decoded integer.
+     * @throws IOException if the varint is longer than 5 bytes.
+     */
+    static private int readVarint(@NonNull ByteBuffer buffer) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+
+        throw new IOException("Invalid vendor list snapshot: malformed varint.");
+    }
+
+    /**
+     * Read a number of elements, checking that it can't exceed the remaining data (every element takes at least one byte).
+     *
+     * @param buffer The buffer to read from.
+     * @return The number of elements.
+     * @throws IOException if the number of elements is invalid.
+     */
+    static private int readCount(@NonNull ByteBuffer buffer) throws IOException {
+        int count = readVarint(buffer);
+        if (count < 0 || count > buffer.remaining()) {
+            throw new IOException("Invalid vendor list snapshot: invalid count " + count + ".");
+        }
+
+        return count;
+    }
+
+    /**
+     * Read a length prefixed UTF-8 string.
+     *
+     * @param buffer The buffer to read from.
+     * @return The decoded string.
+     * @throws IOException if the string is invalid.
+     */
+    @NonNull
+    static private String readString(@NonNull ByteBuffer buffer) throws IOException {
+        int length = readCount(buffer);
+        if (buffer.hasArray()) {
+            // Decode the string in place, without copying the bytes.
+            String string = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, UTF_8);
+            buffer.position(buffer.position() + length);
+            return string;
+        }
+
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * Read a reference to the string table.
+     *
+     * @param buffer  The buffer to read from.
+     * @param strings The string table.
+     * @return The referenced string.
+     * @throws IOException if the reference is invalid.
+     */
+    @NonNull
+    static private String readIndexedString(@NonNull ByteBuffer buffer, @NonNull String[] strings) throws IOException {
+        return indexedString(readVarint(buffer), strings);
+    }
+
+    /**
+     * Get a string from the string table.
+     *
+     * @param index   The index of the string.
+     * @param strings The string table.
+     * @return The string.
+     * @throws IOException if the index is invalid.
+     */
+    @NonNull
+    static private String indexedString(int index, @NonNull String[] strings) throws IOException {
+        if (index <= NO_STRING || index >= strings.length) {
+            throw new IOException("Invalid vendor list snapshot: invalid string index " + index + ".");
+        }
+
+        return strings[index];
+    }
+
+    /**
+     * Read a list of ids.
+     *
+     * @param buffer The buffer to read from.
+     * @return The list of ids.
+     * @throws IOException if the list is invalid.
+     */
+    @NonNull
+    static private ArrayList<Integer> readIds(@NonNull ByteBuffer buffer) throws IOException {
+        int count = readCount(buffer);
+        ArrayList<Integer> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(readVarint(buffer));
+        }
+
+        return ids;
+    }
+
+    /**
+     * Growable buffer used to write a snapshot.
+     */
+    static private class Writer extends ByteArrayOutputStream {
+
+        /**
+         * Write an integer as an unsigned varint (negative integers take 5 bytes).
+         *
+         * @param value The integer.
+         */
+        void writeVarint(int value) {
+            while ((value & ~0x7F) != 0) {
+                write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            write(value);
+        }
+
+        /**
+         * Write a big endian 32 bits integer.
+         *
+         * @param value The integer.
+         */
+        void writeInt(int value) {
+            write(value >>> 24);
+            write(value >>> 16);
+            write(value >>> 8);
+            write(value);
+        }
+
+        /**
+         * Write a big endian 64 bits integer.
+         *
+         * @param value The integer.
+         */
+        void writeLong(long value) {
+            writeInt((int) (value >>> 32));
+            writeInt((int) value);
+        }
+
+        /**
+         * Write a list of ids.
+         *
+         * @param ids The list of ids.
+         */
+        void writeIds(@NonNull List<Integer> ids) {
+            writeVarint(ids.size());
+            for (Integer id : ids) {
+                writeVarint(id);
+            }
+        }
+    }
+}
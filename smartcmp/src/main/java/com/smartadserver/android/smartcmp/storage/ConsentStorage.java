@@ -0,0 +1,71 @@
+package com.smartadserver.android.smartcmp.storage;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Map;
+
+/**
+ * Storage of the consent values (consent string, parsed consents, display dates...).
+ * <p>
+ * The values are strings or longs, identified by their keys. Implementations must be thread safe.
+ */
+
+public interface ConsentStorage {
+
+    /**
+     * Read a string.
+     *
+     * @param key          The key of the string.
+     * @param defaultValue The default value if no string is stored with this key.
+     * @return The string stored with the given key, or the default value if no string has been found.
+     */
+    @Nullable
+    String getString(@NonNull String key, @Nullable String defaultValue);
+
+    /**
+     * Read a long.
+     *
+     * @param key          The key of the long.
+     * @param defaultValue The default value if no long is stored with this key.
+     * @return The long stored with the given key, or the default value if no long has been found.
+     */
+    long getLong(@NonNull String key, long defaultValue);
+
+    /**
+     * Whether or not a value is stored with the given key.
+     *
+     * @param key The key of the value.
+     * @return true if a value is stored with this key.
+     */
+    boolean contains(@NonNull String key);
+
+    /**
+     * Write several values at once. The values already stored are skipped.
+     *
+     * @param values The values to write, by key (String or Long, or null to remove the value stored with the key).
+     * @return true if at least one value has been written, false if all the values were unchanged.
+     */
+    boolean write(@NonNull Map<String, Object> values);
+
+    /**
+     * Set the listener notified when values are changed, including the changes made by someone else if the storage
+     * can detect them.
+     *
+     * @param listener The listener, or null to remove the current listener.
+     */
+    void setOnChangeListener(@Nullable OnChangeListener listener);
+
+    /**
+     * Listener notified when values of a storage are changed.
+     */
+    interface OnChangeListener {
+
+        /**
+         * Called when a value has been written or removed.
+         *
+         * @param key The key of the changed value, or null if all the values may have changed.
+         */
+        void onChange(@Nullable String key);
+    }
+}
@@ -0,0 +1,535 @@
+package com.smartadserver.android.smartcmp.storage;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.CRC32;
+
+/**
+ * Consent storage backed by a small append-only file.
+ * <p>
+ * All the values are kept in memory: the file is read once, at first access, and each write only appends a record
+ * containing the changed (or removed) values. Every record is checksummed, so a record partially written (if the app is killed
+ * during a write) is ignored along with the following ones. The file is compacted into a single record once it
+ * contains too many records. All methods are thread safe.
+ * <p>
+ * If a write executor is given, the values are updated in memory on the caller thread and the file is written later on
+ * the executor (like SharedPreferences.apply()), so a write never blocks the caller on the disk. The pending values are
+ * written in order, by one task at a time, even if the executor runs several tasks in parallel.
+ */
+
+public class FileConsentStorage implements ConsentStorage {
+
+    // The magic number at the beginning of the file ('SCCS').
+    static private final int MAGIC = 0x53434353;
+
+    // The version of the file format. Files written with another format version are ignored.
+    static private final int FORMAT_VERSION = 1;
+
+    // The size of the file header (magic number & format version).
+    static private final int HEADER_SIZE = 5;
+
+    // The size of a record header (payload length & checksum).
+    static private final int RECORD_HEADER_SIZE = 8;
+
+    // The maximum size of the file that is read (a consent file is a few kilobytes at most).
+    static private final int MAX_FILE_SIZE = 1024 * 1024;
+
+    // The number of records after which the file is compacted.
+    static private final int MAX_RECORD_COUNT = 32;
+
+    // The type of the string values.
+    static private final byte TYPE_STRING = 0;
+
+    // The type of the long values.
+    static private final byte TYPE_LONG = 1;
+
+    // The type of the removed values (the key is not followed by any value).
+    static private final byte TYPE_REMOVED = 2;
+
+    // The extension of the file being compacted.
+    static private final String TEMPORARY_EXTENSION = ".tmp";
+
+    static private final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // The file in which the values are stored.
+    @NonNull
+    private final File file;
+
+    // The executor on which the file is written, or null to write it on the caller thread.
+    @Nullable
+    private final Executor writeExecutor;
+
+    // The lock held while writing the file, so the pending values are written one set at a time, in order.
+    @NonNull
+    private final Object fileLock = new Object();
+
+    // The changed values not written in the file yet, by key (null for the removed values).
+    @NonNull
+    private HashMap<String, Object> pendingValues = new HashMap<>();
+
+    // Whether or not a task writing the pending values has been submitted to the write executor.
+    private boolean writeScheduled = false;
+
+    // The values, by key (String or Long), or null if the file has not been read yet.
+    @Nullable
+    private HashMap<String, Object> values;
+
+    // The number of valid records in the file.
+    private int recordCount = 0;
+
+    // Whether or not the file must be rewritten (because it is missing, invalid, or too long) before appending records.
+    private boolean needsCompaction = true;
+
+    // The listener notified when values are changed, if any.
+    @Nullable
+    private OnChangeListener onChangeListener;
+
+    /**
+     * Initialize a consent storage backed by a file, written on the caller thread. The file is only read at first access.
+     *
+     * @param file The file in which the values are stored.
+     */
+    public FileConsentStorage(@NonNull File file) {
+        this(file, null);
+    }
+
+    /**
+     * Initialize a consent storage backed by a file. The file is only read at first access.
+     *
+     * @param file          The file in which the values are stored.
+     * @param writeExecutor The executor on which the file is written, or null to write it on the caller thread.
+     */
+    public FileConsentStorage(@NonNull File file, @Nullable Executor writeExecutor) {
+        this.file = file;
+        this.writeExecutor = writeExecutor;
+    }
+
+    @Nullable
+    @Override
+    public synchronized String getString(@NonNull String key, @Nullable String defaultValue) {
+        Object value = getValues().get(key);
+        return value instanceof String ? (String) value : defaultValue;
+    }
+
+    @Override
+    public synchronized long getLong(@NonNull String key, long defaultValue) {
+        Object value = getValues().get(key);
+        return value instanceof Long ? (Long) value : defaultValue;
+    }
+
+    @Override
+    public synchronized boolean contains(@NonNull String key) {
+        return getValues().containsKey(key);
+    }
+
+    @Override
+    public boolean write(@NonNull Map<String, Object> values) {
+        Set<String> changedKeys;
+        OnChangeListener listener;
+        boolean scheduleWrite;
+        boolean writeNow;
+        synchronized (this) {
+            changedKeys = updateValues(values);
+            if (changedKeys.isEmpty()) {
+                return false;
+            }
+
+            listener = onChangeListener;
+
+            // If a task is already scheduled, it will write these values too.
+            scheduleWrite = writeExecutor != null && !writeScheduled;
+            writeNow = writeExecutor == null;
+            if (scheduleWrite) {
+                writeScheduled = true;
+            }
+        }
+
+        if (scheduleWrite) {
+            try {
+                writeExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        writePendingValues();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // The executor can't run the write: the file is written on the caller thread.
+                synchronized (this) {
+                    writeScheduled = false;
+                }
+                writeNow = true;
+            }
+        }
+
+        if (writeNow) {
+            writePendingValues();
+        }
+
+        // The listener is notified without holding any lock, so it can read this storage from any thread.
+        if (listener != null) {
+            for (String key : changedKeys) {
+                listener.onChange(key);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized void setOnChangeListener(@Nullable OnChangeListener listener) {
+        onChangeListener = listener;
+    }
+
+    /**
+     * Write the pending values in the file now, on the caller thread. Does nothing if all the values are already written.
+     */
+    public void flush() {
+        writePendingValues();
+    }
+
+    /**
+     * Update the values in memory, and add the changed values to the pending values.
+     *
+     * @param values The values to write, by key (String or Long, or null to remove the value).
+     * @return The keys of the changed values (empty if all the values were unchanged).
+     */
+    @NonNull
+    private Set<String> updateValues(@NonNull Map<String, Object> values) {
+        HashMap<String, Object> currentValues = getValues();
+
+        HashMap<String, Object> changedValues = new HashMap<>();
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            Object value = entry.getValue();
+            if (value != null && !(value instanceof String) && !(value instanceof Long)) {
+                throw new IllegalArgumentException("Unsupported value for key " + entry.getKey() + ": only String and Long values can be stored");
+            }
+            if (value == null ? currentValues.containsKey(entry.getKey()) : !value.equals(currentValues.get(entry.getKey()))) {
+                changedValues.put(entry.getKey(), value);
+            }
+        }
+
+        // The values are updated in memory even if the file can't be written, so they are still used for this session.
+        applyValues(currentValues, changedValues);
+        pendingValues.putAll(changedValues);
+        return changedValues.keySet();
+    }
+
+    /**
+     * Apply changed values to a map of values.
+     *
+     * @param values        The map of values to update.
+     * @param changedValues The changed values, by key (null for the removed values).
+     */
+    static private void applyValues(@NonNull HashMap<String, Object> values, @NonNull Map<String, Object> changedValues) {
+        for (Map.Entry<String, Object> entry : changedValues.entrySet()) {
+            if (entry.getValue() == null) {
+                values.remove(entry.getKey());
+            } else {
+                values.put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Write the pending values in the file, appending a record or compacting the file.
+     */
+    private void writePendingValues() {
+        synchronized (fileLock) {
+            Map<String, Object> changedValues;
+            Map<String, Object> allValues;
+            boolean compaction;
+            synchronized (this) {
+                writeScheduled = false;
+                if (pendingValues.isEmpty()) {
+                    return;
+                }
+
+                changedValues = pendingValues;
+                pendingValues = new HashMap<>();
+                compaction = needsCompaction || recordCount >= MAX_RECORD_COUNT;
+                allValues = compaction ? new HashMap<>(getValues()) : null;
+            }
+
+            try {
+                if (compaction) {
+                    compact(allValues);
+                } else {
+                    append(changedValues);
+                }
+            } catch (IOException e) {
+                synchronized (this) {
+                    needsCompaction = true;
+                }
+                Log.e("SmartCMP", "Unable to write the consent storage file: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return The number of valid records in the file.
+     */
+    @VisibleForTesting
+    int getRecordCount() {
+        synchronized (fileLock) {
+            synchronized (this) {
+                getValues();
+                return recordCount;
+            }
+        }
+    }
+
+    /**
+     * Get the values, reading the file if it has not been read yet.
+     *
+     * @return The values, by key.
+     */
+    @NonNull
+    private HashMap<String, Object> getValues() {
+        if (values == null) {
+            values = new HashMap<>();
+            try {
+                read();
+            } catch (IOException e) {
+                // The file can't be read: it will be rewritten at the next write.
+                needsCompaction = true;
+            }
+        }
+
+        return values;
+    }
+
+    /**
+     * Read all the valid records of the file.
+     *
+     * @throws IOException if the file can't be read.
+     */
+    private void read() throws IOException {
+        if (!file.exists() || file.length() > MAX_FILE_SIZE) {
+            return;
+        }
+
+        byte[] data = new byte[(int) file.length()];
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            randomAccessFile.readFully(data);
+        } finally {
+            randomAccessFile.close();
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        if (data.length < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.get() != FORMAT_VERSION) {
+            return;
+        }
+
+        CRC32 crc = new CRC32();
+        HashMap<String, Object> recordValues = new HashMap<>();
+        while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+            int payloadLength = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (payloadLength < 0 || payloadLength > buffer.remaining()) {
+                // Truncated record.
+                return;
+            }
+
+            crc.reset();
+            crc.update(data, buffer.position(), payloadLength);
+            if ((int) crc.getValue() != checksum) {
+                // Corrupted record.
+                return;
+            }
+
+            ByteBuffer payload = ByteBuffer.wrap(data, buffer.position(), payloadLength);
+            buffer.position(buffer.position() + payloadLength);
+            recordValues.clear();
+            if (!readRecord(payload, recordValues)) {
+                return;
+            }
+
+            applyValues(values, recordValues);
+            recordCount++;
+        }
+
+        // Only a file whose records are all valid can be appended to.
+        needsCompaction = buffer.hasRemaining();
+    }
+
+    /**
+     * Read the values of a record.
+     *
+     * @param payload The payload of the record.
+     * @param values  The map in which the values are added (null for the removed values).
+     * @return true if the record is valid.
+     */
+    static private boolean readRecord(@NonNull ByteBuffer payload, @NonNull HashMap<String, Object> values) {
+        try {
+            int count = payload.getInt();
+            if (count < 0) {
+                return false;
+            }
+
+            for (int i = 0; i < count; i++) {
+                byte type = payload.get();
+                String key = readString(payload);
+                if (type == TYPE_STRING) {
+                    values.put(key, readString(payload));
+                } else if (type == TYPE_LONG) {
+                    values.put(key, payload.getLong());
+                } else if (type == TYPE_REMOVED) {
+                    values.put(key, null);
+                } else {
+                    return false;
+                }
+            }
+
+            return !payload.hasRemaining();
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Read a string prefixed by its length in bytes.
+     *
+     * @param payload The buffer from which the string is read.
+     * @return The string.
+     * @throws BufferUnderflowException if the string is truncated.
+     * @throws IllegalArgumentException if the length is invalid.
+     */
+    @NonNull
+    static private String readString(@NonNull ByteBuffer payload) {
+        int length = payload.getInt();
+        if (length < 0 || length > payload.remaining()) {
+            throw new IllegalArgumentException("Invalid string length " + length);
+        }
+
+        String string = new String(payload.array(), payload.arrayOffset() + payload.position(), length, UTF_8);
+        payload.position(payload.position() + length);
+        return string;
+    }
+
+    /**
+     * Append a record to the file.
+     *
+     * @param values The values of the record (null for the removed values).
+     * @throws IOException if the record can't be written.
+     */
+    private void append(@NonNull Map<String, Object> values) throws IOException {
+        byte[] record = encodeRecord(values);
+        FileOutputStream outputStream = new FileOutputStream(file, true);
+        try {
+            outputStream.write(record);
+        } finally {
+            outputStream.close();
+        }
+        recordCount++;
+    }
+
+    /**
+     * Rewrite the file with a single record containing all the values. The file is replaced atomically.
+     *
+     * @param values All the values.
+     * @throws IOException if the file can't be written.
+     */
+    private void compact(@NonNull Map<String, Object> values) throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        DataOutputStream dataOutputStream = new DataOutputStream(byteArrayOutputStream);
+        dataOutputStream.writeInt(MAGIC);
+        dataOutputStream.writeByte(FORMAT_VERSION);
+        dataOutputStream.write(encodeRecord(values));
+        dataOutputStream.flush();
+
+        File parentDirectory = file.getParentFile();
+        if (parentDirectory != null && !parentDirectory.exists() && !parentDirectory.mkdirs()) {
+            throw new IOException("Unable to create directory " + parentDirectory);
+        }
+
+        File temporaryFile = new File(file.getPath() + TEMPORARY_EXTENSION);
+        FileOutputStream outputStream = new FileOutputStream(temporaryFile);
+        try {
+            outputStream.write(byteArrayOutputStream.toByteArray());
+            outputStream.getFD().sync();
+        } finally {
+            outputStream.close();
+        }
+
+        if (!temporaryFile.renameTo(file)) {
+            //noinspection ResultOfMethodCallIgnored
+            temporaryFile.delete();
+            throw new IOException("Unable to rename " + temporaryFile + " to " + file);
+        }
+
+        recordCount = 1;
+        needsCompaction = false;
+    }
+
+    /**
+     * Encode a record: payload length, payload checksum, then the payload (count of values, then for each value its
+     * type, key and value, without any value for the removed ones).
+     *
+     * @param values The values of the record (null for the removed values).
+     * @return The encoded record.
+     * @throws IOException if the record can't be encoded.
+     */
+    @NonNull
+    static private byte[] encodeRecord(@NonNull Map<String, Object> values) throws IOException {
+        ByteArrayOutputStream payloadStream = new ByteArrayOutputStream();
+        DataOutputStream payload = new DataOutputStream(payloadStream);
+        payload.writeInt(values.size());
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            if (entry.getValue() == null) {
+                payload.writeByte(TYPE_REMOVED);
+                writeString(payload, entry.getKey());
+            } else if (entry.getValue() instanceof Long) {
+                payload.writeByte(TYPE_LONG);
+                writeString(payload, entry.getKey());
+                payload.writeLong((Long) entry.getValue());
+            } else {
+                payload.writeByte(TYPE_STRING);
+                writeString(payload, entry.getKey());
+                writeString(payload, (String) entry.getValue());
+            }
+        }
+        payload.flush();
+
+        byte[] payloadBytes = payloadStream.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payloadBytes, 0, payloadBytes.length);
+
+        ByteArrayOutputStream recordStream = new ByteArrayOutputStream(RECORD_HEADER_SIZE + payloadBytes.length);
+        DataOutputStream record = new DataOutputStream(recordStream);
+        record.writeInt(payloadBytes.length);
+        record.writeInt((int) crc.getValue());
+        record.write(payloadBytes);
+        record.flush();
+        return recordStream.toByteArray();
+    }
+
+    /**
+     * Write a string prefixed by its length in bytes.
+     *
+     * @param outputStream The stream in which the string is written.
+     * @param string       The string.
+     * @throws IOException if the string can't be written.
+     */
+    static private void writeString(@NonNull DataOutputStream outputStream, @NonNull String string) throws IOException {
+        byte[] bytes = string.getBytes(UTF_8);
+        outputStream.writeInt(bytes.length);
+        outputStream.write(bytes);
+    }
+}
@@ -0,0 +1,196 @@
+package com.smartadserver.android.smartcmp.storage;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+/**
+ * Consent storage writing in a primary storage and in a mirror.
+ * <p>
+ * The mirror is typically the IAB SharedPreferences, kept for compatibility with the other SDKs. The values are read
+ * from the primary storage. Since the app or another SDK may change or clear the values of the mirror, each value is
+ * compared to the mirror once, the first time it is used, and the value of the mirror is copied in (or removed from)
+ * the primary storage if it differs. The changes made to the mirror afterwards are received through its change
+ * listener and copied the same way.
+ * <p>
+ * Every write also stores a stamp in both storages. If the stamp of the mirror is behind the one of the primary
+ * storage when the storage is loaded, the last write of the mirror has been lost: the values of the primary storage
+ * are kept, and the mirror is repaired instead. The values missing from the primary storage are taken from the mirror,
+ * so the values stored before the primary storage existed are still found.
+ */
+
+public class MirroredConsentStorage implements ConsentStorage {
+
+    // The key of the stamp of the last write, stored in both storages.
+    static final String WRITE_STAMP_KEY = "SmartCMP_ConsentStorageStamp";
+
+    // The storage written first, from which the values are read.
+    @NonNull
+    private final ConsentStorage primary;
+
+    // The storage in which the values are copied, that can be changed by someone else.
+    @NonNull
+    private final ConsentStorage mirror;
+
+    // The keys of the values already compared to the mirror.
+    @NonNull
+    private final HashSet<String> checkedKeys = new HashSet<>();
+
+    // Whether or not the last write of the mirror has been lost, or null if the stamps have not been compared yet.
+    @Nullable
+    private Boolean mirrorBehind;
+
+    /**
+     * Initialize a mirrored consent storage.
+     *
+     * @param primary The storage written first, from which the values are read.
+     * @param mirror  The storage in which the values are copied, that can be changed by someone else.
+     */
+    public MirroredConsentStorage(@NonNull ConsentStorage primary, @NonNull ConsentStorage mirror) {
+        this.primary = primary;
+        this.mirror = mirror;
+
+        mirror.setOnChangeListener(new OnChangeListener() {
+            @Override
+            public void onChange(@Nullable String key) {
+                onMirrorChange(key);
+            }
+        });
+    }
+
+    @Nullable
+    @Override
+    public synchronized String getString(@NonNull String key, @Nullable String defaultValue) {
+        checkMirror(key);
+        return primary.getString(key, defaultValue);
+    }
+
+    @Override
+    public synchronized long getLong(@NonNull String key, long defaultValue) {
+        checkMirror(key);
+        return primary.getLong(key, defaultValue);
+    }
+
+    @Override
+    public synchronized boolean contains(@NonNull String key) {
+        checkMirror(key);
+        return primary.contains(key);
+    }
+
+    @Override
+    public synchronized boolean write(@NonNull Map<String, Object> values) {
+        if (isUnchanged(primary, values) && isUnchanged(mirror, values)) {
+            return false;
+        }
+
+        // Both storages are written with the same new stamp, in the same write as the values.
+        long stamp = Math.max(primary.getLong(WRITE_STAMP_KEY, 0), mirror.getLong(WRITE_STAMP_KEY, 0)) + 1;
+        HashMap<String, Object> stampedValues = new HashMap<>(values);
+        stampedValues.put(WRITE_STAMP_KEY, stamp);
+
+        primary.write(stampedValues);
+        mirror.write(stampedValues);
+
+        // The written values are the same in both storages: they don't need to be compared.
+        checkedKeys.addAll(values.keySet());
+        return true;
+    }
+
+    @Override
+    public void setOnChangeListener(@Nullable OnChangeListener listener) {
+        // All the values are read from the primary storage, so all the changes are made in it.
+        primary.setOnChangeListener(listener);
+    }
+
+    /**
+     * Compare a value to the mirror, if it has not been compared yet.
+     *
+     * @param key The key of the value.
+     */
+    private void checkMirror(@NonNull String key) {
+        if (!checkedKeys.add(key)) {
+            return;
+        }
+
+        if (mirrorBehind == null) {
+            // The stamps are only compared at load: once loaded, the mirror is kept up to date by this storage.
+            mirrorBehind = primary.contains(WRITE_STAMP_KEY) && mirror.contains(WRITE_STAMP_KEY)
+                    && mirror.getLong(WRITE_STAMP_KEY, 0) < primary.getLong(WRITE_STAMP_KEY, 0);
+        }
+
+        if (mirrorBehind && primary.contains(key)) {
+            // The last write of the mirror has been lost: the mirror is repaired.
+            mirror.write(Collections.singletonMap(key, getValue(primary, key)));
+        } else {
+            // Value stored before the primary storage existed, or changed (or cleared) by someone else.
+            primary.write(Collections.singletonMap(key, getValue(mirror, key)));
+        }
+    }
+
+    /**
+     * Copy in the primary storage a value changed in the mirror.
+     *
+     * @param key The key of the changed value, or null if all the values of the mirror may have changed.
+     */
+    private synchronized void onMirrorChange(@Nullable String key) {
+        if (key == null) {
+            for (String checkedKey : checkedKeys) {
+                primary.write(Collections.singletonMap(checkedKey, getValue(mirror, checkedKey)));
+            }
+        } else if (checkedKeys.contains(key)) {
+            // The values which have not been compared yet will be at first use.
+            primary.write(Collections.singletonMap(key, getValue(mirror, key)));
+        }
+    }
+
+    /**
+     * Read a value of a storage, whatever its type.
+     *
+     * @param storage The storage.
+     * @param key     The key of the value.
+     * @return The value (String or Long), or null if no string or long is stored with this key.
+     */
+    @Nullable
+    static private Object getValue(@NonNull ConsentStorage storage, @NonNull String key) {
+        String string = storage.getString(key, null);
+        if (string != null) {
+            return string;
+        }
+
+        // The default values are returned if no long is stored with this key.
+        long value = storage.getLong(key, 0);
+        return value == storage.getLong(key, 1) ? Long.valueOf(value) : null;
+    }
+
+    /**
+     * Whether or not all the given values are already stored in a storage.
+     *
+     * @param storage The storage.
+     * @param values  The values, by key (String or Long, or null for the removed values).
+     * @return true if all the values are stored with the same type, and the removed values are not stored.
+     */
+    static private boolean isUnchanged(@NonNull ConsentStorage storage, @NonNull Map<String, Object> values) {
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            if (entry.getValue() == null) {
+                if (storage.contains(entry.getKey())) {
+                    return false;
+                }
+            } else if (!storage.contains(entry.getKey())) {
+                return false;
+            } else if (entry.getValue() instanceof Long) {
+                long value = (Long) entry.getValue();
+                if (storage.getLong(entry.getKey(), value) != value || storage.getLong(entry.getKey(), value + 1) != value) {
+                    return false;
+                }
+            } else if (!entry.getValue().equals(storage.getString(entry.getKey(), null))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,134 @@
+package com.smartadserver.android.smartcmp.storage;
+
+import android.content.SharedPreferences;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Map;
+
+/**
+ * Consent storage backed by SharedPreferences.
+ * <p>
+ * Used to mirror the consent in the default SharedPreferences of the app, where the IAB specification requires the
+ * IABConsent_* keys to be found by the other SDKs. The values of a write are applied with a single editor, which is
+ * written to disk asynchronously. The change listener is notified of every change of the SharedPreferences, including
+ * the changes made by the app or by the other SDKs.
+ */
+
+public class SharedPreferencesConsentStorage implements ConsentStorage {
+
+    // The SharedPreferences in which the consent is stored.
+    @NonNull
+    private final SharedPreferences preferences;
+
+    // The listener registered in the SharedPreferences, if any. SharedPreferences only keep a weak reference to their
+    // listeners: it must be referenced here.
+    @Nullable
+    private SharedPreferences.OnSharedPreferenceChangeListener preferenceChangeListener;
+
+    /**
+     * Initialize a consent storage backed by SharedPreferences.
+     *
+     * @param preferences The SharedPreferences in which the consent is stored.
+     */
+    public SharedPreferencesConsentStorage(@NonNull SharedPreferences preferences) {
+        this.preferences = preferences;
+    }
+
+    @Nullable
+    @Override
+    public String getString(@NonNull String key, @Nullable String defaultValue) {
+        try {
+            return preferences.getString(key, defaultValue);
+        } catch (ClassCastException e) {
+            return defaultValue;
+        }
+    }
+
+    @Override
+    public long getLong(@NonNull String key, long defaultValue) {
+        try {
+            return preferences.getLong(key, defaultValue);
+        } catch (ClassCastException e) {
+            return defaultValue;
+        }
+    }
+
+    @Override
+    public boolean contains(@NonNull String key) {
+        return preferences.contains(key);
+    }
+
+    @Override
+    public synchronized boolean write(@NonNull Map<String, Object> values) {
+        SharedPreferences.Editor editor = null;
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            if (isUnchanged(entry.getKey(), entry.getValue())) {
+                continue;
+            }
+
+            if (editor == null) {
+                editor = preferences.edit();
+            }
+            if (entry.getValue() == null) {
+                editor.remove(entry.getKey());
+            } else if (entry.getValue() instanceof Long) {
+                editor.putLong(entry.getKey(), (Long) entry.getValue());
+            } else {
+                editor.putString(entry.getKey(), (String) entry.getValue());
+            }
+        }
+
+        if (editor == null) {
+            return false;
+        }
+
+        editor.apply();
+        return true;
+    }
+
+    @Override
+    public synchronized void setOnChangeListener(@Nullable final OnChangeListener listener) {
+        if (preferenceChangeListener != null) {
+            preferences.unregisterOnSharedPreferenceChangeListener(preferenceChangeListener);
+            preferenceChangeListener = null;
+        }
+
+        if (listener != null) {
+            preferenceChangeListener = new SharedPreferences.OnSharedPreferenceChangeListener() {
+                @Override
+                public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+                    // The key is null when the SharedPreferences have been cleared (API 30+).
+                    listener.onChange(key);
+                }
+            };
+            preferences.registerOnSharedPreferenceChangeListener(preferenceChangeListener);
+        }
+    }
+
+    /**
+     * Whether or not a value is already stored in the SharedPreferences.
+     *
+     * @param key   The key of the value.
+     * @param value The value (String or Long, or null for a removed value).
+     * @return true if the same value is already stored with the same type, or if a removed value is not stored.
+     */
+    private boolean isUnchanged(@NonNull String key, @Nullable Object value) {
+        if (!preferences.contains(key)) {
+            return value == null;
+        } else if (value == null) {
+            return false;
+        }
+
+        try {
+            if (value instanceof Long) {
+                return preferences.getLong(key, 0) == (Long) value;
+            } else {
+                return value.equals(preferences.getString(key, null));
+            }
+        } catch (ClassCastException e) {
+            // A value of another type is stored with the same key: it must be replaced.
+            return false;
+        }
+    }
+}
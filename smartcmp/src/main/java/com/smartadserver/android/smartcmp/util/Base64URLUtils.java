@@ -1,9 +1,8 @@
 package com.smartadserver.android.smartcmp.util;
 
 import android.support.annotation.NonNull;
-import android.util.Base64;
 
-import java.util.regex.Pattern;
+import java.util.Arrays;
 
 /**
  * Util class to encode / decode base64url strings (without padding) & Data objects.
@@ -12,6 +11,21 @@ import java.util.regex.Pattern;
 @SuppressWarnings("WeakerAccess")
 public class Base64URLUtils {
 
+    // The base64url alphabet.
+    static private final char[] ENCODING_TABLE = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+
+    // The value of each base64 character (-1 for invalid characters). Both base64url & standard base64 alphabets are accepted.
+    static private final int[] DECODING_TABLE = new int[128];
+
+    static {
+        Arrays.fill(DECODING_TABLE, -1);
+        for (int idx = 0; idx < ENCODING_TABLE.length; idx++) {
+            DECODING_TABLE[ENCODING_TABLE[idx]] = idx;
+        }
+        DECODING_TABLE['+'] = 62;
+        DECODING_TABLE['/'] = 63;
+    }
+
     /**
      * Create a base64URL (without padding) from string.
      *
@@ -30,11 +44,32 @@ public class Base64URLUtils {
      * @return A base64URL string without padding.
      */
     static public String getBase64URL(byte[] data) {
-        String encodedString = Base64.encodeToString(data, Base64.NO_WRAP);
+        char[] encoded = new char[(data.length * 4 + 2) / 3];
+
+        int in = 0;
+        int out = 0;
+
+        // Encode each group of 3 bytes into 4 characters.
+        while (data.length - in >= 3) {
+            int group = (data[in++] & 0xFF) << 16 | (data[in++] & 0xFF) << 8 | (data[in++] & 0xFF);
+            encoded[out++] = ENCODING_TABLE[group >>> 18];
+            encoded[out++] = ENCODING_TABLE[(group >>> 12) & 0x3F];
+            encoded[out++] = ENCODING_TABLE[(group >>> 6) & 0x3F];
+            encoded[out++] = ENCODING_TABLE[group & 0x3F];
+        }
 
-        return encodedString.replaceAll(Pattern.quote("+"), "-")
-                .replaceAll("/", "_")
-                .replaceAll("=", "");
+        // Encode the remaining 1 or 2 bytes into 2 or 3 characters (no padding).
+        int remaining = data.length - in;
+        if (remaining > 0) {
+            int group = (data[in++] & 0xFF) << 16 | (remaining == 2 ? (data[in] & 0xFF) << 8 : 0);
+            encoded[out++] = ENCODING_TABLE[group >>> 18];
+            encoded[out++] = ENCODING_TABLE[(group >>> 12) & 0x3F];
+            if (remaining == 2) {
+                encoded[out] = ENCODING_TABLE[(group >>> 6) & 0x3F];
+            }
+        }
+
+        return new String(encoded);
     }
 
     /**
@@ -45,25 +80,62 @@ public class Base64URLUtils {
      * @throws IllegalArgumentException If the given Base64 string is invalid.
      */
     static public String decodeString(@NonNull String base64URLString, boolean isBitsString) throws IllegalArgumentException {
-        base64URLString = base64URLString.replaceAll("-", "+")
-                .replaceAll("_", "/");
-
-        String string = "";
-        byte[] bytes;
-        bytes = Base64.decode(base64URLString, Base64.NO_WRAP);
-
-        if (isBitsString) {
-            for (byte b : bytes) {
-                int i = (b & 0xFF); // using 0xFF because we want unsigned int between 0 and 256 and not signed int between -128 and 127.
-                String binaryString = Integer.toBinaryString(i);
-                string = string.concat(BitUtils.leftPadding(8 - binaryString.length(), binaryString));
-            }
-        } else {
-            string = new String(bytes);
+        byte[] bytes = decodeBytes(base64URLString);
+        return isBitsString ? BitUtils.bytesToBits(bytes) : new String(bytes);
+    }
+
+    /**
+     * Decode a base64URL string without padding into a byte array.
+     * <p>
+     * Note: trailing padding characters ('=') and standard base64 characters ('+' & '/') are tolerated.
+     *
+     * @param base64URLString The base64URL string to be decoded.
+     * @return The decoded byte array.
+     * @throws IllegalArgumentException If the given Base64 string is invalid.
+     */
+    static public byte[] decodeBytes(@NonNull String base64URLString) throws IllegalArgumentException {
+        int length = base64URLString.length();
+        while (length > 0 && base64URLString.charAt(length - 1) == '=') {
+            length--;
         }
 
-        return string;
-    }
+        if (length % 4 == 1 || base64URLString.length() - length > 2) {
+            throw new IllegalArgumentException("Invalid base64 string length.");
+        }
 
+        byte[] decoded = new byte[length * 3 / 4];
+        int out = 0;
+        int group = 0;
+
+        for (int idx = 0; idx < length; idx++) {
+            char c = base64URLString.charAt(idx);
+            int value = c < DECODING_TABLE.length ? DECODING_TABLE[c] : -1;
+            if (value < 0) {
+                throw new IllegalArgumentException("Invalid base64 character '" + c + "' at index " + idx + ".");
+            }
 
+            group = group << 6 | value;
+
+            // Each group of 4 characters is decoded into 3 bytes.
+            if ((idx & 3) == 3) {
+                decoded[out++] = (byte) (group >>> 16);
+                decoded[out++] = (byte) (group >>> 8);
+                decoded[out++] = (byte) group;
+                group = 0;
+            }
+        }
+
+        // Decode the remaining 2 or 3 characters into 1 or 2 bytes (extra bits are ignored).
+        switch (length & 3) {
+            case 2:
+                decoded[out] = (byte) (group >>> 4);
+                break;
+            case 3:
+                decoded[out++] = (byte) (group >>> 10);
+                decoded[out] = (byte) (group >>> 2);
+                break;
+        }
+
+        return decoded;
+    }
 }
@@ -0,0 +1,168 @@
+package com.smartadserver.android.smartcmp.util;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.smartadserver.android.smartcmp.model.Language;
+
+import java.util.Date;
+
+/**
+ * Cursor reading bits from a byte array (most significant bit first), without copying it.
+ */
+
+@SuppressWarnings("WeakerAccess")
+public class BitReader {
+
+    // The number of bits used to encode each letter of a language.
+    static private final int LANGUAGE_LETTER_BIT_ENCODING_LENGTH = 6;
+
+    // The bytes buffer.
+    @NonNull
+    private final byte[] buffer;
+
+    // The number of readable bits.
+    private final int length;
+
+    // The position of the next bit to read.
+    private int position;
+
+    /**
+     * Initialize a new BitReader on a byte array.
+     *
+     * @param buffer The bytes to read. The array is not copied and must not be modified while reading.
+     */
+    public BitReader(@NonNull byte[] buffer) {
+        this.buffer = buffer;
+        this.length = buffer.length * 8;
+    }
+
+    /**
+     * @return The position of the next bit to read.
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * @return The number of bits that can still be read.
+     */
+    public int remaining() {
+        return length - position;
+    }
+
+    /**
+     * Read a single bit.
+     *
+     * @return true if the bit is '1', false otherwise.
+     * @throws IllegalArgumentException If there is no more bits to read.
+     */
+    public boolean readBit() throws IllegalArgumentException {
+        checkRemaining(1);
+        boolean bit = (buffer[position >>> 3] & (0x80 >>> (position & 7))) != 0;
+        position++;
+        return bit;
+    }
+
+    /**
+     * Read a long encoded using a given number of bits.
+     *
+     * @param numberOfBits The number of bits to read (between 0 and 63).
+     * @return The decoded long.
+     * @throws IllegalArgumentException If the number of bits is invalid or if there is not enough bits to read.
+     */
+    public long readLong(int numberOfBits) throws IllegalArgumentException {
+        if (numberOfBits < 0 || numberOfBits > 63) {
+            throw new IllegalArgumentException("Not possible to read " + numberOfBits + " bits as a long.");
+        }
+        checkRemaining(numberOfBits);
+
+        long result = 0;
+        for (int idx = 0; idx < numberOfBits; idx++) {
+            result = (result << 1) | ((buffer[position >>> 3] >>> (7 - (position & 7))) & 1);
+            position++;
+        }
+        return result;
+    }
+
+    /**
+     * Read an int encoded using a given number of bits.
+     *
+     * @param numberOfBits The number of bits to read (between 0 and 31).
+     * @return The decoded int.
+     * @throws IllegalArgumentException If the number of bits is invalid or if there is not enough bits to read.
+     */
+    public int readInt(int numberOfBits) throws IllegalArgumentException {
+        if (numberOfBits > 31) {
+            throw new IllegalArgumentException("Not possible to read " + numberOfBits + " bits as an int.");
+        }
+        return (int) readLong(numberOfBits);
+    }
+
+    /**
+     * Read a boolean encoded using a given number of bits.
+     *
+     * @param numberOfBits The number of bits to read.
+     * @return The decoded boolean.
+     * @throws IllegalArgumentException If there is not enough bits to read or if the value is neither 0 nor 1.
+     */
+    public boolean readBoolean(int numberOfBits) throws IllegalArgumentException {
+        long value = readLong(numberOfBits);
+        if (value > 1) {
+            throw new IllegalArgumentException("Invalid boolean value " + value + ".");
+        }
+        return value == 1;
+    }
+
+    /**
+     * Read a Date (encoded as a number of deciseconds) using a given number of bits.
+     *
+     * @param numberOfBits The number of bits to read.
+     * @return The decoded Date.
+     * @throws IllegalArgumentException If there is not enough bits to read.
+     */
+    @NonNull
+    public Date readDate(int numberOfBits) throws IllegalArgumentException {
+        return new Date(readLong(numberOfBits) * 100);
+    }
+
+    /**
+     * Read a Language using a given number of bits.
+     *
+     * @param numberOfBits The number of bits to read.
+     * @return The decoded Language if valid, null otherwise.
+     * @throws IllegalArgumentException If there is not enough bits to read.
+     */
+    @Nullable
+    public Language readLanguage(int numberOfBits) throws IllegalArgumentException {
+        if (numberOfBits % LANGUAGE_LETTER_BIT_ENCODING_LENGTH != 0) {
+            throw new IllegalArgumentException("Not possible to read a language using " + numberOfBits + " bits.");
+        }
+
+        char[] letters = new char[numberOfBits / LANGUAGE_LETTER_BIT_ENCODING_LENGTH];
+        boolean isValid = true;
+        for (int idx = 0; idx < letters.length; idx++) {
+            // All letters are read even if the language is invalid, so the cursor position stays consistent.
+            int letterIndex = readInt(LANGUAGE_LETTER_BIT_ENCODING_LENGTH);
+            if (letterIndex >= Language.VALID_LETTERS.length()) {
+                isValid = false;
+            } else {
+                letters[idx] = Language.VALID_LETTERS.charAt(letterIndex);
+            }
+        }
+
+        return isValid ? new Language(new String(letters)) : null;
+    }
+
+    /**
+     * Check that a given number of bits can be read.
+     *
+     * @param numberOfBits The number of bits that will be read.
+     * @throws IllegalArgumentException If there is not enough bits to read.
+     */
+    private void checkRemaining(int numberOfBits) throws IllegalArgumentException {
+        if (numberOfBits > length - position) {
+            throw new IllegalArgumentException("Not enough bits to read " + numberOfBits + " bits at position " + position + ".");
+        }
+    }
+}
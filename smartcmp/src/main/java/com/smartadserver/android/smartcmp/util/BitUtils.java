@@ -43,6 +43,25 @@ public class BitUtils {
         return bits;
     }
 
+    /**
+     * Convert a byte array into a bit string.
+     *
+     * @param bytes The byte array that needs to be converted.
+     * @return A bit string containing 8 bits for each byte.
+     */
+    static public String bytesToBits(@NonNull byte[] bytes) {
+        char[] bits = new char[bytes.length * 8];
+
+        int idx = 0;
+        for (byte b : bytes) {
+            for (int shift = 7; shift >= 0; shift--) {
+                bits[idx++] = ((b >>> shift) & 1) == 1 ? '1' : '0';
+            }
+        }
+
+        return new String(bits);
+    }
+
     /**
      * Encode a long into a bit string.
      *
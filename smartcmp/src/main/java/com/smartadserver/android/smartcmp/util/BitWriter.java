@@ -0,0 +1,169 @@
+package com.smartadserver.android.smartcmp.util;
+
+import android.support.annotation.NonNull;
+
+import com.smartadserver.android.smartcmp.model.Language;
+
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * Append only writer packing bits into a byte array (most significant bit first).
+ */
+
+@SuppressWarnings("WeakerAccess")
+public class BitWriter {
+
+    // The default capacity of the buffer (in bits).
+    static private final int DEFAULT_CAPACITY = 512;
+
+    // The number of bits used to encode each letter of a language.
+    static private final int LANGUAGE_LETTER_BIT_ENCODING_LENGTH = 6;
+
+    // The bytes buffer.
+    @NonNull
+    private byte[] buffer;
+
+    // The number of bits written in the buffer.
+    private int length;
+
+    /**
+     * Initialize a new BitWriter with a default capacity.
+     */
+    public BitWriter() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Initialize a new BitWriter.
+     *
+     * @param capacity The expected number of bits that will be written (the buffer will grow if needed).
+     */
+    public BitWriter(int capacity) {
+        buffer = new byte[Math.max(1, (capacity + 7) / 8)];
+    }
+
+    /**
+     * @return The number of bits written so far.
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Write a single bit.
+     *
+     * @param bit The bit value.
+     */
+    public void writeBit(boolean bit) {
+        ensureCapacity(length + 1);
+        if (bit) {
+            buffer[length >>> 3] |= (byte) (0x80 >>> (length & 7));
+        }
+        length++;
+    }
+
+    /**
+     * Write the bits contained in a bits string.
+     *
+     * @param bits A bits string, containing only '0' and '1' characters.
+     * @throws IllegalArgumentException If the bits string is invalid.
+     */
+    public void writeBits(@NonNull String bits) throws IllegalArgumentException {
+        if (!BitsString.isValidBitsString(bits)) {
+            throw new IllegalArgumentException("Bad bits string.");
+        }
+
+        ensureCapacity(length + bits.length());
+        for (int idx = 0; idx < bits.length(); idx++) {
+            writeBit(bits.charAt(idx) == '1');
+        }
+    }
+
+    /**
+     * Write a long using a given number of bits.
+     *
+     * @param number       The long that needs to be written.
+     * @param numberOfBits The number of bits used to write the long.
+     * @throws IllegalArgumentException If the number is negative or can't be written using the given number of bits.
+     */
+    public void writeLong(long number, int numberOfBits) throws IllegalArgumentException {
+        if (number < 0 || numberOfBits < 0 || numberOfBits > 63 || (number >>> numberOfBits) != 0) {
+            throw new IllegalArgumentException("Illegal value " + number + ". Not possible to write it using " + numberOfBits + " bits.");
+        }
+
+        ensureCapacity(length + numberOfBits);
+        for (int shift = numberOfBits - 1; shift >= 0; shift--) {
+            if (((number >>> shift) & 1L) != 0) {
+                buffer[length >>> 3] |= (byte) (0x80 >>> (length & 7));
+            }
+            length++;
+        }
+    }
+
+    /**
+     * Write a boolean using a given number of bits.
+     *
+     * @param bool         The boolean that needs to be written.
+     * @param numberOfBits The number of bits used to write the boolean.
+     * @throws IllegalArgumentException If the number of bits is invalid.
+     */
+    public void writeBoolean(boolean bool, int numberOfBits) throws IllegalArgumentException {
+        writeLong(bool ? 1 : 0, numberOfBits);
+    }
+
+    /**
+     * Write a Date (as a number of deciseconds) using a given number of bits.
+     *
+     * @param date         The date that needs to be written.
+     * @param numberOfBits The number of bits used to write the date.
+     * @throws IllegalArgumentException If the date can't be written using the given number of bits.
+     */
+    public void writeDate(@NonNull Date date, int numberOfBits) throws IllegalArgumentException {
+        writeLong(date.getTime() / 100, numberOfBits);
+    }
+
+    /**
+     * Write a Language using a given number of bits.
+     *
+     * @param language     The language that needs to be written.
+     * @param numberOfBits The number of bits used to write the language.
+     * @throws IllegalArgumentException If the language can't be written using the given number of bits.
+     */
+    public void writeLanguage(@NonNull Language language, int numberOfBits) throws IllegalArgumentException {
+        String string = language.toString();
+        int padding = numberOfBits - string.length() * LANGUAGE_LETTER_BIT_ENCODING_LENGTH;
+        if (padding < 0) {
+            throw new IllegalArgumentException("Illegal language. Not possible to write it using " + numberOfBits + " bits.");
+        }
+
+        writeLong(0, padding);
+        for (int idx = 0; idx < string.length(); idx++) {
+            int letterIndex = Language.VALID_LETTERS.indexOf(Character.toLowerCase(string.charAt(idx)));
+            if (letterIndex < 0) {
+                throw new IllegalArgumentException("Illegal language. Not possible to write it.");
+            }
+            writeLong(letterIndex, LANGUAGE_LETTER_BIT_ENCODING_LENGTH);
+        }
+    }
+
+    /**
+     * @return A copy of the written bits as a byte array. The last byte is right padded with '0' bits.
+     */
+    @NonNull
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, (length + 7) >>> 3);
+    }
+
+    /**
+     * Grow the buffer if needed.
+     *
+     * @param bitsCount The number of bits that the buffer must be able to hold.
+     */
+    private void ensureCapacity(int bitsCount) {
+        int bytesCount = (bitsCount + 7) >>> 3;
+        if (bytesCount > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(bytesCount, buffer.length * 2));
+        }
+    }
+}
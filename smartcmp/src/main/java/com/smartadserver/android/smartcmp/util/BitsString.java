@@ -2,8 +2,6 @@ package com.smartadserver.android.smartcmp.util;
 
 import android.support.annotation.NonNull;
 
-import java.util.ArrayList;
-
 /**
  * Consent string expressed as a Base64URL string or a bit array string.
  */
@@ -39,24 +37,12 @@ public class BitsString {
 
             bitsValue = string;
 
-            // The string is right padded so it always correspond to complete bytes.
-            int paddingCount = 7 - ((string.length() + 7) % 8);
-            String paddedBitsString = BitUtils.rightPadding(paddingCount, string);
-
-            // Split bits string into byte array.
-            ArrayList<Integer> intArrayList = new ArrayList<>();
-            for (int idx = 0; idx < paddedBitsString.length(); idx += 8) {
-                String str = paddedBitsString.substring(idx, idx + 8);
-                intArrayList.add(Integer.parseInt(str, 2));
-            }
-
-            byte[] byteArray = new byte[intArrayList.size()];
-            for (int idx = 0; idx < intArrayList.size(); idx++) {
-                byteArray[idx] = (byte) (int) intArrayList.get(idx);
-            }
+            // Pack the bits string into a byte array (the last byte is right padded).
+            BitWriter writer = new BitWriter(string.length());
+            writer.writeBits(string);
 
             // Convert it to Base64URL
-            stringValue = Base64URLUtils.getBase64URL(byteArray);
+            stringValue = Base64URLUtils.getBase64URL(writer.toByteArray());
         }
     }
 
@@ -67,7 +53,8 @@ public class BitsString {
      * @return true if the string is valid, false otherwise.
      */
     public static boolean isValidBitsString(@NonNull String bitsString) {
-        for (char c : bitsString.toCharArray()) {
+        for (int idx = 0; idx < bitsString.length(); idx++) {
+            char c = bitsString.charAt(idx);
             if (c != '0' && c != '1') {
                 return false;
             }
@@ -0,0 +1,43 @@
+package com.smartadserver.android.smartcmp.vendorlist;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.support.annotation.NonNull;
+
+/**
+ * Network status provider based on the ConnectivityManager of the system.
+ * <p>
+ * If the network status can't be retrieved (for instance if the app lacks the ACCESS_NETWORK_STATE permission), the
+ * network is considered as available.
+ */
+
+public class ConnectivityNetworkStatusProvider implements NetworkStatusProvider {
+
+    @NonNull
+    private final Context context;
+
+    /**
+     * Initialize a network status provider.
+     *
+     * @param context The context used to retrieve the ConnectivityManager.
+     */
+    public ConnectivityNetworkStatusProvider(@NonNull Context context) {
+        this.context = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+    }
+
+    @Override
+    public boolean isNetworkAvailable() {
+        try {
+            ConnectivityManager connectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+            if (connectivityManager == null) {
+                return true;
+            }
+
+            NetworkInfo networkInfo = connectivityManager.getActiveNetworkInfo();
+            return networkInfo != null && networkInfo.isConnected();
+        } catch (SecurityException e) {
+            return true;
+        }
+    }
+}
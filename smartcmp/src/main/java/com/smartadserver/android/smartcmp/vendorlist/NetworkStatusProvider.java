@@ -0,0 +1,15 @@
+package com.smartadserver.android.smartcmp.vendorlist;
+
+/**
+ * Provides the network availability, so the vendor list automatic refresh is not attempted while the device is offline.
+ */
+
+public interface NetworkStatusProvider {
+
+    /**
+     * Whether or not the network is available. Can be called from any thread.
+     *
+     * @return true if the network is available (or if its status is unknown), false otherwise.
+     */
+    boolean isNetworkAvailable();
+}
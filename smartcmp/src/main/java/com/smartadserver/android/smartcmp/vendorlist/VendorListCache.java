@@ -0,0 +1,525 @@
+package com.smartadserver.android.smartcmp.vendorlist;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+
+import com.smartadserver.android.smartcmp.model.VendorList;
+import com.smartadserver.android.smartcmp.model.VendorListSnapshot;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+
+/**
+ * Persistent cache of the downloaded vendor lists.
+ * <p>
+ * The raw JSON responses are stored in the app storage along with their HTTP validators (ETag & Last-Modified), so
+ * they can be served at startup and revalidated later with conditional requests. The parsed vendor lists can also be
+ * stored as binary snapshots (see {@link VendorListSnapshot}), so they can be loaded at startup without any JSON parsing.
+ * All methods perform disk I/O and must not be called from the main thread.
+ */
+
+@SuppressWarnings("WeakerAccess")
+public class VendorListCache {
+
+    // The version of the cache format. Entries written with another format version are ignored.
+    static private final int FORMAT_VERSION = 1;
+
+    // The name of the cache directory in the app storage.
+    static private final String DIRECTORY_NAME = "smartcmp_vendorlists";
+
+    // The extension of the files storing the responses bodies.
+    static private final String BODY_EXTENSION = ".json";
+
+    // The extension of the files storing the entries metadata.
+    static private final String METADATA_EXTENSION = ".meta";
+
+    // The extension of the files storing the vendor list snapshots.
+    static private final String SNAPSHOT_EXTENSION = ".snapshot";
+
+    // The extension of the files being written.
+    static private final String TEMPORARY_EXTENSION = ".tmp";
+
+    // The size of the buffer used to copy the responses bodies.
+    static private final int BUFFER_SIZE = 8192;
+
+    /**
+     * Representation of a cached vendor list response.
+     */
+    static public class Entry {
+
+        // The URL of the cached response.
+        @NonNull
+        private final String url;
+
+        // The ETag header of the cached response.
+        @Nullable
+        private final String eTag;
+
+        // The Last-Modified header of the cached response.
+        @Nullable
+        private final String lastModified;
+
+        // The date of the last download or revalidation of the response.
+        @NonNull
+        private final Date date;
+
+        // The file storing the response body.
+        @NonNull
+        private final File bodyFile;
+
+        /**
+         * Initialize a cache entry.
+         *
+         * @param url          The URL of the cached response.
+         * @param eTag         The ETag header of the cached response.
+         * @param lastModified The Last-Modified header of the cached response.
+         * @param date         The date of the last download or revalidation of the response.
+         * @param bodyFile     The file storing the response body.
+         */
+        Entry(@NonNull String url, @Nullable String eTag, @Nullable String lastModified, @NonNull Date date, @NonNull File bodyFile) {
+            this.url = url;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.date = date;
+            this.bodyFile = bodyFile;
+        }
+
+        /**
+         * @return The URL of the cached response.
+         */
+        @NonNull
+        public String getURL() {
+            return url;
+        }
+
+        /**
+         * @return The ETag header of the cached response, if any.
+         */
+        @Nullable
+        public String getETag() {
+            return eTag;
+        }
+
+        /**
+         * @return The Last-Modified header of the cached response, if any.
+         */
+        @Nullable
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * @return The date of the last download or revalidation of the response.
+         */
+        @NonNull
+        public Date getDate() {
+            return date;
+        }
+    }
+
+    // The directory in which the entries are stored.
+    @NonNull
+    private final File directory;
+
+    /**
+     * Initialize a vendor list cache stored in the app storage.
+     *
+     * @param context The application context.
+     */
+    public VendorListCache(@NonNull Context context) {
+        this(new File(context.getFilesDir(), DIRECTORY_NAME));
+    }
+
+    /**
+     * Initialize a vendor list cache stored in the given directory.
+     *
+     * @param directory The directory in which the entries are stored (created if needed).
+     */
+    public VendorListCache(@NonNull File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Get the cached entry of an URL.
+     *
+     * @param url The URL of the response.
+     * @return The cached entry, or null if there is no valid cached entry for this URL.
+     */
+    @WorkerThread
+    @Nullable
+    public synchronized Entry getEntry(@NonNull String url) {
+        File metadataFile = getFile(url, METADATA_EXTENSION);
+        File bodyFile = getFile(url, BODY_EXTENSION);
+        if (!metadataFile.isFile() || !bodyFile.isFile()) {
+            return null;
+        }
+
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(metadataFile)));
+            if (input.readInt() != FORMAT_VERSION || !url.equals(input.readUTF())) {
+                // Entry written with another format, or URL hash collision.
+                return null;
+            }
+
+            String eTag = input.readBoolean() ? input.readUTF() : null;
+            String lastModified = input.readBoolean() ? input.readUTF() : null;
+            Date date = new Date(input.readLong());
+
+            return new Entry(url, eTag, lastModified, date, bodyFile);
+        } catch (IOException e) {
+            // The metadata are corrupted, the entry is ignored.
+            return null;
+        } finally {
+            closeQuietly(input);
+        }
+    }
+
+    /**
+     * Open the stored response body of a cached entry.
+     *
+     * @param entry The cached entry.
+     * @return The stream of the response body, that must be closed by the caller.
+     * @throws IOException if the response body can't be read.
+     */
+    @WorkerThread
+    @NonNull
+    public InputStream openEntry(@NonNull Entry entry) throws IOException {
+        InputStream inputStream = new BufferedInputStream(new FileInputStream(entry.bodyFile));
+        markUsed(entry.bodyFile);
+        markUsed(getFile(entry.url, METADATA_EXTENSION));
+        return inputStream;
+    }
+
+    /**
+     * Store a response in the cache, replacing the previous entry of its URL if any.
+     *
+     * @param url          The URL of the response.
+     * @param eTag         The ETag header of the response, if any.
+     * @param lastModified The Last-Modified header of the response, if any.
+     * @param body         The stream of the response body (not closed by this method).
+     * @return The new cached entry.
+     * @throws IOException if the response can't be read or stored.
+     */
+    @WorkerThread
+    @NonNull
+    public synchronized Entry store(@NonNull String url, @Nullable String eTag, @Nullable String lastModified, @NonNull InputStream body) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create the vendor list cache directory " + directory);
+        }
+
+        File bodyFile = getFile(url, BODY_EXTENSION);
+        File temporaryBodyFile = getFile(url, BODY_EXTENSION + TEMPORARY_EXTENSION);
+
+        OutputStream output = new FileOutputStream(temporaryBodyFile);
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+            while ((count = body.read(buffer)) != -1) {
+                output.write(buffer, 0, count);
+            }
+        } finally {
+            output.close();
+        }
+
+        // The previous metadata are removed first, so a body is never associated with the validators of another one.
+        deleteFile(getFile(url, METADATA_EXTENSION));
+        renameFile(temporaryBodyFile, bodyFile);
+
+        Entry entry = new Entry(url, eTag, lastModified, new Date(), bodyFile);
+        writeMetadata(entry);
+        return entry;
+    }
+
+    /**
+     * Update the date of a cached entry after a successful revalidation.
+     *
+     * @param entry The revalidated entry.
+     * @return The updated cached entry.
+     * @throws IOException if the entry can't be updated.
+     */
+    @WorkerThread
+    @NonNull
+    public synchronized Entry touch(@NonNull Entry entry) throws IOException {
+        Entry updatedEntry = new Entry(entry.url, entry.eTag, entry.lastModified, new Date(), entry.bodyFile);
+        writeMetadata(updatedEntry);
+        return updatedEntry;
+    }
+
+    /**
+     * Remove the cached entry of an URL, if any.
+     *
+     * @param url The URL of the response.
+     */
+    @WorkerThread
+    public synchronized void remove(@NonNull String url) {
+        deleteFile(getFile(url, METADATA_EXTENSION));
+        deleteFile(getFile(url, BODY_EXTENSION));
+    }
+
+    /**
+     * Get the vendor list snapshot stored with a given key.
+     *
+     * @param key The key of the snapshot (usually derived from the URLs the vendor list has been built from).
+     * @return The vendor list, or null if there is no valid snapshot for this key.
+     */
+    @WorkerThread
+    @Nullable
+    public synchronized VendorList getVendorList(@NonNull String key) {
+        File snapshotFile = getFile(key, SNAPSHOT_EXTENSION);
+        if (!snapshotFile.isFile()) {
+            return null;
+        }
+
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(snapshotFile, "r");
+            FileChannel channel = file.getChannel();
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            // The snapshot is prefixed by its key, to detect key hash collisions.
+            byte[] expectedHeader = snapshotHeader(key);
+            byte[] header = new byte[expectedHeader.length];
+            if (buffer.remaining() < header.length) {
+                return null;
+            }
+            buffer.get(header);
+            if (!Arrays.equals(header, expectedHeader)) {
+                return null;
+            }
+
+            VendorList vendorList = VendorListSnapshot.read(buffer);
+            markUsed(snapshotFile);
+            return vendorList;
+        } catch (IOException e) {
+            // The snapshot is corrupted or has been written with another format, it is ignored.
+            return null;
+        } finally {
+            if (file != null) {
+                try {
+                    file.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Store a vendor list snapshot, replacing the previous snapshot of its key if any.
+     *
+     * @param key        The key of the snapshot (usually derived from the URLs the vendor list has been built from).
+     * @param vendorList The vendor list.
+     * @throws IOException if the snapshot can't be stored.
+     */
+    @WorkerThread
+    public synchronized void storeVendorList(@NonNull String key, @NonNull VendorList vendorList) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create the vendor list cache directory " + directory);
+        }
+
+        File snapshotFile = getFile(key, SNAPSHOT_EXTENSION);
+        File temporarySnapshotFile = getFile(key, SNAPSHOT_EXTENSION + TEMPORARY_EXTENSION);
+
+        OutputStream output = new BufferedOutputStream(new FileOutputStream(temporarySnapshotFile));
+        try {
+            output.write(snapshotHeader(key));
+            VendorListSnapshot.write(vendorList, output);
+        } finally {
+            output.close();
+        }
+
+        renameFile(temporarySnapshotFile, snapshotFile);
+    }
+
+    /**
+     * Remove the vendor list snapshot of a key, if any.
+     *
+     * @param key The key of the snapshot.
+     */
+    @WorkerThread
+    public synchronized void removeVendorList(@NonNull String key) {
+        deleteFile(getFile(key, SNAPSHOT_EXTENSION));
+    }
+
+    /**
+     * Evict the least recently used files until the total size of the cache is lower than the given size.
+     * <p>
+     * Each file of an entry is evicted separately: an entry missing any of its files is simply considered as absent.
+     *
+     * @param maxSize The maximum size of the cache (in bytes).
+     */
+    @WorkerThread
+    public synchronized void trim(long maxSize) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        long size = 0;
+        for (File file : files) {
+            size += file.length();
+        }
+        if (size <= maxSize) {
+            return;
+        }
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File file1, File file2) {
+                long lastModified1 = file1.lastModified();
+                long lastModified2 = file2.lastModified();
+                return lastModified1 < lastModified2 ? -1 : (lastModified1 == lastModified2 ? 0 : 1);
+            }
+        });
+
+        for (int i = 0; i < files.length && size > maxSize; i++) {
+            // Files being written are never evicted.
+            if (!files[i].getName().endsWith(TEMPORARY_EXTENSION)) {
+                size -= files[i].length();
+                deleteFile(files[i]);
+            }
+        }
+    }
+
+    /**
+     * @return The total size of the files of the cache (in bytes).
+     */
+    @WorkerThread
+    public synchronized long getSize() {
+        long size = 0;
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                size += file.length();
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * Mark a file as recently used, so it is evicted last by {@link #trim(long)}.
+     *
+     * @param file The file.
+     */
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    static private void markUsed(@NonNull File file) {
+        file.setLastModified(System.currentTimeMillis());
+    }
+
+    /**
+     * Build the header of a vendor list snapshot file.
+     *
+     * @param key The key of the snapshot.
+     * @return The header of the snapshot file.
+     * @throws IOException if the key is too long.
+     */
+    @NonNull
+    static private byte[] snapshotHeader(@NonNull String key) throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(header);
+        output.writeInt(FORMAT_VERSION);
+        output.writeUTF(key);
+        output.close();
+        return header.toByteArray();
+    }
+
+    /**
+     * Write the metadata of an entry (atomically, using a temporary file).
+     *
+     * @param entry The entry.
+     * @throws IOException if the metadata can't be written.
+     */
+    private void writeMetadata(@NonNull Entry entry) throws IOException {
+        File metadataFile = getFile(entry.url, METADATA_EXTENSION);
+        File temporaryMetadataFile = getFile(entry.url, METADATA_EXTENSION + TEMPORARY_EXTENSION);
+
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryMetadataFile)));
+        try {
+            output.writeInt(FORMAT_VERSION);
+            output.writeUTF(entry.url);
+            output.writeBoolean(entry.eTag != null);
+            if (entry.eTag != null) {
+                output.writeUTF(entry.eTag);
+            }
+            output.writeBoolean(entry.lastModified != null);
+            if (entry.lastModified != null) {
+                output.writeUTF(entry.lastModified);
+            }
+            output.writeLong(entry.date.getTime());
+        } finally {
+            output.close();
+        }
+
+        renameFile(temporaryMetadataFile, metadataFile);
+    }
+
+    /**
+     * Get the file storing a part of the entry of an URL.
+     *
+     * @param url       The URL of the response.
+     * @param extension The extension of the file.
+     * @return The file.
+     */
+    @NonNull
+    private File getFile(@NonNull String url, @NonNull String extension) {
+        return new File(directory, Integer.toHexString(url.hashCode()) + extension);
+    }
+
+    /**
+     * Rename a file, replacing the destination file if it exists.
+     *
+     * @param from The file to rename.
+     * @param to   The destination file.
+     * @throws IOException if the file can't be renamed.
+     */
+    static private void renameFile(@NonNull File from, @NonNull File to) throws IOException {
+        if (!from.renameTo(to)) {
+            deleteFile(from);
+            throw new IOException("Unable to rename " + from + " to " + to);
+        }
+    }
+
+    /**
+     * Delete a file if it exists.
+     *
+     * @param file The file to delete.
+     */
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    static private void deleteFile(@NonNull File file) {
+        if (file.exists()) {
+            file.delete();
+        }
+    }
+
+    /**
+     * Close a stream, ignoring any error.
+     *
+     * @param inputStream The stream that needs to be closed.
+     */
+    static private void closeQuietly(@Nullable InputStream inputStream) {
+        if (inputStream != null) {
+            try {
+                inputStream.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
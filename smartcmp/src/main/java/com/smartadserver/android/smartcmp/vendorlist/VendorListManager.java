@@ -1,21 +1,35 @@
 package com.smartadserver.android.smartcmp.vendorlist;
 
 import android.accounts.NetworkErrorException;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.annotation.VisibleForTesting;
+import android.support.annotation.WorkerThread;
 
 import com.smartadserver.android.smartcmp.model.Language;
 import com.smartadserver.android.smartcmp.model.VendorList;
+import com.smartadserver.android.smartcmp.model.VendorListParser;
 import com.smartadserver.android.smartcmp.model.VendorListURL;
-import com.smartadserver.android.smartcmp.util.JSONAsyncTask;
-import com.smartadserver.android.smartcmp.util.JSONAsyncTaskListener;
 
-import org.json.JSONObject;
+import org.json.JSONException;
 
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
 import java.util.Date;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Retrieves and parses a vendor list from internet.
@@ -24,6 +38,63 @@ import java.util.TimerTask;
 @SuppressWarnings("WeakerAccess")
 public class VendorListManager {
 
+    // The connection timeout (in millisecond).
+    static private final int TIMEOUT = 30000;
+
+    // The delay after which the idle threads of the default executors are released (in millisecond).
+    static private final long DEFAULT_THREAD_KEEP_ALIVE = 30000;
+
+    // The factory of the threads of the default executors (daemon threads, so they never prevent the process exit).
+    static private final ThreadFactory DEFAULT_THREAD_FACTORY = new ThreadFactory() {
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            Thread thread = new Thread(runnable, "SmartCMP-VendorList");
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+    // The default executor used to download & parse the vendor lists (idle threads are released after a while).
+    static private final ExecutorService DEFAULT_EXECUTOR = new ThreadPoolExecutor(0, Integer.MAX_VALUE, DEFAULT_THREAD_KEEP_ALIVE, TimeUnit.MILLISECONDS, new SynchronousQueue<Runnable>(), DEFAULT_THREAD_FACTORY);
+
+    // The default scheduler used for the automatic refresh, shared by all the managers (its single thread is released
+    // when no refresh is scheduled).
+    static private final ScheduledExecutorService DEFAULT_SCHEDULER = createDefaultScheduler();
+
+    // The maximum number of vendor lists retrieved by version that are kept in memory.
+    static private final int VERSIONED_VENDOR_LISTS_MAX_ENTRIES = 4;
+
+    // The maximum size of the persistent cache (in bytes).
+    static private final long CACHE_MAX_SIZE = 5 * 1024 * 1024;
+
+    /**
+     * A downloaded vendor list, and whether or not it is complete.
+     */
+    static private class FetchedVendorList {
+
+        // The downloaded vendor list.
+        @NonNull
+        private final VendorList vendorList;
+
+        // Whether or not the vendor list is localized as requested (always true if no localization was requested).
+        private final boolean complete;
+
+        /**
+         * Initialize a downloaded vendor list.
+         *
+         * @param vendorList The downloaded vendor list.
+         * @param complete   Whether or not the vendor list is localized as requested.
+         */
+        FetchedVendorList(@NonNull VendorList vendorList, boolean complete) {
+            this.vendorList = vendorList;
+            this.complete = complete;
+        }
+    }
+
+    // The handler used to call the listeners on the main thread.
+    @NonNull
+    private final Handler mainThreadHandler = new Handler(Looper.getMainLooper());
+
     // The main vendor list manager listener.
     @NonNull
     private VendorListManagerListener listener;
@@ -31,21 +102,57 @@ public class VendorListManager {
     // The interval between each refresh (in millisecond).
     private long refreshInterval;
 
-    // the time interval to observe before retrying to download the vendor list after a failure at previous attempt
-    private long retryInterval;
-
     // Representation of the vendor list URL.
     @NonNull
     VendorListURL vendorListURL;
 
-    // The timer used to schedule the automatic refresh.
-    private Timer timer;
+    // The executor used to download & parse the vendor lists.
+    @NonNull
+    private final ExecutorService executor;
+
+    // The scheduler used for the automatic refresh.
+    @NonNull
+    private final ScheduledExecutorService scheduler;
+
+    // Whether or not the automatic refresh is enabled (guarded by 'this').
+    private boolean automaticRefreshEnabled = false;
+
+    // The refresh currently scheduled, if any (guarded by 'this').
+    private ScheduledFuture<?> scheduledRefresh;
 
     // The Date of the last vendor list refresh.
-    private Date lastRefreshDate;
+    private volatile Date lastRefreshDate;
+
+    // flag to mark that a refresh of the vendors list is currently in progress
+    @NonNull
+    private final AtomicBoolean downloadingVendorsList = new AtomicBoolean(false);
+
+    // The group coalescing the concurrent downloads of the same vendor list.
+    @NonNull
+    private final VendorListSingleFlight singleFlight;
+
+    // The persistent cache of the downloaded vendor lists (if any).
+    @Nullable
+    private final VendorListCache cache;
+
+    // flag to mark that the cached vendor list has already been loaded (it is only served once, at startup)
+    private boolean cachedVendorListLoaded = false;
+
+    // The language of the vendor lists (if any).
+    @Nullable
+    private final Language language;
+
+    // The in-memory cache of the vendor lists retrieved by version.
+    @NonNull
+    private final VersionedVendorListCache versionedVendorListCache = new VersionedVendorListCache(VERSIONED_VENDOR_LISTS_MAX_ENTRIES);
 
-    // flag to mark that a download attempt of the vendors list is currently in progress
-    private boolean downloadingVendorsList = false;
+    // The retry policy of the automatic refresh (and its metrics).
+    @NonNull
+    private volatile VendorListRefreshBackoff refreshBackoff;
+
+    // The provider telling whether the network is available (if null, the network is always considered available).
+    @Nullable
+    private volatile NetworkStatusProvider networkStatusProvider;
 
     /**
      * Initialize a VendorListManager that will download only the latest version of the vendor list.
@@ -71,12 +178,94 @@ public class VendorListManager {
      * @throws IllegalArgumentException if given language is not ISO 639-1.
      */
     public VendorListManager(@NonNull VendorListManagerListener listener, long refreshInterval, long retryInterval, @Nullable Language language, int vendorListVersion) throws IllegalArgumentException {
+        this(listener, refreshInterval, retryInterval, language, vendorListVersion, null);
+    }
+
+    /**
+     * Initialize a VendorListManager that will download only the latest version of the vendor list, using a persistent cache.
+     * <p>
+     * The cached vendor list is served when the automatic refresh is started, and the cached responses are revalidated
+     * using conditional requests.
+     *
+     * @param listener        The vendor list manager listener to call when the vendor list is downloaded or failed to be downloaded.
+     * @param refreshInterval Time between each refresh.
+     * @param retryInterval   Time between each unsuccessful refresh.
+     * @param language        The language wanted for the vendor list. Needs to be ISO-639-1.
+     * @param cache           The persistent cache of the downloaded vendor lists.
+     * @throws IllegalArgumentException if given language is not ISO 639-1.
+     */
+    public VendorListManager(@NonNull VendorListManagerListener listener, long refreshInterval, long retryInterval, @Nullable Language language, @Nullable VendorListCache cache) throws IllegalArgumentException {
+        this(listener, refreshInterval, retryInterval, language, -1, cache);
+    }
+
+    /**
+     * Initialize a VendorListManager that will download only the given version number of the vendor list, using a persistent cache.
+     *
+     * @param listener          The vendor list manager listener to call when the vendor list is downloaded or failed to be downloaded.
+     * @param refreshInterval   Time between each refresh.
+     * @param retryInterval     Time between each unsuccessful refresh.
+     * @param language          The language wanted for the vendor list. Needs to be ISO-639-1.
+     * @param vendorListVersion The wanted version of the vendor list (or the latest if -1).
+     * @param cache             The persistent cache of the downloaded vendor lists, or null to disable caching.
+     * @throws IllegalArgumentException if given language is not ISO 639-1.
+     */
+    public VendorListManager(@NonNull VendorListManagerListener listener, long refreshInterval, long retryInterval, @Nullable Language language, int vendorListVersion, @Nullable VendorListCache cache) throws IllegalArgumentException {
+        this(listener, refreshInterval, retryInterval, language, vendorListVersion, cache, null, null);
+    }
+
+    /**
+     * Initialize a VendorListManager that will download only the given version number of the vendor list, using a persistent cache
+     * and the given executors.
+     * <p>
+     * The executors are not owned by the VendorListManager: they are never shut down, so they can be shared with the app.
+     *
+     * @param listener          The vendor list manager listener to call when the vendor list is downloaded or failed to be downloaded.
+     * @param refreshInterval   Time between each refresh.
+     * @param retryInterval     Time between each unsuccessful refresh.
+     * @param language          The language wanted for the vendor list. Needs to be ISO-639-1.
+     * @param vendorListVersion The wanted version of the vendor list (or the latest if -1).
+     * @param cache             The persistent cache of the downloaded vendor lists, or null to disable caching.
+     * @param executor          The executor used to download & parse the vendor lists, or null to use the default one.
+     * @param scheduler         The scheduler used for the automatic refresh, or null to use the default one.
+     * @throws IllegalArgumentException if given language is not ISO 639-1.
+     */
+    public VendorListManager(@NonNull VendorListManagerListener listener, long refreshInterval, long retryInterval, @Nullable Language language, int vendorListVersion,
+                             @Nullable VendorListCache cache, @Nullable ExecutorService executor, @Nullable ScheduledExecutorService scheduler) throws IllegalArgumentException {
         this.listener = listener;
         this.refreshInterval = refreshInterval;
-        this.retryInterval = retryInterval;
+        this.cache = cache;
+        this.language = language;
+        this.executor = executor != null ? executor : DEFAULT_EXECUTOR;
+        this.scheduler = scheduler != null ? scheduler : DEFAULT_SCHEDULER;
+        singleFlight = new VendorListSingleFlight(this.executor, mainThreadHandler);
+        refreshBackoff = new VendorListRefreshBackoff(retryInterval, Math.max(retryInterval, refreshInterval));
         vendorListURL = vendorListVersion == -1 ? new VendorListURL(language) : new VendorListURL(vendorListVersion, language);
     }
 
+    /**
+     * Create the default scheduler used for the automatic refresh.
+     *
+     * @return The default scheduler.
+     */
+    @NonNull
+    static private ScheduledExecutorService createDefaultScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, DEFAULT_THREAD_FACTORY);
+        scheduler.setKeepAliveTime(DEFAULT_THREAD_KEEP_ALIVE, TimeUnit.MILLISECONDS);
+        scheduler.allowCoreThreadTimeOut(true);
+
+        // The cancelled refreshes are removed from the queue immediately.
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
+    /**
+     * @return The executor used to download & parse the vendor lists.
+     */
+    @NonNull
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
     /**
      * @return the refresh interval.
      */
@@ -96,138 +285,359 @@ public class VendorListManager {
     }
 
     /**
-     * Instantiate and return a new JSONAsyncTask used for the VendorList.
-     * Explicitly defined for test purpose.
+     * @return The retry policy of the automatic refresh, that also counts the refresh attempts and their outcomes.
+     */
+    @NonNull
+    public VendorListRefreshBackoff getRefreshBackoff() {
+        return refreshBackoff;
+    }
+
+    /**
+     * Set the retry policy of the automatic refresh.
+     * <p>
+     * By default, the delay between two retries starts at the retry interval and doubles after each consecutive failure,
+     * up to the refresh interval.
      *
-     * @param listener The listener to set to the JSONAsyncTask.
-     * @return a new JSONAsyncTask.
+     * @param refreshBackoff The retry policy of the automatic refresh.
      */
-    @VisibleForTesting
-    protected JSONAsyncTask getNewJSONAsyncTaskForVendorList(@NonNull JSONAsyncTaskListener listener) {
-        return new JSONAsyncTask(listener);
+    @SuppressWarnings("unused")
+    public void setRefreshBackoff(@NonNull VendorListRefreshBackoff refreshBackoff) {
+        this.refreshBackoff = refreshBackoff;
+    }
+
+    /**
+     * Set the provider telling whether the network is available. When the network is not available, the scheduled refreshes
+     * are skipped and postponed instead of failing.
+     *
+     * @param networkStatusProvider The network status provider, or null to always consider the network as available.
+     */
+    public void setNetworkStatusProvider(@Nullable NetworkStatusProvider networkStatusProvider) {
+        this.networkStatusProvider = networkStatusProvider;
     }
 
     /**
-     * Instantiate and return a new JSONAsyncTask used for the localized VendorList.
+     * Open a connection to the given URL and return the stream of the response body.
      * Explicitly defined for test purpose.
+     * <p>
+     * If a cache is used, the cached response is revalidated with a conditional request: it is returned if it has not
+     * been modified, otherwise the new response is stored in the cache before being returned.
      *
-     * @param listener The listener to set to the JSONAsyncTask.
-     * @return a new JSONAsyncTask.
+     * @param url The URL that needs to be downloaded.
+     * @return The stream of the response body, that must be closed by the caller.
+     * @throws IOException if the URL can't be downloaded.
      */
     @VisibleForTesting
-    protected JSONAsyncTask getNewJSONAsyncTaskForLocalizedVendorList(@NonNull JSONAsyncTaskListener listener) {
-        return new JSONAsyncTask(listener);
+    @NonNull
+    protected InputStream openInputStream(@NonNull String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(TIMEOUT);
+
+        // The HTTP cache is not used: the responses are cached by the VendorListCache, in the app storage.
+        connection.setUseCaches(false);
+
+        VendorListCache.Entry cachedEntry = cache != null ? cache.getEntry(url) : null;
+        if (cachedEntry != null) {
+            if (cachedEntry.getETag() != null) {
+                connection.setRequestProperty("If-None-Match", cachedEntry.getETag());
+            }
+            if (cachedEntry.getLastModified() != null) {
+                connection.setRequestProperty("If-Modified-Since", cachedEntry.getLastModified());
+            }
+        }
+
+        int responseCode = connection.getResponseCode();
+        if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && cachedEntry != null) {
+            connection.disconnect();
+            return cache.openEntry(cache.touch(cachedEntry));
+        }
+
+        if (responseCode != HttpURLConnection.HTTP_OK) {
+            connection.disconnect();
+            throw new IOException("Unexpected HTTP response code " + responseCode + " for " + url);
+        }
+
+        if (cache != null) {
+            InputStream inputStream = new BufferedInputStream(connection.getInputStream());
+            try {
+                return cache.openEntry(cache.store(url, connection.getHeaderField("ETag"), connection.getHeaderField("Last-Modified"), inputStream));
+            } finally {
+                closeQuietly(inputStream);
+                connection.disconnect();
+            }
+        }
+
+        return new BufferedInputStream(connection.getInputStream());
     }
 
     /**
-     * Instantiate and return a new JSONAsyncTaskListener used for the download of the main vendor list.
+     * Download and parse a vendor list (and its localized version if any).
+     * <p>
+     * A failure to retrieve the localized vendor list is not an error: the non localized vendor list is returned instead.
+     * This method is blocking and must not be called from the main thread.
      *
-     * @return a new JSONAsyncTaskListener.
+     * @param url          The URL of the vendor list.
+     * @param localizedURL The URL of the localized vendor list, or null if no localization is needed.
+     * @return The parsed vendor list, and whether or not it is the expected one (localized if a localization is needed).
+     * @throws NetworkErrorException if the vendor list can't be downloaded.
+     * @throws JSONException         if the vendor list JSON is invalid.
      */
-    private JSONAsyncTaskListener getJSONAsyncTaskListenerForMainVendorList() {
-        return new JSONAsyncTaskListener() {
-            @Override
-            public void JSONAsyncTaskDidSucceedDownloadingJSONObject(@NonNull JSONObject vendorListJSON) {
-                long delay = retryInterval;
-
-                try {
-                    // We succeed to retrieve the vendor list JSON.
-                    // Now, we try to download the localized vendor list JSON.
-                    JSONAsyncTask jsonAsyncTask = getNewJSONAsyncTaskForLocalizedVendorList(getJSONAsyncTaskListenerForLocalizedVendorList(vendorListJSON));
-
-                    //noinspection unchecked
-                    jsonAsyncTask.execute(vendorListURL.getLocalizedURL());
-
-                    // Everything succeed, so we store the last vendor list refresh date.
-                    lastRefreshDate = new Date();
-                    delay = refreshInterval;
-                } catch (Exception e) {
-                    downloadingVendorsList = false;
-                    listener.onVendorListUpdateFail(e);
+    @WorkerThread
+    @NonNull
+    private FetchedVendorList fetchVendorList(@NonNull String url, @Nullable String localizedURL) throws NetworkErrorException, JSONException {
+        VendorList vendorList;
+
+        InputStream inputStream = null;
+        try {
+            inputStream = openInputStream(url);
+            vendorList = VendorListParser.parse(inputStream);
+        } catch (IOException e) {
+            throw new NetworkErrorException(e);
+        } catch (JSONException e) {
+            // An invalid response must not be served from the cache.
+            if (cache != null) {
+                cache.remove(url);
+            }
+            throw e;
+        } finally {
+            closeQuietly(inputStream);
+        }
+
+        boolean localized = false;
+        if (localizedURL != null) {
+            inputStream = null;
+            try {
+                inputStream = openInputStream(localizedURL);
+                vendorList = VendorListParser.localize(vendorList, inputStream);
+                localized = true;
+            } catch (IOException ignored) {
+                // We failed to get the localized vendor list, the non localized one is used.
+            } catch (JSONException ignored) {
+                // The localized vendor list is invalid, the non localized one is used.
+                if (cache != null) {
+                    cache.remove(localizedURL);
                 }
+            } finally {
+                closeQuietly(inputStream);
+            }
+        }
 
-                scheduleTimerIfNeeded(delay);
+        boolean complete = localizedURL == null || localized;
+        if (cache != null) {
+            // The snapshot must always match the latest cached responses: it is removed if the localization failed.
+            String snapshotKey = snapshotKey(url, localizedURL);
+            if (complete) {
+                storeSnapshot(cache, snapshotKey, vendorList);
+            } else {
+                cache.removeVendorList(snapshotKey);
             }
 
-            @Override
-            public void JSONAsyncTaskDidFailDownloadingJSONObject() {
-                downloadingVendorsList = false;
-                listener.onVendorListUpdateFail(new NetworkErrorException());
-                scheduleTimerIfNeeded(retryInterval);
+            cache.trim(CACHE_MAX_SIZE);
+        }
+
+        return new FetchedVendorList(vendorList, complete);
+    }
+
+    /**
+     * Get the key of the snapshot of a vendor list built from the given URLs.
+     *
+     * @param url          The URL of the vendor list.
+     * @param localizedURL The URL of the localized vendor list, or null if no localization is needed.
+     * @return The key of the vendor list snapshot.
+     */
+    @NonNull
+    static private String snapshotKey(@NonNull String url, @Nullable String localizedURL) {
+        return localizedURL != null ? url + " " + localizedURL : url;
+    }
+
+    /**
+     * Store a vendor list snapshot in the cache, ignoring any error (the snapshot is only an optimization).
+     *
+     * @param cache       The persistent cache of the downloaded vendor lists.
+     * @param snapshotKey The key of the vendor list snapshot.
+     * @param vendorList  The vendor list.
+     */
+    @WorkerThread
+    static private void storeSnapshot(@NonNull VendorListCache cache, @NonNull String snapshotKey, @NonNull VendorList vendorList) {
+        try {
+            cache.storeVendorList(snapshotKey, vendorList);
+        } catch (IOException e) {
+            cache.removeVendorList(snapshotKey);
+        }
+    }
+
+    /**
+     * Close a stream, ignoring any error.
+     *
+     * @param inputStream The stream that needs to be closed.
+     */
+    static private void closeQuietly(@Nullable InputStream inputStream) {
+        if (inputStream != null) {
+            try {
+                inputStream.close();
+            } catch (IOException ignored) {
             }
-        };
+        }
     }
 
     /**
-     * Instantiate and return a new JSONAsyncTaskListener used for the download of the localized vendor list.
+     * Read the cached vendor list (and its localized version if any).
+     * <p>
+     * The vendor list snapshot is used if available, otherwise the cached responses are parsed and a snapshot is stored
+     * for the next startup. This method is blocking and must not be called from the main thread.
      *
-     * @return a new JSONAsyncTaskListener.
+     * @param cache The persistent cache of the downloaded vendor lists.
+     * @param entry The cached entry of the vendor list.
+     * @return The cached vendor list, or null if the cached vendor list is invalid.
      */
-    private JSONAsyncTaskListener getJSONAsyncTaskListenerForLocalizedVendorList(@NonNull final JSONObject vendorListJSON) {
-        return new JSONAsyncTaskListener() {
-            @Override
-            public void JSONAsyncTaskDidSucceedDownloadingJSONObject(@NonNull JSONObject localizedVendorListJSON) {
-                downloadingVendorsList = false;
-                try {
-                    listener.onVendorListUpdateSuccess(new VendorList(vendorListJSON, localizedVendorListJSON));
-                } catch (Exception e) {
-                    listener.onVendorListUpdateFail(e);
-                }
+    @WorkerThread
+    @Nullable
+    private VendorList readCachedVendorList(@NonNull VendorListCache cache, @NonNull VendorListCache.Entry entry) {
+        String localizedURL = vendorListURL.getLocalizedURL();
+        String snapshotKey = snapshotKey(vendorListURL.getURL(), localizedURL);
+
+        VendorList vendorList = cache.getVendorList(snapshotKey);
+        if (vendorList != null) {
+            return vendorList;
+        }
+
+        InputStream inputStream = null;
+        try {
+            inputStream = cache.openEntry(entry);
+            vendorList = VendorListParser.parse(inputStream);
+        } catch (IOException | JSONException e) {
+            cache.remove(vendorListURL.getURL());
+            return null;
+        } finally {
+            closeQuietly(inputStream);
+        }
+
+        boolean localized = false;
+        VendorListCache.Entry localizedEntry = localizedURL != null ? cache.getEntry(localizedURL) : null;
+        if (localizedEntry != null) {
+            inputStream = null;
+            try {
+                inputStream = cache.openEntry(localizedEntry);
+                vendorList = VendorListParser.localize(vendorList, inputStream);
+                localized = true;
+            } catch (IOException | JSONException ignored) {
+                // The cached localized vendor list is unusable, the non localized one is used.
+            } finally {
+                closeQuietly(inputStream);
             }
+        }
+
+        if (localizedURL == null || localized) {
+            storeSnapshot(cache, snapshotKey, vendorList);
+        }
+
+        return vendorList;
+    }
 
+    /**
+     * Serve the cached vendor list (if any) on the main thread, then refresh the vendor list if needed.
+     * <p>
+     * Unless the refresh is forced, the date of the cached vendor list is used as last refresh date, so a vendor list
+     * which is recent enough is not downloaded again after a process restart.
+     *
+     * @param cache             The persistent cache of the downloaded vendor lists.
+     * @param forceFirstRefresh Whether the vendor list must be refreshed even if the cached one is recent enough.
+     */
+    private void loadCachedVendorList(@NonNull final VendorListCache cache, final boolean forceFirstRefresh) {
+        executor.execute(new Runnable() {
             @Override
-            public void JSONAsyncTaskDidFailDownloadingJSONObject() {
-                // We failed to get the localized vendor list.
-                downloadingVendorsList = false;
-                try {
-                    listener.onVendorListUpdateSuccess(new VendorList(vendorListJSON));
-                } catch (Exception e) {
-                    listener.onVendorListUpdateFail(e);
-                }
+            public void run() {
+                final VendorListCache.Entry entry = cache.getEntry(vendorListURL.getURL());
+                final VendorList vendorList = entry != null ? readCachedVendorList(cache, entry) : null;
+                mainThreadHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (vendorList != null) {
+                            // The cached vendor list is as recent as its last download or revalidation.
+                            if (!forceFirstRefresh && lastRefreshDate == null) {
+                                lastRefreshDate = entry.getDate();
+                            }
+                            listener.onVendorListUpdateSuccess(vendorList);
+                        }
+
+                        // the automatic refresh may have been disabled in the meantime
+                        if (isAutomaticRefreshEnabled()) {
+                            refreshVendorListIfNeeded();
+                        }
+                    }
+                });
             }
-        };
+        });
     }
 
     /**
      * Enable the automatic refresh.
+     * <p>
+     * If a cache is used, the cached vendor list is served first (once per VendorListManager instance).
+     *
+     * @param forceFirstRefresh Whether the vendor list must be refreshed immediately, regardless of the last refresh date.
      */
     public void startAutomaticRefresh(boolean forceFirstRefresh) {
+        boolean loadCachedVendorList;
+        synchronized (this) {
+            cancelScheduledRefresh();
+            automaticRefreshEnabled = true;
+
+            // to force refresh, simply erase the last refresh date
+            if (forceFirstRefresh) {
+                lastRefreshDate = null;
+            }
 
-        timer = new Timer();
+            loadCachedVendorList = cache != null && !cachedVendorListLoaded;
+            cachedVendorListLoaded = true;
+        }
 
-        // to force refresh, simply erase the last refresh date
-        if (forceFirstRefresh) {
-            lastRefreshDate = null;
+        if (loadCachedVendorList) {
+            // serve the cached vendor list before refreshing it.
+            loadCachedVendorList(cache, forceFirstRefresh);
+        } else {
+            // refresh the vendor list if needed.
+            refreshVendorListIfNeeded();
         }
+    }
+
+    /**
+     * Disable the automatic refresh by cancelling the scheduled refresh.
+     * <p>
+     * A refresh already in progress is not cancelled, but it won't schedule any other refresh.
+     */
+    public synchronized void stopAutomaticRefresh() {
+        cancelScheduledRefresh();
+        automaticRefreshEnabled = false;
+    }
 
-        // refresh the vendor list if needed.
-        refreshVendorListIfNeeded();
+    /**
+     * Reset the timer to refresh the vendor list sooner but not immediately.
+     * <p>
+     * The refresh previously scheduled (if any) is replaced.
+     */
+    public synchronized void resetTimer() {
+        cancelScheduledRefresh();
+        automaticRefreshEnabled = true;
 
+        // reschedule the timer to refresh the vendor sooner (following the retry policy).
+        scheduleTimerIfNeeded(refreshBackoff.nextDelay(refreshInterval));
     }
 
     /**
-     * Disable the automatic refresh by cancelling the timer.
+     * @return Whether or not the automatic refresh is enabled.
      */
-    public void stopAutomaticRefresh() {
-        if (timer != null) {
-            timer.cancel();
-        }
-        downloadingVendorsList = false;
-        timer = null;
+    private synchronized boolean isAutomaticRefreshEnabled() {
+        return automaticRefreshEnabled;
     }
 
     /**
-     * Reset the timer to refresh the vendor list sooner but not immediately.
+     * Cancel the scheduled refresh, if any. A refresh already running is not interrupted.
      */
-    public void resetTimer() {
-        // Reset the timer
-        if (timer != null) {
-            timer.cancel();
+    private synchronized void cancelScheduledRefresh() {
+        if (scheduledRefresh != null) {
+            scheduledRefresh.cancel(false);
+            scheduledRefresh = null;
         }
-        timer = new Timer();
-
-        // reschedule the timer to refresh the vendor sooner.
-        scheduleTimerIfNeeded(retryInterval);
     }
 
     /**
@@ -235,6 +645,7 @@ public class VendorListManager {
      */
     private void refreshVendorListIfNeeded() {
         // Compute the time before the next needed refresh.
+        Date lastRefreshDate = this.lastRefreshDate;
         long remainingTime = 0;
         if (lastRefreshDate != null) {
             remainingTime = lastRefreshDate.getTime() + refreshInterval - new Date().getTime();
@@ -242,6 +653,15 @@ public class VendorListManager {
 
         //Need to refresh as we have reached the refresh date.
         if (remainingTime <= 0) {
+            // No need to try without network: the refresh is postponed without counting a failure.
+            NetworkStatusProvider networkStatusProvider = this.networkStatusProvider;
+            if (networkStatusProvider != null && !networkStatusProvider.isNetworkAvailable()) {
+                VendorListRefreshBackoff refreshBackoff = this.refreshBackoff;
+                refreshBackoff.onSkipped();
+                scheduleTimerIfNeeded(refreshBackoff.nextDelay(refreshInterval));
+                return;
+            }
+
             refreshVendorList();
         } else {
             scheduleTimerIfNeeded(remainingTime);
@@ -250,55 +670,122 @@ public class VendorListManager {
 
     /**
      * Refresh the vendor list from the network.
+     * <p>
+     * Does nothing if a refresh is already in progress.
      */
-    @SuppressWarnings("unchecked")
     public void refreshVendorList() {
-        if (!downloadingVendorsList) {
-            downloadingVendorsList = true;
-            JSONAsyncTask jsonAsyncTask = getNewJSONAsyncTaskForVendorList(getJSONAsyncTaskListenerForMainVendorList());
-            jsonAsyncTask.execute(vendorListURL.getURL());
+        if (!downloadingVendorsList.compareAndSet(false, true)) {
+            return;
         }
+
+        final VendorListRefreshBackoff refreshBackoff = this.refreshBackoff;
+        refreshBackoff.onAttempt();
+
+        final String url = vendorListURL.getURL();
+        final String localizedURL = vendorListURL.getLocalizedURL();
+        singleFlight.load(snapshotKey(url, localizedURL), new VendorListSingleFlight.Loader() {
+            @NonNull
+            @Override
+            public VendorList load() throws Exception {
+                return fetchVendorList(url, localizedURL).vendorList;
+            }
+        }, new VendorListManagerListener() {
+            @Override
+            public void onVendorListUpdateSuccess(@NonNull VendorList vendorList) {
+                // Everything succeed, so we store the last vendor list refresh date.
+                lastRefreshDate = new Date();
+                downloadingVendorsList.set(false);
+                refreshBackoff.onSuccess();
+                listener.onVendorListUpdateSuccess(vendorList);
+                scheduleTimerIfNeeded(refreshInterval);
+            }
+
+            @Override
+            public void onVendorListUpdateFail(@NonNull Exception e) {
+                downloadingVendorsList.set(false);
+                long retryDelay = refreshBackoff.onFailure(refreshInterval);
+                listener.onVendorListUpdateFail(e);
+                scheduleTimerIfNeeded(retryDelay);
+            }
+        });
     }
 
     /**
-     * Get the vendor list with the given vendor list version.
+     * Get the vendor list with the given vendor list version, localized in the language of the VendorListManager.
+     * <p>
+     * The vendor list is retrieved from memory, then from the persistent cache (if any), and is only downloaded if it
+     * can't be found in both. Concurrent requests for the same version share the same download. The listener is always
+     * called asynchronously, on the main thread.
      *
-     * @param vendorListVersion The vendor list version that must be downloaded.
+     * @param vendorListVersion The vendor list version that must be retrieved.
      * @param listener          The listener that must be called.
      */
-    @SuppressWarnings("unchecked")
-    public void getVendorList(int vendorListVersion, @NonNull final VendorListManagerListener listener) {
-        JSONAsyncTask jsonAsyncTask = getNewJSONAsyncTaskForVendorList(new JSONAsyncTaskListener() {
-            @Override
-            public void JSONAsyncTaskDidSucceedDownloadingJSONObject(@NonNull JSONObject JSON) {
-                try {
-                    listener.onVendorListUpdateSuccess(new VendorList(JSON));
-                } catch (Exception e) {
-                    listener.onVendorListUpdateFail(e);
+    public void getVendorList(final int vendorListVersion, @NonNull final VendorListManagerListener listener) {
+        final VendorList cachedVendorList = versionedVendorListCache.get(vendorListVersion, language);
+        if (cachedVendorList != null) {
+            mainThreadHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    listener.onVendorListUpdateSuccess(cachedVendorList);
                 }
-            }
+            });
+            return;
+        }
 
+        // If the same version is already being retrieved, the listener simply joins the in-flight retrieval.
+        final VendorListURL versionedURL = new VendorListURL(vendorListVersion, language);
+        singleFlight.load(snapshotKey(versionedURL.getURL(), versionedURL.getLocalizedURL()), new VendorListSingleFlight.Loader() {
+            @NonNull
             @Override
-            public void JSONAsyncTaskDidFailDownloadingJSONObject() {
-                listener.onVendorListUpdateFail(new NetworkErrorException());
+            public VendorList load() throws Exception {
+                VendorList vendorList = cache != null ? cache.getVendorList(snapshotKey(versionedURL.getURL(), versionedURL.getLocalizedURL())) : null;
+                if (vendorList != null) {
+                    // A snapshot is only stored for a complete vendor list.
+                    versionedVendorListCache.recordDiskHit();
+                    versionedVendorListCache.put(vendorListVersion, language, vendorList);
+                    return vendorList;
+                }
+
+                versionedVendorListCache.recordMiss();
+                FetchedVendorList fetchedVendorList = fetchVendorList(versionedURL.getURL(), versionedURL.getLocalizedURL());
+
+                // Like the snapshot, a vendor list whose localization failed is not kept, so the next request retries it.
+                if (fetchedVendorList.complete) {
+                    versionedVendorListCache.put(vendorListVersion, language, fetchedVendorList.vendorList);
+                }
+                return fetchedVendorList.vendorList;
             }
-        });
+        }, listener);
+    }
 
-        jsonAsyncTask.execute(new VendorListURL(vendorListVersion, null).getURL());
+    /**
+     * @return The number of vendor list downloads actually started (concurrent requests sharing a download are counted once).
+     */
+    @VisibleForTesting
+    int getDownloadCount() {
+        return singleFlight.getLoadCount();
+    }
 
+    /**
+     * @return The in-memory cache of the vendor lists retrieved by version (and its hit & miss counters).
+     */
+    @NonNull
+    public VersionedVendorListCache getVersionedVendorListCache() {
+        return versionedVendorListCache;
     }
 
     /**
-     * Schedule the timer only if automatic refresh is enable.
+     * Schedule a refresh only if automatic refresh is enable, replacing the refresh previously scheduled (if any).
      */
-    private void scheduleTimerIfNeeded(long delay) {
-        if (timer != null) {
-            timer.schedule(new TimerTask() {
+    private synchronized void scheduleTimerIfNeeded(long delay) {
+        if (automaticRefreshEnabled) {
+            cancelScheduledRefresh();
+            scheduledRefresh = scheduler.schedule(new Runnable() {
                 @Override
                 public void run() {
                     refreshVendorListIfNeeded();
                 }
-            }, delay);
+            }, delay, TimeUnit.MILLISECONDS);
         }
     }
 }
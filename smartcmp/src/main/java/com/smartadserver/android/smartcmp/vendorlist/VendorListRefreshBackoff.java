@@ -0,0 +1,223 @@
+package com.smartadserver.android.smartcmp.vendorlist;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.VisibleForTesting;
+
+import java.util.Random;
+
+/**
+ * Retry policy of the vendor list refresh: exponential backoff with jitter, and circuit breaker.
+ * <p>
+ * After each consecutive failure, the delay before the next attempt is multiplied (up to a maximum delay), then reduced
+ * by a random part so the devices that failed at the same time don't retry at the same time. Once the maximum number of
+ * consecutive failures is reached, the circuit is open: the next attempts are only made at the regular refresh interval,
+ * until one of them succeeds. The policy also counts the refresh attempts and their outcomes. All methods are thread safe.
+ */
+
+@SuppressWarnings("WeakerAccess")
+public class VendorListRefreshBackoff {
+
+    // The default factor applied to the delay after each consecutive failure.
+    static public final double DEFAULT_MULTIPLIER = 2;
+
+    // The default maximum part of the delay removed randomly.
+    static public final double DEFAULT_JITTER = 0.5;
+
+    // The default number of consecutive failures after which the circuit is open.
+    static public final int DEFAULT_MAX_ATTEMPTS = 8;
+
+    // The delay before the first retry (in millisecond).
+    private final long initialDelay;
+
+    // The maximum delay between two retries (in millisecond).
+    private final long maxDelay;
+
+    // The factor applied to the delay after each consecutive failure.
+    private final double multiplier;
+
+    // The maximum part of the delay removed randomly (between 0 and 1).
+    private final double jitter;
+
+    // The number of consecutive failures after which the circuit is open.
+    private final int maxAttempts;
+
+    // The random generator used for the jitter.
+    @NonNull
+    private final Random random;
+
+    // The number of consecutive failures.
+    private int consecutiveFailures = 0;
+
+    // The number of refresh attempts.
+    private int attemptCount = 0;
+
+    // The number of successful refreshes.
+    private int successCount = 0;
+
+    // The number of failed refreshes.
+    private int failureCount = 0;
+
+    // The number of refreshes skipped because the network was not available.
+    private int skippedCount = 0;
+
+    // The number of times the circuit has been opened.
+    private int circuitOpenCount = 0;
+
+    /**
+     * Initialize a retry policy using the default multiplier, jitter and maximum number of attempts.
+     *
+     * @param initialDelay The delay before the first retry (in millisecond).
+     * @param maxDelay     The maximum delay between two retries (in millisecond).
+     * @throws IllegalArgumentException if a parameter is invalid.
+     */
+    public VendorListRefreshBackoff(long initialDelay, long maxDelay) throws IllegalArgumentException {
+        this(initialDelay, maxDelay, DEFAULT_MULTIPLIER, DEFAULT_JITTER, DEFAULT_MAX_ATTEMPTS);
+    }
+
+    /**
+     * Initialize a retry policy.
+     *
+     * @param initialDelay The delay before the first retry (in millisecond).
+     * @param maxDelay     The maximum delay between two retries (in millisecond).
+     * @param multiplier   The factor applied to the delay after each consecutive failure (at least 1).
+     * @param jitter       The maximum part of the delay removed randomly (between 0 and 1).
+     * @param maxAttempts  The number of consecutive failures after which the circuit is open (at least 1).
+     * @throws IllegalArgumentException if a parameter is invalid.
+     */
+    public VendorListRefreshBackoff(long initialDelay, long maxDelay, double multiplier, double jitter, int maxAttempts) throws IllegalArgumentException {
+        this(initialDelay, maxDelay, multiplier, jitter, maxAttempts, new Random());
+    }
+
+    /**
+     * Initialize a retry policy using a given random generator.
+     * Explicitly defined for test purpose.
+     */
+    @VisibleForTesting
+    VendorListRefreshBackoff(long initialDelay, long maxDelay, double multiplier, double jitter, int maxAttempts, @NonNull Random random) throws IllegalArgumentException {
+        if (initialDelay < 0 || maxDelay < initialDelay) {
+            throw new IllegalArgumentException("Invalid delays: the initial delay must be positive and lower than the maximum delay");
+        }
+        if (multiplier < 1) {
+            throw new IllegalArgumentException("The multiplier can not be lower than 1");
+        }
+        if (jitter < 0 || jitter > 1) {
+            throw new IllegalArgumentException("The jitter must be between 0 and 1");
+        }
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("The maximum number of attempts can not be lower than 1");
+        }
+
+        this.initialDelay = initialDelay;
+        this.maxDelay = maxDelay;
+        this.multiplier = multiplier;
+        this.jitter = jitter;
+        this.maxAttempts = maxAttempts;
+        this.random = random;
+    }
+
+    /**
+     * Count a refresh attempt.
+     */
+    synchronized void onAttempt() {
+        attemptCount++;
+    }
+
+    /**
+     * Count a successful refresh: the backoff is reset and the circuit is closed.
+     */
+    synchronized void onSuccess() {
+        successCount++;
+        consecutiveFailures = 0;
+    }
+
+    /**
+     * Count a failed refresh and compute the delay before the next attempt.
+     *
+     * @param refreshInterval The regular refresh interval, used as delay when the circuit is open (in millisecond).
+     * @return The delay before the next attempt (in millisecond).
+     */
+    synchronized long onFailure(long refreshInterval) {
+        failureCount++;
+        consecutiveFailures++;
+
+        if (consecutiveFailures == maxAttempts) {
+            circuitOpenCount++;
+        }
+
+        return nextDelay(refreshInterval);
+    }
+
+    /**
+     * Count a refresh skipped because the network was not available.
+     */
+    synchronized void onSkipped() {
+        skippedCount++;
+    }
+
+    /**
+     * Compute the delay before the next attempt, without counting any failure.
+     *
+     * @param refreshInterval The regular refresh interval, used as delay when the circuit is open (in millisecond).
+     * @return The delay before the next attempt (in millisecond).
+     */
+    synchronized long nextDelay(long refreshInterval) {
+        long delay;
+        if (consecutiveFailures >= maxAttempts) {
+            delay = Math.max(refreshInterval, maxDelay);
+        } else {
+            double exponentialDelay = initialDelay * Math.pow(multiplier, Math.max(consecutiveFailures - 1, 0));
+            delay = (long) Math.min(exponentialDelay, maxDelay);
+        }
+
+        return delay - (long) (delay * jitter * random.nextDouble());
+    }
+
+    /**
+     * @return Whether or not the circuit is open (the maximum number of consecutive failures has been reached).
+     */
+    public synchronized boolean isCircuitOpen() {
+        return consecutiveFailures >= maxAttempts;
+    }
+
+    /**
+     * @return The number of consecutive failures.
+     */
+    public synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    /**
+     * @return The number of refresh attempts.
+     */
+    public synchronized int getAttemptCount() {
+        return attemptCount;
+    }
+
+    /**
+     * @return The number of successful refreshes.
+     */
+    public synchronized int getSuccessCount() {
+        return successCount;
+    }
+
+    /**
+     * @return The number of failed refreshes.
+     */
+    public synchronized int getFailureCount() {
+        return failureCount;
+    }
+
+    /**
+     * @return The number of refreshes skipped because the network was not available.
+     */
+    public synchronized int getSkippedCount() {
+        return skippedCount;
+    }
+
+    /**
+     * @return The number of times the circuit has been opened.
+     */
+    public synchronized int getCircuitOpenCount() {
+        return circuitOpenCount;
+    }
+}
@@ -0,0 +1,169 @@
+package com.smartadserver.android.smartcmp.vendorlist;
+
+import android.os.Handler;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+
+import com.smartadserver.android.smartcmp.model.VendorList;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Coalesces the concurrent retrievals of the same vendor list.
+ * <p>
+ * Every caller requesting a key already being loaded joins the in-flight load instead of starting a new one: the
+ * vendor list is downloaded and parsed once, and the result is delivered to all the callers. Loads are run on the given
+ * executor and listeners are called through the given handler. A load that can't be run (rejected by the executor) or
+ * that crashes always completes with a failure, so its key is never left in flight. All methods are thread safe.
+ */
+
+class VendorListSingleFlight {
+
+    /**
+     * Loads a vendor list.
+     */
+    interface Loader {
+
+        /**
+         * Load the vendor list. This method is blocking and is called on a background thread.
+         *
+         * @return The loaded vendor list.
+         * @throws Exception if the vendor list can't be loaded.
+         */
+        @WorkerThread
+        @NonNull
+        VendorList load() throws Exception;
+    }
+
+    // The executor on which the loads are run.
+    @NonNull
+    private final Executor executor;
+
+    // The handler used to call the listeners.
+    @NonNull
+    private final Handler handler;
+
+    // The listeners waiting for each in-flight load, by key.
+    @NonNull
+    private final HashMap<String, ArrayList<VendorListManagerListener>> inFlightLoads = new HashMap<>();
+
+    // The number of loads actually started.
+    private int loadCount = 0;
+
+    /**
+     * Initialize a single flight group.
+     *
+     * @param executor The executor on which the loads are run.
+     * @param handler  The handler used to call the listeners.
+     */
+    VendorListSingleFlight(@NonNull Executor executor, @NonNull Handler handler) {
+        this.executor = executor;
+        this.handler = handler;
+    }
+
+    /**
+     * Load a vendor list, or join the in-flight load of the same key if any.
+     *
+     * @param key      The key identifying the vendor list.
+     * @param loader   The loader used if no load of the same key is in flight.
+     * @param listener The listener that must be called when the vendor list is loaded or failed to be loaded.
+     * @return true if a new load has been started, false if the listener joined an in-flight load.
+     */
+    boolean load(@NonNull final String key, @NonNull final Loader loader, @NonNull VendorListManagerListener listener) {
+        synchronized (inFlightLoads) {
+            ArrayList<VendorListManagerListener> listeners = inFlightLoads.get(key);
+            if (listeners != null) {
+                listeners.add(listener);
+                return false;
+            }
+
+            listeners = new ArrayList<>();
+            listeners.add(listener);
+            inFlightLoads.put(key, listeners);
+            loadCount++;
+        }
+
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    VendorList vendorList;
+                    try {
+                        vendorList = loader.load();
+                    } catch (Exception e) {
+                        complete(key, null, e);
+                        return;
+                    } catch (Error e) {
+                        // The waiting listeners must be released even if the loader crashed, then the error is rethrown.
+                        complete(key, null, new ExecutionException(e));
+                        throw e;
+                    }
+
+                    complete(key, vendorList, null);
+                }
+            });
+        } catch (RuntimeException e) {
+            // The executor rejected the load (shut down or saturated): the load is failed right away.
+            synchronized (inFlightLoads) {
+                loadCount--;
+            }
+            complete(key, null, e);
+        }
+
+        return true;
+    }
+
+    /**
+     * Complete the load of a key: the key is released and all the waiting listeners are called through the handler.
+     *
+     * @param key        The key identifying the vendor list.
+     * @param vendorList The loaded vendor list, or null if the load failed.
+     * @param exception  The exception that made the load fail, or null if the load succeeded.
+     */
+    private void complete(@NonNull final String key, @Nullable final VendorList vendorList, @Nullable final Exception exception) {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                // The load is completed: the next callers will start a new one.
+                ArrayList<VendorListManagerListener> listeners;
+                synchronized (inFlightLoads) {
+                    listeners = inFlightLoads.remove(key);
+                }
+
+                for (VendorListManagerListener listener : listeners) {
+                    if (vendorList != null) {
+                        listener.onVendorListUpdateSuccess(vendorList);
+                    } else {
+                        //noinspection ConstantConditions
+                        listener.onVendorListUpdateFail(exception);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Whether or not a load of the given key is in flight.
+     *
+     * @param key The key identifying the vendor list.
+     * @return true if a load of the given key is in flight.
+     */
+    boolean isLoading(@NonNull String key) {
+        synchronized (inFlightLoads) {
+            return inFlightLoads.containsKey(key);
+        }
+    }
+
+    /**
+     * @return The number of loads actually started (the callers that joined an in-flight load are not counted).
+     */
+    int getLoadCount() {
+        synchronized (inFlightLoads) {
+            return loadCount;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.smartadserver.android.smartcmp.vendorlist;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.smartadserver.android.smartcmp.model.Language;
+import com.smartadserver.android.smartcmp.model.VendorList;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-memory LRU cache of the vendor lists retrieved by version.
+ * <p>
+ * A given version of a vendor list never changes, so the cached vendor lists never need to be refreshed. The cache
+ * also counts its hits and misses, including the ones of the disk cache backing it. All methods are thread safe.
+ */
+
+@SuppressWarnings("WeakerAccess")
+public class VersionedVendorListCache {
+
+    // The maximum number of vendor lists kept in memory.
+    private final int maxEntries;
+
+    // The cached vendor lists, by key, in access order (the least recently used is the first one).
+    @NonNull
+    private final LinkedHashMap<String, VendorList> vendorLists;
+
+    // The number of vendor lists retrieved from memory.
+    private int hitCount = 0;
+
+    // The number of vendor lists retrieved from the disk cache.
+    private int diskHitCount = 0;
+
+    // The number of vendor lists that had to be downloaded.
+    private int missCount = 0;
+
+    /**
+     * Initialize a versioned vendor list cache.
+     *
+     * @param maxEntries The maximum number of vendor lists kept in memory.
+     * @throws IllegalArgumentException if maxEntries is lower than 1.
+     */
+    public VersionedVendorListCache(final int maxEntries) throws IllegalArgumentException {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("The maximum number of entries can not be lower than 1");
+        }
+
+        this.maxEntries = maxEntries;
+        this.vendorLists = new LinkedHashMap<String, VendorList>(maxEntries + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, VendorList> eldest) {
+                return size() > VersionedVendorListCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Get the key of a vendor list version.
+     *
+     * @param version  The version of the vendor list.
+     * @param language The language of the vendor list, or null if it is not localized.
+     * @return The key of the vendor list.
+     */
+    @NonNull
+    static String key(int version, @Nullable Language language) {
+        return language != null ? version + "-" + language : "" + version;
+    }
+
+    /**
+     * Get a vendor list from memory, counting a hit if it is found.
+     *
+     * @param version  The version of the vendor list.
+     * @param language The language of the vendor list, or null if it is not localized.
+     * @return The cached vendor list, or null if it is not in memory.
+     */
+    @Nullable
+    public synchronized VendorList get(int version, @Nullable Language language) {
+        VendorList vendorList = vendorLists.get(key(version, language));
+        if (vendorList != null) {
+            hitCount++;
+        }
+
+        return vendorList;
+    }
+
+    /**
+     * Add a vendor list in memory, evicting the least recently used vendor list if the cache is full.
+     *
+     * @param version    The version of the vendor list.
+     * @param language   The language of the vendor list, or null if it is not localized.
+     * @param vendorList The vendor list.
+     */
+    public synchronized void put(int version, @Nullable Language language, @NonNull VendorList vendorList) {
+        vendorLists.put(key(version, language), vendorList);
+    }
+
+    /**
+     * Remove all the vendor lists from memory.
+     */
+    public synchronized void clear() {
+        vendorLists.clear();
+    }
+
+    /**
+     * @return The number of vendor lists in memory.
+     */
+    public synchronized int size() {
+        return vendorLists.size();
+    }
+
+    /**
+     * @return The maximum number of vendor lists kept in memory.
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Count a vendor list retrieved from the disk cache.
+     */
+    synchronized void recordDiskHit() {
+        diskHitCount++;
+    }
+
+    /**
+     * Count a vendor list that had to be downloaded.
+     */
+    synchronized void recordMiss() {
+        missCount++;
+    }
+
+    /**
+     * @return The number of vendor lists retrieved from memory.
+     */
+    public synchronized int getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return The number of vendor lists retrieved from the disk cache.
+     */
+    public synchronized int getDiskHitCount() {
+        return diskHitCount;
+    }
+
+    /**
+     * @return The number of vendor lists that had to be downloaded.
+     */
+    public synchronized int getMissCount() {
+        return missCount;
+    }
+}
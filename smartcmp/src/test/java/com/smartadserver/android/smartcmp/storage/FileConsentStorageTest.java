@@ -0,0 +1,242 @@
+package com.smartadserver.android.smartcmp.storage;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Plain JVM tests of the append-only consent storage file.
+ */
+public class FileConsentStorageTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Map<String, Object> values(Object... keysAndValues) {
+        HashMap<String, Object> values = new HashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            values.put((String) keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return values;
+    }
+
+    @Test
+    public void testValuesArePersisted() throws IOException {
+        File file = new File(temporaryFolder.getRoot(), "consent");
+
+        FileConsentStorage storage = new FileConsentStorage(file);
+        Assert.assertFalse(storage.contains("consentString"));
+        Assert.assertTrue(storage.write(values("consentString", "BOEFBi5OEFBi5ABACDENABwAAAAAZoA", "date", 42L)));
+        Assert.assertTrue(storage.write(values("purposes", "10101")));
+
+        FileConsentStorage reloadedStorage = new FileConsentStorage(file);
+        Assert.assertEquals("BOEFBi5OEFBi5ABACDENABwAAAAAZoA", reloadedStorage.getString("consentString", null));
+        Assert.assertEquals(42L, reloadedStorage.getLong("date", 0));
+        Assert.assertEquals("10101", reloadedStorage.getString("purposes", null));
+        Assert.assertEquals(2, reloadedStorage.getRecordCount());
+    }
+
+    @Test
+    public void testUnchangedValuesAreNotWritten() {
+        File file = new File(temporaryFolder.getRoot(), "consent");
+
+        FileConsentStorage storage = new FileConsentStorage(file);
+        storage.write(values("consentString", "consent", "date", 42L));
+        long length = file.length();
+
+        Assert.assertFalse(storage.write(values("consentString", "consent", "date", 42L)));
+        Assert.assertEquals(length, file.length());
+
+        // Only the changed value is appended.
+        Assert.assertTrue(storage.write(values("consentString", "consent", "date", 43L)));
+        Assert.assertEquals(2, new FileConsentStorage(file).getRecordCount());
+    }
+
+    @Test
+    public void testRemovedValuesArePersisted() {
+        File file = new File(temporaryFolder.getRoot(), "consent");
+
+        FileConsentStorage storage = new FileConsentStorage(file);
+        storage.write(values("consentString", "consent", "date", 42L));
+        Assert.assertTrue(storage.write(values("consentString", null)));
+        Assert.assertFalse(storage.write(values("consentString", null)));
+        Assert.assertFalse(storage.contains("consentString"));
+
+        FileConsentStorage reloadedStorage = new FileConsentStorage(file);
+        Assert.assertFalse(reloadedStorage.contains("consentString"));
+        Assert.assertEquals(42L, reloadedStorage.getLong("date", 0));
+        Assert.assertEquals(2, reloadedStorage.getRecordCount());
+    }
+
+    @Test
+    public void testListenerIsNotifiedOfTheChangedValues() {
+        final ArrayList<String> changedKeys = new ArrayList<>();
+        FileConsentStorage storage = new FileConsentStorage(new File(temporaryFolder.getRoot(), "consent"));
+        storage.write(values("key1", "value1"));
+        storage.setOnChangeListener(new ConsentStorage.OnChangeListener() {
+            @Override
+            public void onChange(String key) {
+                changedKeys.add(key);
+            }
+        });
+
+        storage.write(values("key1", "value1", "key2", "value2"));
+        storage.write(values("key1", null));
+        Assert.assertEquals(Arrays.asList("key2", "key1"), changedKeys);
+    }
+
+    @Test
+    public void testValuesOfAnotherTypeAreNotReturned() {
+        FileConsentStorage storage = new FileConsentStorage(new File(temporaryFolder.getRoot(), "consent"));
+        storage.write(values("key", "42"));
+
+        Assert.assertEquals(0, storage.getLong("key", 0));
+        Assert.assertEquals("default", storage.getString("missing", "default"));
+    }
+
+    @Test
+    public void testTruncatedRecordIsIgnored() throws IOException {
+        File file = new File(temporaryFolder.getRoot(), "consent");
+
+        FileConsentStorage storage = new FileConsentStorage(file);
+        storage.write(values("key1", "value1"));
+        long validLength = file.length();
+        storage.write(values("key2", "value2"));
+
+        // Simulate a write interrupted in the middle of the second record.
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.setLength(file.length() - 3);
+        randomAccessFile.close();
+
+        FileConsentStorage reloadedStorage = new FileConsentStorage(file);
+        Assert.assertEquals("value1", reloadedStorage.getString("key1", null));
+        Assert.assertFalse(reloadedStorage.contains("key2"));
+
+        // The next write rewrites the file, so the following records can be read.
+        reloadedStorage.write(values("key3", "value3"));
+        Assert.assertTrue(file.length() > validLength);
+        FileConsentStorage rewrittenStorage = new FileConsentStorage(file);
+        Assert.assertEquals("value1", rewrittenStorage.getString("key1", null));
+        Assert.assertEquals("value3", rewrittenStorage.getString("key3", null));
+        Assert.assertEquals(1, rewrittenStorage.getRecordCount());
+    }
+
+    @Test
+    public void testCorruptedRecordIsIgnored() throws IOException {
+        File file = new File(temporaryFolder.getRoot(), "consent");
+
+        FileConsentStorage storage = new FileConsentStorage(file);
+        storage.write(values("key1", "value1"));
+        storage.write(values("key2", "value2"));
+
+        // Flip the last byte of the second record.
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.seek(file.length() - 1);
+        int lastByte = randomAccessFile.read();
+        randomAccessFile.seek(file.length() - 1);
+        randomAccessFile.write(lastByte ^ 0xFF);
+        randomAccessFile.close();
+
+        FileConsentStorage reloadedStorage = new FileConsentStorage(file);
+        Assert.assertEquals("value1", reloadedStorage.getString("key1", null));
+        Assert.assertFalse(reloadedStorage.contains("key2"));
+    }
+
+    @Test
+    public void testInvalidFileIsIgnored() throws IOException {
+        File file = temporaryFolder.newFile("consent");
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.write("not a consent file".getBytes("UTF-8"));
+        randomAccessFile.close();
+
+        FileConsentStorage storage = new FileConsentStorage(file);
+        Assert.assertFalse(storage.contains("key"));
+
+        storage.write(values("key", "value"));
+        Assert.assertEquals("value", new FileConsentStorage(file).getString("key", null));
+    }
+
+    @Test
+    public void testFileIsCompacted() {
+        File file = new File(temporaryFolder.getRoot(), "consent");
+
+        FileConsentStorage storage = new FileConsentStorage(file);
+        for (long i = 0; i < 100; i++) {
+            storage.write(values("counter", i, "key" + (i % 5), "value" + i));
+        }
+
+        FileConsentStorage reloadedStorage = new FileConsentStorage(file);
+        Assert.assertTrue(reloadedStorage.getRecordCount() <= 32);
+        Assert.assertEquals(99, reloadedStorage.getLong("counter", 0));
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals("value" + (95 + i), reloadedStorage.getString("key" + i, null));
+        }
+        Assert.assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void testFileIsWrittenOnTheWriteExecutor() {
+        File file = new File(temporaryFolder.getRoot(), "consent");
+        final ArrayList<Runnable> tasks = new ArrayList<>();
+        Executor executor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                tasks.add(command);
+            }
+        };
+
+        FileConsentStorage storage = new FileConsentStorage(file, executor);
+        Assert.assertTrue(storage.write(values("key1", "value1")));
+        Assert.assertTrue(storage.write(values("key2", "value2", "date", 42L)));
+
+        // The values are available right away, but the file is not written yet (a single task is pending).
+        Assert.assertEquals("value2", storage.getString("key2", null));
+        Assert.assertFalse(file.exists());
+        Assert.assertEquals(1, tasks.size());
+
+        tasks.get(0).run();
+        FileConsentStorage reloadedStorage = new FileConsentStorage(file);
+        Assert.assertEquals("value1", reloadedStorage.getString("key1", null));
+        Assert.assertEquals("value2", reloadedStorage.getString("key2", null));
+        Assert.assertEquals(42L, reloadedStorage.getLong("date", 0));
+
+        // The next write schedules a new task, and the pending values can also be flushed on the caller thread.
+        Assert.assertTrue(storage.write(values("key1", "value3")));
+        Assert.assertEquals(2, tasks.size());
+        storage.flush();
+        Assert.assertEquals("value3", new FileConsentStorage(file).getString("key1", null));
+        tasks.get(1).run();
+        Assert.assertEquals(2, new FileConsentStorage(file).getRecordCount());
+    }
+
+    @Test
+    public void testFileIsWrittenOnTheCallerThreadIfTheExecutorRejectsTheWrite() {
+        File file = new File(temporaryFolder.getRoot(), "consent");
+        Executor executor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException();
+            }
+        };
+
+        FileConsentStorage storage = new FileConsentStorage(file, executor);
+        Assert.assertTrue(storage.write(values("key", "value")));
+        Assert.assertEquals("value", new FileConsentStorage(file).getString("key", null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedValueIsRejected() {
+        new FileConsentStorage(new File(temporaryFolder.getRoot(), "consent")).write(values("key", 42));
+    }
+}
@@ -0,0 +1,127 @@
+package com.smartadserver.android.smartcmp.storage;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+
+/**
+ * Plain JVM tests of the mirrored consent storage.
+ */
+public class MirroredConsentStorageTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testValuesAreWrittenInBothStorages() {
+        FileConsentStorage primary = new FileConsentStorage(new File(temporaryFolder.getRoot(), "primary"));
+        FileConsentStorage mirror = new FileConsentStorage(new File(temporaryFolder.getRoot(), "mirror"));
+        MirroredConsentStorage storage = new MirroredConsentStorage(primary, mirror);
+
+        Assert.assertTrue(storage.write(Collections.<String, Object>singletonMap("key", "value")));
+        Assert.assertEquals("value", primary.getString("key", null));
+        Assert.assertEquals("value", mirror.getString("key", null));
+
+        Assert.assertFalse(storage.write(Collections.<String, Object>singletonMap("key", "value")));
+    }
+
+    @Test
+    public void testMirrorIsReadWhenPrimaryIsMissingAValue() {
+        FileConsentStorage primary = new FileConsentStorage(new File(temporaryFolder.getRoot(), "primary"));
+        FileConsentStorage mirror = new FileConsentStorage(new File(temporaryFolder.getRoot(), "mirror"));
+        mirror.write(Collections.<String, Object>singletonMap("key", "legacy"));
+        mirror.write(Collections.<String, Object>singletonMap("date", 42L));
+
+        MirroredConsentStorage storage = new MirroredConsentStorage(primary, mirror);
+        Assert.assertTrue(storage.contains("key"));
+        Assert.assertEquals("legacy", storage.getString("key", null));
+        Assert.assertEquals(42L, storage.getLong("date", 0));
+
+        // Once written, the value is read from the primary storage.
+        storage.write(Collections.<String, Object>singletonMap("key", "value"));
+        Assert.assertEquals("value", storage.getString("key", null));
+        Assert.assertEquals("value", primary.getString("key", null));
+    }
+
+    @Test
+    public void testMirrorIsUpdatedEvenIfPrimaryIsUnchanged() {
+        FileConsentStorage primary = new FileConsentStorage(new File(temporaryFolder.getRoot(), "primary"));
+        FileConsentStorage mirror = new FileConsentStorage(new File(temporaryFolder.getRoot(), "mirror"));
+        primary.write(Collections.<String, Object>singletonMap("key", "value"));
+
+        // The mirror may have been cleared by the app: it is written again.
+        MirroredConsentStorage storage = new MirroredConsentStorage(primary, mirror);
+        Assert.assertTrue(storage.write(Collections.<String, Object>singletonMap("key", "value")));
+        Assert.assertEquals("value", mirror.getString("key", null));
+    }
+
+    @Test
+    public void testMirrorChangedBySomeoneElseIsRead() {
+        FileConsentStorage primary = new FileConsentStorage(new File(temporaryFolder.getRoot(), "primary"));
+        FileConsentStorage mirror = new FileConsentStorage(new File(temporaryFolder.getRoot(), "mirror"));
+        MirroredConsentStorage storage = new MirroredConsentStorage(primary, mirror);
+        storage.write(Collections.<String, Object>singletonMap("key", "value"));
+
+        // Another SDK rewrites the value in the mirror.
+        mirror.write(Collections.<String, Object>singletonMap("key", "other"));
+        Assert.assertEquals("other", storage.getString("key", null));
+        Assert.assertEquals("other", new MirroredConsentStorage(primary, mirror).getString("key", null));
+    }
+
+    @Test
+    public void testMirrorClearedBySomeoneElseIsRead() {
+        File mirrorFile = new File(temporaryFolder.getRoot(), "mirror");
+        FileConsentStorage primary = new FileConsentStorage(new File(temporaryFolder.getRoot(), "primary"));
+        MirroredConsentStorage storage = new MirroredConsentStorage(primary, new FileConsentStorage(mirrorFile));
+        storage.write(Collections.<String, Object>singletonMap("key", "value"));
+
+        // The app clears the mirror.
+        Assert.assertTrue(mirrorFile.delete());
+        MirroredConsentStorage reloadedStorage = new MirroredConsentStorage(primary, new FileConsentStorage(mirrorFile));
+        Assert.assertFalse(reloadedStorage.contains("key"));
+        Assert.assertEquals("default", reloadedStorage.getString("key", "default"));
+
+        // The value is removed from the primary storage too.
+        Assert.assertFalse(primary.contains("key"));
+    }
+
+    @Test
+    public void testPrimaryIsReadOnceTheMirrorIsChecked() {
+        File mirrorFile = new File(temporaryFolder.getRoot(), "mirror");
+        FileConsentStorage primary = new FileConsentStorage(new File(temporaryFolder.getRoot(), "primary"));
+        MirroredConsentStorage storage = new MirroredConsentStorage(primary, new FileConsentStorage(mirrorFile));
+        storage.write(Collections.<String, Object>singletonMap("key", "value"));
+
+        // The mirror is only checked at first read: a change that is not notified is not seen.
+        Assert.assertEquals("value", storage.getString("key", null));
+        new FileConsentStorage(mirrorFile).write(Collections.<String, Object>singletonMap("key", "other"));
+        Assert.assertEquals("value", storage.getString("key", null));
+    }
+
+    @Test
+    public void testPrimaryIsReadWhenTheLastMirrorWriteIsLost() {
+        FileConsentStorage primary = new FileConsentStorage(new File(temporaryFolder.getRoot(), "primary"));
+        FileConsentStorage mirror = new FileConsentStorage(new File(temporaryFolder.getRoot(), "mirror"));
+        new MirroredConsentStorage(primary, mirror).write(Collections.<String, Object>singletonMap("key", "value"));
+
+        // The next write only reaches the primary storage (the app is killed before the mirror is written).
+        HashMap<String, Object> values = new HashMap<>();
+        values.put("key", "newValue");
+        values.put("date", 42L);
+        values.put(MirroredConsentStorage.WRITE_STAMP_KEY, primary.getLong(MirroredConsentStorage.WRITE_STAMP_KEY, 0) + 1);
+        primary.write(values);
+
+        MirroredConsentStorage storage = new MirroredConsentStorage(primary, mirror);
+        Assert.assertEquals("newValue", storage.getString("key", null));
+        Assert.assertEquals(42L, storage.getLong("date", 0));
+
+        // The mirror is repaired.
+        Assert.assertEquals("newValue", mirror.getString("key", null));
+        Assert.assertEquals(42L, mirror.getLong("date", 0));
+    }
+}
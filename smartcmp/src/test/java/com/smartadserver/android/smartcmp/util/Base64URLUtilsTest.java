@@ -0,0 +1,50 @@
+package com.smartadserver.android.smartcmp.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Base64;
+import java.util.Random;
+
+/**
+ * Plain JVM tests of the base64url codec, checked against the JDK implementation.
+ */
+public class Base64URLUtilsTest {
+
+    @Test
+    public void testEncodingMatchesJdkEncoder() {
+        Random random = new Random(42);
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+
+        for (int length = 0; length < 256; length++) {
+            byte[] data = new byte[length];
+            random.nextBytes(data);
+
+            Assert.assertEquals(encoder.encodeToString(data), Base64URLUtils.getBase64URL(data));
+        }
+    }
+
+    @Test
+    public void testDecodingMatchesJdkDecoder() {
+        Random random = new Random(42);
+        Base64.Encoder encoder = Base64.getUrlEncoder();
+
+        for (int length = 0; length < 256; length++) {
+            byte[] data = new byte[length];
+            random.nextBytes(data);
+
+            String padded = encoder.encodeToString(data);
+            Assert.assertArrayEquals(data, Base64URLUtils.decodeBytes(padded));
+            Assert.assertArrayEquals(data, Base64URLUtils.decodeBytes(padded.replace("=", "")));
+        }
+    }
+
+    @Test
+    public void testConsentStringCanBeDecodedAsBits() {
+        String bits = Base64URLUtils.decodeString("BOEFEAyOEFEAyAHABDENAI4AAAB9vABAASA", true);
+
+        // 35 base64 characters are decoded into 26 bytes, the first 6 bits being the consent string version.
+        Assert.assertEquals(26 * 8, bits.length());
+        Assert.assertEquals("000001", bits.substring(0, 6));
+    }
+}